@@ -0,0 +1,204 @@
+package com.cbn.bloomberg.bench;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import com.cbn.bloomberg.util.CbnTfBrowsing.ModuleType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: CbnTfBenchFixtures.java
+ * Author: CSD Development Team
+ * Created: 2026-02-21
+ * Last Modified: 2026-02-21
+ * =============================================================================
+ *
+ * PURPOSE: Synthetic Bloomberg payloads for CbnTfBenchmark.
+ *
+ * Items carry the Bloomberg field names read by the module mappers, with
+ * values shaped like the real feed (ISO dates, decimal amounts and rates,
+ * NUBAN-style accounts). Values vary per item so that no two items are
+ * identical, and the same seed always gives the same payload. FX items cycle
+ * through the SP, FW, SW and SD deal types so every mapping branch is taken.
+ *
+ * MODIFICATION HISTORY:
+ * - 2026-02-21 | Initial creation
+ * =============================================================================
+ */
+public final class CbnTfBenchFixtures {
+
+    private static final String[] FX_DEAL_TYPES = { "SP", "FW", "SW", "SD" };
+    private static final String[] CURRENCIES = { "USD", "NGN", "EUR", "GBP" };
+    private static final LocalDate BASE_DATE = LocalDate.of(2026, 1, 5);
+
+    private static final Map<ModuleType, List<String>> FIELDS = new EnumMap<>(ModuleType.class);
+
+    static {
+        FIELDS.put(ModuleType.FT, fields("DEBIT_ACCT_NO", "DEBIT_CURRENCY", "DEBIT_AMOUNT",
+                "DEBIT_VALUE_DATE", "DEBIT_THIER_REF", "CREDIT_ACCT_NO", "CREDIT_CURRENCY",
+                "CREDIT_AMOUNT", "CREDIT_VALUE_DATE", "CREDIT_THIER_REF", "ORDERING_CUSTOMER",
+                "PAYMENT_DETAILS", "BLOOMBERG_ID"));
+        FIELDS.put(ModuleType.FX, fields("COUNTERPARTY", "DEAL_TYPE", "DEALER_DESK", "DEAL_DATE",
+                "CURRENCY_BOUGHT", "BUY_AMOUNT", "VALUE_DATE_BUY", "CURRENCY_SOLD", "SELL_AMOUNT",
+                "VALUE_DATE_SELL", "SPOT_RATE", "SPOT_DATE", "BASE_CCY", "BROKER", "DEALER_NOTES",
+                "OUR_ACCOUNT_PAY", "OUR_ACCOUNT_REC", "CPARTY_CORR_NO", "CPY_CORR_ADD",
+                "CPARTY_BANK_ACC", "BK_TO_BK_INF", "INT_RATE_BUY", "INT_RATE_SELL", "RATE",
+                "PAY_REC_ACCOUNT", "STATUS", "RTGS_ID", "COMPLETED_ID", "BUY_RATE", "SELL_RATE",
+                "MID_RATE", "MDC_ERROR", "FORWARD_RATE", "SWAP_BASE_CCY", "LEG1_FWD_RATE",
+                "FORWARD_VALUE_DATE_BUY", "FORWARD_VALUE_DATE_SELL", "FWD_FWD_SWAP", "UNEVEN_SWAP",
+                "SWAP_REF_NO", "BLOOMBERG_ID"));
+        FIELDS.put(ModuleType.PD, fields("CUSTOMER_NO", "CURRENCY", "PRINCIPAL", "EXCH_RATE",
+                "LCY_AMOUNT", "DEAL_DATE", "VALUE_DATE", "MATURITY_DATE", "CATEGORY", "INT_RATE",
+                "INTEREST_BASIS", "TOT_INTEREST_AMT", "INT_DUE_DATE", "LIQ_DEFER_INTEREST",
+                "REMARKS", "DRAWDOWN_ACCOUNT", "PR_LIQUID_ACCT", "INT_LIQUID_ACCT",
+                "CHARGE_ACCOUNT", "CHARGE_CODE", "FGN_FED_ACCT", "LIAB_ACCOUNT", "MATURE_AT_SOD",
+                "PRIN_INCR_DECR", "INCR_DECR_EFF_DATE", "ROLLOVER_IND", "ROLLOVER_INSTR",
+                "NEW_INT_RATE", "CAPITALISATION", "PREV_PRIN_AMOUNT", "BLOOMBERG_ID"));
+        FIELDS.put(ModuleType.PR, fields("COUNTERPARTY", "PRODUCT", "CURRENCY",
+                "PRINCIPAL_AMOUNT.1", "PRINCIPAL_AMOUNT.2", "TRADE_DATE", "VALUE_DATE",
+                "MATURITY_DATE", "REPO_RATE", "TOTAL_INTEREST_AMT", "DRAWDOWN_ACCOUNT",
+                "DRAWIN_ACCOUNT", "BLOOMBERG_ID"));
+        FIELDS.put(ModuleType.SC, fields("COMPANY_NAME", "DESCRIPTION", "SHORT_NAME", "MNEMONIC",
+                "COMPANY_DOMICILE", "SECURITY_DOMICILE", "SECURITY_CURRENCY", "BOND_OR_SHARE",
+                "SUB_ASSET_TYPE", "PRICE_CURRENCY", "PRICE_TYPE", "LAST_PRICE", "PRICE_UPDATE_CODE",
+                "INDUSTRY_CODE", "STOCK_EXCHANGE", "COUPON_TAX_CODE", "INTEREST_DAY_BASIS",
+                "INTEREST_RATE", "ISSUE_DATE", "MATURITY_DATE", "NO_OF_PAYMENT",
+                "ACCRUAL_START_DATE", "INT_PAYMENT_DATE", "FIRST_CPN_DATE", "ISIN", "SETUP_DATE",
+                "BLOOMBERG_ID"));
+        FIELDS.put(ModuleType.ST, fields("TRANS_TYPE", "PRIM_SEC_MKT", "SECUIRTY_NO",
+                "DEPOSITORY", "TRADE_DATE", "VALUE_DATE", "ISSUE_DATE", "MATURITY_DATE",
+                "INT_PAYMENT_DATE", "TRADE_CCY", "INTEREST_RATE", "INTEREST_DAYS",
+                "INTEREST_AMOUNT", "EXCH_RATE", "CUSTOMER_NO", "BROKER_NO", "PORTFOLIO_NO",
+                "CU_ACCOUNT_NO", "NORMINAL", "PRICE", "GROSS_AMT", "NET_AMOUNT", "BLOOMBERG_ID"));
+    }
+
+    private final ObjectMapper mObjMapper;
+
+    public CbnTfBenchFixtures(ObjectMapper pObjMapper) {
+        this.mObjMapper = pObjMapper;
+    }
+
+    /**
+     * Builds one transaction item of a module.
+     *
+     * @param pModule Module of the item
+     * @param pIndex  Item number, used to vary the values
+     */
+    public ObjectNode item(ModuleType pModule, int pIndex) {
+        ObjectNode item = mObjMapper.createObjectNode();
+        for (String field : FIELDS.get(pModule)) {
+            if ("SWAP_REF_NO".equals(field)) {
+                ArrayNode refs = item.putArray(field);
+                refs.add("SW" + (100000 + pIndex) + "A");
+                refs.add("SW" + (100000 + pIndex) + "B");
+            } else {
+                item.put(field, value(pModule, field, pIndex));
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Builds a FILE-mode document holding pItems items of a module, as { ROOT: [ ... ] }, or
+     * { ROOT: { ... } } for a single item.
+     */
+    public ObjectNode document(ModuleType pModule, int pItems) {
+        ObjectNode root = mObjMapper.createObjectNode();
+        if (pItems == 1) {
+            root.set(pModule.getJsonRootNode(), item(pModule, 0));
+            return root;
+        }
+        ArrayNode items = root.putArray(pModule.getJsonRootNode());
+        for (int i = 0; i < pItems; i++) {
+            items.add(item(pModule, i));
+        }
+        return root;
+    }
+
+    /**
+     * Builds pCount WMQ-style messages of a module, one item each, as JSON text.
+     */
+    public List<String> messages(ModuleType pModule, int pCount) {
+        List<String> messages = new ArrayList<>(pCount);
+        for (int i = 0; i < pCount; i++) {
+            ObjectNode root = mObjMapper.createObjectNode();
+            root.set(pModule.getJsonRootNode(), item(pModule, i));
+            messages.add(toJson(root));
+        }
+        return messages;
+    }
+
+    /**
+     * Returns the items of a document as a list.
+     */
+    public static List<JsonNode> items(JsonNode pDocument, ModuleType pModule) {
+        JsonNode node = pDocument.get(pModule.getJsonRootNode());
+        if (node == null) {
+            return Collections.emptyList();
+        }
+        if (!node.isArray()) {
+            return Collections.singletonList(node);
+        }
+        List<JsonNode> items = new ArrayList<>(node.size());
+        node.forEach(items::add);
+        return items;
+    }
+
+    public String toJson(JsonNode pNode) {
+        try {
+            return mObjMapper.writeValueAsString(pNode);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot serialize fixture", e);
+        }
+    }
+
+    // Value of a field, shaped after its name
+    private static String value(ModuleType pModule, String pField, int pIndex) {
+        if ("BLOOMBERG_ID".equals(pField)) {
+            return "BBG" + pModule.getIdPrefix() + String.format("%010d", pIndex);
+        }
+        if ("DEAL_TYPE".equals(pField)) {
+            return FX_DEAL_TYPES[pIndex % FX_DEAL_TYPES.length];
+        }
+        if ("ISIN".equals(pField)) {
+            return "NGFGN" + String.format("%07d", pIndex);
+        }
+        if (pField.contains("DATE")) {
+            return BASE_DATE.plusDays(pIndex % 365 + (pField.startsWith("MATURITY") ? 90 : 0))
+                    .toString();
+        }
+        if (pField.contains("CCY") || pField.contains("CURRENCY")) {
+            return CURRENCIES[(pIndex + pField.length()) % CURRENCIES.length];
+        }
+        if (pField.contains("RATE")) {
+            return BigDecimal.valueOf(1450000 + (pIndex % 5000) * 37L, 3).toPlainString();
+        }
+        if (pField.contains("AMOUNT") || pField.contains("AMT") || pField.equals("PRINCIPAL")
+                || pField.equals("NORMINAL") || pField.equals("PRICE") || pField.endsWith("_PRICE")) {
+            return BigDecimal.valueOf(100000000L + pIndex * 12345L, 2).toPlainString();
+        }
+        if (pField.contains("ACCT") || pField.contains("ACCOUNT") || pField.endsWith("_ACC")) {
+            return String.format("%010d", 1000000000L + pIndex);
+        }
+        if (pField.endsWith("_NO") || pField.equals("COUNTERPARTY") || pField.equals("CATEGORY")) {
+            return String.valueOf(100000 + pIndex);
+        }
+        return pField.replace('_', ' ') + " " + pIndex;
+    }
+
+    private static List<String> fields(String... pFields) {
+        List<String> fields = new ArrayList<>(pFields.length);
+        Collections.addAll(fields, pFields);
+        return Collections.unmodifiableList(fields);
+    }
+}
@@ -0,0 +1,461 @@
+package com.cbn.bloomberg.bench;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.cbn.bloomberg.fx.CbnFxDserializer;
+import com.cbn.bloomberg.fx.CbnFxMapping;
+import com.cbn.bloomberg.fx.CbnFxPayloads;
+import com.cbn.bloomberg.ft.CbnFtDserializer;
+import com.cbn.bloomberg.ft.CbnFtPayload;
+import com.cbn.bloomberg.pd.CbnPdDserializer;
+import com.cbn.bloomberg.pd.CbnPdMapper;
+import com.cbn.bloomberg.pd.CbnPdPayload;
+import com.cbn.bloomberg.pr.CbnPrDeserialize;
+import com.cbn.bloomberg.pr.CbnPrPayload;
+import com.cbn.bloomberg.sc.CbnScDserializer;
+import com.cbn.bloomberg.sc.CbnScMapper;
+import com.cbn.bloomberg.sc.CbnScPayload;
+import com.cbn.bloomberg.util.CbnTfBrowsing;
+import com.cbn.bloomberg.util.CbnTfBrowsing.ModuleType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: CbnTfBenchmark.java
+ * Author: CSD Development Team
+ * Created: 2026-02-21
+ * Last Modified: 2026-02-21
+ * =============================================================================
+ *
+ * PURPOSE: Offline benchmark of the Bloomberg integration hot paths, with a
+ * baseline file that acts as a regression gate for mapper changes.
+ *
+ * Measured for every module and for 1, 100 and 10000 items:
+ * - parse + CbnTfBrowsing.normalizeRoot of a FILE-mode document
+ * - CbnTfBrowsing.detectModuleType of the raw document
+ * - CbnFxMapping.mapForexTransactToFx, CbnPdMapper.mapPlacementsToPd and
+ *   CbnScMapper.mapSecurityMasterToSc over every item of a document
+ * - Cbn*Dserializer.readPayload of that many single-item WMQ messages
+ * - Cbn*Payload.buildResponse for every item
+ *
+ * Each case runs for --warmup ms, then for --measure ms. The report gives
+ * ns per item, bytes allocated per item (thread allocation counter) and the
+ * collections and GC time seen while measuring. Fixtures come from
+ * CbnTfBenchFixtures; no T24 or MQ runtime is needed, only the jars of the
+ * project and the Config folder on the classpath.
+ *
+ * Usage:
+ *   java -Xms1g -Xmx1g -cp <classpath> com.cbn.bloomberg.bench.CbnTfBenchmark
+ *        [--sizes 1,100,10000] [--warmup 2000] [--measure 3000] [--filter text]
+ *        [--out results.csv] [--baseline baseline.csv] [--tolerance 0.15]
+ *
+ * With --baseline the run exits with status 1 when the ns or bytes per item
+ * of any case exceed the baseline by more than --tolerance. A baseline is the
+ * --out file of an earlier run on the same host.
+ *
+ * MODIFICATION HISTORY:
+ * - 2026-02-21 | Initial creation
+ * =============================================================================
+ */
+public final class CbnTfBenchmark {
+
+    private static final String CSV_HEADER = "case,module,size,ns_per_item,bytes_per_item,ops,gc_count,gc_ms";
+
+    private final ObjectMapper mObjMapper = new ObjectMapper();
+    private final CbnTfBenchFixtures mFixtures = new CbnTfBenchFixtures(mObjMapper);
+    private final com.sun.management.ThreadMXBean mThreads = threadBean();
+
+    private long mWarmupMs = 2000L;
+    private long mMeasureMs = 3000L;
+    private int[] mSizes = { 1, 100, 10000 };
+    private String mFilter = "";
+    private Path mOut;
+    private Path mBaseline;
+    private double mTolerance = 0.15d;
+
+    // Keeps the JIT from discarding the results
+    private int mSink;
+
+    // One benchmark case
+    private static final class Case {
+
+        private final String mName;
+        private final ModuleType mModule;
+        private final int mSize;
+        private final Callable<Object> mOp;
+
+        Case(String pName, ModuleType pModule, int pSize, Callable<Object> pOp) {
+            this.mName = pName;
+            this.mModule = pModule;
+            this.mSize = pSize;
+            this.mOp = pOp;
+        }
+
+        String key() {
+            return mName + "," + mModule + "," + mSize;
+        }
+    }
+
+    // Result of one case
+    private static final class Result {
+
+        private final Case mCase;
+        private final long mOps;
+        private final double mNsPerItem;
+        private final double mBytesPerItem;
+        private final long mGcCount;
+        private final long mGcMs;
+
+        Result(Case pCase, long pOps, double pNsPerItem, double pBytesPerItem, long pGcCount,
+                long pGcMs) {
+            this.mCase = pCase;
+            this.mOps = pOps;
+            this.mNsPerItem = pNsPerItem;
+            this.mBytesPerItem = pBytesPerItem;
+            this.mGcCount = pGcCount;
+            this.mGcMs = pGcMs;
+        }
+
+        String toCsv() {
+            return String.format(Locale.ROOT, "%s,%.1f,%.1f,%d,%d,%d", mCase.key(), mNsPerItem,
+                    mBytesPerItem, mOps, mGcCount, mGcMs);
+        }
+    }
+
+    public static void main(String[] args) {
+        CbnTfBenchmark benchmark = new CbnTfBenchmark();
+        try {
+            benchmark.parseArgs(args);
+            System.exit(benchmark.run());
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(2);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(2);
+        }
+    }
+
+    private void parseArgs(String[] pArgs) {
+        for (int i = 0; i < pArgs.length; i++) {
+            String arg = pArgs[i];
+            if (i + 1 >= pArgs.length) {
+                throw new IllegalArgumentException("missing value for " + arg);
+            }
+            String value = pArgs[++i];
+            switch (arg) {
+                case "--sizes":
+                    String[] parts = value.split(",");
+                    mSizes = new int[parts.length];
+                    for (int p = 0; p < parts.length; p++) {
+                        mSizes[p] = Integer.parseInt(parts[p].trim());
+                    }
+                    break;
+                case "--warmup":
+                    mWarmupMs = Long.parseLong(value);
+                    break;
+                case "--measure":
+                    mMeasureMs = Long.parseLong(value);
+                    break;
+                case "--filter":
+                    mFilter = value;
+                    break;
+                case "--out":
+                    mOut = Paths.get(value);
+                    break;
+                case "--baseline":
+                    mBaseline = Paths.get(value);
+                    break;
+                case "--tolerance":
+                    mTolerance = Double.parseDouble(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + arg);
+            }
+        }
+    }
+
+    // Returns the exit status: 0, or 1 if the baseline gate failed
+    private int run() throws Exception {
+        // The mappers log every item at INFO, which would dominate the timings
+        Logger root = Logger.getLogger("");
+        root.setLevel(Level.WARNING);
+        for (Handler handler : root.getHandlers()) {
+            handler.setLevel(Level.WARNING);
+        }
+
+        System.out.println("=== CbnTfBenchmark ===");
+        System.out.println("JVM: " + System.getProperty("java.vm.name") + " "
+                + System.getProperty("java.version") + ", heap "
+                + Runtime.getRuntime().maxMemory() / (1024 * 1024) + " MB");
+        System.out.println(String.format(Locale.ROOT, "%-22s %-3s %6s %10s %12s %12s %6s %7s",
+                "case", "mod", "size", "ops", "ns/item", "bytes/item", "gc", "gc ms"));
+
+        List<Result> results = new ArrayList<>();
+        for (int size : mSizes) {
+            for (Case c : cases(size)) {
+                if (!mFilter.isEmpty() && !c.key().contains(mFilter)) {
+                    continue;
+                }
+                Result r = measure(c);
+                results.add(r);
+                System.out.println(String.format(Locale.ROOT,
+                        "%-22s %-3s %6d %10d %12.1f %12.1f %6d %7d", c.mName, c.mModule, c.mSize,
+                        r.mOps, r.mNsPerItem, r.mBytesPerItem, r.mGcCount, r.mGcMs));
+            }
+        }
+
+        if (mOut != null) {
+            List<String> lines = new ArrayList<>();
+            lines.add(CSV_HEADER);
+            for (Result r : results) {
+                lines.add(r.toCsv());
+            }
+            Files.write(mOut, lines, StandardCharsets.UTF_8);
+            System.out.println("Results written to " + mOut);
+        }
+        return mBaseline == null ? 0 : compare(results);
+    }
+
+    private List<Case> cases(int pSize) throws IOException {
+        List<Case> cases = new ArrayList<>();
+
+        for (ModuleType module : ModuleType.values()) {
+            String document = mFixtures.toJson(mFixtures.document(module, pSize));
+            cases.add(new Case("normalizeRoot", module, pSize,
+                    () -> CbnTfBrowsing.normalizeRoot(mObjMapper.readTree(document))));
+            cases.add(new Case("detectModuleType", module, pSize,
+                    () -> CbnTfBrowsing.detectModuleType(document, mObjMapper)));
+        }
+
+        List<JsonNode> fx = CbnTfBenchFixtures.items(mFixtures.document(ModuleType.FX, pSize), ModuleType.FX);
+        List<JsonNode> pd = CbnTfBenchFixtures.items(mFixtures.document(ModuleType.PD, pSize), ModuleType.PD);
+        List<JsonNode> sc = CbnTfBenchFixtures.items(mFixtures.document(ModuleType.SC, pSize), ModuleType.SC);
+        List<JsonNode> ft = CbnTfBenchFixtures.items(mFixtures.document(ModuleType.FT, pSize), ModuleType.FT);
+        List<JsonNode> pr = CbnTfBenchFixtures.items(mFixtures.document(ModuleType.PR, pSize), ModuleType.PR);
+
+        cases.add(new Case("map", ModuleType.FX, pSize, () -> {
+            int n = 0;
+            for (JsonNode item : fx) {
+                n += CbnFxMapping.mapForexTransactToFx(item).size();
+            }
+            return n;
+        }));
+        cases.add(new Case("map", ModuleType.PD, pSize, () -> {
+            int n = 0;
+            for (JsonNode item : pd) {
+                n += CbnPdMapper.mapPlacementsToPd(item).size();
+            }
+            return n;
+        }));
+        cases.add(new Case("map", ModuleType.SC, pSize, () -> {
+            int n = 0;
+            for (JsonNode item : sc) {
+                n += CbnScMapper.mapSecurityMasterToSc(item).size();
+            }
+            return n;
+        }));
+
+        List<String> fxMsgs = mFixtures.messages(ModuleType.FX, pSize);
+        List<String> ftMsgs = mFixtures.messages(ModuleType.FT, pSize);
+        List<String> pdMsgs = mFixtures.messages(ModuleType.PD, pSize);
+        List<String> prMsgs = mFixtures.messages(ModuleType.PR, pSize);
+        List<String> scMsgs = mFixtures.messages(ModuleType.SC, pSize);
+        cases.add(new Case("readPayload", ModuleType.FX, pSize, () -> {
+            int n = 0;
+            for (String msg : fxMsgs) {
+                n += System.identityHashCode(CbnFxDserializer.readPayload(msg, mObjMapper));
+            }
+            return n;
+        }));
+        cases.add(new Case("readPayload", ModuleType.FT, pSize, () -> {
+            int n = 0;
+            for (String msg : ftMsgs) {
+                n += System.identityHashCode(CbnFtDserializer.readPayload(msg, mObjMapper));
+            }
+            return n;
+        }));
+        cases.add(new Case("readPayload", ModuleType.PD, pSize, () -> {
+            int n = 0;
+            for (String msg : pdMsgs) {
+                n += System.identityHashCode(CbnPdDserializer.readPayload(msg, mObjMapper));
+            }
+            return n;
+        }));
+        cases.add(new Case("readPayload", ModuleType.PR, pSize, () -> {
+            int n = 0;
+            for (String msg : prMsgs) {
+                n += System.identityHashCode(CbnPrDeserialize.readPayload(msg, mObjMapper));
+            }
+            return n;
+        }));
+        cases.add(new Case("readPayload", ModuleType.SC, pSize, () -> {
+            int n = 0;
+            for (String msg : scMsgs) {
+                n += System.identityHashCode(CbnScDserializer.readPayload(msg, mObjMapper));
+            }
+            return n;
+        }));
+
+        CbnFxPayloads fxPayloads = new CbnFxPayloads(mObjMapper);
+        CbnFtPayload ftPayload = new CbnFtPayload(mObjMapper);
+        CbnPdPayload pdPayload = new CbnPdPayload(mObjMapper);
+        CbnPrPayload prPayload = new CbnPrPayload(mObjMapper);
+        CbnScPayload scPayload = new CbnScPayload(mObjMapper);
+        cases.add(new Case("buildResponse", ModuleType.FX, pSize, () -> {
+            int n = 0;
+            for (JsonNode item : fx) {
+                n += fxPayloads.buildResponse("SUCCESS", "Transaction processed", "FX2605200001",
+                        item, item.path("BLOOMBERG_ID").asText()).length();
+            }
+            return n;
+        }));
+        cases.add(new Case("buildResponse", ModuleType.FT, pSize, () -> {
+            int n = 0;
+            for (JsonNode item : ft) {
+                n += ftPayload.buildResponse("SUCCESS", "Transaction processed", "FT2605200001",
+                        item, item.path("BLOOMBERG_ID").asText()).length();
+            }
+            return n;
+        }));
+        cases.add(new Case("buildResponse", ModuleType.PD, pSize, () -> {
+            int n = 0;
+            for (JsonNode item : pd) {
+                n += pdPayload.buildResponse("SUCCESS", "Transaction processed", "PD2605200001",
+                        item, item.path("BLOOMBERG_ID").asText()).length();
+            }
+            return n;
+        }));
+        cases.add(new Case("buildResponse", ModuleType.PR, pSize, () -> {
+            int n = 0;
+            for (JsonNode item : pr) {
+                n += prPayload.buildResponse("SUCCESS", "Transaction processed", "PR2605200001",
+                        item, item.path("BLOOMBERG_ID").asText()).length();
+            }
+            return n;
+        }));
+        cases.add(new Case("buildResponse", ModuleType.SC, pSize, () -> {
+            int n = 0;
+            for (JsonNode item : sc) {
+                n += scPayload.buildResponse("SUCCESS", "Record processed", "SC2605200001", item)
+                        .length();
+            }
+            return n;
+        }));
+        return cases;
+    }
+
+    private Result measure(Case pCase) throws Exception {
+        long end = System.nanoTime() + mWarmupMs * 1000000L;
+        do {
+            consume(pCase.mOp.call());
+        } while (System.nanoTime() < end);
+
+        long gcCount = gcCount();
+        long gcMs = gcTime();
+        long threadId = Thread.currentThread().getId();
+        long allocated = allocatedBytes(threadId);
+        long ops = 0;
+        long start = System.nanoTime();
+        end = start + mMeasureMs * 1000000L;
+        long now;
+        do {
+            consume(pCase.mOp.call());
+            ops++;
+            now = System.nanoTime();
+        } while (now < end);
+        long elapsed = now - start;
+        long bytes = allocatedBytes(threadId) - allocated;
+
+        double items = (double) ops * pCase.mSize;
+        return new Result(pCase, ops, elapsed / items, allocated < 0 ? -1d : bytes / items,
+                gcCount() - gcCount, gcTime() - gcMs);
+    }
+
+    // Compares against the baseline file; returns 1 if any case regressed
+    private int compare(List<Result> pResults) throws IOException {
+        Map<String, double[]> baseline = new HashMap<>();
+        for (String line : Files.readAllLines(mBaseline, StandardCharsets.UTF_8)) {
+            String[] f = line.split(",");
+            if (f.length < 5 || CSV_HEADER.startsWith(f[0] + ",")) {
+                continue;
+            }
+            baseline.put(f[0] + "," + f[1] + "," + f[2],
+                    new double[] { Double.parseDouble(f[3]), Double.parseDouble(f[4]) });
+        }
+
+        int regressions = 0;
+        System.out.println("=== Baseline " + mBaseline + " (tolerance "
+                + Math.round(mTolerance * 100) + "%) ===");
+        for (Result r : pResults) {
+            double[] base = baseline.get(r.mCase.key());
+            if (base == null) {
+                System.out.println("NEW         " + r.mCase.key());
+                continue;
+            }
+            boolean slower = r.mNsPerItem > base[0] * (1 + mTolerance);
+            boolean heavier = base[1] >= 0 && r.mBytesPerItem > base[1] * (1 + mTolerance);
+            if (slower || heavier) {
+                regressions++;
+            }
+            System.out.println(String.format(Locale.ROOT, "%-11s %-32s ns/item %.1f -> %.1f, bytes/item %.1f -> %.1f",
+                    slower || heavier ? "REGRESSION" : "OK", r.mCase.key(), base[0], r.mNsPerItem,
+                    base[1], r.mBytesPerItem));
+        }
+        System.out.println(regressions == 0 ? "No regressions" : regressions + " regression(s)");
+        return regressions == 0 ? 0 : 1;
+    }
+
+    private void consume(Object pResult) {
+        mSink += System.identityHashCode(pResult);
+    }
+
+    private long allocatedBytes(long pThreadId) {
+        return mThreads == null ? -1L : mThreads.getThreadAllocatedBytes(pThreadId);
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0L, gc.getCollectionCount());
+        }
+        return count;
+    }
+
+    private static long gcTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0L, gc.getCollectionTime());
+        }
+        return time;
+    }
+
+    private static com.sun.management.ThreadMXBean threadBean() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+            if (threads.isThreadAllocatedMemorySupported()) {
+                threads.setThreadAllocatedMemoryEnabled(true);
+                return threads;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,631 @@
+package com.cbn.bloomberg.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.cbn.bloomberg.ft.CbnFtService;
+import com.cbn.bloomberg.fx.CbnFxService;
+import com.cbn.bloomberg.pd.CbnPdService;
+import com.cbn.bloomberg.pr.CbnPrService;
+import com.cbn.bloomberg.sc.CbnScService;
+import com.cbn.bloomberg.util.CbnTfBrowsing.ModuleType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.temenos.api.TBoolean;
+import com.temenos.api.TStructure;
+import com.temenos.t24.api.complex.eb.servicehook.SynchronousTransactionData;
+import com.temenos.t24.api.hook.system.ServiceLifecycle;
+import com.temenos.t24.api.records.ofsrequestdetail.OfsRequestDetailRecord;
+import com.temenos.t24.api.system.DataAccess;
+import com.temenos.t24.api.system.Session;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: CbnTfServiceHarness.java
+ * Author: CSD Development Team
+ * Created: 2026-02-26
+ * Last Modified: 2026-02-26
+ * =============================================================================
+ *
+ * PURPOSE: Offline throughput run of the Cbn*Service lifecycles, with an
+ * in-memory stand-in for the T24 core, so the services can be measured
+ * without a live TSA, OFS or database.
+ *
+ * The harness drives each module service the way TSA does: getIds with the
+ * control list (PROCESS.<MOD>, then CHECK.RESPONSE, the service fills an
+ * empty list), updateRecord for every id spread over --agents threads, each
+ * with its own service instance, then the next control item. Stand-ins:
+ * - DataAccess: getRequestResponse and the selectRecords of the response
+ *   harvester are answered from an in-memory OFS.REQUEST.DETAIL, after
+ *   --read-latency ms
+ * - OFS: every SynchronousTransactionData returned by PROCESS gets its
+ *   OFS.REQUEST.DETAIL written after --ofs-latency ms (+/- --ofs-jitter);
+ *   --error-rate of them answer with an OFS error (/-1/)
+ * - Session: fixed company id
+ * - ServiceData and TransactionControl are passed as null, the services do
+ *   not read them
+ *
+ * The services run in FILE mode: --items items per module are written to a
+ * work inbound dir, --batch items per file (CbnTfBenchFixtures), and the
+ * FILE, pending store, idempotency and backup locations are pointed to the
+ * work dir through tf.* system properties (the harness sets
+ * tf.overrides.enabled=true, which CbnTfProperties requires before it applies
+ * them). Any other tf.* setting can be given with -D (e.g.
+ * -Dtf.ofs.harvest.backoff.base=100). Modules run one
+ * after the other, as they share the inbound dir.
+ *
+ * The report gives per module the items completed per second end to end, and
+ * the items per second of the PROCESS and CHECK.RESPONSE passes alone.
+ *
+ * Usage:
+ *   java -cp <classpath incl. T24 jars> com.cbn.bloomberg.bench.CbnTfServiceHarness
+ *        [--modules FX,FT,PD,PR,SC,ST] [--items 1000] [--batch 100] [--agents 4]
+ *        [--ofs-latency 20] [--ofs-jitter 10] [--error-rate 0.0]
+ *        [--read-latency 0] [--cycle-pause 0] [--timeout 300000]
+ *        [--work dir] [--out results.csv]
+ *
+ * Exits with status 1 when a module did not complete all its OFS responses
+ * within --timeout ms.
+ *
+ * MODIFICATION HISTORY:
+ * - 2026-02-26 | Initial creation
+ * =============================================================================
+ */
+public final class CbnTfServiceHarness {
+
+    private static final String CSV_HEADER = "module,items,answered,ofs_errors,rejected,cycles,"
+            + "process_items_per_s,check_items_per_s,e2e_items_per_s,wall_ms";
+    private static final String CONTROL_CHECK_RESPONSE = "CHECK.RESPONSE";
+    private static final String COMPANY_ID = "NG0010001";
+    private static final Pattern QUOTED_ID = Pattern.compile("'([^']*)'");
+    private static final long IDLE_SLEEP_MS = 10L;
+
+    private final ObjectMapper mObjMapper = new ObjectMapper();
+    private final CbnTfBenchFixtures mFixtures = new CbnTfBenchFixtures(mObjMapper);
+
+    private List<ModuleType> mModules = new ArrayList<>();
+    private int mItems = 1000;
+    private int mBatch = 100;
+    private int mAgents = 4;
+    private long mOfsLatencyMs = 20L;
+    private long mOfsJitterMs = 10L;
+    private double mErrorRate = 0d;
+    private long mReadLatencyMs = 0L;
+    private long mCyclePauseMs = 0L;
+    private long mTimeoutMs = 300000L;
+    private Path mWork;
+    private Path mOut;
+
+    private Path mInboundDir;
+
+    // In-memory OFS.REQUEST.DETAIL, shared by the agents of the running module
+    private final OfsStandIn mOfs = new OfsStandIn();
+
+    /**
+     * OFS.REQUEST.DETAIL records written by the simulated OFS, by responseId.
+     */
+    private final class OfsStandIn {
+
+        private final Map<String, OfsResponse> mResponses = new ConcurrentHashMap<>();
+        private final AtomicLong mTransSeq = new AtomicLong();
+        private final AtomicInteger mAnswered = new AtomicInteger();
+        private final AtomicInteger mErrors = new AtomicInteger();
+
+        // Called once PROCESS handed a transaction to OFS
+        void submit(String pResponseId, String pPrefix) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            long delay = mOfsLatencyMs;
+            if (mOfsJitterMs > 0) {
+                delay += random.nextLong(-mOfsJitterMs, mOfsJitterMs + 1);
+            }
+            boolean error = random.nextDouble() < mErrorRate;
+            String transRef = error ? "" : pPrefix + String.format("26057%05d", mTransSeq.incrementAndGet());
+            String msgOut = error ? pResponseId + "/" + pResponseId + "/-1/NO,SIMULATED OFS ERROR"
+                    : transRef + "/" + pResponseId + "/1,";
+            mResponses.put(pResponseId, new OfsResponse(
+                    System.currentTimeMillis() + Math.max(0L, delay), msgOut, transRef, error));
+        }
+
+        OfsResponse ready(String pResponseId) {
+            OfsResponse response = mResponses.get(pResponseId);
+            return response != null && response.mReadyAt <= System.currentTimeMillis() ? response
+                    : null;
+        }
+
+        // First read of a ready response: the service publishes it and drops it from its cache
+        void answered(OfsResponse pResponse) {
+            if (pResponse.markRead()) {
+                mAnswered.incrementAndGet();
+                if (pResponse.mError) {
+                    mErrors.incrementAndGet();
+                }
+            }
+        }
+
+        int submitted() {
+            return mResponses.size();
+        }
+
+        void reset() {
+            mResponses.clear();
+            mAnswered.set(0);
+            mErrors.set(0);
+        }
+    }
+
+    private static final class OfsResponse {
+
+        private final long mReadyAt;
+        private final String mMsgOut;
+        private final String mTransRef;
+        private final boolean mError;
+        private boolean mRead;
+
+        OfsResponse(long pReadyAt, String pMsgOut, String pTransRef, boolean pError) {
+            this.mReadyAt = pReadyAt;
+            this.mMsgOut = pMsgOut;
+            this.mTransRef = pTransRef;
+            this.mError = pError;
+        }
+
+        synchronized boolean markRead() {
+            boolean first = !mRead;
+            mRead = true;
+            return first;
+        }
+    }
+
+    /**
+     * DataAccess answering the OFS.REQUEST.DETAIL reads of CHECK.RESPONSE from the stand-in.
+     */
+    private final class OfflineDataAccess extends DataAccess {
+
+        OfflineDataAccess(ServiceLifecycle pService) {
+            super(pService);
+        }
+
+        @Override
+        public OfsRequestDetailRecord getRequestResponse(String pResponseId, TBoolean pExists) {
+            pause(mReadLatencyMs);
+            OfsResponse response = mOfs.ready(pResponseId);
+            if (response == null) {
+                return null;
+            }
+            OfsRequestDetailRecord record = new OfsRequestDetailRecord();
+            record.setMsgOut(response.mMsgOut);
+            record.setTransReference(response.mTransRef);
+            mOfs.answered(response);
+            return record;
+        }
+
+        // WITH @ID EQ 'a' 'b' ... AND <criteria>: the ids whose response is ready
+        @Override
+        public List<String> selectRecords(String pCompany, String pTable, String pSuffix,
+                String pCriteria) {
+            pause(mReadLatencyMs);
+            List<String> ready = new ArrayList<>();
+            Matcher m = QUOTED_ID.matcher(pCriteria == null ? "" : pCriteria);
+            while (m.find()) {
+                if (mOfs.ready(m.group(1)) != null) {
+                    ready.add(m.group(1));
+                }
+            }
+            return ready;
+        }
+    }
+
+    private static final class OfflineSession extends Session {
+
+        OfflineSession(ServiceLifecycle pService) {
+            super(pService);
+        }
+
+        @Override
+        public String getCompanyId() {
+            return COMPANY_ID;
+        }
+    }
+
+    // Result of one module
+    private static final class Result {
+
+        private final ModuleType mModule;
+        private int mAnswered;
+        private int mErrors;
+        private int mRejected;
+        private int mCycles;
+        private long mProcessItems;
+        private long mProcessNanos;
+        private long mCheckItems;
+        private long mCheckNanos;
+        private long mWallNanos;
+        private boolean mComplete;
+
+        Result(ModuleType pModule) {
+            this.mModule = pModule;
+        }
+
+        double processRate() {
+            return rate(mProcessItems, mProcessNanos);
+        }
+
+        double checkRate() {
+            return rate(mCheckItems, mCheckNanos);
+        }
+
+        double endToEndRate() {
+            return rate(mAnswered, mWallNanos);
+        }
+
+        private static double rate(long pItems, long pNanos) {
+            return pNanos <= 0 ? 0d : pItems * 1e9d / pNanos;
+        }
+    }
+
+    public static void main(String[] args) {
+        CbnTfServiceHarness harness = new CbnTfServiceHarness();
+        try {
+            harness.parseArgs(args);
+            System.exit(harness.run());
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(2);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(2);
+        }
+    }
+
+    private void parseArgs(String[] pArgs) {
+        String modules = "FX,FT,PD,PR,SC,ST";
+        for (int i = 0; i < pArgs.length; i++) {
+            String arg = pArgs[i];
+            if (i + 1 >= pArgs.length) {
+                throw new IllegalArgumentException("missing value for " + arg);
+            }
+            String value = pArgs[++i];
+            switch (arg) {
+                case "--modules":
+                    modules = value;
+                    break;
+                case "--items":
+                    mItems = Integer.parseInt(value);
+                    break;
+                case "--batch":
+                    mBatch = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "--agents":
+                    mAgents = Math.max(1, Integer.parseInt(value));
+                    break;
+                case "--ofs-latency":
+                    mOfsLatencyMs = Long.parseLong(value);
+                    break;
+                case "--ofs-jitter":
+                    mOfsJitterMs = Long.parseLong(value);
+                    break;
+                case "--error-rate":
+                    mErrorRate = Double.parseDouble(value);
+                    break;
+                case "--read-latency":
+                    mReadLatencyMs = Long.parseLong(value);
+                    break;
+                case "--cycle-pause":
+                    mCyclePauseMs = Long.parseLong(value);
+                    break;
+                case "--timeout":
+                    mTimeoutMs = Long.parseLong(value);
+                    break;
+                case "--work":
+                    mWork = Paths.get(value);
+                    break;
+                case "--out":
+                    mOut = Paths.get(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + arg);
+            }
+        }
+        for (String module : modules.split(",")) {
+            try {
+                mModules.add(ModuleType.valueOf(module.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("unknown module " + module);
+            }
+        }
+    }
+
+    // Returns the exit status: 0, or 1 if a module did not complete
+    private int run() throws Exception {
+        // The services log every item at INFO, which would dominate the timings
+        Logger root = Logger.getLogger("");
+        root.setLevel(Level.WARNING);
+        for (Handler handler : root.getHandlers()) {
+            handler.setLevel(Level.WARNING);
+        }
+
+        // Before the first service class is loaded: their configuration is read once
+        configure();
+
+        System.out.println("=== CbnTfServiceHarness ===");
+        System.out.println(String.format(Locale.ROOT,
+                "items %d, batch %d, agents %d, ofs latency %d+/-%d ms, error rate %.3f, read latency %d ms",
+                mItems, mBatch, mAgents, mOfsLatencyMs, mOfsJitterMs, mErrorRate, mReadLatencyMs));
+        System.out.println("Work dir: " + mWork);
+        System.out.println(String.format(Locale.ROOT, "%-3s %7s %8s %6s %8s %7s %11s %11s %11s %9s",
+                "mod", "items", "answered", "errors", "rejected", "cycles", "process/s", "check/s",
+                "e2e/s", "wall ms"));
+
+        List<Result> results = new ArrayList<>();
+        int incomplete = 0;
+        for (ModuleType module : mModules) {
+            Result r = runModule(module);
+            results.add(r);
+            if (!r.mComplete) {
+                incomplete++;
+            }
+            System.out.println(String.format(Locale.ROOT,
+                    "%-3s %7d %8d %6d %8d %7d %11.1f %11.1f %11.1f %9d%s", module, mItems,
+                    r.mAnswered, r.mErrors, r.mRejected, r.mCycles, r.processRate(), r.checkRate(),
+                    r.endToEndRate(), r.mWallNanos / 1000000L, r.mComplete ? "" : "  TIMEOUT"));
+        }
+
+        if (mOut != null) {
+            List<String> lines = new ArrayList<>();
+            lines.add(CSV_HEADER);
+            for (Result r : results) {
+                lines.add(String.format(Locale.ROOT, "%s,%d,%d,%d,%d,%d,%.1f,%.1f,%.1f,%d",
+                        r.mModule, mItems, r.mAnswered, r.mErrors, r.mRejected, r.mCycles,
+                        r.processRate(), r.checkRate(), r.endToEndRate(),
+                        r.mWallNanos / 1000000L));
+            }
+            Files.write(mOut, lines, StandardCharsets.UTF_8);
+            System.out.println("Results written to " + mOut);
+        }
+        return incomplete == 0 ? 0 : 1;
+    }
+
+    // Points the FILE adapter and the local stores of the services to the work dir
+    private void configure() throws IOException {
+        Path base = mWork != null ? mWork : Files.createTempDirectory("cbntf-harness");
+        mWork = base.resolve("run-" + System.currentTimeMillis());
+        mInboundDir = Files.createDirectories(mWork.resolve("IN"));
+
+        System.setProperty("tf.overrides.enabled", "true");
+        System.setProperty("tf.def.adapter", "FILE");
+        System.setProperty("tf.nfs.pattern", "*.json");
+        System.setProperty("tf.nfs.inbound.dir", mInboundDir.toString());
+        System.setProperty("tf.nfs.outbound.dir", mWork.resolve("OUT").toString());
+        System.setProperty("tf.nfs.done.dir", mWork.resolve("DONE").toString());
+        System.setProperty("tf.nfs.error.dir", mWork.resolve("ERROR").toString());
+        System.setProperty("tf.nfs.backup.dir", mWork.resolve("BACKUP").toString());
+        System.setProperty("tf.pending.dir", mWork.resolve("PENDING").toString());
+        System.setProperty("tf.idem.dir", mWork.resolve("IDEMPOTENCY").toString());
+        if (System.getProperty("tf.pending.store") == null) {
+            System.setProperty("tf.pending.store", "memory");
+        }
+        for (String dir : new String[] { "OUT", "DONE", "ERROR" }) {
+            Files.createDirectories(mWork.resolve(dir));
+        }
+    }
+
+    private Result runModule(ModuleType pModule) throws Exception {
+        Result result = new Result(pModule);
+        mOfs.reset();
+        writeInbound(pModule);
+
+        // One service instance per agent, as every TSA agent has its own
+        BlockingQueue<ServiceLifecycle> agents = new ArrayBlockingQueue<>(mAgents);
+        for (int i = 0; i < mAgents; i++) {
+            ServiceLifecycle service = newService(pModule);
+            service.initialise(null);
+            agents.add(service);
+        }
+        ServiceLifecycle driver = agents.peek();
+        ExecutorService pool = Executors.newFixedThreadPool(mAgents);
+
+        try {
+            long started = System.nanoTime();
+            long deadline = started + mTimeoutMs * 1000000L;
+            List<String> controlList = new ArrayList<>();
+            boolean processIdle = false;
+            while (System.nanoTime() < deadline) {
+                List<String> ids = driver.getIds(null, controlList);
+                String controlItem = controlList.isEmpty() ? "" : controlList.get(0);
+                int dispatched = ids == null ? 0 : ids.size();
+
+                long passStart = System.nanoTime();
+                if (dispatched > 0) {
+                    dispatch(pool, agents, pModule, controlItem, ids);
+                }
+                long passNanos = System.nanoTime() - passStart;
+                if (CONTROL_CHECK_RESPONSE.equals(controlItem)) {
+                    result.mCheckItems += dispatched;
+                    result.mCheckNanos += passNanos;
+                } else {
+                    result.mProcessItems += dispatched;
+                    result.mProcessNanos += passNanos;
+                    processIdle = dispatched == 0;
+                }
+
+                // TSA moves to the next control item once all ids of this one are done
+                if (!controlList.isEmpty()) {
+                    controlList.remove(0);
+                }
+                if (!controlList.isEmpty()) {
+                    continue;
+                }
+                result.mCycles++;
+
+                if (processIdle && inboundEmpty()
+                        && mOfs.mAnswered.get() >= mOfs.submitted()) {
+                    result.mComplete = true;
+                    break;
+                }
+                pause(dispatched == 0 ? Math.max(mCyclePauseMs, IDLE_SLEEP_MS) : mCyclePauseMs);
+            }
+            result.mWallNanos = System.nanoTime() - started;
+        } finally {
+            pool.shutdownNow();
+        }
+
+        result.mAnswered = mOfs.mAnswered.get();
+        result.mErrors = mOfs.mErrors.get();
+        result.mRejected = mItems - mOfs.submitted();
+        return result;
+    }
+
+    // updateRecord for every id, each on a free agent; OFS is handed what PROCESS returned
+    private void dispatch(ExecutorService pPool, BlockingQueue<ServiceLifecycle> pAgents,
+            ModuleType pModule, String pControlItem, List<String> pIds) throws Exception {
+        List<Future<?>> futures = new ArrayList<>(pIds.size());
+        for (String id : pIds) {
+            futures.add(pPool.submit(() -> {
+                ServiceLifecycle service = pAgents.take();
+                try {
+                    List<SynchronousTransactionData> transactionData = new ArrayList<>();
+                    List<TStructure> records = new ArrayList<>();
+                    service.updateRecord(id, null, pControlItem, null, transactionData, records);
+                    for (SynchronousTransactionData data : transactionData) {
+                        mOfs.submit(String.valueOf(data.getResponseId()), pModule.getIdPrefix());
+                    }
+                } finally {
+                    pAgents.put(service);
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    // The module service, with the offline Session and DataAccess
+    private ServiceLifecycle newService(ModuleType pModule) {
+        switch (pModule) {
+            case FX:
+                return new CbnFxService() {
+                    @Override
+                    protected Session createSession() {
+                        return new OfflineSession(this);
+                    }
+
+                    @Override
+                    protected DataAccess createDataAccess() {
+                        return new OfflineDataAccess(this);
+                    }
+                };
+            case FT:
+                return new CbnFtService() {
+                    @Override
+                    protected Session createSession() {
+                        return new OfflineSession(this);
+                    }
+
+                    @Override
+                    protected DataAccess createDataAccess() {
+                        return new OfflineDataAccess(this);
+                    }
+                };
+            case PD:
+                return new CbnPdService() {
+                    @Override
+                    protected Session createSession() {
+                        return new OfflineSession(this);
+                    }
+
+                    @Override
+                    protected DataAccess createDataAccess() {
+                        return new OfflineDataAccess(this);
+                    }
+                };
+            case PR:
+                return new CbnPrService() {
+                    @Override
+                    protected Session createSession() {
+                        return new OfflineSession(this);
+                    }
+
+                    @Override
+                    protected DataAccess createDataAccess() {
+                        return new OfflineDataAccess(this);
+                    }
+                };
+            case SC:
+            case ST:
+                // SECURITY_MASTER and SEC_TRADE are both handled by CbnScService
+                return new CbnScService() {
+                    @Override
+                    protected Session createSession() {
+                        return new OfflineSession(this);
+                    }
+
+                    @Override
+                    protected DataAccess createDataAccess() {
+                        return new OfflineDataAccess(this);
+                    }
+                };
+            default:
+                throw new IllegalArgumentException("no service for module " + pModule);
+        }
+    }
+
+    // --items items in files of --batch items; BLOOMBERG_IDs are distinct across the files
+    private void writeInbound(ModuleType pModule) throws IOException {
+        int file = 0;
+        for (int start = 0; start < mItems; start += mBatch) {
+            int end = Math.min(start + mBatch, mItems);
+            ObjectNode document = mObjMapper.createObjectNode();
+            if (end - start == 1) {
+                document.set(pModule.getJsonRootNode(), mFixtures.item(pModule, start));
+            } else {
+                ArrayNode items = document.putArray(pModule.getJsonRootNode());
+                for (int i = start; i < end; i++) {
+                    items.add(mFixtures.item(pModule, i));
+                }
+            }
+            Path target = mInboundDir.resolve(String.format("%s_%05d.json", pModule, file++));
+            Files.write(target, mFixtures.toJson(document).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private boolean inboundEmpty() throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(mInboundDir, "*.json")) {
+            return !stream.iterator().hasNext();
+        }
+    }
+
+    private static void pause(long pMillis) {
+        if (pMillis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(pMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -5,7 +5,6 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -13,9 +12,17 @@ import java.util.logging.Logger;
 
 import com.cbn.bloomberg.ft.CbnFtAdapter.FileItemRef;
 import com.cbn.bloomberg.ft.CbnFtAdapter.MqItemRef;
+import com.cbn.bloomberg.util.CbnTfPendingResponseStore;
+import com.cbn.bloomberg.util.CbnTfPendingResponseStore.TransactionMetadata;
 import com.cbn.bloomberg.util.CbnTfBackup;
+import com.cbn.bloomberg.util.CbnTfBatchPublisher;
+import com.cbn.bloomberg.util.CbnTfIdempotencyIndex;
 import com.cbn.bloomberg.util.CbnTfLogTracer;
+import com.cbn.bloomberg.util.CbnTfMetrics;
+import com.cbn.bloomberg.util.CbnTfMetrics.Outcome;
+import com.cbn.bloomberg.util.CbnTfMetrics.Phase;
 import com.cbn.bloomberg.util.CbnTfProperties;
+import com.cbn.bloomberg.util.CbnTfResponseHarvester;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.temenos.api.TBoolean;
@@ -85,25 +92,24 @@ public class CbnFtService extends ServiceLifecycle {
     private final CbnFtProducer mProducer = new CbnFtProducer();
 
     // ==== TRANSACTION METADATA CACHE ====
-    // Maps responseId -> TransactionMetadata
-    private static final Map<String, TransactionMetadata> TRANSACTION_CACHE = new HashMap<>();
+    // Maps responseId -> TransactionMetadata (concurrent, TTL bounded, journalled)
+    private static final CbnTfPendingResponseStore TRANSACTION_CACHE = CbnTfPendingResponseStore
+            .forModule("FT");
 
-    /**
-     * Metadata holder for tracking transaction state between phases.
-     */
-    private static class TransactionMetadata {
-        String originalId;
-        JsonNode originalItem;
-        String adapterMode;
-        String bloombergId;
-
-        TransactionMetadata(String pOriginalId, JsonNode pOriginalItem, String pAdapterMode, String pBloombergId) {
-            this.originalId = pOriginalId;
-            this.originalItem = pOriginalItem;
-            this.adapterMode = pAdapterMode;
-            this.bloombergId = pBloombergId;
-        }
-    }
+    // Selects the pending responseIds whose OFS.REQUEST.DETAIL is ready
+    private static final CbnTfResponseHarvester RESPONSE_HARVESTER = CbnTfResponseHarvester
+            .forModule("FT");
+
+    // Recognises redelivered deals by BLOOMBERG_ID, so their recorded response is replayed
+    private static final CbnTfIdempotencyIndex IDEMPOTENCY = CbnTfIdempotencyIndex
+            .forModule("FT");
+
+    // Lifecycle metrics, exported through JMX and optionally a Prometheus text file
+    private static final CbnTfMetrics METRICS = CbnTfMetrics.forModule("FT")
+            .gauge("pending_responses", TRANSACTION_CACHE::size)
+            .gauge("pending_response_age_ms", TRANSACTION_CACHE::oldestAgeMillis)
+            .gauge("duplicate_deals", IDEMPOTENCY::getDuplicates)
+            .gauge("publish_queue_depth", () -> CbnTfBatchPublisher.pendingFor("FT"));
 
     /**
      * Initializes the service with session and data access objects.
@@ -113,8 +119,8 @@ public class CbnFtService extends ServiceLifecycle {
         try {
             
             LOG.log(Level.INFO, LOG_PREFIX + "=== initialise() START ===");
-            mSession = new Session(this);
-            mDataAccess = new DataAccess(this);
+            mSession = createSession();
+            mDataAccess = createDataAccess();
             mCompanyId = mSession.getCompanyId();
             LOG.log(Level.INFO, LOG_PREFIX + "initialise: Service initialized for company: {0}", mCompanyId);
             LOG.log(Level.INFO, LOG_PREFIX + "=== initialise() COMPLETE ===");
@@ -125,6 +131,21 @@ public class CbnFtService extends ServiceLifecycle {
         }
     }
 
+    /**
+     * Session of the service. Overridden by the offline harness (CbnTfServiceHarness), which
+     * runs the lifecycle without a T24 core.
+     */
+    protected Session createSession() {
+        return new Session(this);
+    }
+
+    /**
+     * Data access used for the OFS.REQUEST.DETAIL reads of CHECK.RESPONSE.
+     */
+    protected DataAccess createDataAccess() {
+        return new DataAccess(this);
+    }
+
     /**
      * Retrieves the list of transaction IDs to be processed by the service.
      * Implements two-phase processing: - Phase 1: PROCESS.FT - Get new transactions
@@ -132,6 +153,7 @@ public class CbnFtService extends ServiceLifecycle {
      */
     @Override
     public List<String> getIds(ServiceData serviceData, List<String> controlList) {
+        long started = System.nanoTime();
         List<String> pRecordIds = null;
         String pControlItem = null;
 
@@ -160,7 +182,7 @@ public class CbnFtService extends ServiceLifecycle {
             // Process based on control item
             switch (pControlItem) {
             case CONTROL_PROCESS_FT:
-                pRecordIds = getNewTransactionIds();
+                pRecordIds = IDEMPOTENCY.withDeferred(getNewTransactionIds());
                 break;
 
             case CONTROL_CHECK_RESPONSE:
@@ -186,6 +208,7 @@ public class CbnFtService extends ServiceLifecycle {
             LOG.log(Level.SEVERE, LOG_PREFIX + "getIds: Unexpected error in getIds", e);
             pRecordIds = Collections.emptyList();
         } finally {
+            METRICS.record(Phase.GET_IDS, started);
             // Cleanup local variables
             pControlItem = null;
         }
@@ -241,12 +264,13 @@ public class CbnFtService extends ServiceLifecycle {
         try {
             LOG.log(Level.INFO, LOG_PREFIX + "=== getPendingResponseIds() START ===");
 
-            synchronized (TRANSACTION_CACHE) {
-                // Get all responseIds from cache
-                pResponseIds.addAll(TRANSACTION_CACHE.keySet());
-            }
+            // Get the responseIds from cache whose OFS response is ready
+            pResponseIds.addAll(
+                    RESPONSE_HARVESTER.readyIds(mDataAccess, TRANSACTION_CACHE.keySet()));
+            // Evicted without an OFS response: answered with a failure by checkOfsResponse
+            pResponseIds.addAll(TRANSACTION_CACHE.evictedIds());
 
-            LOG.log(Level.INFO, LOG_PREFIX + "getPendingResponseIds: Found {0} pending responses", pResponseIds.size());
+            LOG.log(Level.INFO, LOG_PREFIX + "getPendingResponseIds: Found {0} ready responses", pResponseIds.size());
 
         } catch (Exception e) {
             LOG.log(Level.SEVERE, LOG_PREFIX + "getPendingResponseIds: Error retrieving pending response IDs", e);
@@ -283,13 +307,16 @@ public class CbnFtService extends ServiceLifecycle {
             }
 
             // Process based on control item
+            long started = System.nanoTime();
             switch (controlItem) {
             case CONTROL_PROCESS_FT:
                 processOfsRequest(id, transactionData, records);
+                METRICS.record(Phase.PROCESS_OFS_REQUEST, started);
                 break;
 
             case CONTROL_CHECK_RESPONSE:
                 checkOfsResponse(id);
+                METRICS.record(Phase.CHECK_OFS_RESPONSE, started);
                 break;
 
             default:
@@ -317,6 +344,7 @@ public class CbnFtService extends ServiceLifecycle {
         JsonNode pOriginalItem = null;
         String pResponseId = null;
         String bloombergId = null;
+        boolean pClaimed = false;
 
         try {
             LOG.log(Level.INFO, LOG_PREFIX + "=== processOfsRequest() START ===");
@@ -336,6 +364,15 @@ public class CbnFtService extends ServiceLifecycle {
             }
 
             pOriginalItem = pItem;
+
+            // Step 1b: A redelivered deal is answered from the idempotency index
+            CbnTfIdempotencyIndex.Entry pPrevious = IDEMPOTENCY.claim(bloombergId);
+            if (pPrevious != null) {
+                replayDuplicate(pRecordId, pItem, bloombergId, pPrevious);
+                return;
+            }
+            pClaimed = true;
+
             LOG.log(Level.FINE, LOG_PREFIX + "processOfsRequest: Retrieved item for id={0}", pRecordId);
 
             // Step 2: Map JSON to FT field map
@@ -369,9 +406,9 @@ public class CbnFtService extends ServiceLifecycle {
             LOG.log(Level.INFO, LOG_PREFIX + "processOfsRequest: Successfully prepared OFS transaction for FT update");
 
             // Step 5: Store transaction metadata in cache for Phase 2
-            synchronized (TRANSACTION_CACHE) {
-                TRANSACTION_CACHE.put(pResponseId, new TransactionMetadata(pRecordId, pOriginalItem, mAdapterFlag,bloombergId));
-            }
+            TRANSACTION_CACHE.put(pResponseId, new TransactionMetadata(pRecordId, pOriginalItem, mAdapterFlag,bloombergId));
+            // CHECK.RESPONSE completes the claim from here
+            pClaimed = false;
 
             LOG.log(Level.INFO, LOG_PREFIX + "processOfsRequest: Transaction metadata cached for responseId={0}",
                     pResponseId);
@@ -395,6 +432,9 @@ public class CbnFtService extends ServiceLifecycle {
             persistToExcepts(pRecordId, pMessage);
             publishResponse(pRecordId, pStatus, pMessage, "", pOriginalItem,bloombergId);
         } finally {
+            if (pClaimed) {
+                IDEMPOTENCY.release(bloombergId);
+            }
             // Cleanup
             pOriginalItem = null;
             pResponseId = null;
@@ -416,11 +456,23 @@ public class CbnFtService extends ServiceLifecycle {
         LOG.log(Level.INFO, LOG_PREFIX + "=== checkOfsResponse() START ===");
 
         // Retrieve transaction metadata from cache
-        TransactionMetadata pMetadata;
-        synchronized (TRANSACTION_CACHE) {
-            pMetadata = TRANSACTION_CACHE.get(pResponseId);
+        // Evicted from the store (tf.pending.ttl / tf.pending.max.entries): the deal's outcome is
+        // unknown, so it is answered with a failure and may be resent
+        TransactionMetadata pEvicted = TRANSACTION_CACHE.takeEvicted(pResponseId);
+        if (pEvicted != null) {
+            pMessage = "No OFS response received in time, check T24 before resending";
+            LOG.log(Level.WARNING, LOG_PREFIX + "checkOfsResponse: responseId={0} evicted, "
+                    + "publishing failure", pResponseId);
+            String pOriginalId = pEvicted.originalId;
+            publishResponse(pOriginalId, MSG_FAILURE, pMessage, "", pEvicted.originalItem,
+                    pEvicted.bloombergId, () -> CbnFtAdapter.settleMqItem(pOriginalId));
+            IDEMPOTENCY.release(pEvicted.bloombergId);
+            return;
         }
 
+        TransactionMetadata pMetadata;
+        pMetadata = TRANSACTION_CACHE.get(pResponseId);
+
         if (pMetadata == null) {
             LOG.log(Level.WARNING, LOG_PREFIX + "checkOfsResponse: No metadata found for responseId={0}", pResponseId);
             return;
@@ -439,6 +491,8 @@ public class CbnFtService extends ServiceLifecycle {
                 pMsgOut = pOfsRequestDetailRecord.getMsgOut().getValue();
 
                 if (pMsgOut != null && !pMsgOut.isEmpty()) {
+                    METRICS.recordMillis(Phase.OFS_ROUND_TRIP,
+                            System.currentTimeMillis() - pMetadata.createdAt);
                     LOG.log(Level.INFO, LOG_PREFIX + "checkOfsResponse: OFS response message retrieved successfully");
                     LOG.log(Level.INFO, LOG_PREFIX + "checkOfsResponse: ORD OUT MSG retrieved");
 
@@ -458,20 +512,24 @@ public class CbnFtService extends ServiceLifecycle {
                                 pTransactRef);
                     }
 
-                    // Publish response
-                    publishResponse(pMetadata.originalId, pStatus, pMessage, pTransactRef, pMetadata.originalItem, pMetadata.bloombergId);
-
-                    // Acknowledge MQ message on success
-                    if (MSG_SUCCESS.equalsIgnoreCase(pStatus) && "WMQ".equalsIgnoreCase(pMetadata.adapterMode)) {
-                        CbnFtAdapter.acknowledgeMqMessage(pMetadata.originalId);
-                        LOG.log(Level.INFO, LOG_PREFIX + "checkOfsResponse: MQ message acknowledged for id={0}",
-                                pMetadata.originalId);
-                    }
+                    // Publish response; the MQ message is acknowledged once it is out
+                    boolean pAck = MSG_SUCCESS.equalsIgnoreCase(pStatus)
+                            && "WMQ".equalsIgnoreCase(pMetadata.adapterMode);
+                    String pOriginalId = pMetadata.originalId;
+                    publishResponse(pOriginalId, pStatus, pMessage, pTransactRef,
+                            pMetadata.originalItem, pMetadata.bloombergId, () -> {
+                                if (pAck) {
+                                    CbnFtAdapter.acknowledgeMqMessage(pOriginalId);
+                                    LOG.log(Level.INFO, LOG_PREFIX
+                                            + "checkOfsResponse: MQ message acknowledged for id={0}",
+                                            pOriginalId);
+                                }
+                                CbnFtAdapter.settleMqItem(pOriginalId);
+                            });
 
                     // Remove from cache after successful processing
-                    synchronized (TRANSACTION_CACHE) {
-                        TRANSACTION_CACHE.remove(pResponseId);
-                    }
+                    IDEMPOTENCY.complete(pMetadata.bloombergId, pStatus, pTransactRef, pMessage);
+                    TRANSACTION_CACHE.remove(pResponseId);
 
                 } else {
                     LOG.log(Level.WARNING, LOG_PREFIX + "checkOfsResponse: OFS message output is null or empty");
@@ -487,22 +545,26 @@ public class CbnFtService extends ServiceLifecycle {
         } catch (T24CoreException e) {
             LOG.log(Level.SEVERE, LOG_PREFIX + "checkOfsResponse: Error checking OFS response", e);
             pMessage = "Error checking OFS response: " + e.getMessage();
-            publishResponse(pMetadata.originalId, pStatus, pMessage, pTransactRef, pMetadata.originalItem, pMetadata.bloombergId);
+            String pOriginalId = pMetadata.originalId;
+            publishResponse(pOriginalId, pStatus, pMessage, pTransactRef,
+                    pMetadata.originalItem, pMetadata.bloombergId,
+                    () -> CbnFtAdapter.settleMqItem(pOriginalId));
 
             // Remove from cache on error
-            synchronized (TRANSACTION_CACHE) {
-                TRANSACTION_CACHE.remove(pResponseId);
-            }
+            IDEMPOTENCY.complete(pMetadata.bloombergId, pStatus, pTransactRef, pMessage);
+            TRANSACTION_CACHE.remove(pResponseId);
 
         } catch (Exception e) {
             LOG.log(Level.SEVERE, LOG_PREFIX + "checkOfsResponse: Unexpected error in checkOfsResponse", e);
             pMessage = "Unexpected error: " + e.getMessage();
-            publishResponse(pMetadata.originalId, pStatus, pMessage, pTransactRef, pMetadata.originalItem, pMetadata.bloombergId);
+            String pOriginalId = pMetadata.originalId;
+            publishResponse(pOriginalId, pStatus, pMessage, pTransactRef,
+                    pMetadata.originalItem, pMetadata.bloombergId,
+                    () -> CbnFtAdapter.settleMqItem(pOriginalId));
 
             // Remove from cache on error
-            synchronized (TRANSACTION_CACHE) {
-                TRANSACTION_CACHE.remove(pResponseId);
-            }
+            IDEMPOTENCY.complete(pMetadata.bloombergId, pStatus, pTransactRef, pMessage);
+            TRANSACTION_CACHE.remove(pResponseId);
 
         } finally {
             // Cleanup
@@ -665,19 +727,58 @@ public class CbnFtService extends ServiceLifecycle {
         }
     }
 
+    /**
+     * Answers a redelivered deal without a new OFS request: the recorded response of a
+     * completed deal is published again. A deal still awaiting its OFS response is deferred to the
+     * next PROCESS cycle and only acknowledged once the original has a final outcome.
+     */
+    private void replayDuplicate(String pRecordId, JsonNode pItem, String pBloombergId,
+            CbnTfIdempotencyIndex.Entry pPrevious) {
+        if (!pPrevious.isCompleted()) {
+            IDEMPOTENCY.defer(pRecordId);
+            LOG.log(Level.INFO, LOG_PREFIX
+                    + "processOfsRequest: Duplicate BLOOMBERG_ID={0} still in flight, deferred",
+                    pBloombergId);
+            return;
+        }
+        LOG.log(Level.INFO, LOG_PREFIX
+                + "processOfsRequest: Duplicate BLOOMBERG_ID={0}, replaying response ref={1}",
+                new Object[] { pBloombergId, pPrevious.getTransactRef() });
+        publishResponse(pRecordId, pPrevious.getStatus(), pPrevious.getMessage(),
+                pPrevious.getTransactRef(), pItem, pBloombergId, () -> {
+                    if ("WMQ".equalsIgnoreCase(mAdapterFlag)) {
+                        CbnFtAdapter.acknowledgeMqMessage(pRecordId);
+                        CbnFtAdapter.settleMqItem(pRecordId);
+                    }
+                });
+    }
+
     /**
      * Builds response and publishes using CbnFtPayload and
      * CbnFtProducer.
      */
     private void publishResponse(String pId, String pStatus, String pMessage, String pTransactRef,
             JsonNode pOriginalItem, String bloombergId) {
+        publishResponse(pId, pStatus, pMessage, pTransactRef, pOriginalItem, bloombergId, null);
+    }
+
+    /**
+     * Builds and publishes a response; pOnPublished (the acknowledgement of the inbound item) runs
+     * only once the response is published, in batch publish mode after its batch commits.
+     */
+    private void publishResponse(String pId, String pStatus, String pMessage, String pTransactRef,
+            JsonNode pOriginalItem, String bloombergId, Runnable pOnPublished) {
+        long started = System.nanoTime();
         try {
             String pJsonResponse = mPayloadHandler.buildResponse(pStatus, pMessage, pTransactRef, pOriginalItem, bloombergId);
             LOG.log(Level.INFO, LOG_PREFIX + "publishResponse: Built response: {0}", pJsonResponse);
             CbnTfBackup.backupMessage(pJsonResponse, "FUNDS_MOVEMENT", pId);
-            mProducer.publishResponse(pJsonResponse, mAdapterFlag, pId);
+            mProducer.publishResponse(pJsonResponse, mAdapterFlag, pId, pOnPublished);
+            METRICS.count(MSG_SUCCESS.equalsIgnoreCase(pStatus) ? Outcome.SUCCESS : Outcome.FAILURE);
         } catch (Exception e) {
             LOG.log(Level.SEVERE, e, () -> LOG_PREFIX + "publishResponse: Error publishing response for id=" + pId);
+        } finally {
+            METRICS.record(Phase.PUBLISH_RESPONSE, started);
         }
     }
 
@@ -685,6 +786,7 @@ public class CbnFtService extends ServiceLifecycle {
      * Persists the failed transaction source to EXCEPTS directory.
      */
     private void persistToExcepts(String pId, String pReason) {
+        METRICS.count(Outcome.EXCEPTED);
         try {
             if ("FILE".equalsIgnoreCase(mAdapterFlag)) {
                 FileItemRef pRef = CbnFtAdapter.parseFileItemRef(pId);
@@ -15,6 +15,8 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import com.cbn.bloomberg.util.CbnTfItemStream;
+
 
 /**
  * Title: CsdBloombergFxDserializer.java Author: CSD Development Team Date Created: 2025-10-11
@@ -28,7 +30,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * 
  * Modification Details: ---- 11/10/25 - Initial version Bloomberg FX deserialization with POJO
  * support ---- 09/11/25 - Updated to handle single FOREX_TRANSACTION object (not array) Compliant
- * with CSD Java Programming Standards r2022
+ * with CSD Java Programming Standards r2022 ---- 14/02/26 - Added streaming item reader
+ * (streamItems/readItemAt) with byte-offset item IDs for large refresh files ---- 27/02/26 -
+ * FILE scan enumerates item offsets (scanItemOffsets); readItemAt returns the item node
  */
 public final class CbnFxDserializer {
 
@@ -188,6 +192,55 @@ public final class CbnFxDserializer {
 
         return ids;
     }
+
+    /**
+     * Opens a streaming reader over the FOREX_TRANSACTION items of a file. Items are bound one at a
+     * time from a JsonParser over the file channel, so large refresh files are never loaded into
+     * memory as a whole. Accepts a single object or an array.
+     *
+     * @param pFile Path to the JSON file
+     * @param pObjMapper ObjectMapper for deserialization
+     * @return Item stream; the caller must close it
+     * @throws IOException if the file cannot be opened or read
+     */
+    public static CbnTfItemStream<ForexTransact> streamItems(Path pFile, ObjectMapper pObjMapper)
+            throws IOException {
+        return CbnTfItemStream.open(pFile, "FOREX_TRANSACTION", ForexTransact.class, pObjMapper);
+    }
+
+    /**
+     * Reads the FOREX_TRANSACTION item object at a byte offset reported by {@link #scanItemOffsets},
+     * without parsing the rest of the file.
+     *
+     * @param pFile Path to the JSON file
+     * @param pOffset Byte offset of the item object
+     * @param pObjMapper ObjectMapper for deserialization
+     * @return The item node
+     * @throws IOException if no item object starts at the offset
+     */
+    public static JsonNode readItemAt(Path pFile, long pOffset, ObjectMapper pObjMapper)
+            throws IOException {
+        return CbnTfItemStream.readAt(pFile, pOffset, JsonNode.class, pObjMapper);
+    }
+
+    /**
+     * Enumerates the byte offsets of the FOREX_TRANSACTION items of a file by skipping them on
+     * {@link #streamItems}, without binding or buffering the items.
+     *
+     * @param pFile Path to the JSON file
+     * @param pObjMapper ObjectMapper for deserialization
+     * @return Item offsets in file order; empty if there is no FOREX_TRANSACTION
+     * @throws IOException if the file cannot be read or is not valid JSON
+     */
+    public static List<Long> scanItemOffsets(Path pFile, ObjectMapper pObjMapper) throws IOException {
+        List<Long> offsets = new ArrayList<>();
+        try (CbnTfItemStream<ForexTransact> items = streamItems(pFile, pObjMapper)) {
+            for (long offset = items.skip(); offset >= 0; offset = items.skip()) {
+                offsets.add(offset);
+            }
+        }
+        return offsets;
+    }
 }
 
 // ==== TOP-LEVEL POJO CLASSES ====
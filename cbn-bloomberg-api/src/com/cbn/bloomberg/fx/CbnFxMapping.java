@@ -7,6 +7,7 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.cbn.bloomberg.util.CbnTfFieldMapping;
 import com.cbn.bloomberg.util.CbnTfProperties;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -131,6 +132,12 @@ public final class CbnFxMapping {
      */
     public static Map<String, String> mapForexTransactToFx(JsonNode pFm) {
 
+        // Compiled mapping spec (CbnTfMapping_FX.json) when available
+        CbnTfFieldMapping fieldMapping = CbnTfFieldMapping.forModule("FX");
+        if (fieldMapping != null) {
+            return fieldMapping.map(pFm);
+        }
+
         // Mapping incoming bloomberg json feed to Forex Trading Module
         Map<String, String> map = new HashMap<>();
 
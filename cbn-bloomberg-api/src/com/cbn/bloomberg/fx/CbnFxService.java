@@ -6,7 +6,6 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -14,9 +13,17 @@ import java.util.logging.Logger;
 
 import com.cbn.bloomberg.fx.CbnFxAdapter.FileItemRef;
 import com.cbn.bloomberg.fx.CbnFxAdapter.MqItemRef;
+import com.cbn.bloomberg.util.CbnTfPendingResponseStore;
+import com.cbn.bloomberg.util.CbnTfPendingResponseStore.TransactionMetadata;
 import com.cbn.bloomberg.util.CbnTfBackup;
+import com.cbn.bloomberg.util.CbnTfBatchPublisher;
+import com.cbn.bloomberg.util.CbnTfIdempotencyIndex;
 import com.cbn.bloomberg.util.CbnTfLogTracer;
+import com.cbn.bloomberg.util.CbnTfMetrics;
+import com.cbn.bloomberg.util.CbnTfMetrics.Outcome;
+import com.cbn.bloomberg.util.CbnTfMetrics.Phase;
 import com.cbn.bloomberg.util.CbnTfProperties;
+import com.cbn.bloomberg.util.CbnTfResponseHarvester;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.temenos.api.TBoolean;
@@ -111,31 +118,29 @@ public class CbnFxService extends ServiceLifecycle {
     private final CbnFxProducer mProducer = new CbnFxProducer();
 
     // ==== TRANSACTION METADATA CACHE ====
-    // Maps responseId -> TransactionMetadata
-    private static final Map<String, TransactionMetadata> TRANSACTION_CACHE = new HashMap<>();
+    // Maps responseId -> TransactionMetadata (concurrent, TTL bounded, journalled)
+    private static final CbnTfPendingResponseStore TRANSACTION_CACHE = CbnTfPendingResponseStore
+            .forModule("FX");
+
+    // Selects the pending responseIds whose OFS.REQUEST.DETAIL is ready
+    private static final CbnTfResponseHarvester RESPONSE_HARVESTER = CbnTfResponseHarvester
+            .forModule("FX");
+
+    // Recognises redelivered deals by BLOOMBERG_ID, so their recorded response is replayed
+    private static final CbnTfIdempotencyIndex IDEMPOTENCY = CbnTfIdempotencyIndex
+            .forModule("FX");
+
+    // Lifecycle metrics, exported through JMX and optionally a Prometheus text file
+    private static final CbnTfMetrics METRICS = CbnTfMetrics.forModule("FX")
+            .gauge("pending_responses", TRANSACTION_CACHE::size)
+            .gauge("pending_response_age_ms", TRANSACTION_CACHE::oldestAgeMillis)
+            .gauge("duplicate_deals", IDEMPOTENCY::getDuplicates)
+            .gauge("publish_queue_depth", () -> CbnTfBatchPublisher.pendingFor("FX"));
 
     static {
         System.out.println("We are here now - CbnFxService class loaded");
     }
 
-    /**
-     * Metadata holder for tracking transaction state between phases.
-     */
-    private static class TransactionMetadata {
-
-        String originalId;
-        JsonNode originalItem;
-        String adapterMode;
-        String bloombergId;
-
-        TransactionMetadata(String pOriginalId, JsonNode pOriginalItem, String pAdapterMode,String pBloombergId) {
-            this.originalId = pOriginalId;
-            this.originalItem = pOriginalItem;
-            this.adapterMode = pAdapterMode;
-            this.bloombergId = pBloombergId;
-        }
-    }
-
     /**
      * Initializes the service with session and data access objects.
      */
@@ -145,8 +150,8 @@ public class CbnFxService extends ServiceLifecycle {
         System.out.println("We are here now - Initialise");
         try {
             yLogger.log(Level.INFO, LOG_PREFIX + "=== initialise() START ===");
-            mSession = new Session(this);
-            mDataAccess = new DataAccess(this);
+            mSession = createSession();
+            mDataAccess = createDataAccess();
             String mCompanyId = "";
             mCompanyId = mSession.getCompanyId();
 
@@ -160,6 +165,21 @@ public class CbnFxService extends ServiceLifecycle {
                     LOG_PREFIX + "initialise: Unexpected error during initialization", e);
         }
     }
+
+    /**
+     * Session of the service. Overridden by the offline harness (CbnTfServiceHarness), which
+     * runs the lifecycle without a T24 core.
+     */
+    protected Session createSession() {
+        return new Session(this);
+    }
+
+    /**
+     * Data access used for the OFS.REQUEST.DETAIL reads of CHECK.RESPONSE.
+     */
+    protected DataAccess createDataAccess() {
+        return new DataAccess(this);
+    }
     
 
     /**
@@ -169,6 +189,7 @@ public class CbnFxService extends ServiceLifecycle {
      */
     @Override
     public List<String> getIds(ServiceData serviceData, List<String> controlList) {
+        long started = System.nanoTime();
         List<String> pRecordIds = null;
         String pControlItem = null;
         System.out.println("We are here now - getID");
@@ -198,7 +219,7 @@ public class CbnFxService extends ServiceLifecycle {
             // Process based on control item
             switch (pControlItem) {
                 case CONTROL_PROCESS_FX:
-                    pRecordIds = getNewTransactionIds();
+                    pRecordIds = IDEMPOTENCY.withDeferred(getNewTransactionIds());
                     break;
 
                 case CONTROL_CHECK_RESPONSE:
@@ -224,6 +245,7 @@ public class CbnFxService extends ServiceLifecycle {
             yLogger.log(Level.SEVERE, LOG_PREFIX + "getIds: Unexpected error in getIds", e);
             pRecordIds = Collections.emptyList();
         } finally {
+            METRICS.record(Phase.GET_IDS, started);
             // Cleanup local variables
             pControlItem = null;
         }
@@ -287,13 +309,14 @@ public class CbnFxService extends ServiceLifecycle {
         try {
             yLogger.log(Level.INFO, LOG_PREFIX + "=== getPendingResponseIds() START ===");
 
-            synchronized (TRANSACTION_CACHE) {
-                // Get all responseIds from cache
-                pOfsResponseIds.addAll(TRANSACTION_CACHE.keySet());
-            }
+            // Get the responseIds from cache whose OFS response is ready
+            pOfsResponseIds.addAll(
+                    RESPONSE_HARVESTER.readyIds(mDataAccess, TRANSACTION_CACHE.keySet()));
+            // Evicted without an OFS response: answered with a failure by checkOfsResponse
+            pOfsResponseIds.addAll(TRANSACTION_CACHE.evictedIds());
 
             yLogger.log(Level.INFO,
-                    LOG_PREFIX + "getPendingResponseIds: Found {0} pending responses",
+                    LOG_PREFIX + "getPendingResponseIds: Found {0} ready responses",
                     pOfsResponseIds.size());
 
         } catch (Exception e) {
@@ -334,13 +357,16 @@ public class CbnFxService extends ServiceLifecycle {
             }
 
             // Process based on control item
+            long started = System.nanoTime();
             switch (controlItem) {
                 case CONTROL_PROCESS_FX:
                     processOfsRequest(id, transactionData, records);
+                    METRICS.record(Phase.PROCESS_OFS_REQUEST, started);
                     break;
 
                 case CONTROL_CHECK_RESPONSE:
                     checkOfsResponse(id);
+                    METRICS.record(Phase.CHECK_OFS_RESPONSE, started);
                     break;
 
                 default:
@@ -371,6 +397,7 @@ public class CbnFxService extends ServiceLifecycle {
         JsonNode pOriginalItem = null;
         String pOfsResponseId = null;
         String bloombergId = null;
+        boolean pClaimed = false;
 
         try {
             yLogger.log(Level.INFO, LOG_PREFIX + "=== processOfsRequest() START ===");
@@ -392,6 +419,15 @@ public class CbnFxService extends ServiceLifecycle {
             }
 
             pOriginalItem = pItem;
+
+            // Step 1b: A redelivered deal is answered from the idempotency index
+            CbnTfIdempotencyIndex.Entry pPrevious = IDEMPOTENCY.claim(bloombergId);
+            if (pPrevious != null) {
+                replayDuplicate(pRecordId, pItem, bloombergId, pPrevious);
+                return;
+            }
+            pClaimed = true;
+
             yLogger.log(Level.FINE, LOG_PREFIX + "processOfsRequest: Retrieved item for id={0}",
                     pRecordId);
 
@@ -429,10 +465,10 @@ public class CbnFxService extends ServiceLifecycle {
                     + "processOfsRequest: Successfully prepared OFS transaction for FX update");
 
             // Step 5: Store transaction metadata in cache for Phase 2
-            synchronized (TRANSACTION_CACHE) {
-                TRANSACTION_CACHE.put(pOfsResponseId,
-                        new TransactionMetadata(pRecordId, pOriginalItem, mAdapterFlag,bloombergId));
-            }
+            TRANSACTION_CACHE.put(pOfsResponseId,
+                    new TransactionMetadata(pRecordId, pOriginalItem, mAdapterFlag,bloombergId));
+            // CHECK.RESPONSE completes the claim from here
+            pClaimed = false;
 
             yLogger.log(Level.INFO,
                     LOG_PREFIX
@@ -461,6 +497,9 @@ public class CbnFxService extends ServiceLifecycle {
             persistToExcepts(pRecordId, pMessage);
             publishResponse(pRecordId, pStatus, pMessage, "", pOriginalItem,bloombergId);
         } finally {
+            if (pClaimed) {
+                IDEMPOTENCY.release(bloombergId);
+            }
             // Cleanup
             pOriginalItem = null;
             pOfsResponseId = null;
@@ -481,11 +520,23 @@ public class CbnFxService extends ServiceLifecycle {
         yLogger.log(Level.INFO, LOG_PREFIX + "=== checkOfsResponse() START ===");
 
         // Retrieve transaction metadata from cache
-        TransactionMetadata pMetadata;
-        synchronized (TRANSACTION_CACHE) {
-            pMetadata = TRANSACTION_CACHE.get(pOfsResponseId);
+        // Evicted from the store (tf.pending.ttl / tf.pending.max.entries): the deal's outcome is
+        // unknown, so it is answered with a failure and may be resent
+        TransactionMetadata pEvicted = TRANSACTION_CACHE.takeEvicted(pOfsResponseId);
+        if (pEvicted != null) {
+            pMessage = "No OFS response received in time, check T24 before resending";
+            yLogger.log(Level.WARNING, LOG_PREFIX + "checkOfsResponse: responseId={0} evicted, "
+                    + "publishing failure", pOfsResponseId);
+            String pOriginalId = pEvicted.originalId;
+            publishResponse(pOriginalId, MSG_FAILURE, pMessage, "", pEvicted.originalItem,
+                    pEvicted.bloombergId, () -> CbnFxAdapter.settleMqItem(pOriginalId));
+            IDEMPOTENCY.release(pEvicted.bloombergId);
+            return;
         }
 
+        TransactionMetadata pMetadata;
+        pMetadata = TRANSACTION_CACHE.get(pOfsResponseId);
+
         if (pMetadata == null) {
             yLogger.log(Level.WARNING,
                     LOG_PREFIX + "checkOfsResponse: No metadata found for responseId={0}",
@@ -509,6 +560,8 @@ public class CbnFxService extends ServiceLifecycle {
                 pMsgOut = pOfsRequestDetailRecord.getMsgOut().getValue();
 
                 if (pMsgOut != null && !pMsgOut.isEmpty()) {
+                    METRICS.recordMillis(Phase.OFS_ROUND_TRIP,
+                            System.currentTimeMillis() - pMetadata.createdAt);
                     yLogger.log(Level.INFO, LOG_PREFIX
                             + "checkOfsResponse: OFS response message retrieved successfully");
                     yLogger.log(Level.INFO, LOG_PREFIX + "checkOfsResponse: ORD OUT MSG retrieved");
@@ -531,23 +584,24 @@ public class CbnFxService extends ServiceLifecycle {
                                 pTransactRef);
                     }
 
-                    // Publish response
-                    publishResponse(pMetadata.originalId, pStatus, pMessage, pTransactRef,
-                            pMetadata.originalItem, pMetadata.bloombergId);
-
-                    // Acknowledge MQ message on success
-                    if (MSG_SUCCESS.equalsIgnoreCase(pStatus)
-                            && "WMQ".equalsIgnoreCase(pMetadata.adapterMode)) {
-                        CbnFxAdapter.acknowledgeMqMessage(pMetadata.originalId);
-                        yLogger.log(Level.INFO,
-                                LOG_PREFIX + "checkOfsResponse: MQ message acknowledged for id={0}",
-                                pMetadata.originalId);
-                    }
+                    // Publish response; the MQ message is acknowledged once it is out
+                    boolean pAck = MSG_SUCCESS.equalsIgnoreCase(pStatus)
+                            && "WMQ".equalsIgnoreCase(pMetadata.adapterMode);
+                    String pOriginalId = pMetadata.originalId;
+                    publishResponse(pOriginalId, pStatus, pMessage, pTransactRef,
+                            pMetadata.originalItem, pMetadata.bloombergId, () -> {
+                                if (pAck) {
+                                    CbnFxAdapter.acknowledgeMqMessage(pOriginalId);
+                                    yLogger.log(Level.INFO, LOG_PREFIX
+                                            + "checkOfsResponse: MQ message acknowledged for id={0}",
+                                            pOriginalId);
+                                }
+                                CbnFxAdapter.settleMqItem(pOriginalId);
+                            });
 
                     // Remove from cache after successful processing
-                    synchronized (TRANSACTION_CACHE) {
-                        TRANSACTION_CACHE.remove(pOfsResponseId);
-                    }
+                    IDEMPOTENCY.complete(pMetadata.bloombergId, pStatus, pTransactRef, pMessage);
+                    TRANSACTION_CACHE.remove(pOfsResponseId);
 
                 } else {
                     yLogger.log(Level.WARNING,
@@ -565,25 +619,27 @@ public class CbnFxService extends ServiceLifecycle {
             yLogger.log(Level.SEVERE, LOG_PREFIX + "checkOfsResponse: Error checking OFS response",
                     e);
             pMessage = "Error checking OFS response: " + e.getMessage();
-            publishResponse(pMetadata.originalId, pStatus, pMessage, pTransactRef,
-                    pMetadata.originalItem,pMetadata.bloombergId);
+            String pOriginalId = pMetadata.originalId;
+            publishResponse(pOriginalId, pStatus, pMessage, pTransactRef,
+                    pMetadata.originalItem, pMetadata.bloombergId,
+                    () -> CbnFxAdapter.settleMqItem(pOriginalId));
 
             // Remove from cache on error
-            synchronized (TRANSACTION_CACHE) {
-                TRANSACTION_CACHE.remove(pOfsResponseId);
-            }
+            IDEMPOTENCY.complete(pMetadata.bloombergId, pStatus, pTransactRef, pMessage);
+            TRANSACTION_CACHE.remove(pOfsResponseId);
 
         } catch (Exception e) {
             yLogger.log(Level.SEVERE,
                     LOG_PREFIX + "checkOfsResponse: Unexpected error in checkOfsResponse", e);
             pMessage = "Unexpected error: " + e.getMessage();
-            publishResponse(pMetadata.originalId, pStatus, pMessage, pTransactRef,
-                    pMetadata.originalItem,pMetadata.bloombergId);
+            String pOriginalId = pMetadata.originalId;
+            publishResponse(pOriginalId, pStatus, pMessage, pTransactRef,
+                    pMetadata.originalItem, pMetadata.bloombergId,
+                    () -> CbnFxAdapter.settleMqItem(pOriginalId));
 
             // Remove from cache on error
-            synchronized (TRANSACTION_CACHE) {
-                TRANSACTION_CACHE.remove(pOfsResponseId);
-            }
+            IDEMPOTENCY.complete(pMetadata.bloombergId, pStatus, pTransactRef, pMessage);
+            TRANSACTION_CACHE.remove(pOfsResponseId);
 
         } finally {
             pOfsRequestDetailRecord = null;
@@ -626,6 +682,11 @@ public class CbnFxService extends ServiceLifecycle {
             return null;
         }
 
+        // Offset based ID: read just the item, not the whole file
+        if (pRef.offset() >= 0) {
+            return CbnFxDserializer.readItemAt(pRef.file(), pRef.offset(), OBJECT_MAPPER);
+        }
+
         JsonNode pRoot = CbnFxAdapter.readRoot(pRef.file(), OBJECT_MAPPER);
         if (!CbnFxMapping.hasForexTransacts(pRoot)) {
             yLogger.log(Level.WARNING,
@@ -902,21 +963,60 @@ public class CbnFxService extends ServiceLifecycle {
         }
     }
 
+    /**
+     * Answers a redelivered deal without a new OFS request: the recorded response of a
+     * completed deal is published again. A deal still awaiting its OFS response is deferred to the
+     * next PROCESS cycle and only acknowledged once the original has a final outcome.
+     */
+    private void replayDuplicate(String pRecordId, JsonNode pItem, String pBloombergId,
+            CbnTfIdempotencyIndex.Entry pPrevious) {
+        if (!pPrevious.isCompleted()) {
+            IDEMPOTENCY.defer(pRecordId);
+            yLogger.log(Level.INFO, LOG_PREFIX
+                    + "processOfsRequest: Duplicate BLOOMBERG_ID={0} still in flight, deferred",
+                    pBloombergId);
+            return;
+        }
+        yLogger.log(Level.INFO, LOG_PREFIX
+                + "processOfsRequest: Duplicate BLOOMBERG_ID={0}, replaying response ref={1}",
+                new Object[] { pBloombergId, pPrevious.getTransactRef() });
+        publishResponse(pRecordId, pPrevious.getStatus(), pPrevious.getMessage(),
+                pPrevious.getTransactRef(), pItem, pBloombergId, () -> {
+                    if ("WMQ".equalsIgnoreCase(mAdapterFlag)) {
+                        CbnFxAdapter.acknowledgeMqMessage(pRecordId);
+                        CbnFxAdapter.settleMqItem(pRecordId);
+                    }
+                });
+    }
+
     /**
      * Builds response and publishes using CbnFxPayloads and CbnFxProducer.
      */
     private void publishResponse(String pId, String pStatus, String pMessage, String pTransactRef,
             JsonNode pOriginalItem, String bloombergId) {
+        publishResponse(pId, pStatus, pMessage, pTransactRef, pOriginalItem, bloombergId, null);
+    }
+
+    /**
+     * Builds and publishes a response; pOnPublished (the acknowledgement of the inbound item) runs
+     * only once the response is published, in batch publish mode after its batch commits.
+     */
+    private void publishResponse(String pId, String pStatus, String pMessage, String pTransactRef,
+            JsonNode pOriginalItem, String bloombergId, Runnable pOnPublished) {
+        long started = System.nanoTime();
         try {
             String pJsonResponse = mPayloadHandler.buildResponse(pStatus, pMessage, pTransactRef,
                     pOriginalItem,bloombergId);
             yLogger.log(Level.INFO, LOG_PREFIX + "publishResponse: Built response: {0}",
                     pJsonResponse);
             CbnTfBackup.backupMessage(pJsonResponse, "FOREX_TRANSACTION", pTransactRef);
-            mProducer.publishResponse(pJsonResponse, mAdapterFlag, pId);
+            mProducer.publishResponse(pJsonResponse, mAdapterFlag, pId, pOnPublished);
+            METRICS.count(MSG_SUCCESS.equalsIgnoreCase(pStatus) ? Outcome.SUCCESS : Outcome.FAILURE);
         } catch (Exception e) {
             yLogger.log(Level.SEVERE, e,
                     () -> LOG_PREFIX + "publishResponse: Error publishing response for id=" + pId);
+        } finally {
+            METRICS.record(Phase.PUBLISH_RESPONSE, started);
         }
     }
 
@@ -924,11 +1024,12 @@ public class CbnFxService extends ServiceLifecycle {
      * Persists the failed transaction source to EXCEPTS directory.
      */
     private void persistToExcepts(String pId, String pReason) {
+        METRICS.count(Outcome.EXCEPTED);
         try {
             if ("FILE".equalsIgnoreCase(mAdapterFlag)) {
                 FileItemRef pRef = CbnFxAdapter.parseFileItemRef(pId);
                 if (pRef != null) {
-                    CbnFxAdapter.persistFailedFileItem(pRef, mExceptsDir, pReason);
+                    CbnFxAdapter.persistFailedFileItem(pRef, mExceptsDir, pReason, OBJECT_MAPPER);
                 } else {
                     yLogger.log(Level.WARNING,
                             LOG_PREFIX + "persistToExcepts: could not parse FILE ref from id={0}",
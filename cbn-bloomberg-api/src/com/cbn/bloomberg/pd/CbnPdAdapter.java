@@ -11,8 +11,8 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -23,14 +23,21 @@ import javax.jms.MessageConsumer;
 import javax.jms.Session;
 import javax.jms.TextMessage;
 
+import com.cbn.bloomberg.util.CbnTfAckBatch;
+import com.cbn.bloomberg.util.CbnTfBackup;
 import com.cbn.bloomberg.util.CbnTfBrowsing;
 import com.cbn.bloomberg.util.CbnTfBrowsing.BrowseResult;
 import com.cbn.bloomberg.util.CbnTfBrowsing.ModuleType;
+import com.cbn.bloomberg.util.CbnTfConnectionPool;
+import com.cbn.bloomberg.util.CbnTfDocumentCache;
+import com.cbn.bloomberg.util.CbnTfFileIntake;
+import com.cbn.bloomberg.util.CbnTfItemStream;
+import com.cbn.bloomberg.util.CbnTfListenerIntake;
+import com.cbn.bloomberg.util.CbnTfMessageSpool;
 import com.cbn.bloomberg.util.CbnTfProperties;
+import com.cbn.bloomberg.util.CbnTfStagingJournal;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.ibm.mq.jms.MQConnectionFactory;
-import com.ibm.msg.client.wmq.common.CommonConstants;
 
 
 /**
@@ -48,25 +55,27 @@ public final class CbnPdAdapter {
     /** The module type this adapter handles */
     private static final ModuleType MODULE = ModuleType.PD;
 
-    // Cache: JMSMessageID -> message body
-    private static final ConcurrentHashMap<String, String> MQ_MESSAGE_CACHE = new ConcurrentHashMap<>();
-
-    // Legacy placeholder to maintain compatibility if referenced elsewhere
-    private static final ConcurrentHashMap<String, Message> MQ_MESSAGE_OBJECTS = new ConcurrentHashMap<>();
-
     // Timestamp format for filenames
     private static final DateTimeFormatter TS_FMT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
 
     private CbnPdAdapter() {
     }
 
+    // Consumed message bodies, shared with the other agents of this host
+    private static CbnTfMessageSpool spool() {
+        return CbnTfMessageSpool.forModule(MODULE.name());
+    }
+
     // ====================================================================
     // FILE ADAPTER
     // ====================================================================
 
     /**
-     * Scans directory for JSON files, reads content, counts PLACEMENTS, moves files to
-     * PROCESSED, then builds IDs using the moved path.
+     * Scans directory for JSON files, locates the PLACEMENTS items by byte offset with a
+     * streaming parser, moves files to PROCESSED, then builds offset IDs
+     * (FILE|path|PD|@offset) using the moved path.
+     * With tf.nfs.intake.mode=watch the files come parsed from CbnTfFileIntake instead of a
+     * directory listing, with index IDs served from the document cache.
      */
     public static List<String> scanDirectoryIds(Path pDirectory, String pDirGlob,
             Path pDirProcessed, ObjectMapper pObjMapper) {
@@ -84,44 +93,30 @@ public final class CbnPdAdapter {
             return ids;
         }
 
+        if (CbnTfFileIntake.isWatchMode()) {
+            // Files found and parsed ahead of time by the directory watcher
+            for (CbnTfFileIntake.ReadyFile ready : CbnTfFileIntake
+                    .forDirectory(pDirectory, pDirGlob, pObjMapper).drain(MODULE)) {
+                try {
+                    addFileIds(ready.getFile(), ready.getRoot(), pDirProcessed, ids);
+                } catch (Exception ex) {
+                    yLogger.log(Level.SEVERE,
+                            String.format("[CbnPdAdapter] FILE: error moving %s", ready.getFile()), ex);
+                }
+            }
+            return ids;
+        }
+
         try (DirectoryStream<Path> stream = Files.newDirectoryStream(pDirectory, pDirGlob)) {
             for (Path file : stream) {
                 try {
-                    String content = new String(Files.readAllBytes(file),
-                            StandardCharsets.UTF_8).trim();
-                    if (content.isEmpty()) {
-                        continue;
-                    }
-                    JsonNode root = CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(content));
-                    if (!MODULE.hasTransaction(root)) {
-                        yLogger.log(Level.WARNING,
-                                "[CbnPdAdapter] FILE: no {0} in {1}", 
-                                new Object[] { MODULE.getJsonRootNode(), file });
-                        // Move empty/invalid files as well to avoid re-scans
-                        String ts = LocalDateTime.now().format(TS_FMT);
-                        Path target = pDirProcessed.resolve(
-                                file.getFileName().toString().replace(".json", "") + "-" + ts
-                                        + ".json");
-                        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
-                        yLogger.log(Level.INFO, "[CbnPdAdapter] FILE: moved {0} -> {1}",
-                                new Object[] { file, target });
+                    if (Files.size(file) == 0L) {
                         continue;
                     }
-
-                    // Move first, then build IDs from the moved path
-                    String ts = LocalDateTime.now().format(TS_FMT);
-                    Path target = pDirProcessed.resolve(
-                            file.getFileName().toString().replace(".json", "") + "-" + ts
-                                    + ".json");
-                    Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
-                    yLogger.log(Level.INFO, "[CbnPdAdapter] FILE: moved {0} -> {1}",
-                            new Object[] { file, target });
-
-                    JsonNode txnNode = MODULE.getTransaction(root);
-                    int size = CbnTfBrowsing.countTransactionItems(txnNode);
-                    for (int i = 0; i < size; i++) {
-                        ids.add("FILE|" + target.toString() + "|" + MODULE.getIdPrefix() + "|" + i);
-                    }
+                    // Items are located by byte offset with a streaming parser; the file is
+                    // never loaded or bound as a whole
+                    addFileOffsetIds(file, CbnPdDserializer.scanItemOffsets(file, pObjMapper),
+                            pDirProcessed, ids);
                 } catch (Exception ex) {
                     yLogger.log(Level.SEVERE,
                             String.format("[CbnPdAdapter] FILE: error reading/moving %s", file),
@@ -135,15 +130,65 @@ public final class CbnPdAdapter {
         return ids;
     }
 
+    // Moves one scanned inbound file to PROCESSED and adds the offset IDs of its items
+    private static void addFileOffsetIds(Path pFile, List<Long> pOffsets, Path pDirProcessed,
+            List<String> pIds) throws IOException {
+        if (pOffsets.isEmpty()) {
+            yLogger.log(Level.WARNING,
+                    "[CbnPdAdapter] FILE: no {0} in {1}", 
+                    new Object[] { MODULE.getJsonRootNode(), pFile });
+        }
+
+        // Move first (empty/invalid files as well to avoid re-scans), then build IDs from the
+        // moved path; the offsets stay valid as the content is unchanged
+        Path target = moveToProcessed(pFile, pDirProcessed);
+        for (long offset : pOffsets) {
+            pIds.add(CbnTfItemStream.offsetId(target, MODULE.getIdPrefix(), offset));
+        }
+    }
+
+    // Moves one parsed inbound file to PROCESSED and adds the IDs of its items
+    private static void addFileIds(Path pFile, JsonNode pRoot, Path pDirProcessed,
+            List<String> pIds) throws IOException {
+        if (!MODULE.hasTransaction(pRoot)) {
+            yLogger.log(Level.WARNING,
+                    "[CbnPdAdapter] FILE: no {0} in {1}", 
+                    new Object[] { MODULE.getJsonRootNode(), pFile });
+            // Move empty/invalid files as well to avoid re-scans
+            moveToProcessed(pFile, pDirProcessed);
+            return;
+        }
+
+        // Move first, then build IDs from the moved path
+        Path target = moveToProcessed(pFile, pDirProcessed);
+
+        // Keep the parsed root for the per-item lookups that follow
+        CbnTfDocumentCache.put(target, pRoot);
+
+        JsonNode txnNode = MODULE.getTransaction(pRoot);
+        int size = CbnTfBrowsing.countTransactionItems(txnNode);
+        for (int i = 0; i < size; i++) {
+            pIds.add("FILE|" + target.toString() + "|" + MODULE.getIdPrefix() + "|" + i);
+        }
+    }
+
+    private static Path moveToProcessed(Path pFile, Path pDirProcessed) throws IOException {
+        String ts = LocalDateTime.now().format(TS_FMT);
+        Path target = pDirProcessed.resolve(
+                pFile.getFileName().toString().replace(".json", "") + "-" + ts
+                        + ".json");
+        Files.move(pFile, target, StandardCopyOption.REPLACE_EXISTING);
+        yLogger.log(Level.INFO, "[CbnPdAdapter] FILE: moved {0} -> {1}",
+                new Object[] { pFile, target });
+        return target;
+    }
+
     /**
-     * Reads and normalizes JSON from a file.
+     * Reads and normalizes JSON from a file. Served from the shared parse-once document cache, so
+     * per-item lookups do not re-read the file.
      */
     public static JsonNode readRoot(Path pFile, ObjectMapper pObjMapper) throws IOException {
-        String content = new String(Files.readAllBytes(pFile), StandardCharsets.UTF_8).trim();
-        if (content.isEmpty()) {
-            return null;
-        }
-        return CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(content));
+        return CbnTfDocumentCache.readRoot(pFile, pObjMapper);
     }
 
     /**
@@ -154,8 +199,12 @@ public final class CbnPdAdapter {
         String[] parts = pId.split("\\|", 4);
         if (parts.length != 4 || !MODULE.getIdPrefix().equals(parts[2])) return null;
         try {
+            long offset = CbnTfItemStream.parseOffset(pId);
+            if (offset >= 0) {
+                return new FileItemRef(Paths.get(parts[1]), -1, offset);
+            }
             int idx = Integer.parseInt(parts[3]);
-            return new FileItemRef(Paths.get(parts[1]), idx);
+            return new FileItemRef(Paths.get(parts[1]), idx, -1L);
         } catch (NumberFormatException nfe) {
             return null;
         }
@@ -168,19 +217,27 @@ public final class CbnPdAdapter {
 
         private final Path mFile;
         private final int mIndex;
+        private final long mOffset;
 
-        FileItemRef(Path f, int i) {
+        FileItemRef(Path f, int i, long o) {
             this.mFile = f;
             this.mIndex = i;
+            this.mOffset = o;
         }
 
         public Path file() {
             return mFile;
         }
 
+        /** Item index of an index based ID (watch mode), -1 for an offset based ID */
         public int index() {
             return mIndex;
         }
+
+        /** Byte offset of the item of an offset based ID, -1 for an index based ID */
+        public long offset() {
+            return mOffset;
+        }
     }
 
     // ====================================================================
@@ -196,60 +253,46 @@ public final class CbnPdAdapter {
      * across all module adapters.
      */
     public static List<String> extractIdsFromWmq(ObjectMapper pObjMapper) {
+        if (CbnTfListenerIntake.isListenerMode()) {
+            return drainJournal(pObjMapper);
+        }
         List<String> ids = new ArrayList<>();
 
-        Connection connection = null;
+        Properties props = loadMqProperties();
+        CbnTfConnectionPool pool = CbnTfConnectionPool.forProperties(props);
         try {
-            Properties props = loadMqProperties();
-            MQConnectionFactory factory = createMqFactory(props);
-
-            String user = props.getProperty("tf.wmq.username", "").trim();
-            connection = user.isEmpty() ? factory.createConnection()
-                    : factory.createConnection(user, props.getProperty("tf.wmq.password", ""));
-            connection.start();
+            // Shared long-lived connection, owned by the pool - never closed here
+            Connection connection = pool.getConnection();
 
             String queueName = props.getProperty("tf.wmq.queue");
 
             // Phase 1: Browse to identify PD messages using shared utility
             try {
                 BrowseResult browseResult = CbnTfBrowsing.browseForModule(
-                    connection, queueName, MODULE, pObjMapper);
-                
-                // normal processing...
-                System.out.println("Browsed: total=" + browseResult.getTotalBrowsed() +
-                                   ", matches=" + browseResult.getMatchCount() +
-                                   ", skipped=" + browseResult.getSkippedCount());
-                
+                        connection, queueName, MODULE, pObjMapper);
+
                 yLogger.log(Level.INFO,
-                        "[CbnPdAdapter] WMQ: browse found {0} PD messages out of {1} total",
-                        new Object[] { browseResult.getMatchCount(), browseResult.getTotalBrowsed() });
+                        "[CbnPdAdapter] WMQ: browse found {0} PD messages out of {1} total, {2} skipped",
+                        new Object[] { browseResult.getMatchCount(), browseResult.getTotalBrowsed(),
+                                       browseResult.getSkippedCount() });
 
                 // Phase 2: Selectively consume matching messages
                 if (browseResult.hasMatches()) {
-                    ids = consumeMatchingMessages(connection, props, 
+                    ids = consumeMatchingMessages(connection, props,
                             browseResult.getMatchingMessageIds(), pObjMapper);
                 }
-
-
             } catch (JMSException e) {
-                // Most common case
-                System.err.println("JMS problem while browsing queue " + queueName);
-                e.printStackTrace();                           // ← full stack + cause
-                // or better: use logger
-                // yourLogger.log(Level.SEVERE, "Browse failed for " + MODULE, e);
-
-            } catch (Exception e) {    // catch broader issues (NPE, OOME, etc.)
-                System.err.println("Unexpected error during browseForModule: " + e);
-                e.printStackTrace();
+                yLogger.log(Level.SEVERE, "[CbnPdAdapter] WMQ: Failed to browse queue " + queueName
+                        + " for PD messages", e);
+            } catch (Exception e) {
+                yLogger.log(Level.SEVERE, "[CbnPdAdapter] WMQ: Unexpected error during browseForModule", e);
             }
 
-           
         } catch (JMSException jmse) {
             yLogger.log(Level.SEVERE, "[CbnPdAdapter] WMQ: JMS error during browse/consume", jmse);
+            pool.invalidate();
         } catch (RuntimeException re) {
             yLogger.log(Level.SEVERE, "[CbnPdAdapter] WMQ: Runtime error", re);
-        } finally {
-            CbnTfBrowsing.closeQuietly(connection);
         }
 
         yLogger.log(Level.INFO,
@@ -257,6 +300,47 @@ public final class CbnPdAdapter {
         return ids;
     }
 
+    /**
+     * Listener ingestion (tf.wmq.ingest.mode=listener): makes sure the asynchronous listener is
+     * running and claims the messages it has journalled for this module, instead of browsing the
+     * whole queue.
+     */
+    private static List<String> drainJournal(ObjectMapper pObjMapper) {
+        List<String> ids = new ArrayList<>();
+        Properties props = loadMqProperties();
+        try {
+            CbnTfListenerIntake.forProperties(props, MODULE).ensureRunning();
+        } catch (JMSException jmse) {
+            // Already journalled messages can still be drained
+            yLogger.log(Level.SEVERE, "[CbnPdAdapter] WMQ: unable to start listener", jmse);
+            CbnTfConnectionPool.forProperties(props).invalidate();
+        }
+
+        for (Map.Entry<String, String> entry : CbnTfStagingJournal.drain(MODULE).entrySet()) {
+            addJournalIds(ids, entry.getKey(), entry.getValue(), MODULE, pObjMapper);
+        }
+
+        yLogger.log(Level.INFO,
+                "[CbnPdAdapter] WMQ: drained journal, total IDs generated={0}", ids.size());
+        return ids;
+    }
+
+    private static void addJournalIds(List<String> pIds, String pCacheKey, String pBody,
+            ModuleType pModule, ObjectMapper pObjMapper) {
+        try {
+            JsonNode root = CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(pBody));
+            int size = CbnTfBrowsing.countTransactionItems(pModule.getTransaction(root));
+
+            spool().put(pCacheKey, pBody, root);
+            for (int i = 0; i < size; i++) {
+                pIds.add("WMQ|" + pCacheKey + "|" + pModule.getIdPrefix() + "|" + i);
+            }
+        } catch (IOException ioe) {
+            yLogger.log(Level.SEVERE, "[CbnPdAdapter] WMQ: JSON parse error on journal entry "
+                    + pCacheKey, ioe);
+        }
+    }
+
     /**
      * Consumes messages by their JMSMessageID using selector-based retrieval.
      * Only messages identified during browse phase are consumed.
@@ -267,6 +351,9 @@ public final class CbnPdAdapter {
         
         List<String> ids = new ArrayList<>();
         String ackMode = pProps.getProperty("tf.wmq.ackledge", "auto").trim().toLowerCase();
+        if (CbnTfAckBatch.isBatchMode(ackMode)) {
+            return consumeBatch(pProps, pMatchingIds, pObjMapper);
+        }
         int jmsAck = "auto".equals(ackMode) ? Session.AUTO_ACKNOWLEDGE : Session.CLIENT_ACKNOWLEDGE;
 
         Session consumeSession = null;
@@ -323,10 +410,9 @@ public final class CbnPdAdapter {
 
                     // Normalize cache key using shared utility
                     String cacheKey = CbnTfBrowsing.normalizeCacheKey(msgId);
-                    MQ_MESSAGE_CACHE.put(cacheKey, body);
-
                     try {
                         JsonNode root = CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(body));
+                        spool().put(cacheKey, body, root);
                         JsonNode txnNode = MODULE.getTransaction(root);
                         int size = CbnTfBrowsing.countTransactionItems(txnNode);
 
@@ -357,16 +443,74 @@ public final class CbnPdAdapter {
     }
 
     /**
-     * Reads a cached MQ message body and normalizes it.
+     * Batch acknowledgement (tf.wmq.ackledge=batch). All matching messages are read destructively
+     * in one transacted session and spooled; the transaction is committed by CbnTfAckBatch once
+     * every staged item has settled (see settleMqItem).
+     */
+    private static List<String> consumeBatch(Properties pProps, List<String> pMatchingIds,
+            ObjectMapper pObjMapper) throws JMSException {
+
+        List<String> ids = new ArrayList<>();
+        CbnTfAckBatch batch = CbnTfAckBatch.open(CbnTfConnectionPool.forProperties(pProps), MODULE);
+        boolean staged = false;
+        try {
+            Map<String, String> bodies = batch.receiveAll(pProps.getProperty("tf.wmq.queue"), pMatchingIds);
+
+            for (Map.Entry<String, String> entry : bodies.entrySet()) {
+                String cacheKey = CbnTfBrowsing.normalizeCacheKey(entry.getKey());
+                String body = entry.getValue();
+                try {
+                    JsonNode root = CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(body));
+                    int size = CbnTfBrowsing.countTransactionItems(MODULE.getTransaction(root));
+
+                    spool().put(cacheKey, body, root);
+                    for (int i = 0; i < size; i++) {
+                        ids.add("WMQ|" + cacheKey + "|" + MODULE.getIdPrefix() + "|" + i);
+                    }
+                    batch.expect(cacheKey, size);
+
+                } catch (IOException ioe) {
+                    // Consumed within the batch and will not be redelivered - keep a copy
+                    yLogger.log(Level.SEVERE, "[CbnPdAdapter] WMQ: JSON parse error in batch for "
+                            + entry.getKey(), ioe);
+                    CbnTfBackup.backupMessage(body, MODULE.name(), cacheKey);
+                }
+            }
+            staged = true;
+        } finally {
+            if (staged) {
+                batch.seal();
+            } else {
+                batch.abort();
+            }
+        }
+
+        yLogger.log(Level.INFO, "[CbnPdAdapter] WMQ: staged (ack=batch) {0} {1} item(s)",
+                new Object[] { ids.size(), MODULE.name() });
+        return ids;
+    }
+
+    /**
+     * Reads a spooled MQ message and returns its normalized root.
      */
     public static JsonNode readMqMessage(String pMessageId, ObjectMapper pObjMapper)
             throws IOException {
-        String body = MQ_MESSAGE_CACHE.get(pMessageId);
+        JsonNode root = spool().readRoot(pMessageId, pObjMapper);
+        if (root != null) {
+            return root;
+        }
+        String body = null;
+        if (CbnTfListenerIntake.isListenerMode()) {
+            // Recover from the journal after a restart between getIds and processing
+            body = CbnTfStagingJournal.readClaimed(MODULE, pMessageId);
+        }
         if (body == null) {
             yLogger.log(Level.WARNING, "[CbnPdAdapter] WMQ: body not found for {0}", pMessageId);
             return null;
         }
-        return CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(body));
+        root = CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(body));
+        spool().put(pMessageId, body, root);
+        return root;
     }
 
     /**
@@ -417,24 +561,31 @@ public final class CbnPdAdapter {
             MqItemRef ref = parseMqItemRef(pId);
             if (ref == null) return;
 
-            if ("auto".equals(ackMode)) {
-                // auto-ack already occurred on receive; just clear cache
-                MQ_MESSAGE_CACHE.remove(ref.messageId());
-                MQ_MESSAGE_OBJECTS.remove(ref.messageId());
+            if (CbnTfListenerIntake.isListenerMode()) {
+                // acknowledged to MQ when journalled; just release the spooled body
+                spool().release(ref.messageId());
+                return;
+            }
+
+            if (CbnTfAckBatch.isBatchMode(ackMode)) {
+                // committed together with its batch once all items have settled
+                settleMqItem(pId);
                 return;
             }
 
-            // manual ack via selector
-            MQConnectionFactory factory = createMqFactory(props);
-            String user = props.getProperty("tf.wmq.username", "").trim();
-            Connection connection = user.isEmpty() ? factory.createConnection()
-                    : factory.createConnection(user, props.getProperty("tf.wmq.password", ""));
+            if ("auto".equals(ackMode)) {
+                // auto-ack already occurred on receive; just release the spooled body
+                spool().release(ref.messageId());
+                return;
+            }
 
+            // manual ack via selector, on a pooled session of the shared connection
+            CbnTfConnectionPool pool = CbnTfConnectionPool.forProperties(props);
             Session session = null;
             MessageConsumer consumer = null;
+            boolean healthy = false;
             try {
-                connection.start();
-                session = connection.createSession(false, Session.CLIENT_ACKNOWLEDGE);
+                session = pool.borrowSession(false, Session.CLIENT_ACKNOWLEDGE);
                 javax.jms.Queue queue = session.createQueue(
                         "queue:///" + props.getProperty("tf.wmq.queue"));
                 String selector = CbnTfBrowsing.buildMessageSelector(ref.messageId());
@@ -443,32 +594,55 @@ public final class CbnPdAdapter {
                 Message message = consumer.receive(2000);
                 if (message != null) {
                     message.acknowledge();
-                    MQ_MESSAGE_CACHE.remove(ref.messageId());
-                    MQ_MESSAGE_OBJECTS.remove(ref.messageId());
+                    spool().release(ref.messageId());
                     yLogger.log(Level.INFO, "[CbnPdAdapter] WMQ: acknowledged {0}",
                             ref.messageId());
                 } else {
                     yLogger.log(Level.WARNING, "[CbnPdAdapter] WMQ: nothing to acknowledge for {0}",
                             ref.messageId());
                 }
+                healthy = true;
             } finally {
                 CbnTfBrowsing.closeQuietly(consumer);
-                CbnTfBrowsing.closeQuietly(session);
-                CbnTfBrowsing.closeQuietly(connection);
+                if (healthy) {
+                    pool.releaseSession(session);
+                } else {
+                    pool.discardSession(session);
+                }
             }
         } catch (JMSException e) {
             yLogger.log(Level.SEVERE, "[CbnPdAdapter] WMQ: Error acknowledging message", e);
         }
     }
 
+    /**
+     * Records the final outcome of a WMQ item held by an ack batch (tf.wmq.ackledge=batch). The
+     * spooled body is released once the last item of its message has settled. No-op for items that
+     * are not part of an open batch, so it is safe to call for every mode.
+     */
+    public static void settleMqItem(String pId) {
+        settleBatchItem(parseMqItemRef(pId));
+    }
+
+    private static void settleBatchItem(MqItemRef ref) {
+        if (ref == null || !CbnTfAckBatch.isPending(ref.messageId())) return;
+
+        CbnTfAckBatch.settle(ref.messageId(), ref.index());
+        if (!CbnTfAckBatch.isPending(ref.messageId())) {
+            spool().release(ref.messageId());
+        }
+    }
+
     // ====================================================================
     // FAILURE PERSISTENCE (EXCEPTS)
     // ====================================================================
 
     /**
-     * Persist a failed FILE-mode item to EXCEPTS directory.
+     * Persist a failed FILE-mode item to EXCEPTS directory. For an offset based ID only the item
+     * is written, read back from its offset; for an index based ID the processed file is copied.
      */
-    public static void persistFailedFileItem(FileItemRef ref, Path exceptsDir, String reason) {
+    public static void persistFailedFileItem(FileItemRef ref, Path exceptsDir, String reason,
+            ObjectMapper objMapper) {
         if (ref == null || ref.file() == null) {
             yLogger.log(Level.WARNING, "[CbnPdAdapter] persistFailedFileItem: null ref/file");
             return;
@@ -477,10 +651,18 @@ public final class CbnPdAdapter {
             ensureDir(exceptsDir);
             String baseName = ref.file().getFileName().toString().replace(".json", "");
             String ts = LocalDateTime.now().format(TS_FMT);
-            String outName = String.format("%s_%s%d_%s.json", baseName, MODULE.getIdPrefix(), 
-                    ref.index(), ts);
-            Path outFile = exceptsDir.resolve(outName);
-            Files.copy(ref.file(), outFile, StandardCopyOption.REPLACE_EXISTING);
+            Path outFile;
+            if (ref.offset() >= 0) {
+                // Only the failed item, read back from its offset
+                outFile = exceptsDir.resolve(String.format("%s_%s@%d_%s.json", baseName,
+                        MODULE.getIdPrefix(), ref.offset(), ts));
+                JsonNode item = CbnPdDserializer.readItemAt(ref.file(), ref.offset(), objMapper);
+                Files.write(outFile, item.toString().getBytes(StandardCharsets.UTF_8));
+            } else {
+                outFile = exceptsDir.resolve(String.format("%s_%s%d_%s.json", baseName,
+                        MODULE.getIdPrefix(), ref.index(), ts));
+                Files.copy(ref.file(), outFile, StandardCopyOption.REPLACE_EXISTING);
+            }
             writeReasonSidecar(outFile, reason);
             yLogger.log(Level.INFO, "[CbnPdAdapter] FILE EXCEPTS: copied {0} -> {1}",
                     new Object[] { ref.file(), outFile });
@@ -500,9 +682,9 @@ public final class CbnPdAdapter {
         }
         try {
             ensureDir(exceptsDir);
-            String body = MQ_MESSAGE_CACHE.get(ref.messageId());
+            String body = spool().getBody(ref.messageId());
             if (body == null || body.trim().isEmpty()) {
-                yLogger.log(Level.WARNING, "[CbnPdAdapter] WMQ EXCEPTS: no body in cache for {0}",
+                yLogger.log(Level.WARNING, "[CbnPdAdapter] WMQ EXCEPTS: no spooled body for {0}",
                         ref.messageId());
                 return;
             }
@@ -514,6 +696,7 @@ public final class CbnPdAdapter {
             Files.write(outFile, body.getBytes(StandardCharsets.UTF_8));
             writeReasonSidecar(outFile, reason);
             yLogger.log(Level.INFO, "[CbnPdAdapter] WMQ EXCEPTS: wrote {0}", outFile);
+            settleBatchItem(ref);
         } catch (Exception ex) {
             yLogger.log(Level.SEVERE, "[CbnPdAdapter] WMQ EXCEPTS: failed to persist failed item",
                     ex);
@@ -558,15 +741,4 @@ public final class CbnPdAdapter {
         mqProps.setProperty("tf.wmq.ackledge", props.getProperty("tf.wmq.ackledge", "auto"));
         return mqProps;
     }
-
-    private static MQConnectionFactory createMqFactory(Properties pProps) throws JMSException {
-        MQConnectionFactory factory = new MQConnectionFactory();
-
-        factory.setHostName(pProps.getProperty("tf.wmq.host"));
-        factory.setPort(Integer.parseInt(pProps.getProperty("tf.wmq.port")));
-        factory.setChannel(pProps.getProperty("tf.wmq.channel"));
-        factory.setQueueManager(pProps.getProperty("tf.wmq.manager"));
-        factory.setTransportType(CommonConstants.WMQ_CM_CLIENT);
-        return factory;
-    }
 }
\ No newline at end of file
@@ -15,6 +15,8 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import com.cbn.bloomberg.util.CbnTfItemStream;
+
 
 /**
  * Title: CbnPdDserializer.java Author: CSD Development Team Date Created: 2025-10-11
@@ -28,7 +30,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  *
  * Modification Details: ---- 11/10/25 - Initial version Bloomberg PD deserialization with POJO
  * support ---- 09/11/25 - Updated to handle single PLACEMENTS object (not array) Compliant with CSD
- * Java Programming Standards r2022
+ * Java Programming Standards r2022 ---- 14/02/26 - Added streaming item reader
+ * (streamItems/readItemAt) with byte-offset item IDs for large refresh files ---- 27/02/26 -
+ * FILE scan enumerates item offsets (scanItemOffsets); readItemAt returns the item node
  */
 public final class CbnPdDserializer {
 
@@ -180,6 +184,55 @@ public final class CbnPdDserializer {
 
         return ids;
     }
+
+    /**
+     * Opens a streaming reader over the PLACEMENTS items of a file. Items are bound one at a
+     * time from a JsonParser over the file channel, so large refresh files are never loaded into
+     * memory as a whole. Accepts a single object or an array.
+     *
+     * @param pFile Path to the JSON file
+     * @param pObjMap ObjectMapper for deserialization
+     * @return Item stream; the caller must close it
+     * @throws IOException if the file cannot be opened or read
+     */
+    public static CbnTfItemStream<Placements> streamItems(Path pFile, ObjectMapper pObjMap)
+            throws IOException {
+        return CbnTfItemStream.open(pFile, "PLACEMENTS", Placements.class, pObjMap);
+    }
+
+    /**
+     * Reads the PLACEMENTS item object at a byte offset reported by {@link #scanItemOffsets},
+     * without parsing the rest of the file.
+     *
+     * @param pFile Path to the JSON file
+     * @param pOffset Byte offset of the item object
+     * @param pObjMap ObjectMapper for deserialization
+     * @return The item node
+     * @throws IOException if no item object starts at the offset
+     */
+    public static JsonNode readItemAt(Path pFile, long pOffset, ObjectMapper pObjMap)
+            throws IOException {
+        return CbnTfItemStream.readAt(pFile, pOffset, JsonNode.class, pObjMap);
+    }
+
+    /**
+     * Enumerates the byte offsets of the PLACEMENTS items of a file by skipping them on
+     * {@link #streamItems}, without binding or buffering the items.
+     *
+     * @param pFile Path to the JSON file
+     * @param pObjMap ObjectMapper for deserialization
+     * @return Item offsets in file order; empty if there is no PLACEMENTS
+     * @throws IOException if the file cannot be read or is not valid JSON
+     */
+    public static List<Long> scanItemOffsets(Path pFile, ObjectMapper pObjMap) throws IOException {
+        List<Long> offsets = new ArrayList<>();
+        try (CbnTfItemStream<Placements> items = streamItems(pFile, pObjMap)) {
+            for (long offset = items.skip(); offset >= 0; offset = items.skip()) {
+                offsets.add(offset);
+            }
+        }
+        return offsets;
+    }
 }
 
 // ==== TOP-LEVEL POJO CLASSES ====
@@ -7,6 +7,7 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.cbn.bloomberg.util.CbnTfFieldMapping;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -115,6 +116,12 @@ public final class CbnPdMapper {
     public static Map<String, String> mapPlacementsToPd(JsonNode pFm) {
         LOGGER.log(Level.INFO, "[CbnPdMapper] Starting mapping of JSON message");
 
+        // Compiled mapping spec (CbnTfMapping_PD.json) when available
+        CbnTfFieldMapping fieldMapping = CbnTfFieldMapping.forModule("PD");
+        if (fieldMapping != null) {
+            return fieldMapping.map(pFm);
+        }
+
         // Mapping incoming bloomberg json feed to Depo Placement Module
         Map<String, String> map = new HashMap<>();
         String cNum = asText(pFm, "CUSTOMER_NO");
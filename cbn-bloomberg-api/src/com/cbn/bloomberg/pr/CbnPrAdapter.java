@@ -11,8 +11,8 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -23,14 +23,20 @@ import javax.jms.MessageConsumer;
 import javax.jms.Session;
 import javax.jms.TextMessage; 
 
+import com.cbn.bloomberg.util.CbnTfAckBatch;
+import com.cbn.bloomberg.util.CbnTfBackup;
 import com.cbn.bloomberg.util.CbnTfBrowsing;
 import com.cbn.bloomberg.util.CbnTfBrowsing.BrowseResult;
 import com.cbn.bloomberg.util.CbnTfBrowsing.ModuleType;
+import com.cbn.bloomberg.util.CbnTfConnectionPool;
+import com.cbn.bloomberg.util.CbnTfDocumentCache;
+import com.cbn.bloomberg.util.CbnTfFileIntake;
+import com.cbn.bloomberg.util.CbnTfListenerIntake;
+import com.cbn.bloomberg.util.CbnTfMessageSpool;
 import com.cbn.bloomberg.util.CbnTfProperties;
+import com.cbn.bloomberg.util.CbnTfStagingJournal;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.ibm.mq.jms.MQConnectionFactory;
-import com.ibm.msg.client.wmq.common.CommonConstants;
 
 
 /**
@@ -48,18 +54,17 @@ public final class CbnPrAdapter {
     /** The module type this adapter handles */
     private static final ModuleType MODULE = ModuleType.PR;
 
-    // Cache: JMSMessageID -> message body
-    private static final ConcurrentHashMap<String, String> MQ_MESSAGE_CACHE = new ConcurrentHashMap<>();
-
-    // Legacy placeholder to maintain compatibility if referenced elsewhere
-    private static final ConcurrentHashMap<String, Message> MQ_MESSAGE_OBJECTS = new ConcurrentHashMap<>();
-
     // Timestamp format for filenames
     private static final DateTimeFormatter TS_FMT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
 
     private CbnPrAdapter() {
     }
 
+    // Consumed message bodies, shared with the other agents of this host
+    private static CbnTfMessageSpool spool() {
+        return CbnTfMessageSpool.forModule(MODULE.name());
+    }
+
     // ====================================================================
     // FILE ADAPTER
     // ====================================================================
@@ -67,6 +72,8 @@ public final class CbnPrAdapter {
     /**
      * Scans directory for JSON files, reads content, counts REPO, moves files to
      * PROCESSED, then builds IDs using the moved path.
+     * With tf.nfs.intake.mode=watch the files come parsed from CbnTfFileIntake instead of a
+     * directory listing.
      */
     public static List<String> scanDirectoryIds(Path pDirectory, String pDirGlob,
             Path pDirProcessed, ObjectMapper pObjMapper) {
@@ -84,6 +91,20 @@ public final class CbnPrAdapter {
             return ids;
         }
 
+        if (CbnTfFileIntake.isWatchMode()) {
+            // Files found and parsed ahead of time by the directory watcher
+            for (CbnTfFileIntake.ReadyFile ready : CbnTfFileIntake
+                    .forDirectory(pDirectory, pDirGlob, pObjMapper).drain(MODULE)) {
+                try {
+                    addFileIds(ready.getFile(), ready.getRoot(), pDirProcessed, ids);
+                } catch (Exception ex) {
+                    yLogger.log(Level.SEVERE,
+                            String.format("[CbnPrAdapter] FILE: error moving %s", ready.getFile()), ex);
+                }
+            }
+            return ids;
+        }
+
         try (DirectoryStream<Path> stream = Files.newDirectoryStream(pDirectory, pDirGlob)) {
             for (Path file : stream) {
                 try {
@@ -93,35 +114,7 @@ public final class CbnPrAdapter {
                         continue;
                     }
                     JsonNode root = CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(content));
-                    if (!MODULE.hasTransaction(root)) {
-                        yLogger.log(Level.WARNING,
-                                "[CbnPrAdapter] FILE: no {0} in {1}", 
-                                new Object[] { MODULE.getJsonRootNode(), file });
-                        // Move empty/invalid files as well to avoid re-scans
-                        String ts = LocalDateTime.now().format(TS_FMT);
-                        Path target = pDirProcessed.resolve(
-                                file.getFileName().toString().replace(".json", "") + "-" + ts
-                                        + ".json");
-                        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
-                        yLogger.log(Level.INFO, "[CbnPrAdapter] FILE: moved {0} -> {1}",
-                                new Object[] { file, target });
-                        continue;
-                    }
-
-                    // Move first, then build IDs from the moved path
-                    String ts = LocalDateTime.now().format(TS_FMT);
-                    Path target = pDirProcessed.resolve(
-                            file.getFileName().toString().replace(".json", "") + "-" + ts
-                                    + ".json");
-                    Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
-                    yLogger.log(Level.INFO, "[CbnPrAdapter] FILE: moved {0} -> {1}",
-                            new Object[] { file, target });
-
-                    JsonNode txnNode = MODULE.getTransaction(root);
-                    int size = CbnTfBrowsing.countTransactionItems(txnNode);
-                    for (int i = 0; i < size; i++) {
-                        ids.add("FILE|" + target.toString() + "|" + MODULE.getIdPrefix() + "|" + i);
-                    }
+                    addFileIds(file, root, pDirProcessed, ids);
                 } catch (Exception ex) {
                     yLogger.log(Level.SEVERE,
                             String.format("[CbnPrAdapter] FILE: error reading/moving %s", file),
@@ -135,15 +128,49 @@ public final class CbnPrAdapter {
         return ids;
     }
 
+    // Moves one parsed inbound file to PROCESSED and adds the IDs of its items
+    private static void addFileIds(Path pFile, JsonNode pRoot, Path pDirProcessed,
+            List<String> pIds) throws IOException {
+        if (!MODULE.hasTransaction(pRoot)) {
+            yLogger.log(Level.WARNING,
+                    "[CbnPrAdapter] FILE: no {0} in {1}", 
+                    new Object[] { MODULE.getJsonRootNode(), pFile });
+            // Move empty/invalid files as well to avoid re-scans
+            String ts = LocalDateTime.now().format(TS_FMT);
+            Path target = pDirProcessed.resolve(
+                    pFile.getFileName().toString().replace(".json", "") + "-" + ts
+                            + ".json");
+            Files.move(pFile, target, StandardCopyOption.REPLACE_EXISTING);
+            yLogger.log(Level.INFO, "[CbnPrAdapter] FILE: moved {0} -> {1}",
+                    new Object[] { pFile, target });
+            return;
+        }
+
+        // Move first, then build IDs from the moved path
+        String ts = LocalDateTime.now().format(TS_FMT);
+        Path target = pDirProcessed.resolve(
+                pFile.getFileName().toString().replace(".json", "") + "-" + ts
+                        + ".json");
+        Files.move(pFile, target, StandardCopyOption.REPLACE_EXISTING);
+        yLogger.log(Level.INFO, "[CbnPrAdapter] FILE: moved {0} -> {1}",
+                new Object[] { pFile, target });
+
+        // Keep the parsed root for the per-item lookups that follow
+        CbnTfDocumentCache.put(target, pRoot);
+
+        JsonNode txnNode = MODULE.getTransaction(pRoot);
+        int size = CbnTfBrowsing.countTransactionItems(txnNode);
+        for (int i = 0; i < size; i++) {
+            pIds.add("FILE|" + target.toString() + "|" + MODULE.getIdPrefix() + "|" + i);
+        }
+    }
+
     /**
-     * Reads and normalizes JSON from a file.
+     * Reads and normalizes JSON from a file. Served from the shared parse-once document cache, so
+     * per-item lookups do not re-read the file.
      */
     public static JsonNode readRoot(Path pFile, ObjectMapper pObjMapper) throws IOException {
-        String content = new String(Files.readAllBytes(pFile), StandardCharsets.UTF_8).trim();
-        if (content.isEmpty()) {
-            return null;
-        }
-        return CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(content));
+        return CbnTfDocumentCache.readRoot(pFile, pObjMapper);
     }
 
     /**
@@ -196,71 +223,46 @@ public final class CbnPrAdapter {
      * across all module adapters.
      */
     public static List<String> extractIdsFromWmq(ObjectMapper pObjMapper) {
+        if (CbnTfListenerIntake.isListenerMode()) {
+            return drainJournal(pObjMapper);
+        }
         List<String> ids = new ArrayList<>();
 
-        Connection connection = null;
+        Properties props = loadMqProperties();
+        CbnTfConnectionPool pool = CbnTfConnectionPool.forProperties(props);
         try {
-            Properties props = loadMqProperties();
-            MQConnectionFactory factory = createMqFactory(props);
-
-            String user = props.getProperty("tf.wmq.username", "").trim();
-            connection = user.isEmpty() ? factory.createConnection()
-                    : factory.createConnection(user, props.getProperty("tf.wmq.password", ""));
-            connection.start();
+            // Shared long-lived connection, owned by the pool - never closed here
+            Connection connection = pool.getConnection();
 
             String queueName = props.getProperty("tf.wmq.queue");
+
+            // Phase 1: Browse to identify PR messages using shared utility
             try {
                 BrowseResult browseResult = CbnTfBrowsing.browseForModule(
-                    connection, queueName, MODULE, pObjMapper);
-                
-                // normal processing...
-                System.out.println("Browsed: total=" + browseResult.getTotalBrowsed() +
-                                   ", matches=" + browseResult.getMatchCount() +
-                                   ", skipped=" + browseResult.getSkippedCount());
-                
+                        connection, queueName, MODULE, pObjMapper);
+
                 yLogger.log(Level.INFO,
-                        "[CbnPdAdapter] WMQ: browse found {0} PR messages out of {1} total",
-                        new Object[] { browseResult.getMatchCount(), browseResult.getTotalBrowsed() });
+                        "[CbnPrAdapter] WMQ: browse found {0} PR messages out of {1} total, {2} skipped",
+                        new Object[] { browseResult.getMatchCount(), browseResult.getTotalBrowsed(),
+                                       browseResult.getSkippedCount() });
 
                 // Phase 2: Selectively consume matching messages
                 if (browseResult.hasMatches()) {
-                    ids = consumeMatchingMessages(connection, props, 
+                    ids = consumeMatchingMessages(connection, props,
                             browseResult.getMatchingMessageIds(), pObjMapper);
                 }
-
-
             } catch (JMSException e) {
-                // Most common case
-                System.err.println("JMS problem while browsing queue " + queueName);
-                e.printStackTrace();                           // ← full stack + cause
-                // or better: use logger
-                // yourLogger.log(Level.SEVERE, "Browse failed for " + MODULE, e);
-
-            } catch (Exception e) {    // catch broader issues (NPE, OOME, etc.)
-                System.err.println("Unexpected error during browseForModule: " + e);
-                e.printStackTrace();
+                yLogger.log(Level.SEVERE, "[CbnPrAdapter] WMQ: Failed to browse queue " + queueName
+                        + " for PR messages", e);
+            } catch (Exception e) {
+                yLogger.log(Level.SEVERE, "[CbnPrAdapter] WMQ: Unexpected error during browseForModule", e);
             }
 
-//            // Phase 1: Browse to identify PR messages using shared utility
-//            BrowseResult browseResult = CbnTfBrowsing.browseForModule(
-//                    connection, queueName, MODULE, pObjMapper);
-//
-//            yLogger.log(Level.INFO,
-//                    "[CbnPrAdapter] WMQ: browse found {0} PR messages out of {1} total",
-//                    new Object[] { browseResult.getMatchCount(), browseResult.getTotalBrowsed() });
-//
-//            // Phase 2: Selectively consume matching messages
-//            if (browseResult.hasMatches()) {
-//                ids = consumeMatchingMessages(connection, props, 
-//                        browseResult.getMatchingMessageIds(), pObjMapper);
-//            }
-
         } catch (JMSException jmse) {
             yLogger.log(Level.SEVERE, "[CbnPrAdapter] WMQ: JMS error during browse/consume", jmse);
+            pool.invalidate();
         } catch (RuntimeException re) {
             yLogger.log(Level.SEVERE, "[CbnPrAdapter] WMQ: Runtime error", re);
-        } finally {
-            CbnTfBrowsing.closeQuietly(connection);
         }
 
         yLogger.log(Level.INFO,
@@ -268,6 +270,47 @@ public final class CbnPrAdapter {
         return ids;
     }
 
+    /**
+     * Listener ingestion (tf.wmq.ingest.mode=listener): makes sure the asynchronous listener is
+     * running and claims the messages it has journalled for this module, instead of browsing the
+     * whole queue.
+     */
+    private static List<String> drainJournal(ObjectMapper pObjMapper) {
+        List<String> ids = new ArrayList<>();
+        Properties props = loadMqProperties();
+        try {
+            CbnTfListenerIntake.forProperties(props, MODULE).ensureRunning();
+        } catch (JMSException jmse) {
+            // Already journalled messages can still be drained
+            yLogger.log(Level.SEVERE, "[CbnPrAdapter] WMQ: unable to start listener", jmse);
+            CbnTfConnectionPool.forProperties(props).invalidate();
+        }
+
+        for (Map.Entry<String, String> entry : CbnTfStagingJournal.drain(MODULE).entrySet()) {
+            addJournalIds(ids, entry.getKey(), entry.getValue(), MODULE, pObjMapper);
+        }
+
+        yLogger.log(Level.INFO,
+                "[CbnPrAdapter] WMQ: drained journal, total IDs generated={0}", ids.size());
+        return ids;
+    }
+
+    private static void addJournalIds(List<String> pIds, String pCacheKey, String pBody,
+            ModuleType pModule, ObjectMapper pObjMapper) {
+        try {
+            JsonNode root = CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(pBody));
+            int size = CbnTfBrowsing.countTransactionItems(pModule.getTransaction(root));
+
+            spool().put(pCacheKey, pBody, root);
+            for (int i = 0; i < size; i++) {
+                pIds.add("WMQ|" + pCacheKey + "|" + pModule.getIdPrefix() + "|" + i);
+            }
+        } catch (IOException ioe) {
+            yLogger.log(Level.SEVERE, "[CbnPrAdapter] WMQ: JSON parse error on journal entry "
+                    + pCacheKey, ioe);
+        }
+    }
+
     /**
      * Consumes messages by their JMSMessageID using selector-based retrieval.
      * Only messages identified during browse phase are consumed.
@@ -278,6 +321,9 @@ public final class CbnPrAdapter {
         
         List<String> ids = new ArrayList<>();
         String ackMode = pProps.getProperty("tf.wmq.ackledge", "auto").trim().toLowerCase();
+        if (CbnTfAckBatch.isBatchMode(ackMode)) {
+            return consumeBatch(pProps, pMatchingIds, pObjMapper);
+        }
         int jmsAck = "auto".equals(ackMode) ? Session.AUTO_ACKNOWLEDGE : Session.CLIENT_ACKNOWLEDGE;
 
         Session consumeSession = null;
@@ -334,10 +380,9 @@ public final class CbnPrAdapter {
 
                     // Normalize cache key using shared utility
                     String cacheKey = CbnTfBrowsing.normalizeCacheKey(msgId);
-                    MQ_MESSAGE_CACHE.put(cacheKey, body);
-
                     try {
                         JsonNode root = CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(body));
+                        spool().put(cacheKey, body, root);
                         JsonNode txnNode = MODULE.getTransaction(root);
                         int size = CbnTfBrowsing.countTransactionItems(txnNode);
 
@@ -368,16 +413,74 @@ public final class CbnPrAdapter {
     }
 
     /**
-     * Reads a cached MQ message body and normalizes it.
+     * Batch acknowledgement (tf.wmq.ackledge=batch). All matching messages are read destructively
+     * in one transacted session and spooled; the transaction is committed by CbnTfAckBatch once
+     * every staged item has settled (see settleMqItem).
+     */
+    private static List<String> consumeBatch(Properties pProps, List<String> pMatchingIds,
+            ObjectMapper pObjMapper) throws JMSException {
+
+        List<String> ids = new ArrayList<>();
+        CbnTfAckBatch batch = CbnTfAckBatch.open(CbnTfConnectionPool.forProperties(pProps), MODULE);
+        boolean staged = false;
+        try {
+            Map<String, String> bodies = batch.receiveAll(pProps.getProperty("tf.wmq.queue"), pMatchingIds);
+
+            for (Map.Entry<String, String> entry : bodies.entrySet()) {
+                String cacheKey = CbnTfBrowsing.normalizeCacheKey(entry.getKey());
+                String body = entry.getValue();
+                try {
+                    JsonNode root = CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(body));
+                    int size = CbnTfBrowsing.countTransactionItems(MODULE.getTransaction(root));
+
+                    spool().put(cacheKey, body, root);
+                    for (int i = 0; i < size; i++) {
+                        ids.add("WMQ|" + cacheKey + "|" + MODULE.getIdPrefix() + "|" + i);
+                    }
+                    batch.expect(cacheKey, size);
+
+                } catch (IOException ioe) {
+                    // Consumed within the batch and will not be redelivered - keep a copy
+                    yLogger.log(Level.SEVERE, "[CbnPrAdapter] WMQ: JSON parse error in batch for "
+                            + entry.getKey(), ioe);
+                    CbnTfBackup.backupMessage(body, MODULE.name(), cacheKey);
+                }
+            }
+            staged = true;
+        } finally {
+            if (staged) {
+                batch.seal();
+            } else {
+                batch.abort();
+            }
+        }
+
+        yLogger.log(Level.INFO, "[CbnPrAdapter] WMQ: staged (ack=batch) {0} {1} item(s)",
+                new Object[] { ids.size(), MODULE.name() });
+        return ids;
+    }
+
+    /**
+     * Reads a spooled MQ message and returns its normalized root.
      */
     public static JsonNode readMqMessage(String pMessageId, ObjectMapper pObjMapper)
             throws IOException {
-        String body = MQ_MESSAGE_CACHE.get(pMessageId);
+        JsonNode root = spool().readRoot(pMessageId, pObjMapper);
+        if (root != null) {
+            return root;
+        }
+        String body = null;
+        if (CbnTfListenerIntake.isListenerMode()) {
+            // Recover from the journal after a restart between getIds and processing
+            body = CbnTfStagingJournal.readClaimed(MODULE, pMessageId);
+        }
         if (body == null) {
             yLogger.log(Level.WARNING, "[CbnPrAdapter] WMQ: body not found for {0}", pMessageId);
             return null;
         }
-        return CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(body));
+        root = CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(body));
+        spool().put(pMessageId, body, root);
+        return root;
     }
 
     /**
@@ -428,24 +531,31 @@ public final class CbnPrAdapter {
             MqItemRef ref = parseMqItemRef(pId);
             if (ref == null) return;
 
-            if ("auto".equals(ackMode)) {
-                // auto-ack already occurred on receive; just clear cache
-                MQ_MESSAGE_CACHE.remove(ref.messageId());
-                MQ_MESSAGE_OBJECTS.remove(ref.messageId());
+            if (CbnTfListenerIntake.isListenerMode()) {
+                // acknowledged to MQ when journalled; just release the spooled body
+                spool().release(ref.messageId());
                 return;
             }
 
-            // manual ack via selector
-            MQConnectionFactory factory = createMqFactory(props);
-            String user = props.getProperty("tf.wmq.username", "").trim();
-            Connection connection = user.isEmpty() ? factory.createConnection()
-                    : factory.createConnection(user, props.getProperty("tf.wmq.password", ""));
+            if (CbnTfAckBatch.isBatchMode(ackMode)) {
+                // committed together with its batch once all items have settled
+                settleMqItem(pId);
+                return;
+            }
+
+            if ("auto".equals(ackMode)) {
+                // auto-ack already occurred on receive; just release the spooled body
+                spool().release(ref.messageId());
+                return;
+            }
 
+            // manual ack via selector, on a pooled session of the shared connection
+            CbnTfConnectionPool pool = CbnTfConnectionPool.forProperties(props);
             Session session = null;
             MessageConsumer consumer = null;
+            boolean healthy = false;
             try {
-                connection.start();
-                session = connection.createSession(false, Session.CLIENT_ACKNOWLEDGE);
+                session = pool.borrowSession(false, Session.CLIENT_ACKNOWLEDGE);
                 javax.jms.Queue queue = session.createQueue(
                         "queue:///" + props.getProperty("tf.wmq.queue"));
                 String selector = CbnTfBrowsing.buildMessageSelector(ref.messageId());
@@ -454,24 +564,45 @@ public final class CbnPrAdapter {
                 Message message = consumer.receive(2000);
                 if (message != null) {
                     message.acknowledge();
-                    MQ_MESSAGE_CACHE.remove(ref.messageId());
-                    MQ_MESSAGE_OBJECTS.remove(ref.messageId());
+                    spool().release(ref.messageId());
                     yLogger.log(Level.INFO, "[CbnPrAdapter] WMQ: acknowledged {0}",
                             ref.messageId());
                 } else {
                     yLogger.log(Level.WARNING, "[CbnPrAdapter] WMQ: nothing to acknowledge for {0}",
                             ref.messageId());
                 }
+                healthy = true;
             } finally {
                 CbnTfBrowsing.closeQuietly(consumer);
-                CbnTfBrowsing.closeQuietly(session);
-                CbnTfBrowsing.closeQuietly(connection);
+                if (healthy) {
+                    pool.releaseSession(session);
+                } else {
+                    pool.discardSession(session);
+                }
             }
         } catch (JMSException e) {
             yLogger.log(Level.SEVERE, "[CbnPrAdapter] WMQ: Error acknowledging message", e);
         }
     }
 
+    /**
+     * Records the final outcome of a WMQ item held by an ack batch (tf.wmq.ackledge=batch). The
+     * spooled body is released once the last item of its message has settled. No-op for items that
+     * are not part of an open batch, so it is safe to call for every mode.
+     */
+    public static void settleMqItem(String pId) {
+        settleBatchItem(parseMqItemRef(pId));
+    }
+
+    private static void settleBatchItem(MqItemRef ref) {
+        if (ref == null || !CbnTfAckBatch.isPending(ref.messageId())) return;
+
+        CbnTfAckBatch.settle(ref.messageId(), ref.index());
+        if (!CbnTfAckBatch.isPending(ref.messageId())) {
+            spool().release(ref.messageId());
+        }
+    }
+
     // ====================================================================
     // FAILURE PERSISTENCE (EXCEPTS)
     // ====================================================================
@@ -511,9 +642,9 @@ public final class CbnPrAdapter {
         }
         try {
             ensureDir(exceptsDir);
-            String body = MQ_MESSAGE_CACHE.get(ref.messageId());
+            String body = spool().getBody(ref.messageId());
             if (body == null || body.trim().isEmpty()) {
-                yLogger.log(Level.WARNING, "[CbnPrAdapter] WMQ EXCEPTS: no body in cache for {0}",
+                yLogger.log(Level.WARNING, "[CbnPrAdapter] WMQ EXCEPTS: no spooled body for {0}",
                         ref.messageId());
                 return;
             }
@@ -525,6 +656,7 @@ public final class CbnPrAdapter {
             Files.write(outFile, body.getBytes(StandardCharsets.UTF_8));
             writeReasonSidecar(outFile, reason);
             yLogger.log(Level.INFO, "[CbnPrAdapter] WMQ EXCEPTS: wrote {0}", outFile);
+            settleBatchItem(ref);
         } catch (Exception ex) {
             yLogger.log(Level.SEVERE, "[CbnPrAdapter] WMQ EXCEPTS: failed to persist failed item",
                     ex);
@@ -569,15 +701,4 @@ public final class CbnPrAdapter {
         mqProps.setProperty("tf.wmq.ackledge", props.getProperty("tf.wmq.ackledge", "auto"));
         return mqProps;
     }
-
-    private static MQConnectionFactory createMqFactory(Properties pProps) throws JMSException {
-        MQConnectionFactory factory = new MQConnectionFactory();
-
-        factory.setHostName(pProps.getProperty("tf.wmq.host"));
-        factory.setPort(Integer.parseInt(pProps.getProperty("tf.wmq.port")));
-        factory.setChannel(pProps.getProperty("tf.wmq.channel"));
-        factory.setQueueManager(pProps.getProperty("tf.wmq.manager"));
-        factory.setTransportType(CommonConstants.WMQ_CM_CLIENT);
-        return factory;
-    }
 }
\ No newline at end of file
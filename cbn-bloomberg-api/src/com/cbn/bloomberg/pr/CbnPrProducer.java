@@ -15,6 +15,7 @@ import javax.jms.MessageProducer;
 import javax.jms.Session;
 import javax.jms.TextMessage;
 
+import com.cbn.bloomberg.util.CbnTfBatchPublisher;
 import com.cbn.bloomberg.util.CbnTfProperties;
 import com.ibm.mq.jms.MQConnectionFactory;
 import com.ibm.msg.client.wmq.common.CommonConstants;
@@ -45,11 +46,26 @@ public class CbnPrProducer {
      * @param transactionId Transaction ID for logging/tracking
      */
     public void publishResponse(String jsonResponse, String adapterMode, String transactionId) {
+        publishResponse(jsonResponse, adapterMode, transactionId, null);
+    }
+
+    /**
+     * Publishes a response message and runs onPublished once it is out: after the file is
+     * written, after the send, or in batch publish mode after the batch holding it commits.
+     * onPublished is not run if the response could not be published.
+     *
+     * @param jsonResponse JSON response payload
+     * @param adapterMode Adapter mode ("FILE" or "WMQ")
+     * @param transactionId Transaction ID for logging/tracking
+     * @param onPublished Acknowledgement of the inbound item; may be null
+     */
+    public void publishResponse(String jsonResponse, String adapterMode, String transactionId,
+            Runnable onPublished) {
         try {
             if ("FILE".equalsIgnoreCase(adapterMode)) {
-                publishToFile(jsonResponse, transactionId);
+                publishToFile(jsonResponse, transactionId, onPublished);
             } else if ("WMQ".equalsIgnoreCase(adapterMode)) {
-                publishToMq(jsonResponse, transactionId);
+                publishToMq(jsonResponse, transactionId, onPublished);
             } else {
                 yLogger.log(Level.WARNING, "[CbnPrProducer] Unknown adapter mode: {0}",
                         adapterMode);
@@ -65,7 +81,8 @@ public class CbnPrProducer {
     /**
      * Publishes response to FILE system (outbound directory).
      */
-    private void publishToFile(String jsonResponse, String transactionId) {
+    private void publishToFile(String jsonResponse, String transactionId,
+            Runnable onPublished) {
         try {
             CbnTfProperties props = CbnTfProperties.getInstance();
             String outboundDir = props.getProperty("tf.nfs.outbound.dir",
@@ -84,6 +101,9 @@ public class CbnPrProducer {
             Files.write(outFile, jsonResponse.getBytes(StandardCharsets.UTF_8));
             yLogger.log(Level.INFO, "[CbnPrProducer] FILE: Published response to {0}",
                     outFile);
+            if (onPublished != null) {
+                onPublished.run();
+            }
 
         } catch (Exception e) {
             yLogger.log(Level.SEVERE, "[CbnPrProducer] FILE: Error writing response", e);
@@ -91,9 +111,16 @@ public class CbnPrProducer {
     }
 
     /**
-     * Publishes response to IBM MQ (outbound queue).
+     * Publishes response to IBM MQ (outbound queue). In batch publish mode the response is handed
+     * to the module's CbnTfBatchPublisher and committed together with other responses. A response
+     * that cannot be sent is parked in the error directory.
      */
-    private void publishToMq(String jsonResponse, String transactionId) {
+    private void publishToMq(String jsonResponse, String transactionId, Runnable onPublished) {
+        if (CbnTfBatchPublisher.isBatchMode()) {
+            CbnTfBatchPublisher.forModule("PR").publish(jsonResponse, transactionId, onPublished);
+            return;
+        }
+
         Connection connection = null;
         Session session = null;
         MessageProducer producer = null;
@@ -118,9 +145,13 @@ public class CbnPrProducer {
 
             yLogger.log(Level.INFO, "[CbnPrProducer] WMQ: Published response to queue {0}",
                     outboundQueue);
+            if (onPublished != null) {
+                onPublished.run();
+            }
 
         } catch (JMSException e) {
             yLogger.log(Level.SEVERE, "[CbnPrProducer] WMQ: Error publishing response", e);
+            CbnTfBatchPublisher.park("PR", jsonResponse, transactionId, "send failed: " + e);
         } finally {
             closeQuietly(producer);
             closeQuietly(session);
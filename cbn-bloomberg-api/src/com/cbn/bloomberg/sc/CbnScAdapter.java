@@ -11,8 +11,8 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -23,14 +23,21 @@ import javax.jms.MessageConsumer;
 import javax.jms.Session;
 import javax.jms.TextMessage;
 
+import com.cbn.bloomberg.util.CbnTfAckBatch;
+import com.cbn.bloomberg.util.CbnTfBackup;
 import com.cbn.bloomberg.util.CbnTfBrowsing;
 import com.cbn.bloomberg.util.CbnTfBrowsing.BrowseResult;
 import com.cbn.bloomberg.util.CbnTfBrowsing.ModuleType;
+import com.cbn.bloomberg.util.CbnTfConnectionPool;
+import com.cbn.bloomberg.util.CbnTfDocumentCache;
+import com.cbn.bloomberg.util.CbnTfFileIntake;
+import com.cbn.bloomberg.util.CbnTfItemStream;
+import com.cbn.bloomberg.util.CbnTfListenerIntake;
+import com.cbn.bloomberg.util.CbnTfMessageSpool;
 import com.cbn.bloomberg.util.CbnTfProperties;
+import com.cbn.bloomberg.util.CbnTfStagingJournal;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.ibm.mq.jms.MQConnectionFactory;
-import com.ibm.msg.client.wmq.common.CommonConstants;
 
 
 /**
@@ -62,29 +69,30 @@ public final class CbnScAdapter {
     private static final ModuleType MODULE_SC = ModuleType.SC; // SECURITY_MASTER
     private static final ModuleType MODULE_ST = ModuleType.ST; // SEC_TRADE
 
-    // Cache: JMSMessageID -> message body
-    private static final ConcurrentHashMap<String, String> MQ_MESSAGE_CACHE = new ConcurrentHashMap<>();
-
-    // Legacy placeholder to maintain compatibility if referenced elsewhere
-    private static final ConcurrentHashMap<String, Message> MQ_MESSAGE_OBJECTS = new ConcurrentHashMap<>();
-
     // Timestamp format for filenames
     private static final DateTimeFormatter TS_FMT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
     private static final String WMQ_QUE = "tf.wmq.queue";
     private static final String WMQ_USR = "tf.wmq.username";
-    private static final String WMQ_KEY = "tf.wmq.password";
     private static final String WMQ_ACK = "tf.wmq.ackledge";
 
     private CbnScAdapter() {
     }
 
+    // Consumed message bodies, shared with the other agents of this host
+    private static CbnTfMessageSpool spool() {
+        return CbnTfMessageSpool.forModule(MODULE_SC.name());
+    }
+
     // ====================================================================
     // FILE ADAPTER
     // ====================================================================
 
     /**
-     * Scans directory for JSON files, reads content, counts SECURITY_MASTER and SEC_TRADE,
-     * moves files to PROCESSED, then builds IDs using the moved path.
+     * Scans directory for JSON files, locates the SECURITY_MASTER and SEC_TRADE items by byte
+     * offset with a streaming parser, moves files to PROCESSED, then builds offset IDs
+     * (FILE|path|SC or ST|@offset) using the moved path.
+     * With tf.nfs.intake.mode=watch the files come parsed from CbnTfFileIntake instead of a
+     * directory listing, with index IDs served from the document cache.
      */
     public static List<String> scanDirectoryIds(Path pDirectory, String pDirGlob,
             Path pDirProcessed, ObjectMapper pObjMapper) {
@@ -102,68 +110,34 @@ public final class CbnScAdapter {
             return ids;
         }
 
+        if (CbnTfFileIntake.isWatchMode()) {
+            // Files found and parsed ahead of time by the directory watcher
+            for (CbnTfFileIntake.ReadyFile ready : CbnTfFileIntake
+                    .forDirectory(pDirectory, pDirGlob, pObjMapper).drain(MODULE_SC, MODULE_ST)) {
+                try {
+                    addFileIds(ready.getFile(), ready.getRoot(), pDirProcessed, ids);
+                } catch (Exception ex) {
+                    yLogger.log(Level.SEVERE,
+                            String.format("[CbnScAdapter] FILE: error moving %s", ready.getFile()), ex);
+                }
+            }
+            return ids;
+        }
+
         try (DirectoryStream<Path> stream = Files.newDirectoryStream(pDirectory, pDirGlob)) {
             for (Path file : stream) {
                 try {
-                    String content = new String(Files.readAllBytes(file),
-                            StandardCharsets.UTF_8).trim();
-                    if (content.isEmpty()) {
-                        continue;
-                    }
-                    JsonNode root = CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(content));
-
-                    // Check for either SECURITY_MASTER or SEC_TRADE
-                    boolean hasSc = MODULE_SC.hasTransaction(root);
-                    boolean hasSt = MODULE_ST.hasTransaction(root);
-
-                    if (!hasSc && !hasSt) {
-                        yLogger.log(Level.WARNING,
-                                "[CbnScAdapter] FILE: no SECURITY_MASTER or SEC_TRADE in {0}",
-                                file);
-                        // Move empty/invalid files as well to avoid re-scans
-                        String ts = LocalDateTime.now().format(TS_FMT);
-                        Path target = pDirProcessed.resolve(
-                                file.getFileName().toString().replace(".json", "") + "-" + ts
-                                        + ".json");
-                        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
-                        yLogger.log(Level.INFO, "[CbnScAdapter] FILE: moved {0} -> {1}",
-                                new Object[] { file, target });
+                    if (Files.size(file) == 0L) {
                         continue;
                     }
-
-                    // Move first, then build IDs from the moved path
-                    String ts = LocalDateTime.now().format(TS_FMT);
-                    Path target = pDirProcessed.resolve(
-                            file.getFileName().toString().replace(".json", "") + "-" + ts
-                                    + ".json");
-                    Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
-                    yLogger.log(Level.INFO, "[CbnScAdapter] FILE: moved {0} -> {1}",
-                            new Object[] { file, target });
-
-                    // Build IDs for SECURITY_MASTER
-                    if (hasSc) {
-                        JsonNode txnNode = MODULE_SC.getTransaction(root);
-                        int size = CbnTfBrowsing.countTransactionItems(txnNode);
-                        for (int i = 0; i < size; i++) {
-                            ids.add("FILE|" + target.toString() + "|" + MODULE_SC.getIdPrefix()
-                                    + "|" + i);
-                        }
-                        yLogger.log(Level.INFO,
-                                "[CbnScAdapter] FILE: found {0} SECURITY_MASTER items", size);
-                    }
-
-                    // Build IDs for SEC_TRADE
-                    if (hasSt) {
-                        JsonNode txnNode = MODULE_ST.getTransaction(root);
-                        int size = CbnTfBrowsing.countTransactionItems(txnNode);
-                        for (int i = 0; i < size; i++) {
-                            ids.add("FILE|" + target.toString() + "|" + MODULE_ST.getIdPrefix()
-                                    + "|" + i);
-                        }
-                        yLogger.log(Level.INFO, "[CbnScAdapter] FILE: found {0} SEC_TRADE items",
-                                size);
-                    }
-
+                    // Items are located by byte offset with a streaming parser; the file is
+                    // never loaded or bound as a whole
+                    addFileOffsetIds(file,
+                            CbnScDserializer.scanItemOffsets(file, MODULE_SC.getJsonRootNode(),
+                                    pObjMapper),
+                            CbnScDserializer.scanItemOffsets(file, MODULE_ST.getJsonRootNode(),
+                                    pObjMapper),
+                            pDirProcessed, ids);
                 } catch (Exception ex) {
                     yLogger.log(Level.SEVERE,
                             String.format("[CbnScAdapter] FILE: error reading/moving %s", file),
@@ -177,15 +151,93 @@ public final class CbnScAdapter {
         return ids;
     }
 
+    // Moves one scanned inbound file to PROCESSED and adds the offset IDs of its items
+    private static void addFileOffsetIds(Path pFile, List<Long> pScOffsets, List<Long> pStOffsets,
+            Path pDirProcessed, List<String> pIds) throws IOException {
+        if (pScOffsets.isEmpty() && pStOffsets.isEmpty()) {
+            yLogger.log(Level.WARNING,
+                    "[CbnScAdapter] FILE: no SECURITY_MASTER or SEC_TRADE in {0}",
+                    pFile);
+        }
+
+        // Move first (empty/invalid files as well to avoid re-scans), then build IDs from the
+        // moved path; the offsets stay valid as the content is unchanged
+        Path target = moveToProcessed(pFile, pDirProcessed);
+        for (long offset : pScOffsets) {
+            pIds.add(CbnTfItemStream.offsetId(target, MODULE_SC.getIdPrefix(), offset));
+        }
+        for (long offset : pStOffsets) {
+            pIds.add(CbnTfItemStream.offsetId(target, MODULE_ST.getIdPrefix(), offset));
+        }
+        yLogger.log(Level.INFO,
+                "[CbnScAdapter] FILE: found {0} SECURITY_MASTER and {1} SEC_TRADE items",
+                new Object[] { pScOffsets.size(), pStOffsets.size() });
+    }
+
+    // Moves one parsed inbound file to PROCESSED and adds the IDs of its items
+    private static void addFileIds(Path pFile, JsonNode pRoot, Path pDirProcessed,
+            List<String> pIds) throws IOException {
+        // Check for either SECURITY_MASTER or SEC_TRADE
+        boolean hasSc = MODULE_SC.hasTransaction(pRoot);
+        boolean hasSt = MODULE_ST.hasTransaction(pRoot);
+
+        if (!hasSc && !hasSt) {
+            yLogger.log(Level.WARNING,
+                    "[CbnScAdapter] FILE: no SECURITY_MASTER or SEC_TRADE in {0}",
+                    pFile);
+            // Move empty/invalid files as well to avoid re-scans
+            moveToProcessed(pFile, pDirProcessed);
+            return;
+        }
+
+        // Move first, then build IDs from the moved path
+        Path target = moveToProcessed(pFile, pDirProcessed);
+
+        // Keep the parsed root for the per-item lookups that follow
+        CbnTfDocumentCache.put(target, pRoot);
+
+        // Build IDs for SECURITY_MASTER
+        if (hasSc) {
+            JsonNode txnNode = MODULE_SC.getTransaction(pRoot);
+            int size = CbnTfBrowsing.countTransactionItems(txnNode);
+            for (int i = 0; i < size; i++) {
+                pIds.add("FILE|" + target.toString() + "|" + MODULE_SC.getIdPrefix()
+                        + "|" + i);
+            }
+            yLogger.log(Level.INFO,
+                    "[CbnScAdapter] FILE: found {0} SECURITY_MASTER items", size);
+        }
+
+        // Build IDs for SEC_TRADE
+        if (hasSt) {
+            JsonNode txnNode = MODULE_ST.getTransaction(pRoot);
+            int size = CbnTfBrowsing.countTransactionItems(txnNode);
+            for (int i = 0; i < size; i++) {
+                pIds.add("FILE|" + target.toString() + "|" + MODULE_ST.getIdPrefix()
+                        + "|" + i);
+            }
+            yLogger.log(Level.INFO, "[CbnScAdapter] FILE: found {0} SEC_TRADE items",
+                    size);
+        }
+    }
+
+    private static Path moveToProcessed(Path pFile, Path pDirProcessed) throws IOException {
+        String ts = LocalDateTime.now().format(TS_FMT);
+        Path target = pDirProcessed.resolve(
+                pFile.getFileName().toString().replace(".json", "") + "-" + ts
+                        + ".json");
+        Files.move(pFile, target, StandardCopyOption.REPLACE_EXISTING);
+        yLogger.log(Level.INFO, "[CbnScAdapter] FILE: moved {0} -> {1}",
+                new Object[] { pFile, target });
+        return target;
+    }
+
     /**
-     * Reads and normalizes JSON from a file.
+     * Reads and normalizes JSON from a file. Served from the shared parse-once document cache, so
+     * per-item lookups do not re-read the file.
      */
     public static JsonNode readRoot(Path pFile, ObjectMapper pObjMapper) throws IOException {
-        String content = new String(Files.readAllBytes(pFile), StandardCharsets.UTF_8).trim();
-        if (content.isEmpty()) {
-            return null;
-        }
-        return CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(content));
+        return CbnTfDocumentCache.readRoot(pFile, pObjMapper);
     }
 
     /**
@@ -204,8 +256,12 @@ public final class CbnScAdapter {
         }
 
         try {
+            long offset = CbnTfItemStream.parseOffset(pId);
+            if (offset >= 0) {
+                return new FileItemRef(Paths.get(parts[1]), -1, offset, prefix);
+            }
             int idx = Integer.parseInt(parts[3]);
-            return new FileItemRef(Paths.get(parts[1]), idx, prefix);
+            return new FileItemRef(Paths.get(parts[1]), idx, -1L, prefix);
         } catch (NumberFormatException nfe) {
             return null;
         }
@@ -218,11 +274,13 @@ public final class CbnScAdapter {
 
         private final Path mFile;
         private final int mIndex;
+        private final long mOffset;
         private final String mModulePrefix;
 
-        FileItemRef(Path f, int i, String modulePrefix) {
+        FileItemRef(Path f, int i, long o, String modulePrefix) {
             this.mFile = f;
             this.mIndex = i;
+            this.mOffset = o;
             this.mModulePrefix = modulePrefix;
         }
 
@@ -230,10 +288,16 @@ public final class CbnScAdapter {
             return mFile;
         }
 
+        /** Item index of an index based ID (watch mode), -1 for an offset based ID */
         public int index() {
             return mIndex;
         }
 
+        /** Byte offset of the item of an offset based ID, -1 for an index based ID */
+        public long offset() {
+            return mOffset;
+        }
+
         public String modulePrefix() {
             return mModulePrefix;
         }
@@ -257,9 +321,12 @@ public final class CbnScAdapter {
      * left on the queue for their respective batch jobs.
      */
     public static List<String> extractIdsFromWmq(ObjectMapper pObjMapper) {
+        if (CbnTfListenerIntake.isListenerMode()) {
+            return drainJournal(pObjMapper);
+        }
         List<String> ids = new ArrayList<>();
 
-        Connection connection = null;
+        CbnTfConnectionPool pool = null;
         try {
             Properties props = loadMqProperties();
             if (props == null || props.isEmpty()) {
@@ -267,14 +334,7 @@ public final class CbnScAdapter {
                 return ids; // early return - no point continuing
             }
 
-            MQConnectionFactory factory = createMqFactory(props);
-            if (factory == null) {
-                yLogger.log(Level.SEVERE, "[CbnScAdapter] WMQ: Failed to create MQConnectionFactory");
-                return ids;
-            }
-
-            String user = props.getProperty(WMQ_USR, "").trim();
-            String password = props.getProperty(WMQ_KEY, "");
+            pool = CbnTfConnectionPool.forProperties(props);
             String queueName = props.getProperty(WMQ_QUE);
 
             if (queueName == null || queueName.trim().isEmpty()) {
@@ -284,14 +344,10 @@ public final class CbnScAdapter {
 
             yLogger.log(Level.INFO, "[CbnScAdapter] WMQ: Connecting to queue: {0}", queueName);
 
-            // Create connection
-            connection = user.isEmpty() 
-                ? factory.createConnection()
-                : factory.createConnection(user, password);
+            // Shared long-lived connection, owned by the pool - never closed here
+            Connection connection = pool.getConnection();
 
-            connection.start();
-
-            yLogger.log(Level.INFO, "[CbnScAdapter] WMQ: Connection started successfully");
+            yLogger.log(Level.INFO, "[CbnScAdapter] WMQ: Connection acquired from pool");
 
             // Phase 1a: Browse for SC (SECURITY_MASTER)
             BrowseResult browseResultSc = null;
@@ -349,18 +405,63 @@ public final class CbnScAdapter {
 
         } catch (JMSException jmse) {
             yLogger.log(Level.SEVERE, "[CbnScAdapter] WMQ: JMS error during connection/browse/consume phase", jmse);
+            if (pool != null) {
+                pool.invalidate();
+            }
         } catch (RuntimeException re) {
             yLogger.log(Level.SEVERE, "[CbnScAdapter] WMQ: Unexpected runtime error", re);
         } catch (Exception e) {
             // Catch-all for anything unexpected (e.g. NPE from props, etc.)
             yLogger.log(Level.SEVERE, "[CbnScAdapter] WMQ: General exception in extractIdsFromWmq", e);
         } finally {
-            CbnTfBrowsing.closeQuietly(connection);
-            yLogger.log(Level.INFO, "[CbnScAdapter] WMQ: Connection closed. Total IDs collected: {0}", ids.size());
+            yLogger.log(Level.INFO, "[CbnScAdapter] WMQ: Cycle complete. Total IDs collected: {0}", ids.size());
         }
 
         return ids;
     }
+    /**
+     * Listener ingestion (tf.wmq.ingest.mode=listener): makes sure the asynchronous listener is
+     * running and claims the messages it has journalled for this module, instead of browsing the
+     * whole queue.
+     */
+    private static List<String> drainJournal(ObjectMapper pObjMapper) {
+        List<String> ids = new ArrayList<>();
+        Properties props = loadMqProperties();
+        try {
+            CbnTfListenerIntake.forProperties(props, MODULE_SC, MODULE_ST).ensureRunning();
+        } catch (JMSException jmse) {
+            // Already journalled messages can still be drained
+            yLogger.log(Level.SEVERE, "[CbnScAdapter] WMQ: unable to start listener", jmse);
+            CbnTfConnectionPool.forProperties(props).invalidate();
+        }
+
+        for (ModuleType module : new ModuleType[] { MODULE_SC, MODULE_ST }) {
+            for (Map.Entry<String, String> entry : CbnTfStagingJournal.drain(module).entrySet()) {
+                addJournalIds(ids, entry.getKey(), entry.getValue(), module, pObjMapper);
+            }
+        }
+
+        yLogger.log(Level.INFO,
+                "[CbnScAdapter] WMQ: drained journal, total IDs generated={0}", ids.size());
+        return ids;
+    }
+
+    private static void addJournalIds(List<String> pIds, String pCacheKey, String pBody,
+            ModuleType pModule, ObjectMapper pObjMapper) {
+        try {
+            JsonNode root = CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(pBody));
+            int size = CbnTfBrowsing.countTransactionItems(pModule.getTransaction(root));
+
+            spool().put(pCacheKey, pBody, root);
+            for (int i = 0; i < size; i++) {
+                pIds.add("WMQ|" + pCacheKey + "|" + pModule.getIdPrefix() + "|" + i);
+            }
+        } catch (IOException ioe) {
+            yLogger.log(Level.SEVERE, "[CbnScAdapter] WMQ: JSON parse error on journal entry "
+                    + pCacheKey, ioe);
+        }
+    }
+
     /**
      * Consumes messages by their JMSMessageID using selector-based retrieval.
      * Only messages identified during browse phase are consumed.
@@ -371,6 +472,9 @@ public final class CbnScAdapter {
 
         List<String> ids = new ArrayList<>();
         String ackMode = pProps.getProperty(WMQ_ACK, "auto").trim().toLowerCase();
+        if (CbnTfAckBatch.isBatchMode(ackMode)) {
+            return consumeBatch(pProps, pMatchingIds, pObjMapper, pModule);
+        }
         int jmsAck = "auto".equals(ackMode) ? Session.AUTO_ACKNOWLEDGE : Session.CLIENT_ACKNOWLEDGE;
 
         Session consumeSession = null;
@@ -406,10 +510,9 @@ public final class CbnScAdapter {
 
                     // Normalize cache key using shared utility
                     String cacheKey = CbnTfBrowsing.normalizeCacheKey(msgId);
-                    MQ_MESSAGE_CACHE.put(cacheKey, body);
-
                     try {
                         JsonNode root = CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(body));
+                        spool().put(cacheKey, body, root);
                         JsonNode txnNode = pModule.getTransaction(root);
                         int size = CbnTfBrowsing.countTransactionItems(txnNode);
 
@@ -438,16 +541,77 @@ public final class CbnScAdapter {
     }
 
     /**
-     * Reads a cached MQ message body and normalizes it.
+     * Batch acknowledgement (tf.wmq.ackledge=batch). All matching messages are read destructively
+     * in one transacted session and spooled; the transaction is committed by CbnTfAckBatch once
+     * every staged item has settled (see settleMqItem).
+     */
+    private static List<String> consumeBatch(Properties pProps, List<String> pMatchingIds,
+            ObjectMapper pObjMapper, ModuleType pModule) throws JMSException {
+
+        List<String> ids = new ArrayList<>();
+        CbnTfAckBatch batch = CbnTfAckBatch.open(CbnTfConnectionPool.forProperties(pProps), pModule);
+        boolean staged = false;
+        try {
+            Map<String, String> bodies = batch.receiveAll(pProps.getProperty(WMQ_QUE), pMatchingIds);
+
+            for (Map.Entry<String, String> entry : bodies.entrySet()) {
+                String cacheKey = CbnTfBrowsing.normalizeCacheKey(entry.getKey());
+                String body = entry.getValue();
+                try {
+                    JsonNode root = CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(body));
+                    int size = CbnTfBrowsing.countTransactionItems(pModule.getTransaction(root));
+
+                    spool().put(cacheKey, body, root);
+                    for (int i = 0; i < size; i++) {
+                        ids.add("WMQ|" + cacheKey + "|" + pModule.getIdPrefix() + "|" + i);
+                    }
+                    batch.expect(cacheKey, size);
+
+                } catch (IOException ioe) {
+                    // Consumed within the batch and will not be redelivered - keep a copy
+                    yLogger.log(Level.SEVERE, "[CbnScAdapter] WMQ: JSON parse error in batch for "
+                            + entry.getKey(), ioe);
+                    CbnTfBackup.backupMessage(body, pModule.name(), cacheKey);
+                }
+            }
+            staged = true;
+        } finally {
+            if (staged) {
+                batch.seal();
+            } else {
+                batch.abort();
+            }
+        }
+
+        yLogger.log(Level.INFO, "[CbnScAdapter] WMQ: staged (ack=batch) {0} {1} item(s)",
+                new Object[] { ids.size(), pModule.name() });
+        return ids;
+    }
+
+    /**
+     * Reads a spooled MQ message and returns its normalized root.
      */
     public static JsonNode readMqMessage(String pMessageId, ObjectMapper pObjMapper)
             throws IOException {
-        String body = MQ_MESSAGE_CACHE.get(pMessageId);
+        JsonNode root = spool().readRoot(pMessageId, pObjMapper);
+        if (root != null) {
+            return root;
+        }
+        String body = null;
+        if (CbnTfListenerIntake.isListenerMode()) {
+            // Recover from the journal after a restart between getIds and processing
+            body = CbnTfStagingJournal.readClaimed(MODULE_SC, pMessageId);
+            if (body == null) {
+                body = CbnTfStagingJournal.readClaimed(MODULE_ST, pMessageId);
+            }
+        }
         if (body == null) {
             yLogger.log(Level.WARNING, "[CbnScAdapter] WMQ: body not found for {0}", pMessageId);
             return null;
         }
-        return CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(body));
+        root = CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(body));
+        spool().put(pMessageId, body, root);
+        return root;
     }
 
     /**
@@ -520,24 +684,31 @@ public final class CbnScAdapter {
             MqItemRef ref = parseMqItemRef(pId);
             if (ref == null) return;
 
-            if ("auto".equals(ackMode)) {
-                // auto-ack already occurred on receive; just clear cache
-                MQ_MESSAGE_CACHE.remove(ref.messageId());
-                MQ_MESSAGE_OBJECTS.remove(ref.messageId());
+            if (CbnTfListenerIntake.isListenerMode()) {
+                // acknowledged to MQ when journalled; just release the spooled body
+                spool().release(ref.messageId());
+                return;
+            }
+
+            if (CbnTfAckBatch.isBatchMode(ackMode)) {
+                // committed together with its batch once all items have settled
+                settleMqItem(pId);
                 return;
             }
 
-            // manual ack via selector
-            MQConnectionFactory factory = createMqFactory(props);
-            String user = props.getProperty(WMQ_USR, "").trim();
-            Connection connection = user.isEmpty() ? factory.createConnection()
-                    : factory.createConnection(user, props.getProperty("tf.wmq.password", ""));
+            if ("auto".equals(ackMode)) {
+                // auto-ack already occurred on receive; just release the spooled body
+                spool().release(ref.messageId());
+                return;
+            }
 
+            // manual ack via selector, on a pooled session of the shared connection
+            CbnTfConnectionPool pool = CbnTfConnectionPool.forProperties(props);
             Session session = null;
             MessageConsumer consumer = null;
+            boolean healthy = false;
             try {
-                connection.start();
-                session = connection.createSession(false, Session.CLIENT_ACKNOWLEDGE);
+                session = pool.borrowSession(false, Session.CLIENT_ACKNOWLEDGE);
                 javax.jms.Queue queue = session.createQueue(
                         "queue:///" + props.getProperty("tf.wmq.queue"));
                 String selector = CbnTfBrowsing.buildMessageSelector(ref.messageId());
@@ -546,32 +717,55 @@ public final class CbnScAdapter {
                 Message message = consumer.receive(2000);
                 if (message != null) {
                     message.acknowledge();
-                    MQ_MESSAGE_CACHE.remove(ref.messageId());
-                    MQ_MESSAGE_OBJECTS.remove(ref.messageId());
+                    spool().release(ref.messageId());
                     yLogger.log(Level.INFO, "[CbnScAdapter] WMQ: acknowledged {0}",
                             ref.messageId());
                 } else {
                     yLogger.log(Level.WARNING, "[CbnScAdapter] WMQ: nothing to acknowledge for {0}",
                             ref.messageId());
                 }
+                healthy = true;
             } finally {
                 CbnTfBrowsing.closeQuietly(consumer);
-                CbnTfBrowsing.closeQuietly(session);
-                CbnTfBrowsing.closeQuietly(connection);
+                if (healthy) {
+                    pool.releaseSession(session);
+                } else {
+                    pool.discardSession(session);
+                }
             }
         } catch (JMSException e) {
             yLogger.log(Level.SEVERE, "[CbnScAdapter] WMQ: Error acknowledging message", e);
         }
     }
 
+    /**
+     * Records the final outcome of a WMQ item held by an ack batch (tf.wmq.ackledge=batch). The
+     * spooled body is released once the last item of its message has settled. No-op for items that
+     * are not part of an open batch, so it is safe to call for every mode.
+     */
+    public static void settleMqItem(String pId) {
+        settleBatchItem(parseMqItemRef(pId));
+    }
+
+    private static void settleBatchItem(MqItemRef ref) {
+        if (ref == null || !CbnTfAckBatch.isPending(ref.messageId())) return;
+
+        CbnTfAckBatch.settle(ref.messageId(), ref.index());
+        if (!CbnTfAckBatch.isPending(ref.messageId())) {
+            spool().release(ref.messageId());
+        }
+    }
+
     // ====================================================================
     // FAILURE PERSISTENCE (EXCEPTS)
     // ====================================================================
 
     /**
-     * Persist a failed FILE-mode item to EXCEPTS directory.
+     * Persist a failed FILE-mode item to EXCEPTS directory. For an offset based ID only the item
+     * is written, read back from its offset; for an index based ID the processed file is copied.
      */
-    public static void persistFailedFileItem(FileItemRef ref, Path exceptsDir, String reason) {
+    public static void persistFailedFileItem(FileItemRef ref, Path exceptsDir, String reason,
+            ObjectMapper objMapper) {
         if (ref == null || ref.file() == null) {
             yLogger.log(Level.WARNING, "[CbnScAdapter] persistFailedFileItem: null ref/file");
             return;
@@ -580,10 +774,18 @@ public final class CbnScAdapter {
             ensureDir(exceptsDir);
             String baseName = ref.file().getFileName().toString().replace(".json", "");
             String ts = LocalDateTime.now().format(TS_FMT);
-            String outName = String.format("%s_%s%d_%s.json", baseName, ref.modulePrefix(),
-                    ref.index(), ts);
-            Path outFile = exceptsDir.resolve(outName);
-            Files.copy(ref.file(), outFile, StandardCopyOption.REPLACE_EXISTING);
+            Path outFile;
+            if (ref.offset() >= 0) {
+                // Only the failed item, read back from its offset
+                outFile = exceptsDir.resolve(String.format("%s_%s@%d_%s.json", baseName,
+                        ref.modulePrefix(), ref.offset(), ts));
+                JsonNode item = CbnScDserializer.readItemAt(ref.file(), ref.offset(), objMapper);
+                Files.write(outFile, item.toString().getBytes(StandardCharsets.UTF_8));
+            } else {
+                outFile = exceptsDir.resolve(String.format("%s_%s%d_%s.json", baseName,
+                        ref.modulePrefix(), ref.index(), ts));
+                Files.copy(ref.file(), outFile, StandardCopyOption.REPLACE_EXISTING);
+            }
             writeReasonSidecar(outFile, reason);
             yLogger.log(Level.INFO, "[CbnScAdapter] FILE EXCEPTS: copied {0} -> {1}",
                     new Object[] { ref.file(), outFile });
@@ -603,9 +805,9 @@ public final class CbnScAdapter {
         }
         try {
             ensureDir(exceptsDir);
-            String body = MQ_MESSAGE_CACHE.get(ref.messageId());
+            String body = spool().getBody(ref.messageId());
             if (body == null || body.trim().isEmpty()) {
-                yLogger.log(Level.WARNING, "[CbnScAdapter] WMQ EXCEPTS: no body in cache for {0}",
+                yLogger.log(Level.WARNING, "[CbnScAdapter] WMQ EXCEPTS: no spooled body for {0}",
                         ref.messageId());
                 return;
             }
@@ -617,6 +819,7 @@ public final class CbnScAdapter {
             Files.write(outFile, body.getBytes(StandardCharsets.UTF_8));
             writeReasonSidecar(outFile, reason);
             yLogger.log(Level.INFO, "[CbnScAdapter] WMQ EXCEPTS: wrote {0}", outFile);
+            settleBatchItem(ref);
         } catch (Exception ex) {
             yLogger.log(Level.SEVERE, "[CbnScAdapter] WMQ EXCEPTS: failed to persist failed item",
                     ex);
@@ -661,15 +864,4 @@ public final class CbnScAdapter {
         mqProps.setProperty("tf.wmq.ackledge", props.getProperty("tf.wmq.ackledge", "auto"));
         return mqProps;
     }
-
-    private static MQConnectionFactory createMqFactory(Properties pProps) throws JMSException {
-        MQConnectionFactory factory = new MQConnectionFactory();
-
-        factory.setHostName(pProps.getProperty("tf.wmq.host"));
-        factory.setPort(Integer.parseInt(pProps.getProperty("tf.wmq.port")));
-        factory.setChannel(pProps.getProperty("tf.wmq.channel"));
-        factory.setQueueManager(pProps.getProperty("tf.wmq.manager"));
-        factory.setTransportType(CommonConstants.WMQ_CM_CLIENT);
-        return factory;
-    }
-}
+}
\ No newline at end of file
@@ -15,6 +15,8 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import com.cbn.bloomberg.util.CbnTfItemStream;
+
 
 /**
  * Title: CbnScDserializer.java Author: CSD Development Team Date Created: 2025-10-11
@@ -28,7 +30,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  *
  * Modification Details: ---- 11/10/25 - Initial version Bloomberg SC deserialization with POJO
  * support ---- 09/11/25 - Updated to handle single SECURITY_MASTER object (not array) Compliant
- * with CSD Java Programming Standards r2022
+ * with CSD Java Programming Standards r2022 ---- 14/02/26 - Added streaming item reader
+ * (streamItems/readItemAt) with byte-offset item IDs for large refresh files ---- 27/02/26 -
+ * FILE scan enumerates item offsets (scanItemOffsets); readItemAt returns the item node
  */
 public final class CbnScDserializer {
 
@@ -179,6 +183,44 @@ public final class CbnScDserializer {
 
         return ids;
     }
+
+    /**
+     * Enumerates the byte offsets of the items under a root node (SECURITY_MASTER or SEC_TRADE)
+     * of a file by skipping them with a streaming parser, without binding or buffering the items.
+     * Accepts a single object or an array.
+     *
+     * @param pFile Path to the JSON file
+     * @param pRootNode Root node name
+     * @param pObjMap ObjectMapper for deserialization
+     * @return Item offsets in file order; empty if the root node is absent
+     * @throws IOException if the file cannot be read or is not valid JSON
+     */
+    public static List<Long> scanItemOffsets(Path pFile, String pRootNode, ObjectMapper pObjMap)
+            throws IOException {
+        List<Long> offsets = new ArrayList<>();
+        try (CbnTfItemStream<JsonNode> items = CbnTfItemStream.open(pFile, pRootNode,
+                JsonNode.class, pObjMap)) {
+            for (long offset = items.skip(); offset >= 0; offset = items.skip()) {
+                offsets.add(offset);
+            }
+        }
+        return offsets;
+    }
+
+    /**
+     * Reads the item object at a byte offset reported by {@link #scanItemOffsets}, without parsing
+     * the rest of the file.
+     *
+     * @param pFile Path to the JSON file
+     * @param pOffset Byte offset of the item object
+     * @param pObjMap ObjectMapper for deserialization
+     * @return The item node
+     * @throws IOException if no item object starts at the offset
+     */
+    public static JsonNode readItemAt(Path pFile, long pOffset, ObjectMapper pObjMap)
+            throws IOException {
+        return CbnTfItemStream.readAt(pFile, pOffset, JsonNode.class, pObjMap);
+    }
 }
 
 // ==== TOP-LEVEL POJO CLASSES ====
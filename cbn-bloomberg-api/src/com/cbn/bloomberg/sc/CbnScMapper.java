@@ -7,6 +7,7 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.cbn.bloomberg.util.CbnTfFieldMapping;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
@@ -18,7 +19,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
  * CSD API Title: CbnScMapper.java
  * Author: CSD Development Team
  * Created: 2026-01-07
- * Last Modified: 2026-02-03
+ * Last Modified: 2026-02-19
  * =============================================================================
  *
  * PURPOSE: Transformer utilities for Bloomberg SC flow. Provides JSON normalization,
@@ -31,6 +32,7 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
  * MODIFICATION HISTORY:
  * - 2026-01-07 | Initial creation for SECURITY_MASTER
  * - 2026-02-03 | Added SEC_TRADE support (hasSecTrade, getSecTradeAt, mapSecTradeToSt)
+ * - 2026-02-19 | SECURITY_MASTER mapping driven by CbnTfMapping_SC.json when present
  * =============================================================================
  */
 public final class CbnScMapper {
@@ -197,6 +199,15 @@ public final class CbnScMapper {
     public static Map<String, String> mapSecurityMasterToSc(JsonNode pFm) {
         LOGGER.log(Level.INFO, "[CbnScMapper] Starting mapping of SECURITY_MASTER message");
 
+        // Compiled mapping spec (CbnTfMapping_SC.json) when available
+        CbnTfFieldMapping fieldMapping = CbnTfFieldMapping.forModule("SC");
+        if (fieldMapping != null) {
+            Map<String, String> mapped = fieldMapping.map(pFm);
+            LOGGER.log(Level.INFO, "[CbnScMapper] SECURITY_MASTER mapping complete: {0} fields",
+                    mapped.size());
+            return mapped;
+        }
+
         Map<String, String> map = new HashMap<>();
         String cNme = asText(pFm, "COMPANY_NAME");
         String sDes = asText(pFm, "DESCRIPTION");
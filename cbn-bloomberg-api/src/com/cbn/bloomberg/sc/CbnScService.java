@@ -5,7 +5,6 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -13,9 +12,17 @@ import java.util.logging.Logger;
 
 import com.cbn.bloomberg.sc.CbnScAdapter.FileItemRef;
 import com.cbn.bloomberg.sc.CbnScAdapter.MqItemRef;
+import com.cbn.bloomberg.util.CbnTfPendingResponseStore;
+import com.cbn.bloomberg.util.CbnTfPendingResponseStore.TransactionMetadata;
 import com.cbn.bloomberg.util.CbnTfProperties;
+import com.cbn.bloomberg.util.CbnTfResponseHarvester;
 import com.cbn.bloomberg.util.CbnTfBackup;
+import com.cbn.bloomberg.util.CbnTfBatchPublisher;
+import com.cbn.bloomberg.util.CbnTfIdempotencyIndex;
 import com.cbn.bloomberg.util.CbnTfLogTracer;
+import com.cbn.bloomberg.util.CbnTfMetrics;
+import com.cbn.bloomberg.util.CbnTfMetrics.Outcome;
+import com.cbn.bloomberg.util.CbnTfMetrics.Phase;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.temenos.api.TBoolean;
@@ -105,29 +112,24 @@ public class CbnScService extends ServiceLifecycle {
     private final CbnScProducer mProducer = new CbnScProducer();
 
     // ==== TRANSACTION METADATA CACHE ====
-    private static final Map<String, TransactionMetadata> TRANSACTION_CACHE = new HashMap<>();
+    // Maps responseId -> TransactionMetadata (concurrent, TTL bounded, journalled)
+    private static final CbnTfPendingResponseStore TRANSACTION_CACHE = CbnTfPendingResponseStore
+            .forModule("SC");
 
-    /**
-     * Metadata holder for tracking transaction state between phases.
-     * Now includes message type (SC or ST) for routing.
-     */
-    private static class TransactionMetadata {
-
-        String originalId;
-        JsonNode originalItem;
-        String adapterMode;
-        String messageType; // "SC" or "ST"
-        String bloombergId;
-
-        TransactionMetadata(String pOriginalId, JsonNode pOriginalItem, String pAdapterMode,
-                String pMessageType,String pBloombergId) {
-            this.originalId = pOriginalId;
-            this.originalItem = pOriginalItem;
-            this.adapterMode = pAdapterMode;
-            this.messageType = pMessageType;
-            this.bloombergId = pBloombergId;
-        }
-    }
+    // Selects the pending responseIds whose OFS.REQUEST.DETAIL is ready
+    private static final CbnTfResponseHarvester RESPONSE_HARVESTER = CbnTfResponseHarvester
+            .forModule("SC");
+
+    // Recognises redelivered SEC_TRADE deals by BLOOMBERG_ID, so their recorded response is replayed
+    private static final CbnTfIdempotencyIndex IDEMPOTENCY = CbnTfIdempotencyIndex
+            .forModule("ST");
+
+    // Lifecycle metrics, exported through JMX and optionally a Prometheus text file
+    private static final CbnTfMetrics METRICS = CbnTfMetrics.forModule("SC")
+            .gauge("pending_responses", TRANSACTION_CACHE::size)
+            .gauge("pending_response_age_ms", TRANSACTION_CACHE::oldestAgeMillis)
+            .gauge("duplicate_deals", IDEMPOTENCY::getDuplicates)
+            .gauge("publish_queue_depth", () -> CbnTfBatchPublisher.pendingFor("SC"));
 
     /**
      * Initializes the service with session and data access objects.
@@ -136,8 +138,8 @@ public class CbnScService extends ServiceLifecycle {
     public void initialise(ServiceData serviceData) {
         try {
             yLOGGER.log(Level.INFO, LOG_PREFIX + "=== initialise() START ===");
-            mSession = new Session(this);
-            mDataAccess = new DataAccess(this);
+            mSession = createSession();
+            mDataAccess = createDataAccess();
             mCompanyId = mSession.getCompanyId();
 
             yLOGGER.log(Level.INFO, LOG_PREFIX + "initialise: Service initialized for company: {0}",
@@ -151,11 +153,27 @@ public class CbnScService extends ServiceLifecycle {
         }
     }
 
+    /**
+     * Session of the service. Overridden by the offline harness (CbnTfServiceHarness), which
+     * runs the lifecycle without a T24 core.
+     */
+    protected Session createSession() {
+        return new Session(this);
+    }
+
+    /**
+     * Data access used for the OFS.REQUEST.DETAIL reads of CHECK.RESPONSE.
+     */
+    protected DataAccess createDataAccess() {
+        return new DataAccess(this);
+    }
+
     /**
      * Retrieves the list of transaction IDs to be processed by the service.
      */
     @Override
     public List<String> getIds(ServiceData serviceData, List<String> controlList) {
+        long started = System.nanoTime();
         List<String> pRecordIds = null;
         String pControlItem = null;
 
@@ -182,7 +200,7 @@ public class CbnScService extends ServiceLifecycle {
 
             switch (pControlItem) {
                 case CONTROL_PROCESS_SC:
-                    pRecordIds = getNewTransactionIds();
+                    pRecordIds = IDEMPOTENCY.withDeferred(getNewTransactionIds());
                     break;
 
                 case CONTROL_CHECK_RESPONSE:
@@ -208,6 +226,7 @@ public class CbnScService extends ServiceLifecycle {
             yLOGGER.log(Level.SEVERE, LOG_PREFIX + "getIds: Unexpected error in getIds", e);
             pRecordIds = Collections.emptyList();
         } finally {
+            METRICS.record(Phase.GET_IDS, started);
             pControlItem = null;
         }
         return pRecordIds;
@@ -270,12 +289,13 @@ public class CbnScService extends ServiceLifecycle {
         try {
             yLOGGER.log(Level.INFO, LOG_PREFIX + "=== getPendingResponseIds() START ===");
 
-            synchronized (TRANSACTION_CACHE) {
-                pResponseIds.addAll(TRANSACTION_CACHE.keySet());
-            }
+            pResponseIds.addAll(
+                    RESPONSE_HARVESTER.readyIds(mDataAccess, TRANSACTION_CACHE.keySet()));
+            // Evicted without an OFS response: answered with a failure by checkOfsResponse
+            pResponseIds.addAll(TRANSACTION_CACHE.evictedIds());
 
             yLOGGER.log(Level.INFO,
-                    LOG_PREFIX + "getPendingResponseIds: Found {0} pending responses",
+                    LOG_PREFIX + "getPendingResponseIds: Found {0} ready responses",
                     pResponseIds.size());
 
         } catch (Exception e) {
@@ -313,13 +333,16 @@ public class CbnScService extends ServiceLifecycle {
                 controlItem = CONTROL_PROCESS_SC;
             }
 
+            long started = System.nanoTime();
             switch (controlItem) {
                 case CONTROL_PROCESS_SC:
                     processOfsRequest(id, transactionData, records);
+                    METRICS.record(Phase.PROCESS_OFS_REQUEST, started);
                     break;
 
                 case CONTROL_CHECK_RESPONSE:
                     checkOfsResponse(id);
+                    METRICS.record(Phase.CHECK_OFS_RESPONSE, started);
                     break;
 
                 default:
@@ -350,6 +373,8 @@ public class CbnScService extends ServiceLifecycle {
         JsonNode pOriginalItem = null;
         String pResponseId = null;
         String pMessageType = MSG_TYPE_SC; // Default to SECURITY_MASTER
+        String bloombergId = "";
+        boolean pClaimed = false;
 
         try {
             yLOGGER.log(Level.INFO, LOG_PREFIX + "=== processOfsRequest() START ===");
@@ -398,13 +423,22 @@ public class CbnScService extends ServiceLifecycle {
             yLOGGER.log(Level.FINE, LOG_PREFIX + "processOfsRequest: Mapped data for id={0}",
                     pRecordId);
             
-            String bloombergId = pData.getOrDefault("BLOOMBERG_ID", "");
+            bloombergId = pData.getOrDefault("BLOOMBERG_ID", "");
             try {
                 com.cbn.bloomberg.util.CbnTfBackup.backupMessage(pOriginalItem.toString(), bloombergId, pMessageType);
                 yLOGGER.log(Level.INFO, LOG_PREFIX + "processOfsRequest: Message backed up for bloombergId: {0}", bloombergId);
             } catch (Exception e) {
                 yLOGGER.log(Level.WARNING, LOG_PREFIX + "processOfsRequest: Failed to backup message: {0}", e.getMessage());
             }
+            // Step 3b: A redelivered SEC_TRADE deal is answered from the idempotency index
+            String pDealId = dealId(pMessageType, bloombergId);
+            CbnTfIdempotencyIndex.Entry pPrevious = IDEMPOTENCY.claim(pDealId);
+            if (pPrevious != null) {
+                replayDuplicate(pRecordId, pItem, pDealId, pPrevious);
+                return;
+            }
+            pClaimed = true;
+
             // Step 4: Build responseId
             pResponseId = buildResponseId(pRecordId);
             yLOGGER.log(Level.INFO, LOG_PREFIX + "processOfsRequest: Built responseId: {0}",
@@ -436,10 +470,10 @@ public class CbnScService extends ServiceLifecycle {
             yLOGGER.log(Level.INFO, LOG_PREFIX + "processOfsRequest: Extracted BLOOMBERG_ID: {0}",
                     bloombergId);
             // Step 6: Store transaction metadata in cache for Phase 2 (include message type)
-            synchronized (TRANSACTION_CACHE) {
-                TRANSACTION_CACHE.put(pResponseId, new TransactionMetadata(pRecordId, pOriginalItem,
-                        mAdapterFlag, pMessageType, bloombergId));
-            }
+            TRANSACTION_CACHE.put(pResponseId, new TransactionMetadata(pRecordId, pOriginalItem,
+                    mAdapterFlag, pMessageType, bloombergId));
+            // CHECK.RESPONSE completes the claim from here
+            pClaimed = false;
 
             yLOGGER.log(Level.INFO,
                     LOG_PREFIX
@@ -468,6 +502,9 @@ public class CbnScService extends ServiceLifecycle {
             persistToExcepts(pRecordId, pMessage);
             publishResponse(pRecordId, pStatus, pMessage, "", pOriginalItem);
         } finally {
+            if (pClaimed) {
+                IDEMPOTENCY.release(dealId(pMessageType, bloombergId));
+            }
             pOriginalItem = null;
             pResponseId = null;
         }
@@ -504,11 +541,23 @@ public class CbnScService extends ServiceLifecycle {
 
         yLOGGER.log(Level.INFO, LOG_PREFIX + "=== checkOfsResponse() START ===");
 
-        TransactionMetadata pMetadata;
-        synchronized (TRANSACTION_CACHE) {
-            pMetadata = TRANSACTION_CACHE.get(pResponseId);
+        // Evicted from the store (tf.pending.ttl / tf.pending.max.entries): the deal's outcome is
+        // unknown, so it is answered with a failure and may be resent
+        TransactionMetadata pEvicted = TRANSACTION_CACHE.takeEvicted(pResponseId);
+        if (pEvicted != null) {
+            pMessage = "No OFS response received in time, check T24 before resending";
+            yLOGGER.log(Level.WARNING, LOG_PREFIX + "checkOfsResponse: responseId={0} evicted, "
+                    + "publishing failure", pResponseId);
+            String pOriginalId = pEvicted.originalId;
+            publishResponse(pOriginalId, MSG_FAILURE, pMessage, "", pEvicted.originalItem,
+                    () -> CbnScAdapter.settleMqItem(pOriginalId));
+            IDEMPOTENCY.release(dealId(pEvicted.messageType, pEvicted.bloombergId));
+            return;
         }
 
+        TransactionMetadata pMetadata;
+        pMetadata = TRANSACTION_CACHE.get(pResponseId);
+
         if (pMetadata == null) {
             yLOGGER.log(Level.WARNING,
                     LOG_PREFIX + "checkOfsResponse: No metadata found for responseId={0}",
@@ -530,6 +579,8 @@ public class CbnScService extends ServiceLifecycle {
                 pMsgOut = pOfsRequestDetailRecord.getMsgOut().getValue();
 
                 if (pMsgOut != null && !pMsgOut.isEmpty()) {
+                    METRICS.recordMillis(Phase.OFS_ROUND_TRIP,
+                            System.currentTimeMillis() - pMetadata.createdAt);
                     yLOGGER.log(Level.INFO, LOG_PREFIX
                             + "checkOfsResponse: OFS response message retrieved successfully");
 
@@ -552,15 +603,21 @@ public class CbnScService extends ServiceLifecycle {
                                 pTransactRef);
                     }
 
-                    publishResponse(pMetadata.originalId, pStatus, pMessage, pTransactRef,
-                            pMetadata.originalItem);
-
-                    if (MSG_SUCCESS.equalsIgnoreCase(pStatus)
-                            && "WMQ".equalsIgnoreCase(pMetadata.adapterMode)) {
-                        CbnScAdapter.acknowledgeMqMessage(pMetadata.originalId);
-                        yLOGGER.log(Level.INFO,
-                                LOG_PREFIX + "checkOfsResponse: MQ message acknowledged for id={0}",
-                                pMetadata.originalId);
+                    boolean pAck = MSG_SUCCESS.equalsIgnoreCase(pStatus)
+                            && "WMQ".equalsIgnoreCase(pMetadata.adapterMode);
+                    String pOriginalId = pMetadata.originalId;
+                    publishResponse(pOriginalId, pStatus, pMessage, pTransactRef,
+                            pMetadata.originalItem, () -> {
+                                if (pAck) {
+                                    CbnScAdapter.acknowledgeMqMessage(pOriginalId);
+                                    yLOGGER.log(Level.INFO, LOG_PREFIX
+                                            + "checkOfsResponse: MQ message acknowledged for id={0}",
+                                            pOriginalId);
+                                }
+                                CbnScAdapter.settleMqItem(pOriginalId);
+                            });
+
+                    if (pAck) {
                         try {
                             CbnTfBackup.backupMessage(pMessage, "SC", pMetadata.originalId);
                             
@@ -574,9 +631,9 @@ public class CbnScService extends ServiceLifecycle {
                         }
                     }
 
-                    synchronized (TRANSACTION_CACHE) {
-                        TRANSACTION_CACHE.remove(pResponseId);
-                    }
+                    IDEMPOTENCY.complete(dealId(pMetadata.messageType, pMetadata.bloombergId),
+                            pStatus, pTransactRef, pMessage);
+                    TRANSACTION_CACHE.remove(pResponseId);
 
                 } else {
                     yLOGGER.log(Level.WARNING,
@@ -594,23 +651,25 @@ public class CbnScService extends ServiceLifecycle {
             yLOGGER.log(Level.SEVERE, LOG_PREFIX + "checkOfsResponse: Error checking OFS response",
                     e);
             pMessage = "Error checking OFS response: " + e.getMessage();
-            publishResponse(pMetadata.originalId, pStatus, pMessage, pTransactRef,
-                    pMetadata.originalItem);
+            String pOriginalId = pMetadata.originalId;
+            publishResponse(pOriginalId, pStatus, pMessage, pTransactRef,
+                    pMetadata.originalItem, () -> CbnScAdapter.settleMqItem(pOriginalId));
 
-            synchronized (TRANSACTION_CACHE) {
-                TRANSACTION_CACHE.remove(pResponseId);
-            }
+            IDEMPOTENCY.complete(dealId(pMetadata.messageType, pMetadata.bloombergId),
+                    pStatus, pTransactRef, pMessage);
+            TRANSACTION_CACHE.remove(pResponseId);
 
         } catch (Exception e) {
             yLOGGER.log(Level.SEVERE,
                     LOG_PREFIX + "checkOfsResponse: Unexpected error in checkOfsResponse", e);
             pMessage = "Unexpected error: " + e.getMessage();
-            publishResponse(pMetadata.originalId, pStatus, pMessage, pTransactRef,
-                    pMetadata.originalItem);
+            String pOriginalId = pMetadata.originalId;
+            publishResponse(pOriginalId, pStatus, pMessage, pTransactRef,
+                    pMetadata.originalItem, () -> CbnScAdapter.settleMqItem(pOriginalId));
 
-            synchronized (TRANSACTION_CACHE) {
-                TRANSACTION_CACHE.remove(pResponseId);
-            }
+            IDEMPOTENCY.complete(dealId(pMetadata.messageType, pMetadata.bloombergId),
+                    pStatus, pTransactRef, pMessage);
+            TRANSACTION_CACHE.remove(pResponseId);
 
         } finally {
             pOfsRequestDetailRecord = null;
@@ -654,6 +713,11 @@ public class CbnScService extends ServiceLifecycle {
             return null;
         }
 
+        // Offset based ID: read just the item, not the whole file
+        if (pRef.offset() >= 0) {
+            return CbnScDserializer.readItemAt(pRef.file(), pRef.offset(), OBJECT_MAPPER);
+        }
+
         JsonNode pRoot = CbnScAdapter.readRoot(pRef.file(), OBJECT_MAPPER);
 
         if (MSG_TYPE_ST.equals(pMessageType)) {
@@ -991,20 +1055,67 @@ public class CbnScService extends ServiceLifecycle {
     // UTILITY METHODS
     // ========================================================================
 
+    /**
+     * Answers a redelivered deal without a new OFS request: the recorded response of a
+     * completed deal is published again. A deal still awaiting its OFS response is deferred to the
+     * next PROCESS cycle and only acknowledged once the original has a final outcome.
+     */
+    private void replayDuplicate(String pRecordId, JsonNode pItem, String pBloombergId,
+            CbnTfIdempotencyIndex.Entry pPrevious) {
+        if (!pPrevious.isCompleted()) {
+            IDEMPOTENCY.defer(pRecordId);
+            yLOGGER.log(Level.INFO, LOG_PREFIX
+                    + "processOfsRequest: Duplicate BLOOMBERG_ID={0} still in flight, deferred",
+                    pBloombergId);
+            return;
+        }
+        yLOGGER.log(Level.INFO, LOG_PREFIX
+                + "processOfsRequest: Duplicate BLOOMBERG_ID={0}, replaying response ref={1}",
+                new Object[] { pBloombergId, pPrevious.getTransactRef() });
+        publishResponse(pRecordId, pPrevious.getStatus(), pPrevious.getMessage(),
+                pPrevious.getTransactRef(), pItem, () -> {
+                    if ("WMQ".equalsIgnoreCase(mAdapterFlag)) {
+                        CbnScAdapter.acknowledgeMqMessage(pRecordId);
+                        CbnScAdapter.settleMqItem(pRecordId);
+                    }
+                });
+    }
+
+    /**
+     * Idempotency key of a message: SEC_TRADE deals only, SECURITY_MASTER messages are
+     * updates of the security and always processed.
+     */
+    private static String dealId(String pMessageType, String pBloombergId) {
+        return MSG_TYPE_ST.equals(pMessageType) ? pBloombergId : null;
+    }
+
     /**
      * Builds response and publishes using CbnScPayload and CbnScProducer.
      */
     private void publishResponse(String pId, String pStatus, String pMessage, String pTransactRef,
             JsonNode pOriginalItem) {
+        publishResponse(pId, pStatus, pMessage, pTransactRef, pOriginalItem, null);
+    }
+
+    /**
+     * Builds and publishes a response; pOnPublished (the acknowledgement of the inbound item) runs
+     * only once the response is published, in batch publish mode after its batch commits.
+     */
+    private void publishResponse(String pId, String pStatus, String pMessage, String pTransactRef,
+            JsonNode pOriginalItem, Runnable pOnPublished) {
+        long started = System.nanoTime();
         try {
             String pJsonResponse = mPayloadHandler.buildResponse(pStatus, pMessage, pTransactRef,
                     pOriginalItem);
             yLOGGER.log(Level.INFO, LOG_PREFIX + "publishResponse: Built response: {0}",
                     pJsonResponse);
-            mProducer.publishResponse(pJsonResponse, mAdapterFlag, pId);
+            mProducer.publishResponse(pJsonResponse, mAdapterFlag, pId, pOnPublished);
+            METRICS.count(MSG_SUCCESS.equalsIgnoreCase(pStatus) ? Outcome.SUCCESS : Outcome.FAILURE);
         } catch (Exception e) {
             yLOGGER.log(Level.SEVERE, e,
                     () -> LOG_PREFIX + "publishResponse: Error publishing response for id=" + pId);
+        } finally {
+            METRICS.record(Phase.PUBLISH_RESPONSE, started);
         }
     }
 
@@ -1012,11 +1123,12 @@ public class CbnScService extends ServiceLifecycle {
      * Persists the failed transaction source to EXCEPTS directory.
      */
     private void persistToExcepts(String pId, String pReason) {
+        METRICS.count(Outcome.EXCEPTED);
         try {
             if ("FILE".equalsIgnoreCase(mAdapterFlag)) {
                 FileItemRef pRef = CbnScAdapter.parseFileItemRef(pId);
                 if (pRef != null) {
-                    CbnScAdapter.persistFailedFileItem(pRef, mExceptsDir, pReason);
+                    CbnScAdapter.persistFailedFileItem(pRef, mExceptsDir, pReason, OBJECT_MAPPER);
                 } else {
                     yLOGGER.log(Level.WARNING,
                             LOG_PREFIX + "persistToExcepts: could not parse FILE ref from id={0}",
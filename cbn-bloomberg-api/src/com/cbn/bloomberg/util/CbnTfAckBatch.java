@@ -0,0 +1,366 @@
+package com.cbn.bloomberg.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import com.cbn.bloomberg.util.CbnTfBrowsing.ModuleType;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: CbnTfAckBatch.java
+ * Author: CSD Development Team
+ * Created: 2026-02-11
+ * Last Modified: 2026-02-28
+ * =============================================================================
+ *
+ * PURPOSE: Batched acknowledgement for WMQ ingestion (tf.wmq.ackledge=batch).
+ *
+ * Instead of one selector consumer + receive per browsed message, and a second
+ * selector consumer + receive per message at acknowledgement time, a batch:
+ * 1. destructively reads all browsed messages of a module in ONE transacted
+ *    session, through one consumer per chunk of ids (JMSMessageID IN (...));
+ * 2. stages the payloads locally (the adapter's message cache);
+ * 3. keeps the MQ transaction open while the items go through OFS;
+ * 4. commits the whole batch once every item of every message has a final
+ *    outcome (success ack or persisted failure).
+ *
+ * If the JVM stops or a batch does not settle within tf.wmq.batch.timeout the
+ * transaction is rolled back and the queue manager redelivers the messages,
+ * which preserves the at-least-once behaviour of manual ack mode.
+ *
+ * A JMS transaction cannot be committed for some of its messages only, so the
+ * rollback also redelivers messages whose deals were already booked and whose
+ * responses were published. Batching is therefore only used together with the
+ * idempotency index (tf.idem.enabled=true), which replays the recorded response
+ * of such a redelivered deal instead of booking it again. Without the index,
+ * tf.wmq.ackledge=batch falls back to manual acknowledgement.
+ *
+ * The open transaction holds an MQ unit of work (and its log space) for the
+ * whole OFS round trip, so it is kept short: at most tf.wmq.batch.max.messages
+ * messages per batch (the rest stay on the queue for the next cycle) and a
+ * default timeout of 5 minutes. The timeout must cover OFS processing, the
+ * CHECK.RESPONSE harvest backoff (tf.ofs.harvest.backoff.max) and the response
+ * publish linger, since items settle only once their response is published.
+ *
+ * MODIFICATION HISTORY:
+ * - 2026-02-11 | Initial creation
+ * - 2026-02-27 | Default timeout 5 min (was 30 min); batch size capped
+ * - 2026-02-28 | Requires the idempotency index, falls back to manual ack without it
+ * =============================================================================
+ */
+public final class CbnTfAckBatch {
+
+    private static final Logger yLogger = Logger.getLogger(CbnTfAckBatch.class.getName());
+
+    /** Acknowledgement mode value that enables batching */
+    public static final String ACK_MODE_BATCH = "batch";
+
+    private static final int DEFAULT_SELECTOR_CHUNK = 50;
+    private static final int DEFAULT_MAX_MESSAGES = 200;
+    private static final long DEFAULT_TIMEOUT_MS = 300000L;
+    private static final long RECEIVE_TIMEOUT_MS = 2000L;
+
+    // Logs the manual ack fallback once
+    private static final AtomicBoolean FALLBACK_LOGGED = new AtomicBoolean();
+
+    // Normalized message id -> open batch that consumed it
+    private static final Map<String, CbnTfAckBatch> OPEN_BY_MESSAGE = new ConcurrentHashMap<>();
+
+    private final ModuleType mModule;
+    private final CbnTfConnectionPool mPool;
+    private final long mOpenedAt;
+
+    // ==== BATCH STATE (guarded by this) ====
+    private Session mSession;
+    private final Map<String, BitSet> mOutstanding = new HashMap<>();
+
+    private CbnTfAckBatch(ModuleType pModule, CbnTfConnectionPool pPool, Session pSession) {
+        this.mModule = pModule;
+        this.mPool = pPool;
+        this.mSession = pSession;
+        this.mOpenedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * True if the given tf.wmq.ackledge value selects batched acknowledgement and the idempotency
+     * index is on. Otherwise the callers acknowledge manually (see class comment).
+     */
+    public static boolean isBatchMode(String pAckMode) {
+        if (pAckMode == null || !ACK_MODE_BATCH.equalsIgnoreCase(pAckMode.trim())) {
+            return false;
+        }
+        if (CbnTfIdempotencyIndex.isConfigured()) {
+            return true;
+        }
+        if (FALLBACK_LOGGED.compareAndSet(false, true)) {
+            yLogger.log(Level.SEVERE, "[CbnTfAckBatch] tf.wmq.ackledge=batch requires "
+                    + "tf.idem.enabled=true, acknowledging manually");
+        }
+        return false;
+    }
+
+    /**
+     * Opens a new batch on a transacted pooled session. Stale batches of the same module are
+     * rolled back first.
+     */
+    public static CbnTfAckBatch open(CbnTfConnectionPool pPool, ModuleType pModule)
+            throws JMSException {
+        expireStale(pModule);
+        return new CbnTfAckBatch(pModule, pPool, pPool.borrowSession(true, Session.SESSION_TRANSACTED));
+    }
+
+    /**
+     * Destructively reads the given messages inside the batch transaction.
+     *
+     * @param pQueueName  Inbound queue name
+     * @param pMessageIds JMSMessageIDs identified by the browse phase; only the first
+     *                    tf.wmq.batch.max.messages are received, the rest stay on the queue
+     * @return JMSMessageID -> body, in receive order; unreadable messages are omitted
+     */
+    public synchronized Map<String, String> receiveAll(String pQueueName, List<String> pMessageIds)
+            throws JMSException {
+        Map<String, String> bodies = new LinkedHashMap<>();
+        int max = maxMessages();
+        if (pMessageIds.size() > max) {
+            yLogger.log(Level.INFO, "[CbnTfAckBatch] {0}: batch limited to {1} of {2} message(s)",
+                    new Object[] { mModule.name(), max, pMessageIds.size() });
+            pMessageIds = pMessageIds.subList(0, max);
+        }
+        javax.jms.Queue queue = mSession.createQueue("queue:///" + pQueueName);
+        int chunkSize = selectorChunkSize();
+
+        for (int from = 0; from < pMessageIds.size(); from += chunkSize) {
+            List<String> chunk = pMessageIds.subList(from,
+                    Math.min(from + chunkSize, pMessageIds.size()));
+            MessageConsumer consumer = null;
+            try {
+                consumer = mSession.createConsumer(queue, buildInSelector(chunk));
+                for (int n = 0; n < chunk.size(); n++) {
+                    Message m = consumer.receive(RECEIVE_TIMEOUT_MS);
+                    if (m == null) {
+                        break;
+                    }
+                    String body = extractBody(m);
+                    if (body != null && !body.trim().isEmpty()) {
+                        bodies.put(m.getJMSMessageID(), body);
+                    }
+                }
+            } finally {
+                CbnTfBrowsing.closeQuietly(consumer);
+            }
+        }
+
+        yLogger.log(Level.INFO, "[CbnTfAckBatch] {0}: received {1} of {2} message(s) in batch",
+                new Object[] { mModule.name(), bodies.size(), pMessageIds.size() });
+        return bodies;
+    }
+
+    /**
+     * Registers the number of items of a staged message that must settle before commit.
+     *
+     * @param pCacheKey Normalized message id (see CbnTfBrowsing.normalizeCacheKey)
+     * @param pItems    Number of transaction items in the message
+     */
+    public synchronized void expect(String pCacheKey, int pItems) {
+        if (pItems > 0) {
+            BitSet items = new BitSet(pItems);
+            items.set(0, pItems);
+            mOutstanding.put(pCacheKey, items);
+        }
+    }
+
+    /**
+     * Completes registration. A batch with nothing outstanding commits immediately (it only held
+     * messages without items for this module); otherwise it waits for its items to settle.
+     */
+    public synchronized void seal() {
+        if (mOutstanding.isEmpty()) {
+            commit();
+            return;
+        }
+        for (String key : mOutstanding.keySet()) {
+            OPEN_BY_MESSAGE.put(key, this);
+        }
+        yLogger.log(Level.INFO, "[CbnTfAckBatch] {0}: batch sealed with {1} pending message(s)",
+                new Object[] { mModule.name(), mOutstanding.size() });
+    }
+
+    /**
+     * Abandons a batch whose staging failed; its messages are rolled back for redelivery.
+     */
+    public void abort() {
+        rollback();
+    }
+
+    /**
+     * Records the final outcome of one item of a staged message. When the last item of the last
+     * message settles the batch transaction is committed. Settling the same item twice, or an
+     * item of a message that is not in a batch, is a no-op.
+     *
+     * @param pCacheKey  Normalized message id
+     * @param pItemIndex Index of the transaction item within the message
+     */
+    public static void settle(String pCacheKey, int pItemIndex) {
+        CbnTfAckBatch batch = pCacheKey == null ? null : OPEN_BY_MESSAGE.get(pCacheKey);
+        if (batch != null) {
+            batch.settleItem(pCacheKey, pItemIndex);
+        }
+    }
+
+    /**
+     * True if the message is held by an open batch.
+     */
+    public static boolean isPending(String pCacheKey) {
+        return pCacheKey != null && OPEN_BY_MESSAGE.containsKey(pCacheKey);
+    }
+
+    /**
+     * Rolls back batches of the module that did not settle within tf.wmq.batch.timeout, so their
+     * messages are redelivered.
+     */
+    public static void expireStale(ModuleType pModule) {
+        long timeout = batchTimeoutMs();
+        long now = System.currentTimeMillis();
+        for (CbnTfAckBatch batch : new ArrayList<>(OPEN_BY_MESSAGE.values())) {
+            if (batch.mModule == pModule && now - batch.mOpenedAt >= timeout) {
+                batch.rollback();
+            }
+        }
+    }
+
+    private synchronized void settleItem(String pCacheKey, int pItemIndex) {
+        BitSet remaining = mOutstanding.get(pCacheKey);
+        if (remaining == null || pItemIndex < 0) {
+            return;
+        }
+        remaining.clear(pItemIndex);
+        if (!remaining.isEmpty()) {
+            return;
+        }
+        mOutstanding.remove(pCacheKey);
+        OPEN_BY_MESSAGE.remove(pCacheKey, this);
+        if (mOutstanding.isEmpty()) {
+            commit();
+        }
+    }
+
+    private synchronized void commit() {
+        if (mSession == null) {
+            return;
+        }
+        try {
+            mSession.commit();
+            mPool.releaseSession(mSession);
+            yLogger.log(Level.INFO, "[CbnTfAckBatch] {0}: batch committed",
+                    mModule.name());
+        } catch (JMSException e) {
+            yLogger.log(Level.SEVERE, "[CbnTfAckBatch] " + mModule.name()
+                    + ": batch commit failed, messages will be redelivered", e);
+            mPool.discardSession(mSession);
+        } finally {
+            mSession = null;
+        }
+    }
+
+    private synchronized void rollback() {
+        if (mSession == null && mOutstanding.isEmpty()) {
+            return;
+        }
+        for (String key : mOutstanding.keySet()) {
+            OPEN_BY_MESSAGE.remove(key, this);
+        }
+        yLogger.log(Level.WARNING,
+                "[CbnTfAckBatch] {0}: rolling back stale batch, unsettled message(s)={1}",
+                new Object[] { mModule.name(), mOutstanding.keySet() });
+        mOutstanding.clear();
+        if (mSession == null) {
+            return;
+        }
+        try {
+            mSession.rollback();
+            mPool.releaseSession(mSession);
+        } catch (JMSException e) {
+            yLogger.log(Level.WARNING, "[CbnTfAckBatch] rollback failed, discarding session", e);
+            mPool.discardSession(mSession);
+        } finally {
+            mSession = null;
+        }
+    }
+
+    // ====================================================================
+    // HELPERS
+    // ====================================================================
+
+    private static String buildInSelector(List<String> pMessageIds) {
+        StringBuilder sb = new StringBuilder("JMSMessageID IN (");
+        for (int i = 0; i < pMessageIds.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('\'').append(pMessageIds.get(i).replace("'", "''")).append('\'');
+        }
+        return sb.append(')').toString();
+    }
+
+    private static String extractBody(Message pMessage) throws JMSException {
+        if (pMessage instanceof TextMessage) {
+            return ((TextMessage) pMessage).getText();
+        }
+        if (pMessage instanceof BytesMessage) {
+            BytesMessage bm = (BytesMessage) pMessage;
+            byte[] bytes = new byte[(int) bm.getBodyLength()];
+            bm.readBytes(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        yLogger.log(Level.WARNING, "[CbnTfAckBatch] unsupported message type {0} for {1}",
+                new Object[] { pMessage.getClass().getSimpleName(), pMessage.getJMSMessageID() });
+        return null;
+    }
+
+    private static int selectorChunkSize() {
+        String value = CbnTfProperties.getInstance().getProperty("tf.wmq.batch.selector.size",
+                String.valueOf(DEFAULT_SELECTOR_CHUNK));
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return DEFAULT_SELECTOR_CHUNK;
+        }
+    }
+
+    private static int maxMessages() {
+        String value = CbnTfProperties.getInstance().getProperty("tf.wmq.batch.max.messages",
+                String.valueOf(DEFAULT_MAX_MESSAGES));
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return DEFAULT_MAX_MESSAGES;
+        }
+    }
+
+    private static long batchTimeoutMs() {
+        String value = CbnTfProperties.getInstance().getProperty("tf.wmq.batch.timeout",
+                String.valueOf(DEFAULT_TIMEOUT_MS));
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return DEFAULT_TIMEOUT_MS;
+        }
+    }
+}
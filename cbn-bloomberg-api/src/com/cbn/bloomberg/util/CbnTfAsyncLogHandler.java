@@ -0,0 +1,389 @@
+package com.cbn.bloomberg.util;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.FileHandler;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: CbnTfAsyncLogHandler.java
+ * Author: CSD Development Team
+ * Created: 2026-02-23
+ * Last Modified: 2026-02-27
+ * =============================================================================
+ *
+ * PURPOSE: Asynchronous logging for CbnTfLogTracer (logger.async.enabled).
+ *
+ * The services log full JSON payloads at INFO for every item, and the
+ * FileHandler wrote and flushed each record on the TSA worker thread. This
+ * handler only puts the record into a bounded lock-free ring buffer. A single
+ * writer thread, shared by all async handlers, drains the buffers in batches
+ * of logger.async.batch.size into the file handlers and flushes once per
+ * batch (BatchedFileHandler) instead of once per record.
+ *
+ * When a buffer is full, records at or below logger.async.drop.level (default
+ * FINE, so the INFO audit trail is never dropped) are dropped with
+ * logger.async.overflow=drop (default) and counted; the writer reports the
+ * count. Other records, and all records with logger.async.overflow=block,
+ * wait for space.
+ *
+ * Payload policies, for records whose message or a String parameter is
+ * longer than logger.payload.min.chars:
+ * - logger.payload.sample.rate=N keeps one in N of those below WARNING
+ * - logger.payload.max.chars truncates those strings (0 = no limit, default)
+ *
+ * The caller's class and method are captured before the record is queued,
+ * so the log lines are unchanged. A shutdown hook drains every buffer.
+ *
+ * MODIFICATION HISTORY:
+ * - 2026-02-23 | Initial creation
+ * - 2026-02-27 | Default drop level FINE; payload truncation off by default
+ * =============================================================================
+ */
+public final class CbnTfAsyncLogHandler extends Handler {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int DEFAULT_BATCH_SIZE = 256;
+    private static final int DEFAULT_MIN_CHARS = 1024;
+    private static final int DEFAULT_MAX_CHARS = 0;
+    private static final long IDLE_PARK_NS = 10000000L;
+    private static final long FULL_PARK_NS = 100000L;
+
+    private static final List<CbnTfAsyncLogHandler> HANDLERS = new CopyOnWriteArrayList<>();
+    private static final Thread WRITER;
+
+    static {
+        WRITER = new Thread(CbnTfAsyncLogHandler::runWriter, "CbnTfAsyncLogHandler-writer");
+        WRITER.setDaemon(true);
+        WRITER.start();
+        Runtime.getRuntime().addShutdownHook(
+                new Thread(CbnTfAsyncLogHandler::drainAll, "CbnTfAsyncLogHandler-shutdown"));
+    }
+
+    private final Handler mTarget;
+    private final RingBuffer mBuffer;
+    private final int mBatchSize;
+    private final boolean mDropOnOverflow;
+    private final int mDropLevel;
+    private final int mPayloadMinChars;
+    private final int mPayloadMaxChars;
+    private final int mSampleRate;
+
+    private final AtomicLong mDropped = new AtomicLong();
+    private final AtomicLong mSampled = new AtomicLong();
+    private final AtomicLong mPayloadSeq = new AtomicLong();
+
+    private volatile boolean mClosed;
+
+    /**
+     * FileHandler that flushes only when the writer finishes a batch. FileHandler.publish flushes
+     * after every record.
+     */
+    public static final class BatchedFileHandler extends FileHandler {
+
+        private boolean mFlushing;
+
+        public BatchedFileHandler(String pPattern, int pLimit, int pCount, boolean pAppend)
+                throws IOException {
+            super(pPattern, pLimit, pCount, pAppend);
+        }
+
+        @Override
+        public synchronized void flush() {
+            if (mFlushing) {
+                super.flush();
+            }
+        }
+
+        synchronized void flushBatch() {
+            mFlushing = true;
+            try {
+                super.flush();
+            } finally {
+                mFlushing = false;
+            }
+        }
+
+        @Override
+        public synchronized void close() {
+            flushBatch();
+            super.close();
+        }
+    }
+
+    private CbnTfAsyncLogHandler(Handler pTarget, Properties pProps) {
+        this.mTarget = pTarget;
+        this.mBuffer = new RingBuffer(intProperty(pProps, "logger.async.buffer.size", DEFAULT_BUFFER_SIZE));
+        this.mBatchSize = Math.max(1, intProperty(pProps, "logger.async.batch.size", DEFAULT_BATCH_SIZE));
+        this.mDropOnOverflow = !"block".equalsIgnoreCase(
+                pProps.getProperty("logger.async.overflow", "drop").trim());
+        this.mDropLevel = parseLevel(pProps.getProperty("logger.async.drop.level", "FINE"));
+        this.mPayloadMinChars = Math.max(0, intProperty(pProps, "logger.payload.min.chars", DEFAULT_MIN_CHARS));
+        this.mPayloadMaxChars = Math.max(0, intProperty(pProps, "logger.payload.max.chars", DEFAULT_MAX_CHARS));
+        this.mSampleRate = Math.max(1, intProperty(pProps, "logger.payload.sample.rate", 1));
+        setLevel(pTarget.getLevel());
+        setFormatter(pTarget.getFormatter());
+    }
+
+    /**
+     * True if logger.async.enabled selects asynchronous logging (default: true).
+     */
+    public static boolean isEnabled(Properties pProps) {
+        return !"false".equalsIgnoreCase(pProps.getProperty("logger.async.enabled", "true").trim());
+    }
+
+    /**
+     * Wraps a handler so that records are written to it by the shared writer thread.
+     *
+     * @param pTarget Handler doing the actual output, preferably a BatchedFileHandler
+     * @param pProps  CbnTfLogTracer properties
+     */
+    public static CbnTfAsyncLogHandler wrap(Handler pTarget, Properties pProps) {
+        CbnTfAsyncLogHandler handler = new CbnTfAsyncLogHandler(pTarget, pProps);
+        HANDLERS.add(handler);
+        return handler;
+    }
+
+    @Override
+    public void publish(LogRecord pRecord) {
+        if (mClosed || pRecord == null || !isLoggable(pRecord)) {
+            return;
+        }
+        boolean important = pRecord.getLevel().intValue() >= Level.WARNING.intValue();
+        if (!applyPayloadPolicy(pRecord, important)) {
+            mSampled.incrementAndGet();
+            return;
+        }
+        // Resolved lazily from the current stack otherwise, which is the writer's
+        pRecord.getSourceClassName();
+
+        if (mBuffer.offer(pRecord)) {
+            return;
+        }
+        if (mDropOnOverflow && pRecord.getLevel().intValue() <= mDropLevel) {
+            mDropped.incrementAndGet();
+            return;
+        }
+        while (!mBuffer.offer(pRecord)) {
+            if (mClosed) {
+                return;
+            }
+            LockSupport.unpark(WRITER);
+            LockSupport.parkNanos(FULL_PARK_NS);
+        }
+    }
+
+    @Override
+    public void flush() {
+        // Batches are flushed by the writer
+    }
+
+    @Override
+    public void close() {
+        mClosed = true;
+        HANDLERS.remove(this);
+        drain(Integer.MAX_VALUE);
+        mTarget.close();
+    }
+
+    /**
+     * Number of records dropped because the buffer was full.
+     */
+    public long getDropped() {
+        return mDropped.get();
+    }
+
+    /**
+     * Number of payload records skipped by sampling.
+     */
+    public long getSampled() {
+        return mSampled.get();
+    }
+
+    // Returns false if the record is sampled out; truncates long payload strings
+    private boolean applyPayloadPolicy(LogRecord pRecord, boolean pImportant) {
+        if (mSampleRate == 1 && mPayloadMaxChars == 0) {
+            return true;
+        }
+        String message = pRecord.getMessage();
+        Object[] params = pRecord.getParameters();
+        boolean payload = message != null && message.length() > mPayloadMinChars;
+        if (params != null) {
+            for (Object param : params) {
+                if (param instanceof String && ((String) param).length() > mPayloadMinChars) {
+                    payload = true;
+                    break;
+                }
+            }
+        }
+        if (!payload) {
+            return true;
+        }
+        if (!pImportant && mSampleRate > 1 && mPayloadSeq.getAndIncrement() % mSampleRate != 0) {
+            return false;
+        }
+        if (mPayloadMaxChars > 0) {
+            pRecord.setMessage(truncate(message));
+            if (params != null) {
+                Object[] copy = params.clone();
+                for (int i = 0; i < copy.length; i++) {
+                    if (copy[i] instanceof String) {
+                        copy[i] = truncate((String) copy[i]);
+                    }
+                }
+                pRecord.setParameters(copy);
+            }
+        }
+        return true;
+    }
+
+    private String truncate(String pValue) {
+        if (pValue == null || pValue.length() <= mPayloadMaxChars) {
+            return pValue;
+        }
+        return pValue.substring(0, mPayloadMaxChars) + "...(" + (pValue.length() - mPayloadMaxChars)
+                + " chars truncated)";
+    }
+
+    // ====================================================================
+    // WRITER
+    // ====================================================================
+
+    private static void runWriter() {
+        while (true) {
+            int written = 0;
+            for (CbnTfAsyncLogHandler handler : HANDLERS) {
+                written += handler.drain(handler.mBatchSize);
+            }
+            if (written == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NS);
+            }
+        }
+    }
+
+    // Writes up to pMax queued records and flushes the target; returns the number written
+    private synchronized int drain(int pMax) {
+        int written = 0;
+        LogRecord record;
+        while (written < pMax && (record = mBuffer.poll()) != null) {
+            try {
+                mTarget.publish(record);
+            } catch (RuntimeException e) {
+                reportError("Async log write failed", e, ErrorManager.WRITE_FAILURE);
+            }
+            written++;
+        }
+        long dropped = mDropped.getAndSet(0);
+        if (dropped > 0) {
+            LogRecord notice = new LogRecord(Level.WARNING,
+                    "[CbnTfAsyncLogHandler] " + dropped + " log record(s) dropped, buffer full");
+            notice.setLoggerName(CbnTfAsyncLogHandler.class.getName());
+            notice.setSourceClassName(CbnTfAsyncLogHandler.class.getName());
+            notice.setSourceMethodName("drain");
+            mTarget.publish(notice);
+            written++;
+        }
+        if (written > 0) {
+            if (mTarget instanceof BatchedFileHandler) {
+                ((BatchedFileHandler) mTarget).flushBatch();
+            } else {
+                mTarget.flush();
+            }
+        }
+        return written;
+    }
+
+    private static void drainAll() {
+        for (CbnTfAsyncLogHandler handler : HANDLERS) {
+            handler.drain(Integer.MAX_VALUE);
+        }
+    }
+
+    // ====================================================================
+    // RING BUFFER
+    // ====================================================================
+
+    /**
+     * Bounded lock-free multi-producer, single-consumer ring buffer. Each slot carries a sequence
+     * number that tells producers and the consumer whose turn it is.
+     */
+    static final class RingBuffer {
+
+        private final int mMask;
+        private final AtomicReferenceArray<LogRecord> mSlots;
+        private final AtomicLongArray mSequences;
+        private final AtomicLong mHead = new AtomicLong();
+
+        // Consumer position, used by the writer only (under the handler lock)
+        private long mTail;
+
+        RingBuffer(int pCapacity) {
+            int capacity = Integer.highestOneBit(Math.max(2, pCapacity - 1)) << 1;
+            this.mMask = capacity - 1;
+            this.mSlots = new AtomicReferenceArray<>(capacity);
+            this.mSequences = new AtomicLongArray(capacity);
+            for (int i = 0; i < capacity; i++) {
+                mSequences.set(i, i);
+            }
+        }
+
+        boolean offer(LogRecord pRecord) {
+            long pos = mHead.get();
+            while (true) {
+                int index = (int) pos & mMask;
+                long diff = mSequences.get(index) - pos;
+                if (diff == 0) {
+                    if (mHead.compareAndSet(pos, pos + 1)) {
+                        mSlots.set(index, pRecord);
+                        mSequences.set(index, pos + 1);
+                        return true;
+                    }
+                    pos = mHead.get();
+                } else if (diff < 0) {
+                    return false;
+                } else {
+                    pos = mHead.get();
+                }
+            }
+        }
+
+        LogRecord poll() {
+            int index = (int) mTail & mMask;
+            if (mSequences.get(index) != mTail + 1) {
+                return null;
+            }
+            LogRecord record = mSlots.get(index);
+            mSlots.set(index, null);
+            mSequences.set(index, mTail + mMask + 1);
+            mTail++;
+            return record;
+        }
+    }
+
+    private static int parseLevel(String pLevel) {
+        try {
+            return Level.parse(pLevel.trim()).intValue();
+        } catch (IllegalArgumentException | NullPointerException e) {
+            return Level.INFO.intValue();
+        }
+    }
+
+    private static int intProperty(Properties pProps, String pKey, int pDefault) {
+        try {
+            return Integer.parseInt(pProps.getProperty(pKey, "").trim());
+        } catch (NumberFormatException e) {
+            return pDefault;
+        }
+    }
+}
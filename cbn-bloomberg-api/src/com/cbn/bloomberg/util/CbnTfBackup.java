@@ -1,36 +1,414 @@
 package com.cbn.bloomberg.util;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: CbnTfBackup.java
+ * Author: CSD Development Team
+ * Created: 2025-11-20
+ * Last Modified: 2026-02-28
+ * =============================================================================
+ *
+ * PURPOSE: Audit backup of inbound and response messages.
+ *
+ * In async mode (tf.nfs.backup.mode, default) backupMessage only enqueues the
+ * message on a bounded queue. A single writer thread drains the queue in
+ * batches and appends each message as one JSON line to a rolling segment
+ * file per module:
+ *   <tf.nfs.backup.dir>/<module>/<module>_<yyyyMMdd_HHmmss_SSS>_<host>-<pid>.jsonl[.gz]
+ * The host and pid keep agents sharing the NFS backup dir apart, and a segment
+ * is always created new, never appended to.
+ * A segment is rolled when it exceeds tf.nfs.backup.segment.bytes or
+ * tf.nfs.backup.segment.age ms, and is optionally gzip compressed. When the
+ * queue is full the caller writes the message itself, so no backup is dropped.
+ * Pending messages are flushed by a shutdown hook.
+ *
+ * In sync mode every message is written to its own file, as before.
+ *
+ * MODIFICATION HISTORY:
+ * - 2025-11-20 | Initial creation
+ * - 2026-02-17 | Asynchronous batched segment writer, UTF-8 output
+ * - 2026-02-28 | Host and pid in file names, CREATE_NEW, writer stopped before closeAll
+ * =============================================================================
+ */
 public class CbnTfBackup {
     private static final Logger LOGGER = Logger.getLogger(CbnTfBackup.class.getName());
     private static final DateTimeFormatter TS_FMT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss_SSS");
 
+    private static final String MODE_SYNC = "sync";
+    private static final int DEFAULT_QUEUE_SIZE = 10000;
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+    private static final long DEFAULT_SEGMENT_AGE_MS = 3600000L;
+    private static final long POLL_INTERVAL_MS = 1000L;
+    private static final byte[] NEWLINE = { '\n' };
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String INSTANCE = instanceName();
+
+    private static final boolean ASYNC = !MODE_SYNC.equalsIgnoreCase(
+            property("tf.nfs.backup.mode", "async"));
+    private static final BlockingQueue<Entry> QUEUE = new ArrayBlockingQueue<>(
+            (int) Math.max(1L, longProperty("tf.nfs.backup.queue.size", DEFAULT_QUEUE_SIZE)));
+    private static final SegmentWriter WRITER = new SegmentWriter();
+
+    private static volatile boolean sRunning = true;
+    private static final Thread WRITER_THREAD;
+
+    static {
+        if (ASYNC) {
+            WRITER_THREAD = new Thread(CbnTfBackup::runWriter, "CbnTfBackup-writer");
+            WRITER_THREAD.setDaemon(true);
+            WRITER_THREAD.start();
+            Runtime.getRuntime().addShutdownHook(
+                    new Thread(CbnTfBackup::shutdown, "CbnTfBackup-shutdown"));
+        } else {
+            WRITER_THREAD = null;
+        }
+    }
+
+    // One queued backup
+    private static final class Entry {
+
+        private final String mModule;
+        private final String mOriginalId;
+        private final String mBody;
+        private final String mTimestamp;
+
+        Entry(String pModule, String pOriginalId, String pBody) {
+            this.mModule = pModule;
+            this.mOriginalId = pOriginalId;
+            this.mBody = pBody;
+            this.mTimestamp = LocalDateTime.now().format(TS_FMT);
+        }
+    }
+
     public static void backupMessage(String messageBody, String module, String originalId) {
-        
-       
+        if (messageBody == null) {
+            return;
+        }
+        String dirName = sanitize(module);
+        if (!ASYNC) {
+            writeSingleFile(messageBody, dirName);
+            return;
+        }
+
+        Entry entry = new Entry(dirName, originalId, messageBody);
+        if (!QUEUE.offer(entry)) {
+            // Queue full: write it on the caller thread rather than lose it
+            LOGGER.log(Level.WARNING, "[CbnTfBackup] Backup queue full, writing {0} inline",
+                    originalId);
+            List<Entry> single = new ArrayList<>(1);
+            single.add(entry);
+            WRITER.write(single);
+        }
+    }
+
+    /**
+     * Number of messages waiting for the writer thread.
+     */
+    public static int pending() {
+        return QUEUE.size();
+    }
+
+    // ====================================================================
+    // WRITER
+    // ====================================================================
+
+    private static void runWriter() {
+        int batchSize = (int) Math.max(1L, longProperty("tf.nfs.backup.batch.size", DEFAULT_BATCH_SIZE));
+        List<Entry> batch = new ArrayList<>(batchSize);
+        while (sRunning) {
+            try {
+                Entry first = QUEUE.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    QUEUE.drainTo(batch, batchSize - 1);
+                    WRITER.write(batch);
+                    batch.clear();
+                } else {
+                    WRITER.rollExpired();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "[CbnTfBackup] Writer error", e);
+                batch.clear();
+            }
+        }
+    }
+
+    private static void shutdown() {
+        sRunning = false;
+        try {
+            WRITER_THREAD.join(POLL_INTERVAL_MS * 2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (WRITER_THREAD.isAlive()) {
+            // Still in a slow write: closeAll waits for it, and the writer closes what it writes later
+            LOGGER.log(Level.WARNING, "[CbnTfBackup] Writer still busy at shutdown");
+        }
+        List<Entry> rest = new ArrayList<>();
+        QUEUE.drainTo(rest);
+        if (!rest.isEmpty()) {
+            WRITER.write(rest);
+        }
+        WRITER.closeAll();
+        LOGGER.log(Level.INFO, "[CbnTfBackup] Flushed {0} pending backups on shutdown", rest.size());
+    }
+
+    /**
+     * Rolling segment files, one open segment per module. Synchronized because the
+     * caller thread writes here too when the queue is full.
+     */
+    private static final class SegmentWriter {
+
+        private final Map<String, Segment> mSegments = new HashMap<>();
+        private boolean mClosed;
+
+        synchronized void write(List<Entry> pBatch) {
+            Map<String, Segment> touched = new HashMap<>();
+            for (Entry entry : pBatch) {
+                try {
+                    Segment segment = segmentFor(entry.mModule);
+                    segment.append(toJsonLine(entry));
+                    touched.put(entry.mModule, segment);
+                } catch (IOException e) {
+                    LOGGER.log(Level.SEVERE, "[CbnTfBackup] Failed to backup message "
+                            + entry.mOriginalId + " for " + entry.mModule, e);
+                    close(entry.mModule);
+                }
+            }
+            for (Map.Entry<String, Segment> e : touched.entrySet()) {
+                try {
+                    e.getValue().flush();
+                } catch (IOException ex) {
+                    LOGGER.log(Level.SEVERE, "[CbnTfBackup] Failed to flush " + e.getValue().mFile, ex);
+                    close(e.getKey());
+                }
+            }
+            if (mClosed) {
+                // Written after closeAll: nothing would close these segments
+                closeSegments();
+            }
+        }
+
+        synchronized void rollExpired() {
+            List<String> expired = new ArrayList<>();
+            for (Map.Entry<String, Segment> e : mSegments.entrySet()) {
+                if (e.getValue().isExpired()) {
+                    expired.add(e.getKey());
+                }
+            }
+            for (String module : expired) {
+                close(module);
+            }
+        }
+
+        /**
+         * Closes every open segment. Later writes (a writer thread that outlived the shutdown
+         * join) still go to new segments, which are closed after each batch.
+         */
+        synchronized void closeAll() {
+            mClosed = true;
+            closeSegments();
+        }
+
+        private void closeSegments() {
+            for (String module : new ArrayList<>(mSegments.keySet())) {
+                close(module);
+            }
+        }
+
+        private Segment segmentFor(String pModule) throws IOException {
+            Segment segment = mSegments.get(pModule);
+            if (segment != null && (segment.isFull() || segment.isExpired())) {
+                close(pModule);
+                segment = null;
+            }
+            if (segment == null) {
+                segment = Segment.open(pModule);
+                mSegments.put(pModule, segment);
+                LOGGER.log(Level.INFO, "[CbnTfBackup] Opened backup segment {0}", segment.mFile);
+            }
+            return segment;
+        }
+
+        private void close(String pModule) {
+            Segment segment = mSegments.remove(pModule);
+            if (segment == null) {
+                return;
+            }
+            try {
+                segment.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "[CbnTfBackup] Failed to close " + segment.mFile, e);
+            }
+        }
+    }
+
+    // One open segment file
+    private static final class Segment {
+
+        private final Path mFile;
+        private final OutputStream mOut;
+        private final long mOpenedAt = System.currentTimeMillis();
+        private final long mMaxBytes;
+        private final long mMaxAgeMs;
+        private long mBytes;
+
+        private Segment(Path pFile, OutputStream pOut) {
+            this.mFile = pFile;
+            this.mOut = pOut;
+            this.mMaxBytes = longProperty("tf.nfs.backup.segment.bytes", DEFAULT_SEGMENT_BYTES);
+            this.mMaxAgeMs = longProperty("tf.nfs.backup.segment.age", DEFAULT_SEGMENT_AGE_MS);
+        }
+
+        static Segment open(String pModule) throws IOException {
+            Path dir = backupDir().resolve(pModule);
+            Files.createDirectories(dir);
+            boolean gzip = Boolean.parseBoolean(property("tf.nfs.backup.compress", "false"));
+            String suffix = gzip ? ".jsonl.gz" : ".jsonl";
+            Path file = dir.resolve(uniqueName(pModule, suffix));
+            OutputStream out;
+            try {
+                out = Files.newOutputStream(file, StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.WRITE);
+            } catch (FileAlreadyExistsException e) {
+                // Same millisecond as an earlier segment of this JVM
+                file = dir.resolve(uniqueName(pModule, "_" + System.nanoTime() + suffix));
+                out = Files.newOutputStream(file, StandardOpenOption.CREATE_NEW,
+                        StandardOpenOption.WRITE);
+            }
+            // syncFlush so that every flushed batch is readable even if the segment is never closed
+            out = gzip ? new GZIPOutputStream(out, 65536, true) : new BufferedOutputStream(out, 65536);
+            return new Segment(file, out);
+        }
+
+        void append(byte[] pLine) throws IOException {
+            mOut.write(pLine);
+            mOut.write(NEWLINE);
+            mBytes += pLine.length + 1;
+        }
+
+        void flush() throws IOException {
+            mOut.flush();
+        }
+
+        boolean isFull() {
+            return mBytes >= mMaxBytes;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() - mOpenedAt >= mMaxAgeMs;
+        }
+
+        void close() throws IOException {
+            mOut.close();
+        }
+    }
+
+    // ====================================================================
+    // HELPERS
+    // ====================================================================
+
+    // {"ts":"...","module":"...","id":"...","message":"<body>"}
+    private static byte[] toJsonLine(Entry pEntry) throws IOException {
+        StringWriter sw = new StringWriter(pEntry.mBody.length() + 128);
+        try (JsonGenerator gen = JSON_FACTORY.createGenerator(sw)) {
+            gen.writeStartObject();
+            gen.writeStringField("ts", pEntry.mTimestamp);
+            gen.writeStringField("module", pEntry.mModule);
+            gen.writeStringField("id", pEntry.mOriginalId);
+            gen.writeStringField("message", pEntry.mBody);
+            gen.writeEndObject();
+        }
+        return sw.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static void writeSingleFile(String pBody, String pModule) {
         try {
-            CbnTfProperties props = CbnTfProperties.getInstance();
-            String backupDirStr = props.getProperty("tf.nfs.backup.dir", "/t24app/app/bnk/UD/BLOOMBERG/BACKUP");
-            Path backupPath = Paths.get(backupDirStr, module);
-            LOGGER.log(Level.INFO, "[CbnTfBackup] Backup requested → module='{0}', targetPath='{1}'", new Object[]{module, backupPath});
-            if (!Files.exists(backupPath)) {
-                Files.createDirectories(backupPath);
-            }
-
-            String timestamp = LocalDateTime.now().format(TS_FMT);
-            String fileName = String.format("%s_%s.json", module, timestamp);
-            Files.write(backupPath.resolve(fileName), messageBody.getBytes());
-            
-            LOGGER.log(Level.INFO, "[CbnTfBackup] Backed up {0} message to {1}", new Object[]{module, fileName});
+            Path backupPath = backupDir().resolve(pModule);
+            Files.createDirectories(backupPath);
+
+            String fileName = uniqueName(pModule, ".json");
+            try {
+                Files.write(backupPath.resolve(fileName), pBody.getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            } catch (FileAlreadyExistsException e) {
+                fileName = uniqueName(pModule, "_" + System.nanoTime() + ".json");
+                Files.write(backupPath.resolve(fileName), pBody.getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            }
+
+            LOGGER.log(Level.INFO, "[CbnTfBackup] Backed up {0} message to {1}", new Object[]{pModule, fileName});
         } catch (Exception e) {
             LOGGER.log(Level.SEVERE, "[CbnTfBackup] Failed to backup message", e);
         }
     }
-}
\ No newline at end of file
+
+    // <module>_<yyyyMMdd_HHmmss_SSS>_<host>-<pid><suffix>
+    private static String uniqueName(String pModule, String pSuffix) {
+        return pModule + "_" + LocalDateTime.now().format(TS_FMT) + "_" + INSTANCE + pSuffix;
+    }
+
+    // "host-pid" of the running JVM, as CbnTfPartitioning names its agents
+    private static String instanceName() {
+        String[] name = ManagementFactory.getRuntimeMXBean().getName().split("@", 2);
+        String instance = name.length == 2 ? name[1] + "-" + name[0] : name[0];
+        return instance.replaceAll("[^A-Za-z0-9_.\\-]", "_");
+    }
+
+    private static Path backupDir() {
+        return Paths.get(property("tf.nfs.backup.dir", "/t24app/app/bnk/UD/BLOOMBERG/BACKUP"));
+    }
+
+    private static String sanitize(String pModule) {
+        if (pModule == null || pModule.trim().isEmpty()) {
+            return "UNKNOWN";
+        }
+        return pModule.trim().replaceAll("[^A-Za-z0-9_\\-]", "_");
+    }
+
+    private static String property(String pKey, String pDefault) {
+        String value = CbnTfProperties.getInstance().getProperty(pKey, pDefault);
+        return value == null ? pDefault : value.trim();
+    }
+
+    private static long longProperty(String pKey, long pDefault) {
+        try {
+            return Long.parseLong(property(pKey, String.valueOf(pDefault)));
+        } catch (NumberFormatException e) {
+            return pDefault;
+        }
+    }
+}
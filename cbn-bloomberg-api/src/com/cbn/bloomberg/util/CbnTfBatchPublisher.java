@@ -0,0 +1,431 @@
+package com.cbn.bloomberg.util;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.jms.JMSException;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: CbnTfBatchPublisher.java
+ * Author: CSD Development Team
+ * Created: 2026-02-18
+ * Last Modified: 2026-02-28
+ * =============================================================================
+ *
+ * PURPOSE: Batched, transacted publishing of response messages to the outbound
+ * queue (tf.wmq.outbound.queue).
+ *
+ * The module producers used to open a connection, session and producer for
+ * every response and send it with an implicit per-message commit. With
+ * tf.wmq.publish.mode=batch (default) publish() only queues the response. One
+ * sender thread per module keeps a long-lived transacted session from the
+ * shared CbnTfConnectionPool, sends the queued responses and commits them as
+ * a group once tf.wmq.publish.batch.size responses are sent or
+ * tf.wmq.publish.linger ms have passed since the first one of the batch.
+ *
+ * A failed batch is rolled back and resent on a fresh session up to
+ * tf.wmq.retry.attempts times. Queued responses are flushed by a shutdown
+ * hook. Responses are published at most tf.wmq.publish.linger ms after
+ * publish() returns rather than before.
+ *
+ * Since publish() returns before the response is on the queue, the caller
+ * passes the acknowledgement of the inbound message as an after-commit action.
+ * It runs once the batch holding the response has committed, so a crash
+ * before the commit leaves the inbound message unacked and the queue manager
+ * redelivers it. The actions run in order on a separate acknowledgement
+ * thread per module, so a slow acknowledgement (a selector receive) does not
+ * hold up the next batch. A response that still fails after the last retry
+ * (or is not sent at shutdown) is parked as
+ * WMQ_RESPONSE_<module>_<txn>_<timestamp>.json in tf.nfs.error.dir with a
+ * .err sidecar, and its action is not run.
+ *
+ * At shutdown the sender is stopped and joined (interrupted if it does not
+ * finish in time) before the queued responses are parked; the hand-over is
+ * made under a lock, so a response is either sent by the sender or parked,
+ * never dropped in between.
+ *
+ * MODIFICATION HISTORY:
+ * - 2026-02-18 | Initial creation
+ * - 2026-02-27 | After-commit actions for inbound acknowledgement; responses
+ *                that cannot be published are parked in tf.nfs.error.dir
+ * - 2026-02-28 | After-commit actions on an acknowledgement thread; sender
+ *                stopped before the shutdown hand-over
+ * =============================================================================
+ */
+public final class CbnTfBatchPublisher {
+
+    private static final Logger yLogger = Logger.getLogger(CbnTfBatchPublisher.class.getName());
+
+    /** Publish mode value that enables batching */
+    public static final String PUBLISH_MODE_BATCH = "batch";
+
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final long DEFAULT_LINGER_MS = 200L;
+    private static final int DEFAULT_QUEUE_SIZE = 5000;
+    private static final long SHUTDOWN_WAIT_MS = 5000L;
+    private static final DateTimeFormatter TS_FMT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private static final Map<String, CbnTfBatchPublisher> PUBLISHERS = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(
+                new Thread(CbnTfBatchPublisher::flushAll, "CbnTfBatchPublisher-shutdown"));
+    }
+
+    private final String mModule;
+    private final String mQueueName;
+    private final int mBatchSize;
+    private final long mLingerMs;
+    private final int mRetryAttempts;
+    private final BlockingQueue<Outbound> mQueue;
+    private final Thread mSender;
+    private final ThreadPoolExecutor mAcker;
+
+    private volatile boolean mRunning = true;
+
+    // ==== SHUTDOWN HAND-OVER (guarded by mHandover) ====
+    private final Object mHandover = new Object();
+    private boolean mClosed;
+    private List<Outbound> mSending;
+
+    // ==== SENDER STATE (sender thread only) ====
+    private CbnTfConnectionPool mPool;
+    private Session mSession;
+    private MessageProducer mProducer;
+
+    // One queued response
+    private static final class Outbound {
+
+        private final String mBody;
+        private final String mTransactionId;
+        private final Runnable mOnCommit;
+
+        Outbound(String pBody, String pTransactionId, Runnable pOnCommit) {
+            this.mBody = pBody;
+            this.mTransactionId = pTransactionId;
+            this.mOnCommit = pOnCommit;
+        }
+    }
+
+    private CbnTfBatchPublisher(String pModule) {
+        CbnTfProperties config = CbnTfProperties.getInstance();
+        this.mModule = pModule;
+        this.mQueueName = config.getProperty("tf.wmq.outbound.queue", "TF.OUTBOUND.QUEUE").trim();
+        this.mBatchSize = (int) Math.max(1L, parseLong(
+                config.getProperty("tf.wmq.publish.batch.size", ""), DEFAULT_BATCH_SIZE));
+        this.mLingerMs = Math.max(0L, parseLong(config.getProperty("tf.wmq.publish.linger", ""),
+                DEFAULT_LINGER_MS));
+        this.mRetryAttempts = (int) Math.max(1L,
+                parseLong(config.getProperty("tf.wmq.retry.attempts", ""), 3));
+        int queueSize = (int) Math.max(1L, parseLong(
+                config.getProperty("tf.wmq.publish.queue.size", ""), DEFAULT_QUEUE_SIZE));
+        this.mQueue = new LinkedBlockingQueue<>(queueSize);
+        // A full (or shut down) acknowledgement queue makes the sender run the action itself
+        this.mAcker = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(queueSize), r -> {
+                    Thread t = new Thread(r, "CbnTfBatchPublisher-" + pModule + "-ack");
+                    t.setDaemon(true);
+                    return t;
+                }, (r, executor) -> r.run());
+        this.mSender = new Thread(this::runSender, "CbnTfBatchPublisher-" + pModule);
+        this.mSender.setDaemon(true);
+        this.mSender.start();
+    }
+
+    /**
+     * True if tf.wmq.publish.mode selects batched publishing (default: batch).
+     */
+    public static boolean isBatchMode() {
+        String mode = CbnTfProperties.getInstance().getProperty("tf.wmq.publish.mode",
+                PUBLISH_MODE_BATCH);
+        return mode == null || PUBLISH_MODE_BATCH.equalsIgnoreCase(mode.trim());
+    }
+
+    /**
+     * Returns the publisher of a module (FX, FT, PD, PR, SC).
+     */
+    public static CbnTfBatchPublisher forModule(String pModule) {
+        return PUBLISHERS.computeIfAbsent(pModule, CbnTfBatchPublisher::new);
+    }
+
+    /**
+     * Queues a response for the outbound queue. Blocks while the queue is full.
+     *
+     * @param pBody          Response payload
+     * @param pTransactionId Transaction id, for logging
+     */
+    public void publish(String pBody, String pTransactionId) {
+        publish(pBody, pTransactionId, null);
+    }
+
+    /**
+     * Queues a response for the outbound queue. Blocks while the queue is full.
+     *
+     * @param pBody          Response payload
+     * @param pTransactionId Transaction id, for logging
+     * @param pOnCommit      Run on the sender thread once the response is committed, typically the
+     *                       acknowledgement of the inbound message; may be null
+     */
+    public void publish(String pBody, String pTransactionId, Runnable pOnCommit) {
+        try {
+            mQueue.put(new Outbound(pBody, pTransactionId, pOnCommit));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            park(mModule, pBody, pTransactionId, "interrupted before the response was queued");
+        }
+    }
+
+    /**
+     * Number of responses waiting to be sent.
+     */
+    public int pending() {
+        return mQueue.size();
+    }
+
+    /**
+     * Number of responses waiting to be sent for a module, 0 if its publisher was never started.
+     */
+    public static int pendingFor(String pModule) {
+        CbnTfBatchPublisher publisher = PUBLISHERS.get(pModule);
+        return publisher == null ? 0 : publisher.pending();
+    }
+
+    // ====================================================================
+    // SENDER
+    // ====================================================================
+
+    private void runSender() {
+        List<Outbound> batch = new ArrayList<>(mBatchSize);
+        while (mRunning || !mQueue.isEmpty()) {
+            try {
+                Outbound first = mQueue.poll(1000L, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + mLingerMs;
+                while (batch.size() < mBatchSize) {
+                    if (mQueue.drainTo(batch, mBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0 || !mRunning) {
+                        break;
+                    }
+                    Outbound next = mQueue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                synchronized (mHandover) {
+                    if (mClosed) {
+                        // flushAll has given up on the sender and parks what is left
+                        parkAll(batch, "not published at shutdown");
+                        return;
+                    }
+                    mSending = batch;
+                }
+                try {
+                    send(batch);
+                } finally {
+                    synchronized (mHandover) {
+                        mSending = null;
+                    }
+                }
+            } catch (InterruptedException e) {
+                mRunning = false;
+            } finally {
+                batch.clear();
+            }
+        }
+        closeSession(false);
+    }
+
+    // Sends and commits one batch, retrying on a fresh session
+    private void send(List<Outbound> pBatch) {
+        for (int attempt = 1; attempt <= mRetryAttempts; attempt++) {
+            try {
+                ensureSession();
+                for (Outbound out : pBatch) {
+                    mProducer.send(mSession.createTextMessage(out.mBody));
+                }
+                mSession.commit();
+                yLogger.log(Level.INFO,
+                        "[CbnTfBatchPublisher] {0}: WMQ: Committed {1} response(s) to queue {2}",
+                        new Object[] { mModule, pBatch.size(), mQueueName });
+                for (Outbound out : pBatch) {
+                    if (out.mOnCommit != null) {
+                        mAcker.execute(() -> runOnCommit(out));
+                    }
+                }
+                return;
+            } catch (JMSException | RuntimeException e) {
+                yLogger.log(Level.WARNING, "[CbnTfBatchPublisher] " + mModule + ": batch of "
+                        + pBatch.size() + " failed (attempt " + attempt + "/" + mRetryAttempts + ")", e);
+                closeSession(true);
+            }
+        }
+        parkAll(pBatch, "not published after " + mRetryAttempts + " attempt(s)");
+    }
+
+    private void parkAll(List<Outbound> pBatch, String pReason) {
+        for (Outbound out : pBatch) {
+            park(mModule, out.mBody, out.mTransactionId, pReason);
+        }
+    }
+
+    private void runOnCommit(Outbound pOut) {
+        if (pOut.mOnCommit == null) {
+            return;
+        }
+        try {
+            pOut.mOnCommit.run();
+        } catch (RuntimeException e) {
+            yLogger.log(Level.SEVERE, "[CbnTfBatchPublisher] " + mModule
+                    + ": after-commit action failed for txn=" + pOut.mTransactionId, e);
+        }
+    }
+
+    private void ensureSession() throws JMSException {
+        if (mSession != null && mPool.isHealthy()) {
+            return;
+        }
+        closeSession(true);
+        mPool = CbnTfConnectionPool.getInstance();
+        mSession = mPool.borrowSession(true, Session.SESSION_TRANSACTED);
+        try {
+            mProducer = mSession.createProducer(mSession.createQueue("queue:///" + mQueueName));
+        } catch (JMSException e) {
+            mPool.discardSession(mSession);
+            mSession = null;
+            throw e;
+        }
+    }
+
+    private void closeSession(boolean pFailed) {
+        if (mSession == null) {
+            return;
+        }
+        CbnTfBrowsing.closeQuietly(mProducer);
+        if (pFailed) {
+            try {
+                mSession.rollback();
+            } catch (JMSException | RuntimeException e) {
+                // Session is being discarded anyway
+            }
+            mPool.discardSession(mSession);
+        } else {
+            mPool.releaseSession(mSession);
+        }
+        mProducer = null;
+        mSession = null;
+    }
+
+    // ====================================================================
+    // SHUTDOWN
+    // ====================================================================
+
+    /**
+     * Stops every publisher once its queued responses are sent. Registered as a JVM shutdown hook;
+     * if the pool's hook has already closed the connection, the last batches reconnect.
+     */
+    public static void flushAll() {
+        for (CbnTfBatchPublisher publisher : PUBLISHERS.values()) {
+            publisher.mRunning = false;
+        }
+        for (CbnTfBatchPublisher publisher : PUBLISHERS.values()) {
+            try {
+                publisher.stop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // Joins the sender (interrupting it if needed), then parks what it has not sent
+    private void stop() throws InterruptedException {
+        mSender.join(SHUTDOWN_WAIT_MS);
+        if (mSender.isAlive()) {
+            yLogger.log(Level.WARNING, "[CbnTfBatchPublisher] {0}: sender still busy at shutdown, "
+                    + "interrupting it", mModule);
+            mSender.interrupt();
+            mSender.join(SHUTDOWN_WAIT_MS);
+        }
+        List<Outbound> unsent = new ArrayList<>();
+        synchronized (mHandover) {
+            mClosed = true;
+            mQueue.drainTo(unsent);
+            if (mSending != null) {
+                // Sender stuck in send/commit: the outcome of this batch is unknown
+                parkAll(new ArrayList<>(mSending),
+                        "in flight at shutdown, may have been published as well");
+            }
+        }
+        parkAll(unsent, "not published at shutdown");
+        mAcker.shutdown();
+        if (!mAcker.awaitTermination(SHUTDOWN_WAIT_MS, TimeUnit.MILLISECONDS)) {
+            yLogger.log(Level.WARNING, "[CbnTfBatchPublisher] {0}: {1} acknowledgement(s) not run "
+                    + "at shutdown, the inbound messages will be redelivered",
+                    new Object[] { mModule, mAcker.getQueue().size() });
+        }
+    }
+
+    // ====================================================================
+    // PARKING
+    // ====================================================================
+
+    /**
+     * Writes a response that could not be published to tf.nfs.error.dir, with a .err sidecar
+     * holding the reason, so it can be resent by hand.
+     *
+     * @param pModule        Module (FX, FT, PD, PR, SC)
+     * @param pBody          Response payload
+     * @param pTransactionId Transaction id of the response
+     * @param pReason        Why the response was not published
+     */
+    public static void park(String pModule, String pBody, String pTransactionId, String pReason) {
+        try {
+            Path dir = Paths.get(CbnTfProperties.getInstance().getNfsErrorDir());
+            Files.createDirectories(dir);
+            String ts = LocalDateTime.now().format(TS_FMT);
+            String txn = String.valueOf(pTransactionId).replaceAll("[^A-Za-z0-9_\\-]", "_");
+            Path outFile = dir.resolve(String.format("WMQ_RESPONSE_%s_%s_%s.json", pModule, txn, ts));
+            Files.write(outFile, pBody.getBytes(StandardCharsets.UTF_8));
+            Files.write(dir.resolve(String.format("WMQ_RESPONSE_%s_%s_%s.err", pModule, txn, ts)),
+                    ("[" + ts + "] FAILURE REASON: " + pReason).getBytes(StandardCharsets.UTF_8));
+            yLogger.log(Level.SEVERE, "[CbnTfBatchPublisher] {0}: WMQ: Response for txn={1} {2}, "
+                    + "parked in {3}", new Object[] { pModule, pTransactionId, pReason, outFile });
+        } catch (Exception e) {
+            yLogger.log(Level.SEVERE, "[CbnTfBatchPublisher] " + pModule + ": WMQ: Response for txn="
+                    + pTransactionId + " " + pReason + " and could not be parked: " + pBody, e);
+        }
+    }
+
+    private static long parseLong(String pValue, long pDefault) {
+        try {
+            return Long.parseLong(pValue.trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            return pDefault;
+        }
+    }
+}
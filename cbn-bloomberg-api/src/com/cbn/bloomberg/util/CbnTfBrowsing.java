@@ -16,6 +16,9 @@ import javax.jms.QueueBrowser;
 import javax.jms.Session;
 import javax.jms.TextMessage;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.ArrayList;
@@ -40,7 +43,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * CSD API Title: CbnTfBrowsing.java
  * Author: CSD Development Team
  * Created: 2025-10-11
- * Last Modified: 2026-02-03
+ * Last Modified: 2026-02-23
  * =============================================================================
  *
  * PURPOSE: Shared utility for Bloomberg message queue processing across all T24 modules.
@@ -58,12 +61,21 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  * MODIFICATION HISTORY:
  * - 2025-10-11 | Initial creation
  * - 2026-02-03 | Added ST ModuleType for SEC_TRADE support
+ * - 2026-02-13 | Routing on the ModuleType JMS property (browse selector) with a
+ *                streaming first-field fallback for unstamped messages
+ * - 2026-02-23 | Browse selector restricted to the agent's partitions
+ *                (CbnTfPartitioning)
  * =============================================================================
  */
 public final class CbnTfBrowsing {
 
     private static final Logger yLogger = Logger.getLogger(CbnTfBrowsing.class.getName());
 
+    /** JMS string property carrying the ModuleType name of a message, set by producers */
+    public static final String MODULE_PROPERTY = "ModuleType";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
     /**
      * Enumeration of Bloomberg message types and their corresponding JSON root nodes.
      * Each module adapter should use this to identify its target messages.
@@ -186,10 +198,19 @@ public final class CbnTfBrowsing {
         try {
             browseSession = pConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
             javax.jms.Queue queue = browseSession.createQueue("queue:///" + pQueueName);
-            browser = browseSession.createBrowser(queue);
+            // Stamped messages of other modules are filtered by the queue manager;
+            // unstamped (legacy) messages still have to be inspected here
+            String selector = buildModuleSelector(pModule);
+            // Likewise for the partitions of the other agents (tf.wmq.partition.count)
+            CbnTfPartitioning.Assignment assignment = CbnTfPartitioning.forModule(pModule).assign();
+            if (assignment != null) {
+                selector = "(" + selector + ") AND " + assignment.selector();
+            }
+            browser = browseSession.createBrowser(queue, selector);
 
-            yLogger.log(Level.INFO, "[CbnTfBrowsing] Browsing queue {0} for {1} messages",
-                    new Object[] { pQueueName, pModule.name() });
+            yLogger.log(Level.INFO, "[CbnTfBrowsing] Browsing queue {0} for {1} messages{2}",
+                    new Object[] { pQueueName, pModule.name(),
+                                   assignment != null ? " (" + assignment + ")" : "" });
 
             @SuppressWarnings("unchecked")
             Enumeration<Message> messages = browser.getEnumeration();
@@ -199,7 +220,22 @@ public final class CbnTfBrowsing {
                 totalBrowsed++;
 
                 String msgId = m.getJMSMessageID();
-                System.out.println("\n[" + totalBrowsed + "] Message ID: " + msgId);
+
+                if (assignment != null && !assignment.owns(m)) {
+                    skippedCount++;
+                    continue;
+                }
+
+                String stamped = m.getStringProperty(MODULE_PROPERTY);
+                if (stamped != null) {
+                    if (pModule.name().equals(stamped)) {
+                        matchingIds.add(msgId);
+                        matchCount++;
+                    } else {
+                        skippedCount++;
+                    }
+                    continue;
+                }
 
                 String body = null;
 
@@ -265,38 +301,21 @@ public final class CbnTfBrowsing {
                     continue;
                 }
 
-                try {
-                    JsonNode root = pObjMapper.readTree(body);
-                    root = normalizeRoot(root);
-
-
-                    yLogger.log(Level.INFO, "Msg {0} - after normalize - node type: {1}, has PLACEMENTS: {2}",
-                            new Object[]{msgId, root.getNodeType(), root.has("PLACEMENTS")});
-
-                    if (pModule.hasTransaction(root)) {
-                        matchingIds.add(msgId);
-                        matchCount++;
-                        yLogger.log(Level.FINE,
-                                "[CbnTfBrowsing] Identified {0} message: {1}",
-                                new Object[] { pModule.name(), msgId });
-                    } else {
-                        ModuleType detected = detectModuleType(root);
-                        yLogger.log(Level.FINE,
-                                "[CbnTfBrowsing] Skipping {0} message {1} (target: {2})",
-                                new Object[] { detected != null ? detected.name() : "UNKNOWN",
-                                              msgId, pModule.name() });
-                        skippedCount++;
-                    }
-                } catch (IOException ioe) {
-                    System.out.println("JSON parse failed: " + ioe);
-                    yLogger.log(Level.WARNING,
-                            "[CbnTfBrowsing] JSON parse error for message {0}: {1}", 
-                            new Object[]{msgId, ioe.toString()});
+                ModuleType detected = detectModuleType(body, pObjMapper);
+                if (detected == pModule) {
+                    matchingIds.add(msgId);
+                    matchCount++;
+                    yLogger.log(Level.FINE, "[CbnTfBrowsing] Identified {0} message: {1}",
+                            new Object[] { pModule.name(), msgId });
+                } else {
+                    yLogger.log(Level.FINE,
+                            "[CbnTfBrowsing] Skipping {0} message {1} (target: {2})",
+                            new Object[] { detected != null ? detected.name() : "UNKNOWN",
+                                          msgId, pModule.name() });
                     skippedCount++;
                 }
             }
 
-
             yLogger.log(Level.INFO,
                     "[CbnTfBrowsing] Browse complete for {0}: total={1}, matches={2}, skipped={3}",
                     new Object[] { pModule.name(), totalBrowsed, matchCount, skippedCount });
@@ -327,6 +346,72 @@ public final class CbnTfBrowsing {
         return null;
     }
 
+    /**
+     * Detects the module of a raw message body. A streaming parser reads only the first field
+     * name of the root object (or of a data/payload/message wrapper); the full tree is parsed only
+     * when that field is not a module root node.
+     *
+     * @param pBody      Raw JSON message body
+     * @param pObjMapper Jackson ObjectMapper for the full-parse fallback
+     * @return The detected ModuleType, or null if unknown or not valid JSON
+     */
+    public static ModuleType detectModuleType(String pBody, ObjectMapper pObjMapper) {
+        try (JsonParser parser = JSON_FACTORY.createParser(pBody)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT
+                    || parser.nextToken() != JsonToken.FIELD_NAME) {
+                return null;
+            }
+            String field = parser.getCurrentName();
+            if (isWrapperNode(field) && parser.nextToken() == JsonToken.START_OBJECT
+                    && parser.nextToken() == JsonToken.FIELD_NAME) {
+                field = parser.getCurrentName();
+            }
+            for (ModuleType module : ModuleType.values()) {
+                if (module.getJsonRootNode().equals(field)) {
+                    return module;
+                }
+            }
+        } catch (IOException ioe) {
+            yLogger.log(Level.WARNING, "[CbnTfBrowsing] JSON parse error: {0}", ioe.toString());
+            return null;
+        }
+
+        // Module node is not the first field - fall back to a full parse
+        try {
+            return detectModuleType(normalizeRoot(pObjMapper.readTree(pBody)));
+        } catch (IOException ioe) {
+            yLogger.log(Level.WARNING, "[CbnTfBrowsing] JSON parse error: {0}", ioe.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Sets the ModuleType routing property on an outgoing message, detected from its body. No-op
+     * if the module cannot be detected.
+     *
+     * @return The detected ModuleType, or null
+     */
+    public static ModuleType stampModuleType(Message pMessage, String pBody,
+            ObjectMapper pObjMapper) throws JMSException {
+        ModuleType module = detectModuleType(pBody, pObjMapper);
+        if (module != null) {
+            pMessage.setStringProperty(MODULE_PROPERTY, module.name());
+        }
+        return module;
+    }
+
+    /**
+     * Builds the browse selector for a module: messages stamped with the module, plus unstamped
+     * messages that still need content-based detection.
+     */
+    public static String buildModuleSelector(ModuleType pModule) {
+        return MODULE_PROPERTY + " = '" + pModule.name() + "' OR " + MODULE_PROPERTY + " IS NULL";
+    }
+
+    private static boolean isWrapperNode(String pField) {
+        return "data".equals(pField) || "payload".equals(pField) || "message".equals(pField);
+    }
+
     /**
      * Normalizes JSON root to handle both wrapped and unwrapped Bloomberg message formats.
      *
@@ -433,4 +518,14 @@ public final class CbnTfBrowsing {
             }
         }
     }
+
+    public static void closeQuietly(javax.jms.MessageProducer p) {
+        if (p != null) {
+            try {
+                p.close();
+            } catch (Exception e) {
+                yLogger.log(Level.FINE, "[CbnTfBrowsing] close producer ignored", e);
+            }
+        }
+    }
 }
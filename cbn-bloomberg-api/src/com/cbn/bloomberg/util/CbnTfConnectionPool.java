@@ -0,0 +1,425 @@
+package com.cbn.bloomberg.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.jms.Connection;
+import javax.jms.JMSException;
+import javax.jms.Session;
+
+import com.ibm.mq.jms.MQConnectionFactory;
+import com.ibm.msg.client.wmq.common.CommonConstants;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: CbnTfConnectionPool.java
+ * Author: CSD Development Team
+ * Created: 2026-02-10
+ * Last Modified: 2026-02-28
+ * =============================================================================
+ *
+ * PURPOSE: Long-lived, shared IBM MQ connection and session pool for all
+ * Cbn*Adapter WMQ paths. Replaces the connect-per-call pattern so that browse,
+ * consume and per-message acknowledgement no longer pay a full MQCONN handshake.
+ *
+ * One pool exists per distinct tf.wmq.* endpoint (host, port, channel, queue
+ * manager, user). Each pool holds:
+ * - a single started Connection, shared by all TSA threads (JMS connections are
+ *   thread-safe), with an ExceptionListener health check
+ * - a bounded stack of idle Sessions (JMS sessions are single-threaded, so a
+ *   session is only ever lent to one caller at a time)
+ *
+ * A broken connection is closed and transparently re-established on the next
+ * request, honouring tf.wmq.retry.attempts / tf.wmq.retry.delay. Reconnecting
+ * (and the delay between attempts) runs under a per-pool connect lock, not the
+ * pool monitor, so releasing sessions and health checks are never held up by
+ * a reconnect; concurrent requests wait for the reconnecting thread. A daemon
+ * evictor closes sessions and connections idle longer than
+ * tf.wmq.pool.idle.timeout.
+ *
+ * MODIFICATION HISTORY:
+ * - 2026-02-10 | Initial creation
+ * - 2026-02-27 | Reconnect retries no longer sleep while holding the pool monitor
+ * - 2026-02-28 | ExceptionListener ignores events from replaced connections
+ * - 2026-02-28 | getGeneration, for listeners to notice reconnects
+ * =============================================================================
+ */
+public final class CbnTfConnectionPool {
+
+    private static final Logger yLogger = Logger.getLogger(CbnTfConnectionPool.class.getName());
+
+    private static final Map<String, CbnTfConnectionPool> POOLS = new ConcurrentHashMap<>();
+
+    private static final long EVICT_INTERVAL_MS = 60000L;
+
+    private static final ScheduledExecutorService EVICTOR = Executors
+            .newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "CbnTfConnectionPool-evictor");
+                t.setDaemon(true);
+                return t;
+            });
+
+    static {
+        EVICTOR.scheduleWithFixedDelay(() -> {
+            for (CbnTfConnectionPool pool : POOLS.values()) {
+                pool.evictIdle();
+            }
+        }, EVICT_INTERVAL_MS, EVICT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        Runtime.getRuntime().addShutdownHook(
+                new Thread(CbnTfConnectionPool::closeAll, "CbnTfConnectionPool-shutdown"));
+    }
+
+    // ==== ENDPOINT ====
+    private final String mKey;
+    private final Properties mProps;
+
+    // ==== POOL SETTINGS ====
+    private final int mMaxIdleSessions;
+    private final long mIdleTimeoutMs;
+    private final int mRetryAttempts;
+    private final long mRetryDelayMs;
+
+    // ==== RECONNECT: one thread (re)connects, lock taken before this ====
+    private final Object mConnectLock = new Object();
+
+    // ==== POOL STATE (guarded by this) ====
+    private Connection mConnection;
+    private volatile boolean mBroken;
+    private long mConnectionLastUsed;
+    private int mGeneration;
+    private final Deque<PooledSession> mIdleSessions = new ArrayDeque<>();
+    private final Map<Session, Integer> mLentSessions = new IdentityHashMap<>();
+
+    /**
+     * Idle session together with the connection generation it was created on.
+     */
+    private static final class PooledSession {
+
+        private final Session mSession;
+        private final int mGeneration;
+        private final long mReleasedAt;
+
+        PooledSession(Session pSession, int pGeneration, long pReleasedAt) {
+            this.mSession = pSession;
+            this.mGeneration = pGeneration;
+            this.mReleasedAt = pReleasedAt;
+        }
+    }
+
+    private CbnTfConnectionPool(String pKey, Properties pProps) {
+        CbnTfProperties config = CbnTfProperties.getInstance();
+        this.mKey = pKey;
+        this.mProps = pProps;
+        this.mMaxIdleSessions = parseInt(config.getProperty("tf.wmq.pool.max.sessions", "8"), 8);
+        this.mIdleTimeoutMs = parseInt(config.getProperty("tf.wmq.pool.idle.timeout", "300000"),
+                300000);
+        this.mRetryAttempts = Math.max(1,
+                parseInt(config.getProperty("tf.wmq.retry.attempts", "3"), 3));
+        this.mRetryDelayMs = parseInt(config.getProperty("tf.wmq.retry.delay", "5000"), 5000);
+    }
+
+    /**
+     * Returns the shared pool for the endpoint described by the given tf.wmq.* properties
+     * (tf.wmq.host, tf.wmq.port, tf.wmq.channel, tf.wmq.manager, tf.wmq.username,
+     * tf.wmq.password).
+     */
+    public static CbnTfConnectionPool forProperties(Properties pProps) {
+        String key = pProps.getProperty("tf.wmq.host", "") + ":"
+                + pProps.getProperty("tf.wmq.port", "") + "/"
+                + pProps.getProperty("tf.wmq.manager", "") + "/"
+                + pProps.getProperty("tf.wmq.channel", "") + "/"
+                + pProps.getProperty("tf.wmq.username", "").trim();
+        return POOLS.computeIfAbsent(key, k -> new CbnTfConnectionPool(k, pProps));
+    }
+
+    /**
+     * Returns the shared pool for the endpoint configured in CbnTfProperties.
+     */
+    public static CbnTfConnectionPool getInstance() {
+        CbnTfProperties config = CbnTfProperties.getInstance();
+        Properties props = new Properties();
+        props.setProperty("tf.wmq.host", config.getWmqHost());
+        props.setProperty("tf.wmq.port", String.valueOf(config.getWmqPort()));
+        props.setProperty("tf.wmq.channel", config.getWmqChannel());
+        props.setProperty("tf.wmq.manager", config.getWmqQueueManager());
+        props.setProperty("tf.wmq.username", config.getWmqUser());
+        props.setProperty("tf.wmq.password", config.getWmqPassword());
+        return forProperties(props);
+    }
+
+    // ====================================================================
+    // CONNECTION
+    // ====================================================================
+
+    /**
+     * Returns the shared, started connection, (re)connecting if there is none or the current one
+     * has been reported broken. Callers must NOT close the returned connection; report failures
+     * through {@link #invalidate()} instead.
+     */
+    public Connection getConnection() throws JMSException {
+        Connection current = currentConnection();
+        if (current != null) {
+            return current;
+        }
+
+        synchronized (mConnectLock) {
+            // Another thread may have reconnected while this one waited
+            synchronized (this) {
+                current = currentConnection();
+                if (current != null) {
+                    return current;
+                }
+                closeConnection();
+            }
+            return connect();
+        }
+    }
+
+    // Connection in use, or null if there is none or it has been reported broken
+    private synchronized Connection currentConnection() {
+        mConnectionLastUsed = System.currentTimeMillis();
+        return mConnection != null && !mBroken ? mConnection : null;
+    }
+
+    // Called under mConnectLock only: connects and sleeps without the pool monitor
+    private Connection connect() throws JMSException {
+        JMSException lastError = null;
+        for (int attempt = 1; attempt <= mRetryAttempts; attempt++) {
+            try {
+                Connection connection = createConnection();
+                synchronized (this) {
+                    mConnection = connection;
+                    mBroken = false;
+                    mGeneration++;
+                    mConnectionLastUsed = System.currentTimeMillis();
+                }
+                yLogger.log(Level.INFO, "[CbnTfConnectionPool] Connected to {0} (attempt {1})",
+                        new Object[] { mKey, attempt });
+                return connection;
+            } catch (JMSException e) {
+                lastError = e;
+                yLogger.log(Level.WARNING,
+                        "[CbnTfConnectionPool] Connect attempt {0}/{1} to {2} failed: {3}",
+                        new Object[] { attempt, mRetryAttempts, mKey, e.toString() });
+                if (attempt < mRetryAttempts && !sleepQuietly(mRetryDelayMs)) {
+                    break;
+                }
+            }
+        }
+        throw lastError;
+    }
+
+    /**
+     * Reports the current connection as unusable. It is closed immediately and re-established on
+     * the next request.
+     */
+    public synchronized void invalidate() {
+        if (mConnection != null) {
+            yLogger.log(Level.WARNING, "[CbnTfConnectionPool] Invalidating connection to {0}",
+                    mKey);
+        }
+        closeConnection();
+    }
+
+    /**
+     * Number of connections made so far. A holder of a session or consumer compares it with the
+     * value it started with to notice a reconnect made by another user of the pool.
+     */
+    public synchronized int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * True if a connection is open and no failure has been reported on it.
+     */
+    public boolean isHealthy() {
+        synchronized (this) {
+            return mConnection != null && !mBroken;
+        }
+    }
+
+    private Connection createConnection() throws JMSException {
+        MQConnectionFactory factory = new MQConnectionFactory();
+        factory.setHostName(mProps.getProperty("tf.wmq.host"));
+        factory.setPort(Integer.parseInt(mProps.getProperty("tf.wmq.port")));
+        factory.setChannel(mProps.getProperty("tf.wmq.channel"));
+        factory.setQueueManager(mProps.getProperty("tf.wmq.manager"));
+        factory.setTransportType(CommonConstants.WMQ_CM_CLIENT);
+
+        String user = mProps.getProperty("tf.wmq.username", "").trim();
+        Connection connection = user.isEmpty() ? factory.createConnection()
+                : factory.createConnection(user, mProps.getProperty("tf.wmq.password", ""));
+        try {
+            connection.setExceptionListener(e -> {
+                // A late event from a replaced connection must not mark its successor broken
+                synchronized (this) {
+                    if (mConnection != connection) {
+                        yLogger.log(Level.FINE, "[CbnTfConnectionPool] Ignoring event from replaced"
+                                + " connection to {0}: {1}", new Object[] { mKey, e.toString() });
+                        return;
+                    }
+                    mBroken = true;
+                }
+                yLogger.log(Level.WARNING, "[CbnTfConnectionPool] Connection to {0} reported: {1}",
+                        new Object[] { mKey, e.toString() });
+            });
+            connection.start();
+        } catch (JMSException e) {
+            CbnTfBrowsing.closeQuietly(connection);
+            throw e;
+        }
+        return connection;
+    }
+
+    private void closeConnection() {
+        for (PooledSession idle : mIdleSessions) {
+            CbnTfBrowsing.closeQuietly(idle.mSession);
+        }
+        mIdleSessions.clear();
+        // Lent sessions die with the connection; they are discarded when handed back
+        mLentSessions.clear();
+        CbnTfBrowsing.closeQuietly(mConnection);
+        mConnection = null;
+    }
+
+    // ====================================================================
+    // SESSIONS
+    // ====================================================================
+
+    /**
+     * Lends a session with the requested mode, reusing an idle one when available. The caller has
+     * exclusive use of the session until it hands it back through {@link #releaseSession(Session)}
+     * or {@link #discardSession(Session)}.
+     */
+    public Session borrowSession(boolean pTransacted, int pAckMode) throws JMSException {
+        while (true) {
+            // Outside the monitor: getConnection may reconnect
+            Connection connection = getConnection();
+            synchronized (this) {
+                if (connection != mConnection) {
+                    // Replaced or closed meanwhile
+                    continue;
+                }
+
+                Iterator<PooledSession> it = mIdleSessions.iterator();
+                while (it.hasNext()) {
+                    PooledSession idle = it.next();
+                    if (idle.mGeneration == mGeneration && idle.mSession.getTransacted() == pTransacted
+                            && (pTransacted || idle.mSession.getAcknowledgeMode() == pAckMode)) {
+                        it.remove();
+                        mLentSessions.put(idle.mSession, idle.mGeneration);
+                        return idle.mSession;
+                    }
+                }
+
+                Session session = connection.createSession(pTransacted, pAckMode);
+                mLentSessions.put(session, mGeneration);
+                return session;
+            }
+        }
+    }
+
+    /**
+     * Hands a healthy session back to the pool. The caller must have closed any consumers or
+     * producers it created and must not leave unacknowledged or uncommitted work on it.
+     */
+    public synchronized void releaseSession(Session pSession) {
+        if (pSession == null) {
+            return;
+        }
+        Integer generation = mLentSessions.remove(pSession);
+        if (generation == null || generation != mGeneration || mBroken
+                || mIdleSessions.size() >= mMaxIdleSessions) {
+            CbnTfBrowsing.closeQuietly(pSession);
+            return;
+        }
+        mIdleSessions.push(new PooledSession(pSession, generation, System.currentTimeMillis()));
+    }
+
+    /**
+     * Closes a session that failed while lent out instead of returning it to the pool.
+     */
+    public synchronized void discardSession(Session pSession) {
+        if (pSession == null) {
+            return;
+        }
+        mLentSessions.remove(pSession);
+        CbnTfBrowsing.closeQuietly(pSession);
+    }
+
+    // ====================================================================
+    // EVICTION / SHUTDOWN
+    // ====================================================================
+
+    /**
+     * Closes sessions idle beyond the idle timeout, and the connection itself when nothing has
+     * used it for that long.
+     */
+    synchronized void evictIdle() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledSession> it = mIdleSessions.descendingIterator();
+        int evicted = 0;
+        while (it.hasNext()) {
+            PooledSession idle = it.next();
+            if (now - idle.mReleasedAt < mIdleTimeoutMs) {
+                break;
+            }
+            it.remove();
+            CbnTfBrowsing.closeQuietly(idle.mSession);
+            evicted++;
+        }
+        if (evicted > 0) {
+            yLogger.log(Level.FINE, "[CbnTfConnectionPool] Evicted {0} idle session(s) for {1}",
+                    new Object[] { evicted, mKey });
+        }
+        if (mConnection != null && mLentSessions.isEmpty()
+                && now - mConnectionLastUsed >= mIdleTimeoutMs) {
+            yLogger.log(Level.INFO, "[CbnTfConnectionPool] Closing idle connection to {0}", mKey);
+            closeConnection();
+        }
+    }
+
+    /**
+     * Closes every pooled connection and session. Registered as a JVM shutdown hook.
+     */
+    public static void closeAll() {
+        for (CbnTfConnectionPool pool : POOLS.values()) {
+            synchronized (pool) {
+                pool.closeConnection();
+            }
+        }
+    }
+
+    // ====================================================================
+    // HELPERS
+    // ====================================================================
+
+    private static int parseInt(String pValue, int pDefault) {
+        try {
+            return Integer.parseInt(pValue.trim());
+        } catch (RuntimeException e) {
+            return pDefault;
+        }
+    }
+
+    private static boolean sleepQuietly(long pMillis) {
+        try {
+            Thread.sleep(pMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.cbn.bloomberg.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: CbnTfDocumentCache.java
+ * Author: CSD Development Team
+ * Created: 2026-02-10
+ * Last Modified: 2026-02-27
+ * =============================================================================
+ *
+ * PURPOSE: Parse-once cache of normalized JSON roots for FILE-mode ingestion.
+ * The adapter scan parses each inbound file once and registers the root under
+ * its PROCESSED path; per-item lookups from the service reuse that root instead
+ * of re-reading and re-parsing the whole file for every item index.
+ *
+ * Entries are keyed by absolute path and validated against the file's last
+ * modified time and size, so a rewritten file is always re-parsed. The cache is
+ * shared by all module adapters and bounded (LRU) by tf.nfs.cache.max.bytes,
+ * the total length of the cached files; the parsed trees take a few times that
+ * on the heap. A file larger than the whole budget is parsed but not cached.
+ *
+ * Cached roots are shared between TSA threads and must be treated as read-only.
+ *
+ * MODIFICATION HISTORY:
+ * - 2026-02-10 | Initial creation
+ * - 2026-02-27 | Bounded by total file length instead of number of files
+ * =============================================================================
+ */
+public final class CbnTfDocumentCache {
+
+    private static final Logger yLogger = Logger.getLogger(CbnTfDocumentCache.class.getName());
+
+    private static final long DEFAULT_MAX_BYTES = 33554432L;
+    private static final long MAX_BYTES = resolveMaxBytes();
+
+    // Access-ordered map: eldest entry is the least recently used document
+    private static final Map<String, CachedDocument> CACHE = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Total file length of the cached documents (guarded by CACHE)
+    private static long cachedBytes;
+
+    private CbnTfDocumentCache() {
+    }
+
+    /**
+     * Parsed document together with the file attributes it was read from.
+     */
+    private static final class CachedDocument {
+
+        private final JsonNode mRoot;
+        private final FileTime mModified;
+        private final long mSize;
+
+        CachedDocument(JsonNode pRoot, FileTime pModified, long pSize) {
+            this.mRoot = pRoot;
+            this.mModified = pModified;
+            this.mSize = pSize;
+        }
+
+        boolean matches(FileTime pModified, long pSize) {
+            return mSize == pSize && mModified.equals(pModified);
+        }
+    }
+
+    /**
+     * Returns the normalized JSON root of a file, parsing it only when the file is not cached or
+     * has changed since it was cached.
+     *
+     * @param pFile      File to read
+     * @param pObjMapper Jackson ObjectMapper for JSON parsing
+     * @return Normalized root, or null if the file is empty
+     */
+    public static JsonNode readRoot(Path pFile, ObjectMapper pObjMapper) throws IOException {
+        String key = keyOf(pFile);
+        FileTime modified = Files.getLastModifiedTime(pFile);
+        long size = Files.size(pFile);
+
+        synchronized (CACHE) {
+            CachedDocument doc = CACHE.get(key);
+            if (doc != null && doc.matches(modified, size)) {
+                return doc.mRoot;
+            }
+        }
+
+        yLogger.log(Level.FINE, "[CbnTfDocumentCache] Cache miss, parsing {0}", key);
+        JsonNode root = parse(pFile, pObjMapper);
+        store(key, new CachedDocument(root, modified, size));
+        return root;
+    }
+
+    /**
+     * Registers an already parsed root for a file, typically right after the adapter scan has
+     * moved the file to its PROCESSED location.
+     *
+     * @param pFile Current location of the file
+     * @param pRoot Normalized JSON root parsed from the file content
+     */
+    public static void put(Path pFile, JsonNode pRoot) {
+        try {
+            String key = keyOf(pFile);
+            store(key, new CachedDocument(pRoot, Files.getLastModifiedTime(pFile),
+                    Files.size(pFile)));
+        } catch (IOException e) {
+            yLogger.log(Level.FINE, "[CbnTfDocumentCache] Unable to register {0}: {1}",
+                    new Object[] { pFile, e.toString() });
+        }
+    }
+
+    /**
+     * Drops the cached root for a file.
+     */
+    public static void invalidate(Path pFile) {
+        synchronized (CACHE) {
+            remove(keyOf(pFile));
+        }
+    }
+
+    /**
+     * Drops all cached roots.
+     */
+    public static void clear() {
+        synchronized (CACHE) {
+            CACHE.clear();
+            cachedBytes = 0L;
+        }
+    }
+
+    // Caches a document and evicts the least recently used ones beyond MAX_BYTES
+    private static void store(String pKey, CachedDocument pDoc) {
+        synchronized (CACHE) {
+            remove(pKey);
+            if (pDoc.mSize > MAX_BYTES) {
+                yLogger.log(Level.FINE, "[CbnTfDocumentCache] {0} exceeds the cache size, not cached",
+                        pKey);
+                return;
+            }
+            CACHE.put(pKey, pDoc);
+            cachedBytes += pDoc.mSize;
+
+            Iterator<CachedDocument> eldest = CACHE.values().iterator();
+            while (cachedBytes > MAX_BYTES && eldest.hasNext()) {
+                cachedBytes -= eldest.next().mSize;
+                eldest.remove();
+            }
+        }
+    }
+
+    // Called under the CACHE lock
+    private static void remove(String pKey) {
+        CachedDocument previous = CACHE.remove(pKey);
+        if (previous != null) {
+            cachedBytes -= previous.mSize;
+        }
+    }
+
+    private static JsonNode parse(Path pFile, ObjectMapper pObjMapper) throws IOException {
+        String content = new String(Files.readAllBytes(pFile), StandardCharsets.UTF_8).trim();
+        if (content.isEmpty()) {
+            return null;
+        }
+        return CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(content));
+    }
+
+    private static String keyOf(Path pFile) {
+        return pFile.toAbsolutePath().normalize().toString();
+    }
+
+    private static long resolveMaxBytes() {
+        String value = CbnTfProperties.getInstance().getProperty("tf.nfs.cache.max.bytes",
+                String.valueOf(DEFAULT_MAX_BYTES));
+        try {
+            return Math.max(0L, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            yLogger.log(Level.WARNING, "[CbnTfDocumentCache] Invalid tf.nfs.cache.max.bytes: {0}",
+                    value);
+            return DEFAULT_MAX_BYTES;
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package com.cbn.bloomberg.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: CbnTfFieldMapping.java
+ * Author: CSD Development Team
+ * Created: 2026-02-19
+ * Last Modified: 2026-02-19
+ * =============================================================================
+ *
+ * PURPOSE: Declarative JSON to T24 field mapping.
+ *
+ * A per-module mapping spec (CbnTfMapping_<MODULE>.json, looked up in
+ * tf.mapping.dir and then under mapping/ on the classpath) lists the rules:
+ *
+ *   { "condition": "DEAL_TYPE",
+ *     "fields": [
+ *       { "target": "DDAT", "source": "DEAL_DATE", "transform": "date" },
+ *       { "target": "FWRT", "source": "FORWARD_RATE", "when": [ "FW", "SW" ] },
+ *       { "target": "SRF1", "source": "SWAP_REF_NO", "element": 0, "when": [ "SW" ] } ] }
+ *
+ * transform is none (default), date (yyyy-MM-dd -> yyyyMMdd) or amount
+ * (commas removed). A rule with "when" only applies if the trimmed, upper
+ * cased value of the condition field is listed; with "element" it takes that
+ * element of an array source and is skipped if the element is missing. Later
+ * rules overwrite earlier ones for the same target.
+ *
+ * The spec is loaded and compiled once per module: every target gets a fixed
+ * slot and every distinct source a fixed index, so mapping an item is one
+ * JSON lookup per source and one array store per rule. The result is a
+ * reusable per-thread MappedRecord that reads like the Map the hand-written
+ * mappers returned. Modules without a spec keep their hand-written mapping.
+ *
+ * MODIFICATION HISTORY:
+ * - 2026-02-19 | Initial creation
+ * =============================================================================
+ */
+public final class CbnTfFieldMapping {
+
+    private static final Logger yLogger = Logger.getLogger(CbnTfFieldMapping.class.getName());
+
+    private static final String SPEC_PREFIX = "CbnTfMapping_";
+    private static final String SPEC_SUFFIX = ".json";
+    private static final String CLASSPATH_DIR = "mapping/";
+
+    private static final DateTimeFormatter INPUT_FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter OUTPUT_FMT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private static final int TRANSFORM_NONE = 0;
+    private static final int TRANSFORM_DATE = 1;
+    private static final int TRANSFORM_AMOUNT = 2;
+
+    // Module -> compiled mapping; modules without a spec map to NONE
+    private static final Map<String, CbnTfFieldMapping> MAPPINGS = new ConcurrentHashMap<>();
+    private static final CbnTfFieldMapping NONE = new CbnTfFieldMapping();
+
+    // ==== COMPILED PLAN ====
+    private final String mModule;
+    private final String mCondition;
+    private final String[] mSources;
+    private final String[] mTargets;
+    private final Map<String, Integer> mSlotIndex;
+
+    // Per rule, in spec order
+    private final int[] mRuleSource;
+    private final int[] mRuleSlot;
+    private final int[] mRuleTransform;
+    private final int[] mRuleElement;
+    private final String[][] mRuleWhen;
+
+    private final ThreadLocal<MappedRecord> mRecords;
+
+    private CbnTfFieldMapping() {
+        this.mModule = null;
+        this.mCondition = null;
+        this.mSources = new String[0];
+        this.mTargets = new String[0];
+        this.mSlotIndex = Collections.emptyMap();
+        this.mRuleSource = new int[0];
+        this.mRuleSlot = new int[0];
+        this.mRuleTransform = new int[0];
+        this.mRuleElement = new int[0];
+        this.mRuleWhen = new String[0][];
+        this.mRecords = null;
+    }
+
+    private CbnTfFieldMapping(String pModule, JsonNode pSpec) {
+        this.mModule = pModule;
+        this.mCondition = textOrNull(pSpec.get("condition"));
+
+        JsonNode fields = pSpec.get("fields");
+        if (fields == null || !fields.isArray() || fields.size() == 0) {
+            throw new IllegalArgumentException("Mapping spec for " + pModule + " has no fields");
+        }
+
+        Map<String, Integer> sourceIndex = new LinkedHashMap<>();
+        Map<String, Integer> slotIndex = new LinkedHashMap<>();
+        int rules = fields.size();
+        this.mRuleSource = new int[rules];
+        this.mRuleSlot = new int[rules];
+        this.mRuleTransform = new int[rules];
+        this.mRuleElement = new int[rules];
+        this.mRuleWhen = new String[rules][];
+
+        for (int i = 0; i < rules; i++) {
+            JsonNode rule = fields.get(i);
+            String target = textOrNull(rule.get("target"));
+            String source = textOrNull(rule.get("source"));
+            if (target == null || source == null) {
+                throw new IllegalArgumentException(
+                        "Mapping spec for " + pModule + ": rule " + i + " needs target and source");
+            }
+            mRuleSource[i] = sourceIndex.computeIfAbsent(source, k -> sourceIndex.size());
+            mRuleSlot[i] = slotIndex.computeIfAbsent(target, k -> slotIndex.size());
+            mRuleTransform[i] = parseTransform(pModule, textOrNull(rule.get("transform")));
+            mRuleElement[i] = rule.has("element") ? rule.get("element").asInt(-1) : -1;
+            mRuleWhen[i] = parseWhen(rule.get("when"));
+            if (mRuleWhen[i] != null && mCondition == null) {
+                throw new IllegalArgumentException("Mapping spec for " + pModule
+                        + ": rule " + i + " has 'when' but the spec has no 'condition'");
+            }
+        }
+
+        this.mSources = sourceIndex.keySet().toArray(new String[0]);
+        this.mTargets = slotIndex.keySet().toArray(new String[0]);
+        this.mSlotIndex = Collections.unmodifiableMap(new HashMap<>(slotIndex));
+        this.mRecords = ThreadLocal.withInitial(() -> new MappedRecord(this));
+    }
+
+    /**
+     * Returns the compiled mapping of a module, loading its spec on first use.
+     *
+     * @param pModule Module name (FX, PD, SC, ...)
+     * @return Compiled mapping, or null if mapping is disabled or the module has no valid spec
+     */
+    public static CbnTfFieldMapping forModule(String pModule) {
+        if (!isEnabled()) {
+            return null;
+        }
+        CbnTfFieldMapping mapping = MAPPINGS.computeIfAbsent(pModule, CbnTfFieldMapping::load);
+        return mapping == NONE ? null : mapping;
+    }
+
+    /**
+     * True unless tf.mapping.enabled is set to false.
+     */
+    public static boolean isEnabled() {
+        String value = CbnTfProperties.getInstance().getProperty("tf.mapping.enabled", "true");
+        return value == null || !"false".equalsIgnoreCase(value.trim());
+    }
+
+    /**
+     * Maps one item. The returned record is reused by the next call on the same thread; copy it
+     * (new HashMap&lt;&gt;(record)) if it has to outlive that.
+     *
+     * @param pItem JSON item (e.g. one FOREX_TRANSACTION element)
+     * @return Mapped record: target field -> value; targets of rules that did not apply are absent
+     */
+    public MappedRecord map(JsonNode pItem) {
+        MappedRecord record = mRecords.get();
+        record.clear();
+
+        // Resolve every source once
+        JsonNode[] values = record.mSourceValues;
+        for (int s = 0; s < mSources.length; s++) {
+            JsonNode v = pItem == null ? null : pItem.get(mSources[s]);
+            values[s] = v == null || v.isNull() ? null : v;
+        }
+
+        String condition = null;
+        if (mCondition != null && pItem != null) {
+            JsonNode c = pItem.get(mCondition);
+            if (c != null && !c.isNull()) {
+                condition = c.asText().trim().toUpperCase(Locale.ROOT);
+            }
+        }
+
+        String[] slots = record.mSlots;
+        for (int r = 0; r < mRuleSlot.length; r++) {
+            if (mRuleWhen[r] != null && !matches(mRuleWhen[r], condition)) {
+                continue;
+            }
+            JsonNode value = values[mRuleSource[r]];
+            int element = mRuleElement[r];
+            if (element >= 0) {
+                if (value == null || !value.isArray() || value.size() <= element) {
+                    continue;
+                }
+                value = value.get(element);
+            }
+            slots[mRuleSlot[r]] = transform(mRuleTransform[r], value == null ? "" : value.asText());
+        }
+        return record;
+    }
+
+    /**
+     * Module this mapping was loaded for.
+     */
+    public String getModule() {
+        return mModule;
+    }
+
+    // ====================================================================
+    // MAPPED RECORD
+    // ====================================================================
+
+    /**
+     * Fixed-slot result of a mapping, readable as a Map keyed by T24 target field. Unset slots are
+     * absent keys, exactly like the hand-written mappers which only put applicable fields.
+     */
+    public static final class MappedRecord extends AbstractMap<String, String> {
+
+        private final CbnTfFieldMapping mPlan;
+        private final String[] mSlots;
+        private final JsonNode[] mSourceValues;
+
+        MappedRecord(CbnTfFieldMapping pPlan) {
+            this.mPlan = pPlan;
+            this.mSlots = new String[pPlan.mTargets.length];
+            this.mSourceValues = new JsonNode[pPlan.mSources.length];
+        }
+
+        @Override
+        public String get(Object pKey) {
+            Integer slot = mPlan.mSlotIndex.get(pKey);
+            return slot == null ? null : mSlots[slot];
+        }
+
+        @Override
+        public boolean containsKey(Object pKey) {
+            return get(pKey) != null;
+        }
+
+        @Override
+        public String getOrDefault(Object pKey, String pDefault) {
+            String value = get(pKey);
+            return value == null ? pDefault : value;
+        }
+
+        @Override
+        public int size() {
+            int n = 0;
+            for (String s : mSlots) {
+                if (s != null) {
+                    n++;
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            for (String s : mSlots) {
+                if (s != null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public void clear() {
+            Arrays.fill(mSlots, null);
+            Arrays.fill(mSourceValues, null);
+        }
+
+        @Override
+        public Set<Map.Entry<String, String>> entrySet() {
+            return new AbstractSet<Map.Entry<String, String>>() {
+
+                @Override
+                public Iterator<Map.Entry<String, String>> iterator() {
+                    return new Iterator<Map.Entry<String, String>>() {
+
+                        private int mNext = advance(0);
+
+                        private int advance(int pFrom) {
+                            int i = pFrom;
+                            while (i < mSlots.length && mSlots[i] == null) {
+                                i++;
+                            }
+                            return i;
+                        }
+
+                        @Override
+                        public boolean hasNext() {
+                            return mNext < mSlots.length;
+                        }
+
+                        @Override
+                        public Map.Entry<String, String> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            int i = mNext;
+                            mNext = advance(i + 1);
+                            return new SimpleImmutableEntry<>(mPlan.mTargets[i], mSlots[i]);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return MappedRecord.this.size();
+                }
+            };
+        }
+    }
+
+    // ====================================================================
+    // LOADING
+    // ====================================================================
+
+    private static CbnTfFieldMapping load(String pModule) {
+        String fileName = SPEC_PREFIX + pModule + SPEC_SUFFIX;
+        ObjectMapper mapper = new ObjectMapper();
+        try {
+            JsonNode spec = null;
+            String from = null;
+
+            String dir = CbnTfProperties.getInstance().getProperty("tf.mapping.dir", "");
+            if (dir != null && !dir.trim().isEmpty()) {
+                Path file = Paths.get(dir.trim(), fileName);
+                if (Files.isRegularFile(file)) {
+                    try (InputStream is = Files.newInputStream(file)) {
+                        spec = mapper.readTree(is);
+                        from = file.toString();
+                    }
+                }
+            }
+            if (spec == null) {
+                try (InputStream is = CbnTfFieldMapping.class.getClassLoader()
+                        .getResourceAsStream(CLASSPATH_DIR + fileName)) {
+                    if (is != null) {
+                        spec = mapper.readTree(is);
+                        from = "classpath:" + CLASSPATH_DIR + fileName;
+                    }
+                }
+            }
+            if (spec == null) {
+                yLogger.log(Level.INFO,
+                        "[CbnTfFieldMapping] No mapping spec for {0}, using built-in mapping",
+                        pModule);
+                return NONE;
+            }
+
+            CbnTfFieldMapping mapping = new CbnTfFieldMapping(pModule, spec);
+            yLogger.log(Level.INFO,
+                    "[CbnTfFieldMapping] Loaded {0} mapping from {1}: {2} rules, {3} sources, {4} targets",
+                    new Object[] { pModule, from, mapping.mRuleSlot.length, mapping.mSources.length,
+                            mapping.mTargets.length });
+            return mapping;
+
+        } catch (IOException | IllegalArgumentException e) {
+            yLogger.log(Level.SEVERE, "[CbnTfFieldMapping] Invalid mapping spec for " + pModule
+                    + ", using built-in mapping", e);
+            return NONE;
+        }
+    }
+
+    // ====================================================================
+    // HELPERS
+    // ====================================================================
+
+    private static int parseTransform(String pModule, String pTransform) {
+        if (pTransform == null || pTransform.isEmpty() || "none".equalsIgnoreCase(pTransform)) {
+            return TRANSFORM_NONE;
+        }
+        if ("date".equalsIgnoreCase(pTransform)) {
+            return TRANSFORM_DATE;
+        }
+        if ("amount".equalsIgnoreCase(pTransform)) {
+            return TRANSFORM_AMOUNT;
+        }
+        throw new IllegalArgumentException(
+                "Mapping spec for " + pModule + ": unknown transform '" + pTransform + "'");
+    }
+
+    private static String[] parseWhen(JsonNode pWhen) {
+        if (pWhen == null || pWhen.isNull()) {
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        if (pWhen.isArray()) {
+            for (JsonNode v : pWhen) {
+                values.add(v.asText().trim().toUpperCase(Locale.ROOT));
+            }
+        } else {
+            values.add(pWhen.asText().trim().toUpperCase(Locale.ROOT));
+        }
+        return values.toArray(new String[0]);
+    }
+
+    private static boolean matches(String[] pWhen, String pCondition) {
+        if (pCondition == null) {
+            return false;
+        }
+        for (String w : pWhen) {
+            if (w.equals(pCondition)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String transform(int pTransform, String pValue) {
+        switch (pTransform) {
+            case TRANSFORM_DATE:
+                // Only yyyy-MM-dd is converted; anything else (e.g. already yyyyMMdd) is kept
+                if (pValue.length() != 10) {
+                    return pValue;
+                }
+                try {
+                    return LocalDate.parse(pValue, INPUT_FMT).format(OUTPUT_FMT);
+                } catch (DateTimeParseException e) {
+                    return pValue;
+                }
+            case TRANSFORM_AMOUNT:
+                return pValue.trim().isEmpty() ? "" : pValue.replace(",", "");
+            default:
+                return pValue;
+        }
+    }
+
+    private static String textOrNull(JsonNode pNode) {
+        if (pNode == null || pNode.isNull()) {
+            return null;
+        }
+        String text = pNode.asText().trim();
+        return text.isEmpty() ? null : text;
+    }
+}
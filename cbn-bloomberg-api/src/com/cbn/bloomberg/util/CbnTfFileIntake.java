@@ -0,0 +1,489 @@
+package com.cbn.bloomberg.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.cbn.bloomberg.util.CbnTfBrowsing.ModuleType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: CbnTfFileIntake.java
+ * Author: CSD Development Team
+ * Created: 2026-02-20
+ * Last Modified: 2026-02-28
+ * =============================================================================
+ *
+ * PURPOSE: Event-driven FILE ingestion (tf.nfs.intake.mode=watch).
+ *
+ * The module adapters' scanDirectoryIds used to list the whole inbound
+ * directory and read every matching file on each getIds cycle. With
+ * tf.nfs.intake.mode=watch one intake per inbound directory and pattern
+ * follows the directory with a WatchService instead, and lists it only every
+ * tf.nfs.intake.reconcile.interval ms to pick up files whose events were
+ * missed (NFS mounts do not always deliver them).
+ *
+ * A new file is taken once it is ready: when tf.nfs.intake.ready.suffix is
+ * set, once its marker file (e.g. TRADES.json.ready) exists, otherwise once
+ * its size and modification time have not changed for tf.nfs.intake.stable.ms.
+ * Ready files are read, parsed and normalized on a bounded pool of
+ * tf.nfs.intake.workers threads and queued with the module(s) they contain.
+ * drain() hands each adapter only the files of its own module(s), plus files
+ * of no known module, which the adapters move away as before.
+ *
+ * Parsed trees wait in memory until an adapter drains them, so new files are
+ * only handed to the parsers while the files being parsed or waiting total
+ * less than tf.nfs.intake.ready.max.bytes (file length; the trees take a few
+ * times that on the heap) and number less than tf.nfs.intake.ready.max. A
+ * single file larger than the byte budget is still taken when nothing else is
+ * waiting.
+ *
+ * A file that is empty or cannot be parsed is skipped until it changes.
+ *
+ * MODIFICATION HISTORY:
+ * - 2026-02-20 | Initial creation
+ * - 2026-02-28 | Ready files bounded by total file length
+ * =============================================================================
+ */
+public final class CbnTfFileIntake {
+
+    private static final Logger yLogger = Logger.getLogger(CbnTfFileIntake.class.getName());
+
+    /** Intake mode value that enables the directory watcher */
+    public static final String INTAKE_MODE_WATCH = "watch";
+
+    private static final long DEFAULT_RECONCILE_MS = 60000L;
+    private static final long DEFAULT_STABLE_MS = 2000L;
+    private static final int DEFAULT_WORKERS = 4;
+    private static final int DEFAULT_QUEUE_SIZE = 1000;
+    private static final int DEFAULT_READY_MAX = 10000;
+    private static final long DEFAULT_READY_MAX_BYTES = 67108864L;
+    private static final long MIN_TICK_MS = 100L;
+
+    private static final Map<String, CbnTfFileIntake> INTAKES = new ConcurrentHashMap<>();
+
+    private final Path mDirectory;
+    private final PathMatcher mMatcher;
+    private final ObjectMapper mObjMapper;
+    private final long mReconcileMs;
+    private final long mStableMs;
+    private final String mReadySuffix;
+    private final int mReadyMax;
+    private final long mReadyMaxBytes;
+    private final ThreadPoolExecutor mWorkers;
+    private final Thread mWatcher;
+
+    // Files ready for the adapters, oldest first
+    private final Queue<ReadyFile> mReady = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger mReadyCount = new AtomicInteger();
+
+    // Total length of the files being parsed or waiting in mReady
+    private final AtomicLong mReadyBytes = new AtomicLong();
+
+    // Files being parsed or waiting in mReady
+    private final Set<Path> mTaken = ConcurrentHashMap.newKeySet();
+
+    // Empty or unparseable files -> size/mtime signature when skipped
+    private final Map<Path, String> mSkipped = new ConcurrentHashMap<>();
+
+    // ==== WATCHER STATE (watcher thread only) ====
+    private final Map<Path, Candidate> mCandidates = new HashMap<>();
+    private WatchService mWatchService;
+    private long mLastReconcile;
+
+    /**
+     * A parsed inbound file and the modules it contains.
+     */
+    public static final class ReadyFile {
+
+        private final Path mFile;
+        private final JsonNode mRoot;
+        private final List<ModuleType> mModules;
+        private final long mSize;
+
+        ReadyFile(Path pFile, JsonNode pRoot, List<ModuleType> pModules, long pSize) {
+            this.mFile = pFile;
+            this.mRoot = pRoot;
+            this.mModules = pModules;
+            this.mSize = pSize;
+        }
+
+        /** Path of the file in the inbound directory */
+        public Path getFile() {
+            return mFile;
+        }
+
+        /** Normalized JSON root of the file */
+        public JsonNode getRoot() {
+            return mRoot;
+        }
+
+        boolean belongsTo(ModuleType... pModules) {
+            if (mModules.isEmpty()) {
+                return true;
+            }
+            for (ModuleType module : pModules) {
+                if (mModules.contains(module)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // A file seen in the directory that is not ready yet
+    private static final class Candidate {
+
+        private String mSignature;
+        private long mStableSince;
+
+        Candidate(String pSignature, long pNow) {
+            this.mSignature = pSignature;
+            this.mStableSince = pNow;
+        }
+    }
+
+    private CbnTfFileIntake(Path pDirectory, String pDirGlob, ObjectMapper pObjMapper) {
+        CbnTfProperties config = CbnTfProperties.getInstance();
+        this.mDirectory = pDirectory;
+        this.mMatcher = FileSystems.getDefault().getPathMatcher("glob:" + pDirGlob);
+        this.mObjMapper = pObjMapper;
+        this.mReconcileMs = Math.max(MIN_TICK_MS, parseLong(
+                config.getProperty("tf.nfs.intake.reconcile.interval", ""), DEFAULT_RECONCILE_MS));
+        this.mStableMs = Math.max(0L,
+                parseLong(config.getProperty("tf.nfs.intake.stable.ms", ""), DEFAULT_STABLE_MS));
+        this.mReadySuffix = config.getProperty("tf.nfs.intake.ready.suffix", "").trim();
+        this.mReadyMax = (int) Math.max(1L, parseLong(
+                config.getProperty("tf.nfs.intake.ready.max", ""), DEFAULT_READY_MAX));
+        this.mReadyMaxBytes = Math.max(1L, parseLong(
+                config.getProperty("tf.nfs.intake.ready.max.bytes", ""), DEFAULT_READY_MAX_BYTES));
+
+        int workers = (int) Math.max(1L,
+                parseLong(config.getProperty("tf.nfs.intake.workers", ""), DEFAULT_WORKERS));
+        int queueSize = (int) Math.max(1L,
+                parseLong(config.getProperty("tf.nfs.intake.queue.size", ""), DEFAULT_QUEUE_SIZE));
+        AtomicInteger workerCount = new AtomicInteger();
+        // A full pool queue makes the watcher parse the file itself, which slows discovery down
+        this.mWorkers = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), r -> {
+                    Thread t = new Thread(r, "CbnTfFileIntake-parser-" + workerCount.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+        this.mWatcher = new Thread(this::runWatcher, "CbnTfFileIntake-" + pDirectory.getFileName());
+        this.mWatcher.setDaemon(true);
+        this.mWatcher.start();
+    }
+
+    /**
+     * True if tf.nfs.intake.mode selects the directory watcher (default: scan).
+     */
+    public static boolean isWatchMode() {
+        String mode = CbnTfProperties.getInstance().getProperty("tf.nfs.intake.mode", "scan");
+        return mode != null && INTAKE_MODE_WATCH.equalsIgnoreCase(mode.trim());
+    }
+
+    /**
+     * Returns the intake of an inbound directory and file pattern, starting it on first use.
+     */
+    public static CbnTfFileIntake forDirectory(Path pDirectory, String pDirGlob,
+            ObjectMapper pObjMapper) {
+        Path directory = pDirectory.toAbsolutePath().normalize();
+        return INTAKES.computeIfAbsent(directory + "|" + pDirGlob,
+                k -> new CbnTfFileIntake(directory, pDirGlob, pObjMapper));
+    }
+
+    /**
+     * Removes and returns the ready files that contain one of the given modules or no known module
+     * at all. The caller is expected to move the returned files out of the inbound directory.
+     */
+    public List<ReadyFile> drain(ModuleType... pModules) {
+        List<ReadyFile> drained = new ArrayList<>();
+        for (Iterator<ReadyFile> it = mReady.iterator(); it.hasNext();) {
+            ReadyFile ready = it.next();
+            // remove() decides between adapters draining concurrently
+            if (ready.belongsTo(pModules) && mReady.remove(ready)) {
+                mReadyCount.decrementAndGet();
+                mReadyBytes.addAndGet(-ready.mSize);
+                mTaken.remove(ready.mFile);
+                deleteMarker(ready.mFile);
+                drained.add(ready);
+            }
+        }
+        if (!drained.isEmpty()) {
+            yLogger.log(Level.INFO, "[CbnTfFileIntake] FILE: drained {0} ready file(s) from {1}",
+                    new Object[] { drained.size(), mDirectory });
+        }
+        return drained;
+    }
+
+    /**
+     * Number of parsed files waiting for an adapter.
+     */
+    public int pending() {
+        return mReadyCount.get();
+    }
+
+    // ====================================================================
+    // WATCHER
+    // ====================================================================
+
+    private void runWatcher() {
+        openWatchService();
+        long tick = Math.max(MIN_TICK_MS, Math.min(mReconcileMs, Math.max(mStableMs / 2, 1L)));
+        reconcile();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                boolean overflow = false;
+                if (mWatchService != null) {
+                    WatchKey key = mWatchService.poll(tick, TimeUnit.MILLISECONDS);
+                    if (key != null) {
+                        overflow = onEvents(key);
+                    }
+                } else {
+                    Thread.sleep(tick);
+                }
+                if (overflow || System.currentTimeMillis() - mLastReconcile >= mReconcileMs) {
+                    reconcile();
+                }
+                checkCandidates();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                yLogger.log(Level.SEVERE, "[CbnTfFileIntake] FILE: watcher error on " + mDirectory, e);
+            }
+        }
+    }
+
+    private void openWatchService() {
+        try {
+            mWatchService = mDirectory.getFileSystem().newWatchService();
+            mDirectory.register(mWatchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+            yLogger.log(Level.INFO, "[CbnTfFileIntake] FILE: watching {0}", mDirectory);
+        } catch (IOException | RuntimeException e) {
+            yLogger.log(Level.WARNING, "[CbnTfFileIntake] FILE: cannot watch " + mDirectory
+                    + ", listing it every " + mReconcileMs + " ms only", e);
+            if (mWatchService != null) {
+                try {
+                    mWatchService.close();
+                } catch (IOException ignore) {
+                    // Not watching anyway
+                }
+            }
+            mWatchService = null;
+        }
+    }
+
+    // Returns true if events were lost and the directory has to be listed
+    private boolean onEvents(WatchKey pKey) {
+        boolean overflow = false;
+        long now = System.currentTimeMillis();
+        for (WatchEvent<?> event : pKey.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+                continue;
+            }
+            Path name = (Path) event.context();
+            if (!mReadySuffix.isEmpty() && name.toString().endsWith(mReadySuffix)) {
+                String fileName = name.toString();
+                name = name.resolveSibling(fileName.substring(0, fileName.length() - mReadySuffix.length()));
+            }
+            consider(mDirectory.resolve(name), now);
+        }
+        if (!pKey.reset()) {
+            yLogger.log(Level.WARNING, "[CbnTfFileIntake] FILE: watch on {0} lost, reopening", mDirectory);
+            openWatchService();
+            overflow = true;
+        }
+        return overflow;
+    }
+
+    // Full listing, for events missed by the watch service
+    private void reconcile() {
+        mLastReconcile = System.currentTimeMillis();
+        int seen = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(mDirectory)) {
+            for (Path file : stream) {
+                if (consider(file, mLastReconcile)) {
+                    seen++;
+                }
+            }
+        } catch (IOException e) {
+            yLogger.log(Level.WARNING, "[CbnTfFileIntake] FILE: error listing " + mDirectory, e);
+            return;
+        }
+        mSkipped.keySet().removeIf(file -> !Files.exists(file));
+        yLogger.log(Level.FINE, "[CbnTfFileIntake] FILE: reconciled {0}, {1} matching file(s)",
+                new Object[] { mDirectory, seen });
+    }
+
+    // Tracks a matching file that is not taken yet; true if the file matches the pattern
+    private boolean consider(Path pFile, long pNow) {
+        Path name = pFile.getFileName();
+        if (name == null || !mMatcher.matches(name)) {
+            return false;
+        }
+        if (!mTaken.contains(pFile) && !mCandidates.containsKey(pFile)) {
+            String signature = signature(pFile);
+            if (signature != null && !signature.equals(mSkipped.get(pFile))) {
+                mCandidates.put(pFile, new Candidate(signature, pNow));
+            }
+        }
+        return true;
+    }
+
+    // Hands candidates that have become ready to the parser pool
+    private void checkCandidates() {
+        long now = System.currentTimeMillis();
+        for (Iterator<Map.Entry<Path, Candidate>> it = mCandidates.entrySet().iterator(); it.hasNext();) {
+            if (mReadyCount.get() + mWorkers.getQueue().size() >= mReadyMax) {
+                // Adapters are behind; keep the rest as candidates
+                return;
+            }
+            Map.Entry<Path, Candidate> entry = it.next();
+            Path file = entry.getKey();
+            Candidate candidate = entry.getValue();
+            String signature = signature(file);
+            if (signature == null) {
+                // Gone (taken by another agent or deleted)
+                it.remove();
+                continue;
+            }
+            if (!mReadySuffix.isEmpty()) {
+                if (!Files.exists(markerOf(file))) {
+                    continue;
+                }
+            } else if (!signature.equals(candidate.mSignature)) {
+                candidate.mSignature = signature;
+                candidate.mStableSince = now;
+                continue;
+            } else if (now - candidate.mStableSince < mStableMs) {
+                continue;
+            }
+            long size = sizeOf(signature);
+            long reserved = mReadyBytes.get();
+            if (reserved > 0L && reserved + size > mReadyMaxBytes) {
+                // Parsed trees already use the byte budget; keep the rest as candidates
+                return;
+            }
+            it.remove();
+            mTaken.add(file);
+            mReadyBytes.addAndGet(size);
+            mWorkers.execute(() -> parse(file, signature, size));
+        }
+    }
+
+    // ====================================================================
+    // PARSER
+    // ====================================================================
+
+    private void parse(Path pFile, String pSignature, long pSize) {
+        try {
+            String content = new String(Files.readAllBytes(pFile), StandardCharsets.UTF_8).trim();
+            if (content.isEmpty()) {
+                skip(pFile, pSignature, pSize);
+                return;
+            }
+            JsonNode root = CbnTfBrowsing.normalizeRoot(mObjMapper.readTree(content));
+            List<ModuleType> modules = new ArrayList<>(2);
+            for (ModuleType module : ModuleType.values()) {
+                if (module.hasTransaction(root)) {
+                    modules.add(module);
+                }
+            }
+            mReady.add(new ReadyFile(pFile, root, modules, pSize));
+            mReadyCount.incrementAndGet();
+            mSkipped.remove(pFile);
+        } catch (NoSuchFileException e) {
+            mReadyBytes.addAndGet(-pSize);
+            mTaken.remove(pFile);
+        } catch (IOException | RuntimeException e) {
+            yLogger.log(Level.SEVERE,
+                    String.format("[CbnTfFileIntake] FILE: error reading %s, skipped until it changes", pFile),
+                    e);
+            skip(pFile, pSignature, pSize);
+        }
+    }
+
+    private void skip(Path pFile, String pSignature, long pSize) {
+        mReadyBytes.addAndGet(-pSize);
+        mSkipped.put(pFile, pSignature);
+        mTaken.remove(pFile);
+    }
+
+    // ====================================================================
+    // HELPERS
+    // ====================================================================
+
+    private Path markerOf(Path pFile) {
+        return pFile.resolveSibling(pFile.getFileName().toString() + mReadySuffix);
+    }
+
+    private void deleteMarker(Path pFile) {
+        if (mReadySuffix.isEmpty()) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(markerOf(pFile));
+        } catch (IOException e) {
+            yLogger.log(Level.WARNING, "[CbnTfFileIntake] FILE: cannot delete marker of {0}", pFile);
+        }
+    }
+
+    // size:mtime of a regular file, null if it does not exist (any more)
+    private static String signature(Path pFile) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(pFile, BasicFileAttributes.class);
+            if (!attrs.isRegularFile()) {
+                return null;
+            }
+            return attrs.size() + ":" + attrs.lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // File length part of a signature
+    private static long sizeOf(String pSignature) {
+        return parseLong(pSignature.substring(0, pSignature.indexOf(':')), 0L);
+    }
+
+    private static long parseLong(String pValue, long pDefault) {
+        try {
+            return Long.parseLong(pValue.trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            return pDefault;
+        }
+    }
+}
@@ -0,0 +1,486 @@
+package com.cbn.bloomberg.util;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: CbnTfIdempotencyIndex.java
+ * Author: CSD Development Team
+ * Created: 2026-02-24
+ * Last Modified: 2026-02-28
+ * =============================================================================
+ *
+ * PURPOSE: Recognises redelivered deals by their BLOOMBERG_ID, so that a
+ * duplicate (Bloomberg redelivery after a timeout, FILE re-scan after a partial
+ * failure) does not go through another OFS round trip only to be rejected by
+ * T24.
+ *
+ * - claim: the PROCESS phase claims a BLOOMBERG_ID before building its OFS
+ *   request. An unknown id is marked in flight and processed as usual; a known
+ *   one is returned to the caller, which replays the recorded response (deal
+ *   completed) or defers the item to the next PROCESS cycle, unacknowledged
+ *   (original still awaiting its OFS response).
+ * - complete: CHECK.RESPONSE records a successful outcome (status, reference,
+ *   message) for replay. Failures release the id, so a redelivery is processed
+ *   again.
+ * - Bloom filter: sized for tf.idem.bloom.expected ids at tf.idem.bloom.fpp,
+ *   answers most new ids without touching the index.
+ * - Index: in memory, backed by an append-only journal per module under
+ *   tf.idem.dir (CbnTfJournal), replayed on first use. Completed ids are
+ *   kept for tf.idem.ttl ms, in-flight claims for tf.idem.inflight.ttl ms,
+ *   close to the OFS response time so that the claim of a crashed agent does
+ *   not hold the id for long; the journal is compacted once mostly dead, and
+ *   the Bloom filter rebuilt with it.
+ * - Off unless tf.idem.enabled=true.
+ *
+ * Like the pending response store, each agent JVM locks, replays and compacts
+ * its own journal. With queue partitioning (CbnTfPartitioning) redeliveries
+ * of a deal are routed to the same agent.
+ *
+ * MODIFICATION HISTORY:
+ * - 2026-02-24 | Initial creation
+ * - 2026-02-27 | Journal shared with the pending response store (CbnTfJournal)
+ * - 2026-02-27 | Opt-in; in-flight duplicates deferred instead of dropped
+ * - 2026-02-28 | isConfigured, required by batched acknowledgement
+ * =============================================================================
+ */
+public final class CbnTfIdempotencyIndex {
+
+    private static final Logger yLogger = Logger.getLogger(CbnTfIdempotencyIndex.class.getName());
+
+    private static final Map<String, CbnTfIdempotencyIndex> INDEXES = new ConcurrentHashMap<>();
+
+    private static final long DEFAULT_TTL_MS = 7L * 86400000L;
+    private static final long DEFAULT_INFLIGHT_TTL_MS = 600000L;
+    private static final long DEFAULT_BLOOM_EXPECTED = 200000L;
+    private static final double DEFAULT_BLOOM_FPP = 0.01d;
+    private static final long SWEEP_INTERVAL_MS = 3600000L;
+    private static final int COMPACT_MIN_DEAD = 1000;
+
+    private static final char SEP = '\t';
+    private static final String IN_FLIGHT = "I";
+    private static final String COMPLETED = "C";
+    private static final String RELEASED = "R";
+
+    private final String mModule;
+    private final boolean mEnabled;
+    private final long mTtlMs;
+    private final long mInFlightTtlMs;
+    private final long mBloomExpected;
+    private final double mBloomFpp;
+    private final Map<String, Entry> mEntries = new ConcurrentHashMap<>();
+    // Record ids of duplicates whose original was still in flight, retried next PROCESS cycle
+    private final Set<String> mDeferred = ConcurrentHashMap.newKeySet();
+    private final CbnTfJournal mJournal;
+    private volatile BloomFilter mBloom;
+    private volatile long mLastSweep = System.currentTimeMillis();
+
+    // ==== METRICS ====
+    private final AtomicLong mClaims = new AtomicLong();
+    private final AtomicLong mBloomNegatives = new AtomicLong();
+    private final AtomicLong mDuplicates = new AtomicLong();
+
+    /**
+     * Recorded state of a BLOOMBERG_ID.
+     */
+    public static final class Entry {
+
+        private final String mStatus;
+        private final String mTransactRef;
+        private final String mMessage;
+        private final long mCreatedAt;
+
+        Entry(String pStatus, String pTransactRef, String pMessage, long pCreatedAt) {
+            this.mStatus = pStatus;
+            this.mTransactRef = pTransactRef;
+            this.mMessage = pMessage;
+            this.mCreatedAt = pCreatedAt;
+        }
+
+        /** False while the original is still awaiting its OFS response */
+        public boolean isCompleted() {
+            return mStatus != null;
+        }
+
+        public String getStatus() {
+            return mStatus;
+        }
+
+        public String getTransactRef() {
+            return mTransactRef;
+        }
+
+        public String getMessage() {
+            return mMessage;
+        }
+
+        public long getCreatedAt() {
+            return mCreatedAt;
+        }
+    }
+
+    private CbnTfIdempotencyIndex(String pModule) {
+        CbnTfProperties config = CbnTfProperties.getInstance();
+        this.mModule = pModule;
+        this.mEnabled = isConfigured();
+        this.mTtlMs = parseLong(config.getProperty("tf.idem.ttl", null), DEFAULT_TTL_MS);
+        this.mInFlightTtlMs = parseLong(config.getProperty("tf.idem.inflight.ttl", null),
+                DEFAULT_INFLIGHT_TTL_MS);
+        this.mBloomExpected = Math.max(1000L, parseLong(
+                config.getProperty("tf.idem.bloom.expected", null), DEFAULT_BLOOM_EXPECTED));
+        this.mBloomFpp = parseDouble(config.getProperty("tf.idem.bloom.fpp", null), DEFAULT_BLOOM_FPP);
+        this.mJournal = mEnabled ? openJournal(pModule, config) : null;
+        recover();
+    }
+
+    /**
+     * True if tf.idem.enabled=true.
+     */
+    public static boolean isConfigured() {
+        return "true".equalsIgnoreCase(
+                CbnTfProperties.getInstance().getProperty("tf.idem.enabled", "false").trim());
+    }
+
+    /**
+     * Returns the index of a module (e.g. "FX"), recovering it from its journal on first use.
+     */
+    public static CbnTfIdempotencyIndex forModule(String pModule) {
+        return INDEXES.computeIfAbsent(pModule, CbnTfIdempotencyIndex::new);
+    }
+
+    // ====================================================================
+    // INDEX OPERATIONS
+    // ====================================================================
+
+    /**
+     * Claims a BLOOMBERG_ID for processing.
+     *
+     * @return null if the id is new (now marked in flight), has no value or the index is
+     *         disabled; otherwise the recorded entry of the earlier delivery
+     */
+    public Entry claim(String pBloombergId) {
+        if (!mEnabled || pBloombergId == null || pBloombergId.isEmpty()) {
+            return null;
+        }
+        mClaims.incrementAndGet();
+        sweepIfDue();
+        long now = System.currentTimeMillis();
+        Entry inFlight = new Entry(null, null, null, now);
+
+        if (!mBloom.mightContain(pBloombergId)) {
+            mBloomNegatives.incrementAndGet();
+            if (mEntries.putIfAbsent(pBloombergId, inFlight) == null) {
+                record(IN_FLIGHT + SEP + pBloombergId + SEP + now, pBloombergId);
+                return null;
+            }
+        }
+
+        while (true) {
+            Entry existing = mEntries.get(pBloombergId);
+            if (existing != null && !isExpired(existing, now)) {
+                mDuplicates.incrementAndGet();
+                return existing;
+            }
+            boolean claimed = existing == null ? mEntries.putIfAbsent(pBloombergId, inFlight) == null
+                    : mEntries.replace(pBloombergId, existing, inFlight);
+            if (claimed) {
+                record(IN_FLIGHT + SEP + pBloombergId + SEP + now, pBloombergId);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Records the final outcome of a claimed BLOOMBERG_ID. A successful outcome is kept for
+     * replay, any other releases the id.
+     */
+    public void complete(String pBloombergId, String pStatus, String pTransactRef, String pMessage) {
+        if (!mEnabled || pBloombergId == null || pBloombergId.isEmpty()) {
+            return;
+        }
+        if (!"success".equalsIgnoreCase(pStatus)) {
+            release(pBloombergId);
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Entry completed = new Entry(pStatus, nullToEmpty(pTransactRef), nullToEmpty(pMessage), now);
+        String record = COMPLETED + SEP + pBloombergId + SEP + now + SEP + completed.mStatus + SEP
+                + completed.mTransactRef + SEP + completed.mMessage;
+        synchronized (mJournal) {
+            mJournal.append(record);
+            mEntries.put(pBloombergId, completed);
+        }
+        mBloom.add(pBloombergId);
+    }
+
+    /**
+     * Forgets a BLOOMBERG_ID, e.g. when its processing failed before an OFS request was built.
+     */
+    public void release(String pBloombergId) {
+        if (!mEnabled || pBloombergId == null || pBloombergId.isEmpty()) {
+            return;
+        }
+        if (mEntries.remove(pBloombergId) != null) {
+            mJournal.append(RELEASED + SEP + pBloombergId);
+            compactIfNeeded();
+        }
+    }
+
+    /**
+     * Defers a duplicate whose original is still in flight. It is neither answered nor
+     * acknowledged now, but dispatched again by the next PROCESS cycle, when the original has an
+     * outcome to replay, has failed (and released the id) or its claim has expired.
+     */
+    public void defer(String pRecordId) {
+        mDeferred.add(pRecordId);
+    }
+
+    /**
+     * Returns pIds followed by the duplicates deferred since the last call.
+     */
+    public List<String> withDeferred(List<String> pIds) {
+        if (mDeferred.isEmpty()) {
+            return pIds;
+        }
+        List<String> ids = new ArrayList<>(pIds);
+        for (String id : new ArrayList<>(mDeferred)) {
+            if (mDeferred.remove(id) && !ids.contains(id)) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    // ====================================================================
+    // METRICS
+    // ====================================================================
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    public long getDuplicates() {
+        return mDuplicates.get();
+    }
+
+    /**
+     * One line summary of the index metrics.
+     */
+    public String describe() {
+        return mModule + ": size=" + size() + ", claims=" + mClaims.get() + ", bloomNegatives="
+                + mBloomNegatives.get() + ", duplicates=" + getDuplicates() + ", deferred="
+                + mDeferred.size() + ", enabled=" + mEnabled;
+    }
+
+    // ====================================================================
+    // EXPIRY / RECOVERY
+    // ====================================================================
+
+    private boolean isExpired(Entry pEntry, long pNow) {
+        long ttl = pEntry.isCompleted() ? mTtlMs : mInFlightTtlMs;
+        return ttl > 0 && pNow - pEntry.mCreatedAt > ttl;
+    }
+
+    private void record(String pRecord, String pBloombergId) {
+        mJournal.append(pRecord);
+        mBloom.add(pBloombergId);
+    }
+
+    private void sweepIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - mLastSweep < SWEEP_INTERVAL_MS) {
+            return;
+        }
+        mLastSweep = now;
+        int expired = 0;
+        for (Map.Entry<String, Entry> e : mEntries.entrySet()) {
+            if (isExpired(e.getValue(), now) && mEntries.remove(e.getKey(), e.getValue())) {
+                expired++;
+            }
+        }
+        if (expired > 0) {
+            yLogger.log(Level.INFO, "[CbnTfIdempotencyIndex] {0}: expired {1} id(s)",
+                    new Object[] { mModule, expired });
+            compact();
+        }
+    }
+
+    private void recover() {
+        if (!mEnabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<String> records = mJournal.replay();
+        for (String record : records) {
+            try {
+                String[] f = record.split(String.valueOf(SEP), 6);
+                if (COMPLETED.equals(f[0])) {
+                    mEntries.put(f[1], new Entry(f[3], f[4], f[5], Long.parseLong(f[2])));
+                } else if (IN_FLIGHT.equals(f[0])) {
+                    mEntries.put(f[1], new Entry(null, null, null, Long.parseLong(f[2])));
+                } else if (RELEASED.equals(f[0])) {
+                    mEntries.remove(f[1]);
+                }
+            } catch (RuntimeException e) {
+                yLogger.log(Level.WARNING,
+                        "[CbnTfIdempotencyIndex] {0}: skipping unreadable journal record: {1}",
+                        new Object[] { mModule, e.toString() });
+            }
+        }
+        for (Map.Entry<String, Entry> e : mEntries.entrySet()) {
+            if (isExpired(e.getValue(), now)) {
+                mEntries.remove(e.getKey());
+            }
+        }
+        if (!records.isEmpty()) {
+            yLogger.log(Level.INFO,
+                    "[CbnTfIdempotencyIndex] {0}: recovered {1} id(s) from {2} records",
+                    new Object[] { mModule, mEntries.size(), records.size() });
+        }
+        // Start from a compact journal without a possibly torn tail
+        compact();
+    }
+
+    private void compactIfNeeded() {
+        long dead = mJournal.records() - mEntries.size();
+        if (dead >= COMPACT_MIN_DEAD && dead > 2L * mEntries.size()) {
+            compact();
+        }
+    }
+
+    // Rewrites the journal with the live ids and rebuilds the Bloom filter from them
+    private void compact() {
+        synchronized (mJournal) {
+            BloomFilter bloom = new BloomFilter(Math.max(mBloomExpected, 2L * mEntries.size()),
+                    mBloomFpp);
+            List<String> live = new ArrayList<>(mEntries.size());
+            for (Map.Entry<String, Entry> e : mEntries.entrySet()) {
+                Entry entry = e.getValue();
+                if (entry.isCompleted()) {
+                    live.add(COMPLETED + SEP + e.getKey() + SEP + entry.mCreatedAt + SEP
+                            + entry.mStatus + SEP + entry.mTransactRef + SEP + entry.mMessage);
+                } else {
+                    live.add(IN_FLIGHT + SEP + e.getKey() + SEP + entry.mCreatedAt);
+                }
+                bloom.add(e.getKey());
+            }
+            mJournal.rewrite(live);
+            mBloom = bloom;
+        }
+    }
+
+    // ====================================================================
+    // BLOOM FILTER
+    // ====================================================================
+
+    /**
+     * Lock-free Bloom filter over a bit array of longs, with double hashing.
+     */
+    private static final class BloomFilter {
+
+        private final AtomicLongArray mBits;
+        private final long mBitCount;
+        private final int mHashes;
+
+        BloomFilter(long pExpected, double pFpp) {
+            double fpp = pFpp > 0 && pFpp < 1 ? pFpp : DEFAULT_BLOOM_FPP;
+            long bits = (long) Math.ceil(-pExpected * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            int words = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1L, (bits + 63) / 64));
+            this.mBits = new AtomicLongArray(words);
+            this.mBitCount = words * 64L;
+            this.mHashes = Math.max(1, (int) Math.round((double) mBitCount / pExpected * Math.log(2)));
+        }
+
+        void add(String pKey) {
+            long h1 = hash(pKey, 0x9E3779B97F4A7C15L);
+            long h2 = hash(pKey, 0xC2B2AE3D27D4EB4FL);
+            for (int i = 0; i < mHashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, mBitCount);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << (bit & 63);
+                long current;
+                do {
+                    current = mBits.get(word);
+                } while ((current & mask) == 0 && !mBits.compareAndSet(word, current, current | mask));
+            }
+        }
+
+        boolean mightContain(String pKey) {
+            long h1 = hash(pKey, 0x9E3779B97F4A7C15L);
+            long h2 = hash(pKey, 0xC2B2AE3D27D4EB4FL);
+            for (int i = 0; i < mHashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, mBitCount);
+                if ((mBits.get((int) (bit >>> 6)) & (1L << (bit & 63))) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // 64-bit FNV-1a style hash with a seed, finished with the murmur3 mixer
+        private static long hash(String pKey, long pSeed) {
+            long h = pSeed;
+            for (int i = 0; i < pKey.length(); i++) {
+                h ^= pKey.charAt(i);
+                h *= 0x100000001B3L;
+            }
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            h *= 0xC4CEB9FE1A85EC53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+
+    // ====================================================================
+    // JOURNAL
+    // ====================================================================
+
+    private static CbnTfJournal openJournal(String pModule, CbnTfProperties pConfig) {
+        Path dir = Paths.get(pConfig.getProperty("tf.idem.dir",
+                "/t24app/app/bnk/UD/BLOOMBERG/IDEMPOTENCY"));
+        return CbnTfJournal.open("CbnTfIdempotencyIndex", "journal", dir, pModule, "idx", 0L);
+    }
+
+    // ====================================================================
+    // HELPERS
+    // ====================================================================
+
+    private static String nullToEmpty(String pValue) {
+        return pValue == null ? "" : pValue;
+    }
+
+    private static long parseLong(String pValue, long pDefault) {
+        if (pValue == null) {
+            return pDefault;
+        }
+        try {
+            return Long.parseLong(pValue.trim());
+        } catch (NumberFormatException e) {
+            return pDefault;
+        }
+    }
+
+    private static double parseDouble(String pValue, double pDefault) {
+        if (pValue == null) {
+            return pDefault;
+        }
+        try {
+            return Double.parseDouble(pValue.trim());
+        } catch (NumberFormatException e) {
+            return pDefault;
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.cbn.bloomberg.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: CbnTfItemStream.java
+ * Author: CSD Development Team
+ * Created: 2026-02-14
+ * Last Modified: 2026-02-27
+ * =============================================================================
+ *
+ * PURPOSE: Streaming reader for large Bloomberg payload files. Instead of
+ * loading a whole file into a String and binding it as one tree, a JsonParser
+ * runs over the file channel and the items under the module root node
+ * (e.g. SECURITY_MASTER) are bound one at a time. Only one item is held in
+ * memory at any point.
+ *
+ * Each item is reported with the byte offset of its opening brace, so item ids
+ * can point back into the file ("FILE|<path>|<prefix>|@<offset>") and a single
+ * item can later be re-read with readAt() without parsing what precedes it.
+ *
+ * The root node may hold a single object or an array of objects, and may be
+ * wrapped in a data/payload/message object (see CbnTfBrowsing.normalizeRoot).
+ *
+ * The FX, PD and SC adapters build their FILE-mode ids this way in scan mode,
+ * and the services read each item back with readAt().
+ *
+ * MODIFICATION HISTORY:
+ * - 2026-02-14 | Initial creation
+ * - 2026-02-27 | Used by the FILE scan of the FX/PD/SC adapters; an absent root
+ *                node is logged at FINE (files without the module are common)
+ * =============================================================================
+ */
+public final class CbnTfItemStream<T> implements Closeable {
+
+    private static final Logger yLogger = Logger.getLogger(CbnTfItemStream.class.getName());
+
+    /** Marker that distinguishes an offset from an array index in item ids */
+    public static final String OFFSET_MARK = "@";
+
+    private final FileChannel mChannel;
+    private final JsonParser mParser;
+    private final Class<T> mType;
+
+    // ==== CURSOR STATE ====
+    private boolean mArray;
+    private boolean mDone;
+    private int mIndex;
+
+    /**
+     * One item of the stream together with its position in the file.
+     */
+    public static final class Item<T> {
+
+        private final T mValue;
+        private final int mIndex;
+        private final long mOffset;
+
+        Item(T pValue, int pIndex, long pOffset) {
+            this.mValue = pValue;
+            this.mIndex = pIndex;
+            this.mOffset = pOffset;
+        }
+
+        public T value() {
+            return mValue;
+        }
+
+        public int index() {
+            return mIndex;
+        }
+
+        public long offset() {
+            return mOffset;
+        }
+    }
+
+    private CbnTfItemStream(FileChannel pChannel, JsonParser pParser, Class<T> pType) {
+        this.mChannel = pChannel;
+        this.mParser = pParser;
+        this.mType = pType;
+    }
+
+    /**
+     * Opens a stream over the items under the given root node of a file.
+     *
+     * @param pFile      Payload file
+     * @param pRootNode  Module root node name (e.g. "SECURITY_MASTER")
+     * @param pType      POJO type of one item
+     * @param pObjMapper Jackson ObjectMapper used to bind items
+     * @return Stream positioned before the first item; empty if the root node is absent
+     */
+    public static <T> CbnTfItemStream<T> open(Path pFile, String pRootNode, Class<T> pType,
+            ObjectMapper pObjMapper) throws IOException {
+        FileChannel channel = FileChannel.open(pFile, StandardOpenOption.READ);
+        CbnTfItemStream<T> stream = null;
+        try {
+            JsonParser parser = pObjMapper.getFactory()
+                    .createParser(Channels.newInputStream(channel));
+            stream = new CbnTfItemStream<>(channel, parser, pType);
+            stream.positionAtRoot(pRootNode);
+            return stream;
+        } finally {
+            if (stream == null) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Binds and returns the next item.
+     *
+     * @return Next item, or null at the end of the stream
+     */
+    public Item<T> next() throws IOException {
+        long offset = advance();
+        if (offset < 0) {
+            return null;
+        }
+        T value = mParser.readValueAs(mType);
+        if (!mArray) {
+            mDone = true;
+        }
+        return new Item<>(value, mIndex++, offset);
+    }
+
+    /**
+     * Skips the next item without binding it. Cheap way to enumerate item offsets.
+     *
+     * @return Byte offset of the skipped item, or -1 at the end of the stream
+     */
+    public long skip() throws IOException {
+        long offset = advance();
+        if (offset < 0) {
+            return -1L;
+        }
+        mParser.skipChildren();
+        if (!mArray) {
+            mDone = true;
+        }
+        mIndex++;
+        return offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            mParser.close();
+        } finally {
+            mChannel.close();
+        }
+    }
+
+    /**
+     * Re-reads a single item from a byte offset previously reported by the stream.
+     */
+    public static <T> T readAt(Path pFile, long pOffset, Class<T> pType, ObjectMapper pObjMapper)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(pFile, StandardOpenOption.READ)) {
+            channel.position(pOffset);
+            try (JsonParser parser = pObjMapper.getFactory()
+                    .createParser(Channels.newInputStream(channel))) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new IOException("No item object at offset " + pOffset + " in " + pFile);
+                }
+                return parser.readValueAs(pType);
+            }
+        }
+    }
+
+    /**
+     * Builds an offset based FILE item id: FILE|&lt;path&gt;|&lt;prefix&gt;|@&lt;offset&gt;.
+     */
+    public static String offsetId(Path pFile, String pPrefix, long pOffset) {
+        return "FILE|" + pFile.toAbsolutePath() + "|" + pPrefix + "|" + OFFSET_MARK + pOffset;
+    }
+
+    /**
+     * Extracts the byte offset from the last segment of an item id.
+     *
+     * @return Offset, or -1 if the id carries an array index instead
+     */
+    public static long parseOffset(String pId) {
+        if (pId == null) {
+            return -1L;
+        }
+        String last = pId.substring(pId.lastIndexOf('|') + 1);
+        if (!last.startsWith(OFFSET_MARK)) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(last.substring(OFFSET_MARK.length()));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    // ====================================================================
+    // HELPERS
+    // ====================================================================
+
+    // Moves the parser to the START_OBJECT of the next item and returns its byte offset
+    private long advance() throws IOException {
+        if (mDone) {
+            return -1L;
+        }
+        if (mArray) {
+            JsonToken token = mParser.nextToken();
+            while (token != null && token != JsonToken.START_OBJECT
+                    && token != JsonToken.END_ARRAY) {
+                // Non-object array elements are not items
+                mParser.skipChildren();
+                token = mParser.nextToken();
+            }
+            if (token != JsonToken.START_OBJECT) {
+                mDone = true;
+                return -1L;
+            }
+        }
+        return mParser.getTokenLocation().getByteOffset();
+    }
+
+    // Leaves the parser on the root node value: START_ARRAY is consumed, START_OBJECT is kept
+    private void positionAtRoot(String pRootNode) throws IOException {
+        if (mParser.nextToken() != JsonToken.START_OBJECT) {
+            mDone = true;
+            return;
+        }
+        while (mParser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = mParser.getCurrentName();
+            JsonToken value = mParser.nextToken();
+            if (pRootNode.equals(field)) {
+                if (value == JsonToken.START_ARRAY) {
+                    mArray = true;
+                } else if (value != JsonToken.START_OBJECT) {
+                    mDone = true;
+                }
+                return;
+            }
+            if (value == JsonToken.START_OBJECT && isWrapperNode(field)) {
+                // Descend into the wrapper and keep looking for the root node
+                continue;
+            }
+            mParser.skipChildren();
+        }
+        yLogger.log(Level.FINE, "[CbnTfItemStream] {0} not found", pRootNode);
+        mDone = true;
+    }
+
+    private static boolean isWrapperNode(String pField) {
+        return "data".equals(pField) || "payload".equals(pField) || "message".equals(pField);
+    }
+}
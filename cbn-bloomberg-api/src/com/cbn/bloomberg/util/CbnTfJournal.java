@@ -0,0 +1,442 @@
+package com.cbn.bloomberg.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: CbnTfJournal.java
+ * Author: CSD Development Team
+ * Created: 2026-02-27
+ * Last Modified: 2026-02-28
+ * =============================================================================
+ *
+ * PURPOSE: Local append-only journal behind the pending response store and
+ * the idempotency index. Records are length prefixed UTF-8 strings, so a
+ * record torn by a crash is detected and ignored on replay.
+ *
+ * Types:
+ *   journal - append-only file, compacted by writing a new file and moving it
+ *             over the old one
+ *   mmap    - memory-mapped file, grown on demand, compacted in place
+ *   memory  - no persistence
+ *
+ * Several TSA agent JVMs of a host share the journal directory. Each journal
+ * is owned by one JVM: opening takes an exclusive FileLock on a sidecar
+ * &lt;file&gt;.lock, held for the life of the JVM. The first free slot is used
+ * (&lt;name&gt;.&lt;ext&gt;, then &lt;name&gt;-1.&lt;ext&gt;, ...), so a JVM only
+ * replays, appends to and compacts its own file. A restarted agent takes over
+ * a slot whose owner is gone (the OS drops the lock of a dead process) and
+ * recovers its records. Slots left behind when fewer agents run than before
+ * are picked up by adoptOrphans, which merges their records into the caller's
+ * own journal and deletes them.
+ *
+ * MODIFICATION HISTORY:
+ * - 2026-02-27 | Initial creation, from the journals of CbnTfPendingResponseStore
+ *                and CbnTfIdempotencyIndex, with per-JVM file ownership
+ * - 2026-02-28 | adoptOrphans for the slots of agents that are gone
+ * =============================================================================
+ */
+public abstract class CbnTfJournal {
+
+    private static final Logger yLogger = Logger.getLogger(CbnTfJournal.class.getName());
+
+    private static final int MAX_SLOTS = 64;
+
+    /**
+     * Opens the first journal file of pName not owned by another JVM.
+     *
+     * @param pOwner     Log prefix of the caller, e.g. "CbnTfPendingResponseStore"
+     * @param pType      journal | mmap | memory
+     * @param pDir       Journal directory, created if missing
+     * @param pName      File name without extension, usually the module
+     * @param pExtension File extension, e.g. "journal"
+     * @param pMmapSize  Initial mapped size in bytes (mmap only)
+     * @return the journal; a memory journal if no file could be opened
+     */
+    public static CbnTfJournal open(String pOwner, String pType, Path pDir, String pName,
+            String pExtension, long pMmapSize) {
+        if ("memory".equals(pType)) {
+            return memory();
+        }
+        try {
+            Files.createDirectories(pDir);
+            for (int slot = 0; slot < MAX_SLOTS; slot++) {
+                Path file = pDir.resolve(
+                        (slot == 0 ? pName : pName + "-" + slot) + "." + pExtension);
+                FileChannel lockChannel = FileChannel.open(
+                        file.resolveSibling(file.getFileName() + ".lock"),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileLock lock = tryLock(lockChannel);
+                if (lock == null) {
+                    lockChannel.close();
+                    continue;
+                }
+                try {
+                    yLogger.log(Level.INFO, "[{0}] {1}: journal {2} owned by this JVM",
+                            new Object[] { pOwner, pName, file });
+                    return "mmap".equals(pType)
+                            ? new MappedJournal(pOwner, file, lock, pMmapSize)
+                            : new FileJournal(pOwner, file, lock);
+                } catch (IOException e) {
+                    lockChannel.close();
+                    throw e;
+                }
+            }
+            yLogger.log(Level.SEVERE, "[{0}] {1}: all {2} journal slots in {3} are owned by other "
+                    + "JVMs, records are kept in memory only",
+                    new Object[] { pOwner, pName, MAX_SLOTS, pDir });
+        } catch (IOException e) {
+            yLogger.log(Level.SEVERE, "[" + pOwner + "] " + pName
+                    + ": journal unavailable, records are kept in memory only", e);
+        }
+        return memory();
+    }
+
+    /**
+     * Journal without persistence.
+     */
+    public static CbnTfJournal memory() {
+        return new NoJournal();
+    }
+
+    /** Type of the journal, with the file it owns */
+    public abstract String name();
+
+    public abstract void append(String pRecord);
+
+    /** Records of the owned file, in append order; sets records() to their number */
+    public abstract List<String> replay();
+
+    /** Replaces the content of the owned file by pRecords */
+    public abstract void rewrite(Collection<String> pRecords);
+
+    /** Records in the file, live and dead */
+    public abstract long records();
+
+    /** The owned file, null if not persisted */
+    protected Path file() {
+        return null;
+    }
+
+    /**
+     * Takes over the other slots of this journal's name whose owner JVM is gone. For each existing
+     * slot file whose lock is free, pAdopter receives its records while the lock is held; the file
+     * is deleted once pAdopter returns, so pAdopter must have persisted the records (e.g. rewritten
+     * this journal) by then. Slots of live agents are skipped.
+     *
+     * @param pOwner   Log prefix of the caller
+     * @param pAdopter Receives the records of one orphaned file, in append order
+     * @return Number of files adopted
+     */
+    public int adoptOrphans(String pOwner, Consumer<List<String>> pAdopter) {
+        Path own = file();
+        if (own == null) {
+            return 0;
+        }
+        String fileName = own.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String base = fileName.substring(0, dot).replaceFirst("-\\d+$", "");
+        String extension = fileName.substring(dot);
+
+        int adopted = 0;
+        for (int slot = 0; slot < MAX_SLOTS; slot++) {
+            Path file = own.resolveSibling((slot == 0 ? base : base + "-" + slot) + extension);
+            // Never open the lock file of our own slot: closing that channel would release our lock
+            if (file.equals(own) || !Files.exists(file)) {
+                continue;
+            }
+            try (FileChannel lockChannel = FileChannel.open(
+                    file.resolveSibling(file.getFileName() + ".lock"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                if (tryLock(lockChannel) == null) {
+                    continue;
+                }
+                List<String> records = new ArrayList<>();
+                readFrames(ByteBuffer.wrap(Files.readAllBytes(file)), records);
+                if (!records.isEmpty()) {
+                    pAdopter.accept(records);
+                }
+                Files.delete(file);
+                adopted++;
+                yLogger.log(Level.WARNING, "[{0}] adopted {1} record(s) of orphaned journal {2}",
+                        new Object[] { pOwner, records.size(), file });
+            } catch (IOException | RuntimeException e) {
+                yLogger.log(Level.WARNING, "[" + pOwner + "] cannot adopt orphaned journal " + file,
+                        e);
+            }
+        }
+        return adopted;
+    }
+
+    // Null if another JVM (or this one) holds the lock
+    private static FileLock tryLock(FileChannel pChannel) throws IOException {
+        try {
+            return pChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    private static final class NoJournal extends CbnTfJournal {
+
+        @Override
+        public String name() {
+            return "memory";
+        }
+
+        @Override
+        public void append(String pRecord) {
+        }
+
+        @Override
+        public List<String> replay() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public void rewrite(Collection<String> pRecords) {
+        }
+
+        @Override
+        public long records() {
+            return 0L;
+        }
+    }
+
+    /**
+     * Append-only journal file. The sidecar lock stays valid when compaction moves a new file
+     * over the journal.
+     */
+    private static final class FileJournal extends CbnTfJournal {
+
+        private final String mOwner;
+        private final Path mFile;
+        // Held for the life of the JVM, keeps other agents off the file
+        @SuppressWarnings("unused")
+        private final FileLock mLock;
+        private FileChannel mChannel;
+        private long mRecords;
+
+        FileJournal(String pOwner, Path pFile, FileLock pLock) throws IOException {
+            this.mOwner = pOwner;
+            this.mFile = pFile;
+            this.mLock = pLock;
+            this.mChannel = openAppend(pFile);
+        }
+
+        @Override
+        public String name() {
+            return "journal " + mFile.getFileName();
+        }
+
+        @Override
+        protected Path file() {
+            return mFile;
+        }
+
+        @Override
+        public synchronized void append(String pRecord) {
+            try {
+                ByteBuffer buf = frame(pRecord);
+                while (buf.hasRemaining()) {
+                    mChannel.write(buf);
+                }
+                mRecords++;
+            } catch (IOException e) {
+                yLogger.log(Level.SEVERE, "[" + mOwner + "] journal write failed: " + mFile, e);
+            }
+        }
+
+        @Override
+        public synchronized List<String> replay() {
+            List<String> records = new ArrayList<>();
+            try {
+                readFrames(ByteBuffer.wrap(Files.readAllBytes(mFile)), records);
+            } catch (IOException e) {
+                yLogger.log(Level.SEVERE, "[" + mOwner + "] journal read failed: " + mFile, e);
+            }
+            mRecords = records.size();
+            return records;
+        }
+
+        @Override
+        public synchronized void rewrite(Collection<String> pRecords) {
+            Path tmp = mFile.resolveSibling(mFile.getFileName() + ".tmp");
+            try {
+                try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                        StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    for (String record : pRecords) {
+                        ByteBuffer buf = frame(record);
+                        while (buf.hasRemaining()) {
+                            out.write(buf);
+                        }
+                    }
+                    out.force(true);
+                }
+                mChannel.close();
+                Files.move(tmp, mFile, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                mRecords = pRecords.size();
+            } catch (IOException e) {
+                yLogger.log(Level.SEVERE, "[" + mOwner + "] journal compaction failed: " + mFile, e);
+            } finally {
+                try {
+                    if (!mChannel.isOpen()) {
+                        mChannel = openAppend(mFile);
+                    }
+                } catch (IOException e) {
+                    yLogger.log(Level.SEVERE, "[" + mOwner + "] journal reopen failed: " + mFile, e);
+                }
+            }
+        }
+
+        @Override
+        public synchronized long records() {
+            return mRecords;
+        }
+
+        private static FileChannel openAppend(Path pFile) throws IOException {
+            return FileChannel.open(pFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+        }
+    }
+
+    /**
+     * Journal in a memory-mapped file. Appends are memory writes that the OS flushes to the file,
+     * so they survive a JVM crash. A zero length frame marks the end of the data; the mapping is
+     * grown when the file is full after compaction.
+     */
+    private static final class MappedJournal extends CbnTfJournal {
+
+        private final String mOwner;
+        private final Path mFile;
+        @SuppressWarnings("unused")
+        private final FileLock mLock;
+        private long mSize;
+        private MappedByteBuffer mBuffer;
+        private long mRecords;
+
+        MappedJournal(String pOwner, Path pFile, FileLock pLock, long pSize) throws IOException {
+            this.mOwner = pOwner;
+            this.mFile = pFile;
+            this.mLock = pLock;
+            this.mSize = Math.max(pSize, Files.exists(pFile) ? Files.size(pFile) : 0L);
+            map();
+        }
+
+        @Override
+        public String name() {
+            return "mmap " + mFile.getFileName();
+        }
+
+        @Override
+        protected Path file() {
+            return mFile;
+        }
+
+        @Override
+        public synchronized void append(String pRecord) {
+            ByteBuffer buf = frame(pRecord);
+            try {
+                if (mBuffer.remaining() < buf.remaining() + 4) {
+                    grow(buf.remaining() + 4);
+                }
+                mBuffer.put(buf);
+                // End marker, overwritten by the next record
+                mBuffer.putInt(mBuffer.position(), 0);
+                mRecords++;
+            } catch (IOException e) {
+                yLogger.log(Level.SEVERE, "[" + mOwner + "] journal write failed: " + mFile, e);
+            }
+        }
+
+        @Override
+        public synchronized List<String> replay() {
+            List<String> records = new ArrayList<>();
+            ByteBuffer view = mBuffer.duplicate();
+            view.position(0);
+            readFrames(view, records);
+            mBuffer.position(view.position());
+            mRecords = records.size();
+            return records;
+        }
+
+        @Override
+        public synchronized void rewrite(Collection<String> pRecords) {
+            mBuffer.position(0);
+            mRecords = 0;
+            for (String record : pRecords) {
+                append(record);
+            }
+            if (mRecords == 0 && mBuffer.remaining() >= 4) {
+                mBuffer.putInt(0, 0);
+            }
+            mBuffer.force();
+        }
+
+        @Override
+        public synchronized long records() {
+            return mRecords;
+        }
+
+        private void grow(int pNeeded) throws IOException {
+            int position = mBuffer.position();
+            mBuffer.force();
+            mSize = Math.max(mSize * 2, position + pNeeded + 4L);
+            map();
+            mBuffer.position(position);
+        }
+
+        private void map() throws IOException {
+            try (FileChannel ch = FileChannel.open(mFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                // The mapping stays valid after the channel is closed
+                mBuffer = ch.map(FileChannel.MapMode.READ_WRITE, 0, mSize);
+            }
+        }
+    }
+
+    // ====================================================================
+    // HELPERS
+    // ====================================================================
+
+    private static ByteBuffer frame(String pRecord) {
+        byte[] bytes = pRecord.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocate(4 + bytes.length);
+        buf.putInt(bytes.length).put(bytes);
+        buf.flip();
+        return buf;
+    }
+
+    // Reads frames until the end marker, the end of the buffer or a torn record
+    private static void readFrames(ByteBuffer pBuffer, List<String> pRecords) {
+        while (pBuffer.remaining() >= 4) {
+            int start = pBuffer.position();
+            int length = pBuffer.getInt();
+            if (length <= 0 || length > pBuffer.remaining()) {
+                pBuffer.position(start);
+                return;
+            }
+            byte[] bytes = new byte[length];
+            pBuffer.get(bytes);
+            pRecords.add(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.cbn.bloomberg.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageListener;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import com.cbn.bloomberg.util.CbnTfBrowsing.ModuleType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: CbnTfListenerIntake.java
+ * Author: CSD Development Team
+ * Created: 2026-02-12
+ * Last Modified: 2026-02-28
+ * =============================================================================
+ *
+ * PURPOSE: Event-driven WMQ ingestion (tf.wmq.ingest.mode=listener).
+ *
+ * An asynchronous MessageListener per endpoint and module service consumes
+ * the inbound queue as messages arrive and writes each message to the
+ * CbnTfStagingJournal of its module before acknowledging it to MQ. The module
+ * adapters' getIds cycle then only drains its own journal directory, so the
+ * full-queue browse (which grows with queue depth and parses other modules'
+ * messages) is no longer needed.
+ *
+ * Each listener consumes with a selector on the ModuleType property of its own
+ * modules, so messages of a module are only journalled on hosts that run that
+ * module's service. Unstamped messages are consumed only by the listener whose
+ * modules include tf.wmq.listener.unstamped.owner, which routes them by content
+ * detection; without an owner they stay on the queue. A message whose module
+ * is unknown is parked once as WMQ_UNROUTABLE_*.json in tf.nfs.error.dir and
+ * acknowledged, so it is not redelivered forever.
+ *
+ * The listener runs on a CLIENT_ACKNOWLEDGE session lent by the shared
+ * CbnTfConnectionPool. A message that cannot be journalled is not
+ * acknowledged; the session is recovered so that MQ redelivers it. The
+ * listener is (re)started lazily from getIds whenever the pool reports the
+ * connection as unhealthy or has reconnected since the listener started.
+ *
+ * MODIFICATION HISTORY:
+ * - 2026-02-12 | Initial creation
+ * - 2026-02-27 | Per-module listener selector; ModuleType validated; unroutable
+ *                messages are no longer acknowledged
+ * - 2026-02-28 | Restart after any pool reconnect; unroutable messages parked and
+ *                acknowledged; unstamped messages consumed by their owner only
+ * =============================================================================
+ */
+public final class CbnTfListenerIntake implements MessageListener {
+
+    private static final Logger yLogger = Logger.getLogger(CbnTfListenerIntake.class.getName());
+
+    /** Ingestion mode value that enables the listener */
+    public static final String INGEST_MODE_LISTENER = "listener";
+
+    private static final DateTimeFormatter TS_FMT = DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss_SSS");
+
+    private static final Map<List<Object>, CbnTfListenerIntake> INTAKES = new ConcurrentHashMap<>();
+
+    private final CbnTfConnectionPool mPool;
+    private final String mQueueName;
+    private final Set<ModuleType> mModules;
+    private final String mSelector;
+    private final ObjectMapper mObjMapper = new ObjectMapper();
+
+    // ==== LISTENER STATE (written under this) ====
+    private volatile Session mSession;
+    private MessageConsumer mConsumer;
+    private int mGeneration;
+
+    private CbnTfListenerIntake(CbnTfConnectionPool pPool, String pQueueName,
+            Set<ModuleType> pModules) {
+        this.mPool = pPool;
+        this.mQueueName = pQueueName;
+        this.mModules = pModules;
+        this.mSelector = buildSelector(pModules, ownsUnstamped(pModules));
+    }
+
+    /**
+     * True if tf.wmq.ingest.mode selects listener ingestion (default: poll).
+     */
+    public static boolean isListenerMode() {
+        String mode = CbnTfProperties.getInstance().getProperty("tf.wmq.ingest.mode", "poll");
+        return mode != null && INGEST_MODE_LISTENER.equalsIgnoreCase(mode.trim());
+    }
+
+    /**
+     * Returns the intake of the given modules for the endpoint and inbound queue described by the
+     * given tf.wmq.* properties.
+     */
+    public static CbnTfListenerIntake forProperties(Properties pProps, ModuleType... pModules) {
+        CbnTfConnectionPool pool = CbnTfConnectionPool.forProperties(pProps);
+        Set<ModuleType> modules = Collections.unmodifiableSet(EnumSet.copyOf(Arrays.asList(pModules)));
+        return INTAKES.computeIfAbsent(Arrays.asList(pool, modules),
+                k -> new CbnTfListenerIntake(pool, pProps.getProperty("tf.wmq.queue"), modules));
+    }
+
+    /**
+     * Starts the listener, or restarts it after a connection failure or a reconnect made by another
+     * user of the pool. Cheap when already running.
+     */
+    public synchronized void ensureRunning() throws JMSException {
+        if (mConsumer != null && mPool.isHealthy() && mPool.getGeneration() == mGeneration) {
+            return;
+        }
+        stop();
+
+        // Read before borrowing: a reconnect in between only causes one extra restart
+        int generation = mPool.getGeneration();
+        Session session = mPool.borrowSession(false, Session.CLIENT_ACKNOWLEDGE);
+        try {
+            javax.jms.Queue queue = session.createQueue("queue:///" + mQueueName);
+            MessageConsumer consumer = session.createConsumer(queue, mSelector);
+            consumer.setMessageListener(this);
+            mSession = session;
+            mConsumer = consumer;
+            mGeneration = generation;
+        } catch (JMSException e) {
+            mPool.discardSession(session);
+            throw e;
+        }
+        yLogger.log(Level.INFO, "[CbnTfListenerIntake] Listening on {0} for {1}",
+                new Object[] { mQueueName, mModules });
+    }
+
+    /**
+     * Stops the listener. Messages received but not yet acknowledged are redelivered by MQ.
+     */
+    public synchronized void stop() {
+        if (mSession == null) {
+            return;
+        }
+        CbnTfBrowsing.closeQuietly(mConsumer);
+        mPool.discardSession(mSession);
+        mConsumer = null;
+        mSession = null;
+    }
+
+    @Override
+    public void onMessage(Message pMessage) {
+        String msgId = null;
+        try {
+            msgId = pMessage.getJMSMessageID();
+            String body = extractBody(pMessage);
+            String cacheKey = CbnTfBrowsing.normalizeCacheKey(msgId);
+
+            ModuleType module = resolveModule(pMessage, body);
+            if (module == null) {
+                // Parked once and acknowledged, a redelivery would fail the same way
+                parkUnroutable(msgId, body);
+                pMessage.acknowledge();
+                return;
+            }
+
+            CbnTfStagingJournal.append(module, cacheKey, body);
+            pMessage.acknowledge();
+            yLogger.log(Level.FINE, "[CbnTfListenerIntake] Journalled {0} for {1}",
+                    new Object[] { msgId, module });
+
+        } catch (IOException | JMSException | RuntimeException e) {
+            yLogger.log(Level.SEVERE, "[CbnTfListenerIntake] Unable to journal " + msgId
+                    + ", requesting redelivery", e);
+            recover();
+        }
+    }
+
+    // ====================================================================
+    // HELPERS
+    // ====================================================================
+
+    /**
+     * Module of a message: the stamped ModuleType property if it is a valid module, otherwise the
+     * module detected from the body.
+     *
+     * @return The module, or null if the message cannot be routed
+     */
+    private ModuleType resolveModule(Message pMessage, String pBody) throws JMSException {
+        String stamped = pMessage.getStringProperty(CbnTfBrowsing.MODULE_PROPERTY);
+        if (stamped != null) {
+            try {
+                return ModuleType.valueOf(stamped.trim());
+            } catch (IllegalArgumentException e) {
+                yLogger.log(Level.WARNING, "[CbnTfListenerIntake] Invalid {0} property ''{1}''",
+                        new Object[] { CbnTfBrowsing.MODULE_PROPERTY, stamped });
+                return null;
+            }
+        }
+        if (pBody == null || pBody.trim().isEmpty()) {
+            return null;
+        }
+        return CbnTfBrowsing.detectModuleType(pBody, mObjMapper);
+    }
+
+    /**
+     * Selector for messages stamped with one of the modules, plus unstamped messages that still
+     * need content-based detection if this listener owns them.
+     */
+    private static String buildSelector(Set<ModuleType> pModules, boolean pUnstamped) {
+        StringBuilder sb = new StringBuilder(CbnTfBrowsing.MODULE_PROPERTY).append(" IN (");
+        String sep = "";
+        for (ModuleType module : pModules) {
+            sb.append(sep).append('\'').append(module.name()).append('\'');
+            sep = ",";
+        }
+        sb.append(')');
+        if (pUnstamped) {
+            sb.append(" OR ").append(CbnTfBrowsing.MODULE_PROPERTY).append(" IS NULL");
+        }
+        return sb.toString();
+    }
+
+    // True if tf.wmq.listener.unstamped.owner is one of the modules
+    private static boolean ownsUnstamped(Set<ModuleType> pModules) {
+        String owner = CbnTfProperties.getInstance()
+                .getProperty("tf.wmq.listener.unstamped.owner", "").trim();
+        for (ModuleType module : pModules) {
+            if (module.name().equalsIgnoreCase(owner)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Writes a message without a known module to tf.nfs.error.dir, with a .err sidecar, so it can
+     * be resent by hand once it is stamped or fixed.
+     *
+     * @throws IOException If it cannot be written; the message is then redelivered
+     */
+    private static void parkUnroutable(String pMsgId, String pBody) throws IOException {
+        Path dir = Paths.get(CbnTfProperties.getInstance().getNfsErrorDir());
+        Files.createDirectories(dir);
+        String ts = LocalDateTime.now().format(TS_FMT);
+        String id = String.valueOf(CbnTfBrowsing.normalizeCacheKey(pMsgId)).replaceAll("[^A-Za-z0-9_\\-]", "_");
+        Path outFile = dir.resolve(String.format("WMQ_UNROUTABLE_%s_%s.json", id, ts));
+        Files.write(outFile, pBody == null ? new byte[0] : pBody.getBytes(StandardCharsets.UTF_8));
+        Files.write(dir.resolve(String.format("WMQ_UNROUTABLE_%s_%s.err", id, ts)),
+                ("[" + ts + "] FAILURE REASON: " + (pBody == null ? "unsupported message type"
+                        : "no module for message " + pMsgId)).getBytes(StandardCharsets.UTF_8));
+        yLogger.log(Level.SEVERE, "[CbnTfListenerIntake] No module for {0}, parked in {1}",
+                new Object[] { pMsgId, outFile });
+    }
+
+    // Runs on the listener thread: must not take the monitor held by stop() while it closes
+    // the consumer, which waits for onMessage to return
+    private void recover() {
+        Session session = mSession;
+        if (session == null) {
+            return;
+        }
+        try {
+            session.recover();
+        } catch (JMSException e) {
+            yLogger.log(Level.WARNING, "[CbnTfListenerIntake] Session recover failed", e);
+        }
+    }
+
+    private static String extractBody(Message pMessage) throws JMSException {
+        if (pMessage instanceof TextMessage) {
+            return ((TextMessage) pMessage).getText();
+        }
+        if (pMessage instanceof BytesMessage) {
+            BytesMessage bm = (BytesMessage) pMessage;
+            byte[] bytes = new byte[(int) bm.getBodyLength()];
+            bm.readBytes(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+}
@@ -20,6 +20,9 @@ import java.util.logging.SimpleFormatter;
  * 
  * Properties supported: logger.default.folder=/opt logger.path.suffix=/log_T24
  * logger.max.file.size=5000000 logger.max.file.count=10
+ * 
+ * Asynchronous writing and payload sampling/truncation: logger.async.* and logger.payload.* (see
+ * CbnTfAsyncLogHandler).
  */
 public final class CbnTfLogTracer {
 
@@ -60,11 +63,15 @@ public final class CbnTfLogTracer {
 
             try {
                 Files.createDirectories(java.nio.file.Paths.get(logsPath));
-                FileHandler fh = new FileHandler(pattern, maxFileSize, maxFileCount, true);
+                boolean async = CbnTfAsyncLogHandler.isEnabled(logProps);
+                FileHandler fh = async
+                        ? new CbnTfAsyncLogHandler.BatchedFileHandler(pattern, maxFileSize, maxFileCount, true)
+                        : new FileHandler(pattern, maxFileSize, maxFileCount, true);
 
                 fh.setFormatter(new SimpleFormatter());
                 fh.setLevel(Level.ALL);
-                log.addHandler(fh);
+                // Async: records are written and flushed in batches by a background thread
+                log.addHandler(async ? CbnTfAsyncLogHandler.wrap(fh, logProps) : fh);
                 log.setLevel(Level.ALL);
             } catch (IOException | SecurityException e) {
                 ConsoleHandler ch = new ConsoleHandler();
@@ -0,0 +1,695 @@
+package com.cbn.bloomberg.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: CbnTfMessageSpool.java
+ * Author: CSD Development Team
+ * Created: 2026-02-22
+ * Last Modified: 2026-02-28
+ * =============================================================================
+ *
+ * PURPOSE: Durable spool of consumed WMQ message bodies, shared by all TSA
+ * agents of a host. Replaces the per-adapter static MQ_MESSAGE_CACHE and
+ * MQ_MESSAGE_OBJECTS maps, which were unbounded, re-parsed on every item,
+ * leaked failed messages and could not resolve an item id handed to an agent
+ * running in another JVM.
+ *
+ * - Store (tf.wmq.spool.store):
+ *     mmap   - append-only memory-mapped segment files under
+ *              tf.wmq.spool.dir/&lt;MODULE&gt; (default)
+ *     memory - bodies kept in this JVM only
+ *   Records are keyed by the normalised JMSMessageID. Appends are serialised
+ *   between agents by a file lock; readers need no lock. A segment is rolled
+ *   once it reaches tf.wmq.spool.segment.size bytes.
+ * - Index: key -> segment/offset/length, built by scanning the segments and
+ *   extended on a miss, so bodies spooled by another agent are found.
+ * - Parsed trees: the normalized JSON root of the most recently used messages
+ *   (tf.wmq.spool.tree.cache.size) is kept, so items of the same message do
+ *   not re-parse its body. Cached roots must be treated as read-only.
+ * - Compaction: a message is released by its acknowledgement, or expires
+ *   tf.wmq.spool.ttl ms after it was spooled. Sealed segments without live
+ *   messages are deleted; mostly dead ones have their live messages copied to
+ *   the active segment first. Runs at most every tf.wmq.spool.compact.interval.
+ *
+ * A released message stays readable until its segment is compacted, so the
+ * remaining items of a message acknowledged by its first item still resolve.
+ *
+ * MODIFICATION HISTORY:
+ * - 2026-02-22 | Initial creation
+ * - 2026-02-28 | Compaction skips unreadable records instead of aborting
+ * =============================================================================
+ */
+public final class CbnTfMessageSpool {
+
+    private static final Logger yLogger = Logger.getLogger(CbnTfMessageSpool.class.getName());
+
+    private static final Map<String, CbnTfMessageSpool> SPOOLS = new ConcurrentHashMap<>();
+
+    private static final long DEFAULT_SEGMENT_SIZE = 16L * 1024 * 1024;
+    private static final long DEFAULT_TTL_MS = 86400000L;
+    private static final long DEFAULT_COMPACT_INTERVAL_MS = 60000L;
+    private static final int DEFAULT_TREE_CACHE_SIZE = 64;
+
+    // Segment header: write position (long) followed by reserved bytes
+    private static final int HEADER_SIZE = 16;
+    // Record: length (int), type (byte), timestamp (long), key length (short), key, body
+    private static final int RECORD_FIXED = 4 + 1 + 8 + 2;
+    private static final byte PUT = 'P';
+    private static final byte ACK = 'A';
+
+    private static final String SEGMENT_PREFIX = "seg-";
+    private static final String SEGMENT_SUFFIX = ".spool";
+
+    private final String mModule;
+    private final long mSegmentSize;
+    private final long mTtlMs;
+    private final long mCompactIntervalMs;
+    private final int mTreeCacheSize;
+
+    // Null in memory mode
+    private final Path mDir;
+    private final FileChannel mLockChannel;
+
+    private final Map<String, Entry> mIndex = new ConcurrentHashMap<>();
+    private final Map<String, String> mHeapBodies = new ConcurrentHashMap<>();
+    private final TreeMap<Integer, Segment> mSegments = new TreeMap<>();
+    private final Map<String, JsonNode> mTrees;
+    private volatile long mLastCompact = System.currentTimeMillis();
+
+    // ==== METRICS ====
+    private final AtomicLong mPuts = new AtomicLong();
+    private final AtomicLong mReleases = new AtomicLong();
+    private final AtomicLong mExpired = new AtomicLong();
+    private final AtomicLong mTreeHits = new AtomicLong();
+    private final AtomicLong mTreeMisses = new AtomicLong();
+
+    /**
+     * Location of the latest spooled copy of a message.
+     */
+    private static final class Entry {
+
+        private final int mSegment;
+        private final int mOffset;
+        private final int mLength;
+        private final long mCreatedAt;
+        private volatile boolean mReleased;
+
+        Entry(int pSegment, int pOffset, int pLength, long pCreatedAt) {
+            this.mSegment = pSegment;
+            this.mOffset = pOffset;
+            this.mLength = pLength;
+            this.mCreatedAt = pCreatedAt;
+        }
+    }
+
+    /**
+     * A mapped segment file and how far this JVM has indexed it.
+     */
+    private static final class Segment {
+
+        private final int mId;
+        private final Path mFile;
+        private final MappedByteBuffer mBuffer;
+        private int mScanned = HEADER_SIZE;
+        private int mPutCount;
+
+        Segment(int pId, Path pFile, MappedByteBuffer pBuffer) {
+            this.mId = pId;
+            this.mFile = pFile;
+            this.mBuffer = pBuffer;
+        }
+
+        int writePosition() {
+            long position = mBuffer.getLong(0);
+            return position < HEADER_SIZE ? HEADER_SIZE : (int) Math.min(position, mBuffer.capacity());
+        }
+
+        int capacity() {
+            return mBuffer.capacity();
+        }
+    }
+
+    private CbnTfMessageSpool(String pModule) {
+        CbnTfProperties config = CbnTfProperties.getInstance();
+        this.mModule = pModule;
+        this.mSegmentSize = Math.min(Integer.MAX_VALUE, parseLong(
+                config.getProperty("tf.wmq.spool.segment.size", null), DEFAULT_SEGMENT_SIZE));
+        this.mTtlMs = parseLong(config.getProperty("tf.wmq.spool.ttl", null), DEFAULT_TTL_MS);
+        this.mCompactIntervalMs = parseLong(config.getProperty("tf.wmq.spool.compact.interval", null),
+                DEFAULT_COMPACT_INTERVAL_MS);
+        this.mTreeCacheSize = (int) Math.max(0, parseLong(
+                config.getProperty("tf.wmq.spool.tree.cache.size", null), DEFAULT_TREE_CACHE_SIZE));
+        this.mTrees = new LinkedHashMap<String, JsonNode>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, JsonNode> eldest) {
+                return size() > mTreeCacheSize;
+            }
+        };
+
+        Path dir = null;
+        FileChannel lockChannel = null;
+        String type = config.getProperty("tf.wmq.spool.store", "mmap").trim().toLowerCase();
+        if (!"memory".equals(type)) {
+            try {
+                dir = Paths.get(config.getProperty("tf.wmq.spool.dir",
+                        "/t24app/app/bnk/UD/BLOOMBERG/SPOOL")).resolve(pModule);
+                Files.createDirectories(dir);
+                lockChannel = FileChannel.open(dir.resolve("spool.lock"), StandardOpenOption.CREATE,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+            } catch (IOException e) {
+                yLogger.log(Level.SEVERE, "[CbnTfMessageSpool] " + pModule
+                        + ": spool unavailable, message bodies are kept in memory only", e);
+                dir = null;
+                lockChannel = null;
+            }
+        }
+        this.mDir = dir;
+        this.mLockChannel = lockChannel;
+        if (mDir != null) {
+            synchronized (this) {
+                refresh();
+            }
+            yLogger.log(Level.INFO, "[CbnTfMessageSpool] {0}", describe());
+        }
+    }
+
+    /**
+     * Returns the spool of a module (e.g. "FX"), indexing the segments already on disk on first
+     * use.
+     */
+    public static CbnTfMessageSpool forModule(String pModule) {
+        return SPOOLS.computeIfAbsent(pModule, CbnTfMessageSpool::new);
+    }
+
+    // ====================================================================
+    // SPOOL OPERATIONS
+    // ====================================================================
+
+    /**
+     * Spools a consumed message body.
+     *
+     * @param pMessageId JMSMessageID, with or without the "ID:" prefix
+     * @param pBody      Message body
+     * @param pRoot      Normalized root already parsed from the body, or null
+     */
+    public void put(String pMessageId, String pBody, JsonNode pRoot) {
+        String key = CbnTfBrowsing.normalizeCacheKey(pMessageId);
+        if (mDir == null) {
+            mHeapBodies.put(key, pBody);
+            mIndex.put(key, new Entry(0, 0, 0, System.currentTimeMillis()));
+        } else {
+            append(PUT, key, pBody.getBytes(StandardCharsets.UTF_8), System.currentTimeMillis());
+        }
+        mPuts.incrementAndGet();
+        synchronized (mTrees) {
+            if (pRoot != null) {
+                mTrees.put(key, pRoot);
+            } else {
+                mTrees.remove(key);
+            }
+        }
+        compactIfDue();
+    }
+
+    /**
+     * Returns a spooled body, or null if the message is unknown or has been compacted away.
+     */
+    public String getBody(String pMessageId) {
+        String key = CbnTfBrowsing.normalizeCacheKey(pMessageId);
+        if (mDir == null) {
+            return mHeapBodies.get(key);
+        }
+        Entry entry = mIndex.get(key);
+        if (entry == null) {
+            // Possibly spooled by another agent since the last scan
+            synchronized (this) {
+                refresh();
+            }
+            entry = mIndex.get(key);
+        }
+        return entry == null ? mHeapBodies.get(key) : readBody(key, entry);
+    }
+
+    /**
+     * Returns the normalized JSON root of a spooled message, parsing the body only when its tree
+     * is not cached.
+     *
+     * @return Normalized root, or null if the message is unknown
+     */
+    public JsonNode readRoot(String pMessageId, ObjectMapper pObjMapper) throws IOException {
+        String key = CbnTfBrowsing.normalizeCacheKey(pMessageId);
+        synchronized (mTrees) {
+            JsonNode root = mTrees.get(key);
+            if (root != null) {
+                mTreeHits.incrementAndGet();
+                return root;
+            }
+        }
+        String body = getBody(key);
+        if (body == null) {
+            return null;
+        }
+        mTreeMisses.incrementAndGet();
+        JsonNode root = CbnTfBrowsing.normalizeRoot(pObjMapper.readTree(body));
+        synchronized (mTrees) {
+            mTrees.put(key, root);
+        }
+        return root;
+    }
+
+    /**
+     * Releases a message once it has been acknowledged. The body stays readable until its segment
+     * is compacted.
+     */
+    public void release(String pMessageId) {
+        String key = CbnTfBrowsing.normalizeCacheKey(pMessageId);
+        synchronized (mTrees) {
+            mTrees.remove(key);
+        }
+        if (mDir == null) {
+            if (mHeapBodies.remove(key) != null) {
+                mIndex.remove(key);
+                mReleases.incrementAndGet();
+            }
+            compactIfDue();
+            return;
+        }
+        Entry entry = mIndex.get(key);
+        if (entry != null && !entry.mReleased) {
+            entry.mReleased = true;
+            append(ACK, key, new byte[0], System.currentTimeMillis());
+            mReleases.incrementAndGet();
+        }
+        compactIfDue();
+    }
+
+    // ====================================================================
+    // METRICS
+    // ====================================================================
+
+    /**
+     * Number of spooled messages not yet released.
+     */
+    public int liveCount() {
+        int live = 0;
+        for (Entry entry : mIndex.values()) {
+            if (!entry.mReleased) {
+                live++;
+            }
+        }
+        return live;
+    }
+
+    public long getPuts() {
+        return mPuts.get();
+    }
+
+    public long getReleases() {
+        return mReleases.get();
+    }
+
+    public long getExpired() {
+        return mExpired.get();
+    }
+
+    /**
+     * One line summary of the spool metrics.
+     */
+    public String describe() {
+        int segments;
+        synchronized (this) {
+            segments = mSegments.size();
+        }
+        return mModule + ": indexed=" + mIndex.size() + ", live=" + liveCount() + ", segments="
+                + segments + ", puts=" + getPuts() + ", releases=" + getReleases() + ", expired="
+                + getExpired() + ", treeHits=" + mTreeHits.get() + ", treeMisses="
+                + mTreeMisses.get() + ", store=" + (mDir == null ? "memory" : mDir.toString());
+    }
+
+    // ====================================================================
+    // SEGMENTS
+    // ====================================================================
+
+    /**
+     * Appends a record to the active segment under the spool file lock, rolling to a new segment
+     * when it does not fit.
+     */
+    private synchronized void append(byte pType, String pKey, byte[] pBody, long pTimestamp) {
+        byte[] key = pKey.getBytes(StandardCharsets.UTF_8);
+        int length = RECORD_FIXED + key.length + pBody.length;
+        try (FileLock lock = mLockChannel.lock()) {
+            refresh();
+            Segment segment = mSegments.isEmpty() ? null : mSegments.lastEntry().getValue();
+            if (segment == null || segment.writePosition() + length > segment.capacity()) {
+                int id = segment == null ? 1 : segment.mId + 1;
+                segment = openSegment(id, Math.max(mSegmentSize, HEADER_SIZE + (long) length), true);
+                mSegments.put(id, segment);
+            }
+
+            int offset = segment.writePosition();
+            ByteBuffer view = segment.mBuffer.duplicate();
+            view.position(offset);
+            view.putInt(length).put(pType).putLong(pTimestamp).putShort((short) key.length)
+                    .put(key).put(pBody);
+            // Published to other agents only once the record is complete
+            segment.mBuffer.putLong(0, offset + length);
+            scan(segment);
+        } catch (IOException e) {
+            yLogger.log(Level.SEVERE, "[CbnTfMessageSpool] " + mModule + ": spool write failed for "
+                    + pKey, e);
+            if (pType == PUT) {
+                // Keep the body readable by this agent at least
+                mHeapBodies.put(pKey, new String(pBody, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * Maps segments created by other agents, indexes records appended since the last scan and
+     * forgets segments deleted by a compaction.
+     */
+    private synchronized void refresh() {
+        List<Integer> present = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(mDir,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : stream) {
+                Integer id = segmentId(file);
+                if (id != null) {
+                    present.add(id);
+                }
+            }
+        } catch (IOException e) {
+            yLogger.log(Level.WARNING, "[CbnTfMessageSpool] " + mModule + ": unable to list "
+                    + mDir, e);
+            return;
+        }
+        Collections.sort(present);
+
+        for (Integer id : present) {
+            Segment segment = mSegments.get(id);
+            if (segment == null) {
+                try {
+                    segment = openSegment(id, 0L, false);
+                    if (segment == null) {
+                        // Still being created by another agent
+                        continue;
+                    }
+                    mSegments.put(id, segment);
+                } catch (NoSuchFileException e) {
+                    // Compacted by another agent meanwhile
+                    continue;
+                } catch (IOException e) {
+                    yLogger.log(Level.WARNING, "[CbnTfMessageSpool] " + mModule
+                            + ": unable to map segment " + id, e);
+                    continue;
+                }
+            }
+            scan(segment);
+        }
+
+        Iterator<Integer> it = mSegments.keySet().iterator();
+        while (it.hasNext()) {
+            Integer id = it.next();
+            if (!present.contains(id)) {
+                it.remove();
+                dropSegmentEntries(id);
+            }
+        }
+    }
+
+    // Indexes the records between the last scanned position and the write position
+    private void scan(Segment pSegment) {
+        int end = pSegment.writePosition();
+        ByteBuffer view = pSegment.mBuffer.duplicate();
+        while (pSegment.mScanned + RECORD_FIXED <= end) {
+            int offset = pSegment.mScanned;
+            view.position(offset);
+            int length = view.getInt();
+            if (length < RECORD_FIXED || offset + length > end) {
+                yLogger.log(Level.WARNING,
+                        "[CbnTfMessageSpool] {0}: torn record at {1} in {2}, segment sealed",
+                        new Object[] { mModule, offset, pSegment.mFile });
+                pSegment.mScanned = end;
+                return;
+            }
+            byte type = view.get();
+            long timestamp = view.getLong();
+            byte[] key = new byte[view.getShort() & 0xFFFF];
+            view.get(key);
+            String k = new String(key, StandardCharsets.UTF_8);
+            if (type == PUT) {
+                mIndex.put(k, new Entry(pSegment.mId, offset, length, timestamp));
+                pSegment.mPutCount++;
+            } else if (type == ACK) {
+                Entry entry = mIndex.get(k);
+                if (entry != null) {
+                    entry.mReleased = true;
+                }
+            }
+            pSegment.mScanned = offset + length;
+        }
+    }
+
+    // Returns null when an existing segment is not yet initialised
+    private Segment openSegment(int pId, long pSize, boolean pCreate) throws IOException {
+        Path file = mDir.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, pId, SEGMENT_SUFFIX));
+        StandardOpenOption[] options = pCreate
+                ? new StandardOpenOption[] { StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE }
+                : new StandardOpenOption[] { StandardOpenOption.READ, StandardOpenOption.WRITE };
+        try (FileChannel ch = FileChannel.open(file, options)) {
+            long size = pCreate ? pSize : ch.size();
+            if (size < HEADER_SIZE) {
+                return null;
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            if (pCreate) {
+                buffer.putLong(0, HEADER_SIZE);
+            }
+            return new Segment(pId, file, buffer);
+        }
+    }
+
+    private String readBody(String pKey, Entry pEntry) {
+        Segment segment;
+        synchronized (this) {
+            segment = mSegments.get(pEntry.mSegment);
+        }
+        if (segment == null) {
+            return mHeapBodies.get(pKey);
+        }
+        ByteBuffer view = segment.mBuffer.duplicate();
+        view.position(pEntry.mOffset + RECORD_FIXED - 2);
+        int keyLength = view.getShort() & 0xFFFF;
+        byte[] body = new byte[pEntry.mLength - RECORD_FIXED - keyLength];
+        view.position(view.position() + keyLength);
+        view.get(body);
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    // Body of a record, or null if it is missing or cannot be decoded
+    private String readBodyQuietly(String pKey, Entry pEntry) {
+        try {
+            return readBody(pKey, pEntry);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // ====================================================================
+    // COMPACTION
+    // ====================================================================
+
+    private void compactIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - mLastCompact < mCompactIntervalMs) {
+            return;
+        }
+        mLastCompact = now;
+        compact();
+    }
+
+    /**
+     * Expires messages older than the TTL, deletes sealed segments without live messages and
+     * relocates the live messages of sealed segments that are at least three quarters dead.
+     */
+    public synchronized void compact() {
+        if (mDir == null) {
+            expireHeap();
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try (FileLock lock = mLockChannel.lock()) {
+            refresh();
+            Map<Integer, List<String>> live = new TreeMap<>();
+            for (Map.Entry<String, Entry> e : mIndex.entrySet()) {
+                Entry entry = e.getValue();
+                if (!entry.mReleased && mTtlMs > 0 && now - entry.mCreatedAt > mTtlMs) {
+                    entry.mReleased = true;
+                    mExpired.incrementAndGet();
+                    yLogger.log(Level.WARNING,
+                            "[CbnTfMessageSpool] {0}: message {1} expired without acknowledgement",
+                            new Object[] { mModule, e.getKey() });
+                }
+                if (!entry.mReleased) {
+                    List<String> keys = live.get(entry.mSegment);
+                    if (keys == null) {
+                        keys = new ArrayList<>();
+                        live.put(entry.mSegment, keys);
+                    }
+                    keys.add(e.getKey());
+                }
+            }
+
+            if (mSegments.size() < 2) {
+                return;
+            }
+            int active = mSegments.lastKey();
+            List<Segment> sealed = new ArrayList<>(mSegments.headMap(active).values());
+            for (Segment segment : sealed) {
+                List<String> keys = live.get(segment.mId);
+                int liveCount = keys == null ? 0 : keys.size();
+                if (liveCount > 0 && liveCount * 4 > segment.mPutCount) {
+                    continue;
+                }
+                if (keys != null) {
+                    for (String key : keys) {
+                        Entry entry = mIndex.get(key);
+                        String body = readBodyQuietly(key, entry);
+                        if (body == null) {
+                            // Torn or missing record: dropped with its segment
+                            liveCount--;
+                            yLogger.log(Level.WARNING,
+                                    "[CbnTfMessageSpool] {0}: message {1} unreadable in segment {2},"
+                                            + " dropped",
+                                    new Object[] { mModule, key, segment.mId });
+                            continue;
+                        }
+                        relocate(key, body.getBytes(StandardCharsets.UTF_8), entry.mCreatedAt);
+                    }
+                }
+                try {
+                    Files.deleteIfExists(segment.mFile);
+                    mSegments.remove(segment.mId);
+                    dropSegmentEntries(segment.mId);
+                    yLogger.log(Level.INFO,
+                            "[CbnTfMessageSpool] {0}: compacted segment {1}, {2} message(s) relocated",
+                            new Object[] { mModule, segment.mId, liveCount });
+                } catch (IOException e) {
+                    yLogger.log(Level.WARNING, "[CbnTfMessageSpool] " + mModule
+                            + ": unable to delete " + segment.mFile, e);
+                }
+            }
+        } catch (IOException e) {
+            yLogger.log(Level.SEVERE, "[CbnTfMessageSpool] " + mModule + ": compaction failed", e);
+        }
+    }
+
+    // Appends a copy of a live message to the active segment; the file lock is already held
+    private void relocate(String pKey, byte[] pBody, long pCreatedAt) throws IOException {
+        byte[] key = pKey.getBytes(StandardCharsets.UTF_8);
+        int length = RECORD_FIXED + key.length + pBody.length;
+        Segment segment = mSegments.lastEntry().getValue();
+        if (segment.writePosition() + length > segment.capacity()) {
+            int id = segment.mId + 1;
+            segment = openSegment(id, Math.max(mSegmentSize, HEADER_SIZE + (long) length), true);
+            mSegments.put(id, segment);
+        }
+        int offset = segment.writePosition();
+        ByteBuffer view = segment.mBuffer.duplicate();
+        view.position(offset);
+        view.putInt(length).put(PUT).putLong(pCreatedAt).putShort((short) key.length).put(key)
+                .put(pBody);
+        segment.mBuffer.putLong(0, offset + length);
+        scan(segment);
+    }
+
+    private void dropSegmentEntries(int pSegment) {
+        Iterator<Map.Entry<String, Entry>> it = mIndex.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> e = it.next();
+            if (e.getValue().mSegment == pSegment) {
+                it.remove();
+                synchronized (mTrees) {
+                    mTrees.remove(e.getKey());
+                }
+            }
+        }
+    }
+
+    private void expireHeap() {
+        if (mTtlMs <= 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Entry>> it = mIndex.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Entry> e = it.next();
+            if (now - e.getValue().mCreatedAt > mTtlMs) {
+                it.remove();
+                mHeapBodies.remove(e.getKey());
+                mExpired.incrementAndGet();
+                yLogger.log(Level.WARNING,
+                        "[CbnTfMessageSpool] {0}: message {1} expired without acknowledgement",
+                        new Object[] { mModule, e.getKey() });
+            }
+        }
+    }
+
+    // ====================================================================
+    // HELPERS
+    // ====================================================================
+
+    private static Integer segmentId(Path pFile) {
+        String name = pFile.getFileName().toString();
+        try {
+            return Integer.valueOf(name.substring(SEGMENT_PREFIX.length(),
+                    name.length() - SEGMENT_SUFFIX.length()));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static long parseLong(String pValue, long pDefault) {
+        if (pValue == null) {
+            return pDefault;
+        }
+        try {
+            return Long.parseLong(pValue.trim());
+        } catch (NumberFormatException e) {
+            return pDefault;
+        }
+    }
+}
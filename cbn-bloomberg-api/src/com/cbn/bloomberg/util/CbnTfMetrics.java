@@ -0,0 +1,472 @@
+package com.cbn.bloomberg.util;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: CbnTfMetrics.java
+ * Author: CSD Development Team
+ * Created: 2026-02-22
+ * Last Modified: 2026-02-22
+ * =============================================================================
+ *
+ * PURPOSE: Per-module operational metrics for the Cbn*Service lifecycle.
+ *
+ * Every module (FT, FX, PD, PR, SC) has:
+ * - latency histograms for getIds, processOfsRequest, checkOfsResponse,
+ *   publishResponse and the OFS round trip (submit to response found)
+ * - counters of published SUCCESS and FAILURE responses and of items
+ *   persisted to EXCEPTS
+ * - gauges registered by the service (pending responses, oldest pending
+ *   response age, outbound publish queue depth)
+ *
+ * Recording is lock-free: histograms are log-linear buckets (16 per power of
+ * two, within 6.25% of the recorded value) in an AtomicLongArray, counters
+ * are LongAdders. Percentiles are computed when read.
+ *
+ * The metrics are exported as one JMX MBean per module,
+ * com.cbn.bloomberg:type=CbnTfMetrics,module=<MODULE>. When
+ * tf.metrics.prometheus.file is set they are also written there in the
+ * Prometheus text format every tf.metrics.prometheus.interval ms, for a node
+ * exporter textfile collector. tf.metrics.enabled=false turns recording off.
+ *
+ * MODIFICATION HISTORY:
+ * - 2026-02-22 | Initial creation
+ * =============================================================================
+ */
+public final class CbnTfMetrics implements DynamicMBean {
+
+    private static final Logger yLogger = Logger.getLogger(CbnTfMetrics.class.getName());
+
+    private static final String DOMAIN = "com.cbn.bloomberg";
+    private static final long DEFAULT_PROMETHEUS_INTERVAL_MS = 15000L;
+    private static final double[] QUANTILES = { 0.5d, 0.95d, 0.99d };
+
+    private static final boolean ENABLED;
+    private static final Map<String, CbnTfMetrics> MODULES = new ConcurrentHashMap<>();
+    private static volatile ScheduledExecutorService sPrometheusWriter;
+
+    static {
+        String enabled = CbnTfProperties.getInstance().getProperty("tf.metrics.enabled", "true");
+        ENABLED = enabled == null || !"false".equalsIgnoreCase(enabled.trim());
+    }
+
+    /** Timed phases of a service */
+    public enum Phase {
+        GET_IDS("getIds"),
+        PROCESS_OFS_REQUEST("processOfsRequest"),
+        CHECK_OFS_RESPONSE("checkOfsResponse"),
+        PUBLISH_RESPONSE("publishResponse"),
+        OFS_ROUND_TRIP("ofsRoundTrip");
+
+        private final String mLabel;
+
+        Phase(String pLabel) {
+            this.mLabel = pLabel;
+        }
+
+        public String getLabel() {
+            return mLabel;
+        }
+    }
+
+    /** Item outcomes */
+    public enum Outcome {
+        SUCCESS, FAILURE, EXCEPTED;
+
+        String label() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final String mModule;
+    private final Histogram[] mHistograms = new Histogram[Phase.values().length];
+    private final LongAdder[] mCounters = new LongAdder[Outcome.values().length];
+    private final Map<String, LongSupplier> mGauges = new ConcurrentHashMap<>();
+
+    private CbnTfMetrics(String pModule) {
+        this.mModule = pModule;
+        for (int i = 0; i < mHistograms.length; i++) {
+            mHistograms[i] = new Histogram();
+        }
+        for (int i = 0; i < mCounters.length; i++) {
+            mCounters[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Returns the metrics of a module (FX, FT, PD, PR, SC), registering its MBean on first use.
+     */
+    public static CbnTfMetrics forModule(String pModule) {
+        return MODULES.computeIfAbsent(pModule, module -> {
+            CbnTfMetrics metrics = new CbnTfMetrics(module);
+            if (ENABLED) {
+                metrics.register();
+                startPrometheusWriter();
+            }
+            return metrics;
+        });
+    }
+
+    /**
+     * Records the duration of a phase that started at pStartNanos (System.nanoTime()).
+     */
+    public void record(Phase pPhase, long pStartNanos) {
+        if (ENABLED) {
+            mHistograms[pPhase.ordinal()].record((System.nanoTime() - pStartNanos) / 1000L);
+        }
+    }
+
+    /**
+     * Records a duration in milliseconds, e.g. measured from a stored timestamp.
+     */
+    public void recordMillis(Phase pPhase, long pMillis) {
+        if (ENABLED) {
+            mHistograms[pPhase.ordinal()].record(pMillis * 1000L);
+        }
+    }
+
+    /**
+     * Counts one item with the given outcome.
+     */
+    public void count(Outcome pOutcome) {
+        if (ENABLED) {
+            mCounters[pOutcome.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Registers a gauge, read only when the metrics are exported.
+     *
+     * @param pName  Gauge name (lower case, underscores)
+     * @param pValue Supplier of the current value
+     * @return this, for chaining
+     */
+    public CbnTfMetrics gauge(String pName, LongSupplier pValue) {
+        mGauges.put(pName, pValue);
+        return this;
+    }
+
+    // ====================================================================
+    // HISTOGRAM
+    // ====================================================================
+
+    /**
+     * Lock-free log-linear histogram of microsecond values. Values below 32 have their own bucket;
+     * above, every power of two is split into 16 buckets.
+     */
+    static final class Histogram {
+
+        private static final int SUB_BITS = 4;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+        private static final int LINEAR = 2 * SUB_COUNT;
+        private static final int BUCKETS = LINEAR + (63 - (SUB_BITS + 1)) * SUB_COUNT;
+
+        private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+        private final LongAdder mCount = new LongAdder();
+        private final LongAdder mSum = new LongAdder();
+        private final AtomicLong mMax = new AtomicLong();
+
+        void record(long pMicros) {
+            long value = Math.max(0L, pMicros);
+            mCounts.incrementAndGet(index(value));
+            mCount.increment();
+            mSum.add(value);
+            long max = mMax.get();
+            while (value > max && !mMax.compareAndSet(max, value)) {
+                max = mMax.get();
+            }
+        }
+
+        static int index(long pValue) {
+            if (pValue < LINEAR) {
+                return (int) pValue;
+            }
+            int msb = 63 - Long.numberOfLeadingZeros(pValue);
+            int sub = (int) (pValue >>> (msb - SUB_BITS)) & (SUB_COUNT - 1);
+            return LINEAR + (msb - (SUB_BITS + 1)) * SUB_COUNT + sub;
+        }
+
+        // Highest value that falls into a bucket
+        static long upperBound(int pIndex) {
+            if (pIndex < LINEAR) {
+                return pIndex;
+            }
+            int msb = (pIndex - LINEAR) / SUB_COUNT + SUB_BITS + 1;
+            int sub = (pIndex - LINEAR) % SUB_COUNT;
+            long width = 1L << (msb - SUB_BITS);
+            return ((long) (SUB_COUNT + sub) << (msb - SUB_BITS)) + width - 1;
+        }
+
+        Snapshot snapshot() {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = mCounts.get(i);
+                total += counts[i];
+            }
+            long max = mMax.get();
+            long[] quantiles = new long[QUANTILES.length];
+            for (int q = 0; q < QUANTILES.length; q++) {
+                long rank = (long) Math.ceil(QUANTILES[q] * total);
+                long seen = 0;
+                for (int i = 0; i < BUCKETS && total > 0; i++) {
+                    seen += counts[i];
+                    if (seen >= rank) {
+                        quantiles[q] = Math.min(upperBound(i), max);
+                        break;
+                    }
+                }
+            }
+            return new Snapshot(mCount.sum(), mSum.sum(), max, quantiles);
+        }
+    }
+
+    // Point-in-time view of a histogram, in microseconds
+    static final class Snapshot {
+
+        private final long mCount;
+        private final long mSum;
+        private final long mMax;
+        private final long[] mQuantiles;
+
+        Snapshot(long pCount, long pSum, long pMax, long[] pQuantiles) {
+            this.mCount = pCount;
+            this.mSum = pSum;
+            this.mMax = pMax;
+            this.mQuantiles = pQuantiles;
+        }
+
+        double meanMs() {
+            return mCount == 0 ? 0d : mSum / 1000d / mCount;
+        }
+    }
+
+    // ====================================================================
+    // JMX
+    // ====================================================================
+
+    private void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(DOMAIN + ":type=CbnTfMetrics,module=" + mModule);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+            }
+        } catch (Exception e) {
+            yLogger.log(Level.WARNING, "[CbnTfMetrics] " + mModule + ": MBean not registered", e);
+        }
+    }
+
+    // Current attribute values, by name
+    private Map<String, Object> attributes() {
+        Map<String, Object> values = new TreeMap<>();
+        for (Phase phase : Phase.values()) {
+            Snapshot s = mHistograms[phase.ordinal()].snapshot();
+            String prefix = phase.getLabel() + ".";
+            values.put(prefix + "count", s.mCount);
+            values.put(prefix + "meanMs", s.meanMs());
+            for (int q = 0; q < QUANTILES.length; q++) {
+                values.put(prefix + "p" + Math.round(QUANTILES[q] * 100) + "Ms",
+                        s.mQuantiles[q] / 1000d);
+            }
+            values.put(prefix + "maxMs", s.mMax / 1000d);
+        }
+        for (Outcome outcome : Outcome.values()) {
+            values.put("items." + outcome.label(), mCounters[outcome.ordinal()].sum());
+        }
+        for (Map.Entry<String, LongSupplier> gauge : mGauges.entrySet()) {
+            values.put(gauge.getKey(), readGauge(gauge.getValue()));
+        }
+        return values;
+    }
+
+    @Override
+    public Object getAttribute(String pAttribute) throws AttributeNotFoundException {
+        Object value = attributes().get(pAttribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(pAttribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] pAttributes) {
+        Map<String, Object> values = attributes();
+        AttributeList list = new AttributeList();
+        for (String name : pAttributes) {
+            if (values.containsKey(name)) {
+                list.add(new Attribute(name, values.get(name)));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute pAttribute) {
+        throw new UnsupportedOperationException("CbnTfMetrics attributes are read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList pAttributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String pActionName, Object[] pParams, String[] pSignature) {
+        throw new UnsupportedOperationException("CbnTfMetrics has no operations");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> infos = new ArrayList<>();
+        for (Map.Entry<String, Object> attr : attributes().entrySet()) {
+            infos.add(new MBeanAttributeInfo(attr.getKey(), attr.getValue().getClass().getName(),
+                    attr.getKey(), true, false, false));
+        }
+        return new MBeanInfo(CbnTfMetrics.class.getName(), mModule + " service metrics",
+                infos.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+
+    // ====================================================================
+    // PROMETHEUS
+    // ====================================================================
+
+    private static synchronized void startPrometheusWriter() {
+        String file = CbnTfProperties.getInstance().getProperty("tf.metrics.prometheus.file", "").trim();
+        if (file.isEmpty() || sPrometheusWriter != null) {
+            return;
+        }
+        long interval = Math.max(1000L, parseLong(
+                CbnTfProperties.getInstance().getProperty("tf.metrics.prometheus.interval", ""),
+                DEFAULT_PROMETHEUS_INTERVAL_MS));
+        Path target = Paths.get(file);
+        sPrometheusWriter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "CbnTfMetrics-prometheus");
+            t.setDaemon(true);
+            return t;
+        });
+        sPrometheusWriter.scheduleWithFixedDelay(() -> writePrometheus(target), interval, interval,
+                TimeUnit.MILLISECONDS);
+        yLogger.log(Level.INFO, "[CbnTfMetrics] writing Prometheus metrics to {0} every {1} ms",
+                new Object[] { target, interval });
+    }
+
+    /**
+     * Renders the metrics of every module in the Prometheus text exposition format.
+     */
+    public static String toPrometheus() {
+        Map<String, CbnTfMetrics> modules = new TreeMap<>(MODULES);
+        StringBuilder sb = new StringBuilder(4096);
+
+        sb.append("# HELP cbn_tf_phase_seconds Duration of a service phase\n");
+        sb.append("# TYPE cbn_tf_phase_seconds summary\n");
+        for (CbnTfMetrics metrics : modules.values()) {
+            for (Phase phase : Phase.values()) {
+                Snapshot s = metrics.mHistograms[phase.ordinal()].snapshot();
+                String labels = "module=\"" + metrics.mModule + "\",phase=\"" + phase.getLabel() + "\"";
+                for (int q = 0; q < QUANTILES.length; q++) {
+                    sb.append(String.format(Locale.ROOT, "cbn_tf_phase_seconds{%s,quantile=\"%s\"} %.6f%n",
+                            labels, QUANTILES[q], s.mQuantiles[q] / 1e6d));
+                }
+                sb.append(String.format(Locale.ROOT, "cbn_tf_phase_seconds_sum{%s} %.6f%n", labels,
+                        s.mSum / 1e6d));
+                sb.append("cbn_tf_phase_seconds_count{").append(labels).append("} ")
+                        .append(s.mCount).append('\n');
+            }
+        }
+
+        sb.append("# HELP cbn_tf_items_total Items by outcome\n");
+        sb.append("# TYPE cbn_tf_items_total counter\n");
+        for (CbnTfMetrics metrics : modules.values()) {
+            for (Outcome outcome : Outcome.values()) {
+                sb.append("cbn_tf_items_total{module=\"").append(metrics.mModule)
+                        .append("\",outcome=\"").append(outcome.label()).append("\"} ")
+                        .append(metrics.mCounters[outcome.ordinal()].sum()).append('\n');
+            }
+        }
+
+        Map<String, StringBuilder> gauges = new TreeMap<>();
+        for (CbnTfMetrics metrics : modules.values()) {
+            for (Map.Entry<String, LongSupplier> gauge : metrics.mGauges.entrySet()) {
+                gauges.computeIfAbsent(gauge.getKey(), k -> new StringBuilder())
+                        .append("cbn_tf_").append(gauge.getKey()).append("{module=\"")
+                        .append(metrics.mModule).append("\"} ")
+                        .append(readGauge(gauge.getValue())).append('\n');
+            }
+        }
+        for (Map.Entry<String, StringBuilder> gauge : gauges.entrySet()) {
+            sb.append("# TYPE cbn_tf_").append(gauge.getKey()).append(" gauge\n");
+            sb.append(gauge.getValue());
+        }
+        return sb.toString();
+    }
+
+    // Written to a temporary file and moved, so a collector never reads a partial file
+    private static void writePrometheus(Path pTarget) {
+        try {
+            Path dir = pTarget.toAbsolutePath().getParent();
+            if (dir != null) {
+                Files.createDirectories(dir);
+            }
+            Path tmp = pTarget.resolveSibling(pTarget.getFileName() + ".tmp");
+            Files.write(tmp, toPrometheus().getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(tmp, pTarget, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, pTarget, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            yLogger.log(Level.WARNING, "[CbnTfMetrics] cannot write " + pTarget, e);
+        }
+    }
+
+    private static long readGauge(LongSupplier pGauge) {
+        try {
+            return pGauge.getAsLong();
+        } catch (RuntimeException e) {
+            return -1L;
+        }
+    }
+
+    private static long parseLong(String pValue, long pDefault) {
+        try {
+            return Long.parseLong(pValue.trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            return pDefault;
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.cbn.bloomberg.util;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.jms.JMSException;
+import javax.jms.Message;
+
+import com.cbn.bloomberg.util.CbnTfBrowsing.ModuleType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: CbnTfPartitioning.java
+ * Author: CSD Development Team
+ * Created: 2026-02-23
+ * Last Modified: 2026-02-27
+ * =============================================================================
+ *
+ * PURPOSE: Splits the inbound queue between the TSA agents running the same
+ * module service, so that each agent browses and consumes only its share
+ * instead of every agent enumerating the whole queue.
+ *
+ * - Partitions: producers stamp the int property BbgPartition with a hash of
+ *   the message's BLOOMBERG_ID over tf.wmq.partition.count partitions (see
+ *   stampPartition), so redeliveries of a deal land in the same partition.
+ * - Ownership: partition p belongs to the agent at position p % n of the
+ *   sorted live agents. The browse selector only matches the owned partitions,
+ *   so the queue manager filters the other agents' messages.
+ * - Unstamped (legacy) messages still match every agent's selector; only the
+ *   owner of the hash of the JMSMessageID goes on to inspect and consume them.
+ * - Out of range partitions (a producer stamping over a larger mq.partition.count
+ *   than tf.wmq.partition.count) belong to the first agent, so they are never
+ *   stranded on the queue. A warning is logged when one is seen.
+ * - Membership: each agent writes a heartbeat file per module under
+ *   tf.wmq.partition.dir on every browse and drops it on shutdown. An agent
+ *   without a heartbeat for tf.wmq.partition.agent.timeout ms has left; the
+ *   partitions are rebalanced over the remaining agents on their next browse.
+ *   The directory must be shared by all app servers running the services.
+ *
+ * While a rebalance is in flight two agents may briefly own a partition; the
+ * selector based consume lets only one of them receive each message.
+ * Partitioning is off while tf.wmq.partition.count is 0 (default).
+ *
+ * MODIFICATION HISTORY:
+ * - 2026-02-23 | Initial creation
+ * - 2026-02-27 | Partitions >= tf.wmq.partition.count owned by the first agent
+ * =============================================================================
+ */
+public final class CbnTfPartitioning {
+
+    private static final Logger yLogger = Logger.getLogger(CbnTfPartitioning.class.getName());
+
+    /** JMS int property carrying the partition of a message, set by producers */
+    public static final String PARTITION_PROPERTY = "BbgPartition";
+
+    private static final Map<ModuleType, CbnTfPartitioning> PARTITIONINGS = new ConcurrentHashMap<>();
+
+    // Logged once: the producers' partition count differs from tf.wmq.partition.count
+    private static final AtomicBoolean COUNT_MISMATCH_LOGGED = new AtomicBoolean();
+
+    private static final long DEFAULT_AGENT_TIMEOUT_MS = 120000L;
+    private static final String HEARTBEAT_SUFFIX = ".hb";
+
+    static {
+        Runtime.getRuntime().addShutdownHook(
+                new Thread(CbnTfPartitioning::leaveAll, "CbnTfPartitioning-shutdown"));
+    }
+
+    private final ModuleType mModule;
+    private final int mCount;
+    private final long mAgentTimeoutMs;
+    private final String mAgentId;
+    private final Path mDir;
+
+    private volatile Assignment mAssignment;
+
+    /**
+     * Partitions owned by this agent for one browse.
+     */
+    public static final class Assignment {
+
+        private final int mCount;
+        private final List<String> mAgents;
+        private final int mIndex;
+        private final int[] mOwned;
+
+        Assignment(int pCount, List<String> pAgents, int pIndex) {
+            this.mCount = pCount;
+            this.mAgents = Collections.unmodifiableList(pAgents);
+            this.mIndex = pIndex;
+            List<Integer> owned = new ArrayList<>();
+            for (int p = pIndex; p < pCount; p += pAgents.size()) {
+                owned.add(p);
+            }
+            this.mOwned = new int[owned.size()];
+            for (int i = 0; i < mOwned.length; i++) {
+                mOwned[i] = owned.get(i);
+            }
+        }
+
+        /**
+         * Selector term matching the owned partitions and unstamped messages. The first agent also
+         * matches partitions outside 0..count-1.
+         */
+        public String selector() {
+            StringBuilder sb = new StringBuilder("(").append(PARTITION_PROPERTY).append(" IS NULL");
+            if (mOwned.length > 0) {
+                sb.append(" OR ").append(PARTITION_PROPERTY).append(" IN (");
+                for (int i = 0; i < mOwned.length; i++) {
+                    if (i > 0) {
+                        sb.append(", ");
+                    }
+                    sb.append(mOwned[i]);
+                }
+                sb.append(")");
+            }
+            if (mIndex == 0) {
+                sb.append(" OR ").append(PARTITION_PROPERTY).append(" >= ").append(mCount)
+                        .append(" OR ").append(PARTITION_PROPERTY).append(" < 0");
+            }
+            return sb.append(")").toString();
+        }
+
+        /**
+         * True if this agent owns the message: stamped messages are already filtered by the
+         * selector, unstamped ones are owned by the agent of the hash of their JMSMessageID.
+         */
+        public boolean owns(Message pMessage) throws JMSException {
+            if (pMessage.propertyExists(PARTITION_PROPERTY)) {
+                int partition = pMessage.getIntProperty(PARTITION_PROPERTY);
+                if ((partition < 0 || partition >= mCount)
+                        && COUNT_MISMATCH_LOGGED.compareAndSet(false, true)) {
+                    yLogger.log(Level.WARNING, "[CbnTfPartitioning] Message stamped with partition {0}"
+                            + " but tf.wmq.partition.count={1}: the producers' mq.partition.count"
+                            + " differs, out of range partitions go to the first agent",
+                            new Object[] { partition, mCount });
+                }
+                return owns(partition);
+            }
+            return owns(partitionOf(CbnTfBrowsing.normalizeCacheKey(pMessage.getJMSMessageID()),
+                    mCount));
+        }
+
+        public boolean owns(int pPartition) {
+            if (pPartition < 0 || pPartition >= mCount) {
+                return mIndex == 0;
+            }
+            return pPartition % mAgents.size() == mIndex;
+        }
+
+        public List<String> getAgents() {
+            return mAgents;
+        }
+
+        public int[] getOwned() {
+            return mOwned.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "agent " + (mIndex + 1) + "/" + mAgents.size() + ", partitions="
+                    + Arrays.toString(mOwned) + " of " + mCount;
+        }
+    }
+
+    private CbnTfPartitioning(ModuleType pModule) {
+        CbnTfProperties config = CbnTfProperties.getInstance();
+        this.mModule = pModule;
+        this.mCount = (int) parseLong(config.getProperty("tf.wmq.partition.count", null), 0L);
+        this.mAgentTimeoutMs = parseLong(config.getProperty("tf.wmq.partition.agent.timeout", null),
+                DEFAULT_AGENT_TIMEOUT_MS);
+        String agentId = config.getProperty("tf.wmq.partition.agent.id", "").trim();
+        if (agentId.isEmpty()) {
+            // "pid@host" of the running JVM
+            String[] name = ManagementFactory.getRuntimeMXBean().getName().split("@", 2);
+            agentId = name.length == 2 ? name[1] + "-" + name[0] : name[0];
+        }
+        this.mAgentId = agentId.replaceAll("[^A-Za-z0-9_.\\-]", "_");
+        this.mDir = Paths.get(config.getProperty("tf.wmq.partition.dir",
+                "/t24app/app/bnk/UD/BLOOMBERG/PARTITION")).resolve(pModule.name());
+    }
+
+    /**
+     * Returns the partitioning of a module.
+     */
+    public static CbnTfPartitioning forModule(ModuleType pModule) {
+        return PARTITIONINGS.computeIfAbsent(pModule, CbnTfPartitioning::new);
+    }
+
+    public boolean isEnabled() {
+        return mCount > 0;
+    }
+
+    /**
+     * Writes this agent's heartbeat and computes its partitions from the live agents. Called once
+     * per browse.
+     *
+     * @return The assignment, or null when partitioning is off or the heartbeat directory cannot
+     *         be used (the agent then browses the whole queue)
+     */
+    public synchronized Assignment assign() {
+        if (!isEnabled()) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        List<String> agents = new ArrayList<>();
+        try {
+            Files.createDirectories(mDir);
+            Files.write(mDir.resolve(mAgentId + HEARTBEAT_SUFFIX),
+                    String.valueOf(now).getBytes(StandardCharsets.UTF_8));
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(mDir, "*" + HEARTBEAT_SUFFIX)) {
+                for (Path file : stream) {
+                    String name = file.getFileName().toString();
+                    String agent = name.substring(0, name.length() - HEARTBEAT_SUFFIX.length());
+                    long age = now - readHeartbeat(file);
+                    if (agent.equals(mAgentId) || age <= mAgentTimeoutMs) {
+                        agents.add(agent);
+                    } else if (age > 10 * mAgentTimeoutMs) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            yLogger.log(Level.WARNING, "[CbnTfPartitioning] " + mModule
+                    + ": heartbeat unavailable, browsing the whole queue", e);
+            mAssignment = null;
+            return null;
+        }
+        Collections.sort(agents);
+
+        Assignment assignment = new Assignment(mCount, agents, agents.indexOf(mAgentId));
+        Assignment previous = mAssignment;
+        if (previous == null || !previous.getAgents().equals(assignment.getAgents())) {
+            yLogger.log(Level.INFO, "[CbnTfPartitioning] {0}: rebalanced over {1} agent(s), {2}",
+                    new Object[] { mModule, agents.size(), assignment });
+        }
+        mAssignment = assignment;
+        return assignment;
+    }
+
+    /**
+     * Removes this agent's heartbeat, so the other agents take over its partitions on their next
+     * browse.
+     */
+    public synchronized void leave() {
+        if (!isEnabled()) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(mDir.resolve(mAgentId + HEARTBEAT_SUFFIX));
+        } catch (IOException e) {
+            yLogger.log(Level.FINE, "[CbnTfPartitioning] {0}: unable to remove heartbeat: {1}",
+                    new Object[] { mModule, e.toString() });
+        }
+        mAssignment = null;
+    }
+
+    private static void leaveAll() {
+        for (CbnTfPartitioning partitioning : PARTITIONINGS.values()) {
+            partitioning.leave();
+        }
+    }
+
+    // ====================================================================
+    // PRODUCER SIDE
+    // ====================================================================
+
+    /**
+     * Partition of a key over pCount partitions. Stable across JVMs.
+     */
+    public static int partitionOf(String pKey, int pCount) {
+        int h = pKey == null ? 0 : pKey.hashCode();
+        // Spread the low bits (murmur3 finalizer)
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, pCount);
+    }
+
+    /**
+     * Sets the partition property on an outgoing message, from the first BLOOMBERG_ID of its body
+     * (or the whole body if it has none). No-op if pCount is not positive.
+     *
+     * @return The partition, or -1 if the message was not stamped
+     */
+    public static int stampPartition(Message pMessage, String pBody, ObjectMapper pObjMapper,
+            int pCount) throws JMSException {
+        if (pCount <= 0 || pBody == null) {
+            return -1;
+        }
+        String key = pBody;
+        try {
+            JsonNode bloombergId = pObjMapper.readTree(pBody).findValue("BLOOMBERG_ID");
+            if (bloombergId != null && !bloombergId.asText("").isEmpty()) {
+                key = bloombergId.asText();
+            }
+        } catch (IOException e) {
+            // Not JSON - partition on the body
+        }
+        int partition = partitionOf(key, pCount);
+        pMessage.setIntProperty(PARTITION_PROPERTY, partition);
+        return partition;
+    }
+
+    // ====================================================================
+    // HELPERS
+    // ====================================================================
+
+    private static long readHeartbeat(Path pFile) {
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(pFile), StandardCharsets.UTF_8).trim());
+        } catch (NumberFormatException e) {
+            // Being rewritten - treat as just seen
+            return System.currentTimeMillis();
+        } catch (IOException e) {
+            // Removed meanwhile
+            return 0L;
+        }
+    }
+
+    private static long parseLong(String pValue, long pDefault) {
+        if (pValue == null) {
+            return pDefault;
+        }
+        try {
+            return Long.parseLong(pValue.trim());
+        } catch (NumberFormatException e) {
+            return pDefault;
+        }
+    }
+}
@@ -0,0 +1,432 @@
+package com.cbn.bloomberg.util;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: CbnTfPendingResponseStore.java
+ * Author: CSD Development Team
+ * Created: 2026-02-15
+ * Last Modified: 2026-02-28
+ * =============================================================================
+ *
+ * PURPOSE: Pending OFS response store shared by the PROCESS and CHECK.RESPONSE
+ * phases of each module service. Replaces the per-service static HashMap that
+ * was guarded by one global monitor, unbounded, and lost on JVM restart.
+ *
+ * - Concurrent: a ConcurrentHashMap (lock-striped), so updateRecord threads of
+ *   the TSA no longer serialise on a single monitor.
+ * - Bounded: entries older than tf.pending.ttl are evicted, and at most
+ *   tf.pending.max.entries are kept (oldest evicted first). An evicted entry
+ *   is not dropped: it is listed by evictedIds until the CHECK.RESPONSE phase
+ *   takes it (takeEvicted), publishes a failure response for the deal and
+ *   releases its idempotency claim. Its journal record is removed only then,
+ *   so an eviction not yet answered is evicted again after a restart.
+ * - Persistent (tf.pending.store):
+ *     memory  - no persistence
+ *     journal - append-only local journal file (default)
+ *     mmap    - memory-mapped journal file, grown on demand
+ *   Journals (CbnTfJournal) live under tf.pending.dir, one per module and
+ *   agent JVM, are replayed on first use after a restart and compacted once
+ *   mostly dead. A JVM replays and compacts only the journal it owns, so the
+ *   responses of one agent are never checked and published by another while
+ *   it runs. The journals of agents that are gone (their lock is free) are
+ *   adopted at startup and every tf.pending.adopt.interval ms: their entries
+ *   are merged into this JVM's journal and the orphaned file is deleted.
+ * - Metrics: size, oldest entry age, puts, removes, evictions, recovered.
+ *
+ * The journal is local to the JVM's host; agents on other servers keep their
+ * own stores.
+ *
+ * MODIFICATION HISTORY:
+ * - 2026-02-15 | Initial creation
+ * - 2026-02-27 | Journal moved to CbnTfJournal, one locked file per agent JVM
+ * - 2026-02-28 | Evicted entries answered by CHECK.RESPONSE; orphaned journals adopted
+ * =============================================================================
+ */
+public final class CbnTfPendingResponseStore {
+
+    private static final Logger yLogger = Logger.getLogger(CbnTfPendingResponseStore.class.getName());
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final Map<String, CbnTfPendingResponseStore> STORES = new ConcurrentHashMap<>();
+
+    private static final long DEFAULT_TTL_MS = 86400000L;
+    private static final int DEFAULT_MAX_ENTRIES = 50000;
+    private static final long DEFAULT_MMAP_SIZE = 16L * 1024 * 1024;
+    private static final int COMPACT_MIN_DEAD = 1000;
+    private static final long DEFAULT_ADOPT_INTERVAL_MS = 300000L;
+
+    private static final char SEP = '\t';
+    private static final String PUT = "P";
+    private static final String REMOVE = "R";
+
+    private final String mModule;
+    private final long mTtlMs;
+    private final int mMaxEntries;
+    private final long mAdoptIntervalMs;
+    private final Map<String, TransactionMetadata> mEntries = new ConcurrentHashMap<>();
+    private final CbnTfJournal mJournal;
+
+    // Evicted entries whose failure response is not published yet
+    private final Map<String, TransactionMetadata> mEvicted = new ConcurrentHashMap<>();
+    private volatile long mLastAdopt;
+
+    // ==== METRICS ====
+    private final AtomicLong mPuts = new AtomicLong();
+    private final AtomicLong mRemoves = new AtomicLong();
+    private final AtomicLong mEvictions = new AtomicLong();
+    private final AtomicLong mRecovered = new AtomicLong();
+
+    /**
+     * Metadata of a transaction between the PROCESS and CHECK.RESPONSE phases.
+     */
+    public static final class TransactionMetadata {
+
+        public final String originalId;
+        public final JsonNode originalItem;
+        public final String adapterMode;
+        public final String messageType;
+        public final String bloombergId;
+        public final long createdAt;
+
+        public TransactionMetadata(String pOriginalId, JsonNode pOriginalItem, String pAdapterMode,
+                String pBloombergId) {
+            this(pOriginalId, pOriginalItem, pAdapterMode, null, pBloombergId);
+        }
+
+        public TransactionMetadata(String pOriginalId, JsonNode pOriginalItem, String pAdapterMode,
+                String pMessageType, String pBloombergId) {
+            this(pOriginalId, pOriginalItem, pAdapterMode, pMessageType, pBloombergId,
+                    System.currentTimeMillis());
+        }
+
+        TransactionMetadata(String pOriginalId, JsonNode pOriginalItem, String pAdapterMode,
+                String pMessageType, String pBloombergId, long pCreatedAt) {
+            this.originalId = pOriginalId;
+            this.originalItem = pOriginalItem;
+            this.adapterMode = pAdapterMode;
+            this.messageType = pMessageType;
+            this.bloombergId = pBloombergId;
+            this.createdAt = pCreatedAt;
+        }
+    }
+
+    private CbnTfPendingResponseStore(String pModule) {
+        CbnTfProperties config = CbnTfProperties.getInstance();
+        this.mModule = pModule;
+        this.mTtlMs = parseLong(config.getProperty("tf.pending.ttl", null), DEFAULT_TTL_MS);
+        this.mMaxEntries = (int) parseLong(config.getProperty("tf.pending.max.entries", null),
+                DEFAULT_MAX_ENTRIES);
+        this.mAdoptIntervalMs = parseLong(config.getProperty("tf.pending.adopt.interval", null),
+                DEFAULT_ADOPT_INTERVAL_MS);
+        this.mJournal = openJournal(pModule, config);
+        recover();
+        adoptOrphans();
+    }
+
+    /**
+     * Returns the store of a module (e.g. "FX"), recovering it from its journal on first use.
+     */
+    public static CbnTfPendingResponseStore forModule(String pModule) {
+        return STORES.computeIfAbsent(pModule, CbnTfPendingResponseStore::new);
+    }
+
+    // ====================================================================
+    // STORE OPERATIONS
+    // ====================================================================
+
+    /**
+     * Registers a pending response. The journal record is written before the entry becomes
+     * visible to CHECK.RESPONSE.
+     */
+    public void put(String pResponseId, TransactionMetadata pMetadata) {
+        String record = encodePut(pResponseId, pMetadata);
+        // Held only for the append, so that a concurrent compaction cannot drop the record
+        synchronized (mJournal) {
+            mJournal.append(record);
+            mEntries.put(pResponseId, pMetadata);
+        }
+        mPuts.incrementAndGet();
+        if (mEntries.size() > mMaxEntries) {
+            evictOldest(mEntries.size() - mMaxEntries);
+        }
+    }
+
+    /**
+     * Returns the pending response, or null if unknown or expired.
+     */
+    public TransactionMetadata get(String pResponseId) {
+        TransactionMetadata metadata = mEntries.get(pResponseId);
+        if (metadata != null && isExpired(metadata, System.currentTimeMillis())) {
+            evict(pResponseId, metadata);
+            return null;
+        }
+        return metadata;
+    }
+
+    /**
+     * Removes a pending response once its outcome is final.
+     */
+    public TransactionMetadata remove(String pResponseId) {
+        TransactionMetadata metadata = mEntries.remove(pResponseId);
+        if (metadata != null) {
+            mJournal.append(REMOVE + SEP + pResponseId);
+            mRemoves.incrementAndGet();
+            compactIfNeeded();
+        }
+        return metadata;
+    }
+
+    /**
+     * Snapshot of the pending response ids. Expired entries are evicted first, orphaned journals
+     * are adopted when due and the store metrics are logged.
+     */
+    public List<String> keySet() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, TransactionMetadata> e : mEntries.entrySet()) {
+            if (isExpired(e.getValue(), now)) {
+                evict(e.getKey(), e.getValue());
+            }
+        }
+        if (mAdoptIntervalMs > 0 && now - mLastAdopt >= mAdoptIntervalMs) {
+            adoptOrphans();
+        }
+        yLogger.log(Level.INFO, "[CbnTfPendingResponseStore] {0}", describe());
+        return new ArrayList<>(mEntries.keySet());
+    }
+
+    /**
+     * Snapshot of the evicted response ids whose failure response is not published yet.
+     */
+    public List<String> evictedIds() {
+        return new ArrayList<>(mEvicted.keySet());
+    }
+
+    /**
+     * Takes an evicted entry for its failure response. Only one caller gets it; its journal
+     * record is removed.
+     *
+     * @return The evicted entry, or null if the id is not (or no longer) evicted
+     */
+    public TransactionMetadata takeEvicted(String pResponseId) {
+        TransactionMetadata metadata = mEvicted.remove(pResponseId);
+        if (metadata != null) {
+            mJournal.append(REMOVE + SEP + pResponseId);
+            compactIfNeeded();
+        }
+        return metadata;
+    }
+
+    // ====================================================================
+    // METRICS
+    // ====================================================================
+
+    public int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Age in ms of the oldest pending response, 0 if the store is empty.
+     */
+    public long oldestAgeMillis() {
+        long oldest = Long.MAX_VALUE;
+        for (TransactionMetadata metadata : mEntries.values()) {
+            oldest = Math.min(oldest, metadata.createdAt);
+        }
+        return oldest == Long.MAX_VALUE ? 0L : System.currentTimeMillis() - oldest;
+    }
+
+    public long getPuts() {
+        return mPuts.get();
+    }
+
+    public long getRemoves() {
+        return mRemoves.get();
+    }
+
+    public long getEvictions() {
+        return mEvictions.get();
+    }
+
+    public long getRecovered() {
+        return mRecovered.get();
+    }
+
+    /**
+     * One line summary of the store metrics.
+     */
+    public String describe() {
+        return mModule + ": size=" + size() + ", oldestAgeMs=" + oldestAgeMillis() + ", puts="
+                + getPuts() + ", removes=" + getRemoves() + ", evicted=" + getEvictions()
+                + ", unanswered evictions=" + mEvicted.size() + ", recovered=" + getRecovered()
+                + ", journal=" + mJournal.name();
+    }
+
+    // ====================================================================
+    // EVICTION / RECOVERY
+    // ====================================================================
+
+    private boolean isExpired(TransactionMetadata pMetadata, long pNow) {
+        return mTtlMs > 0 && pNow - pMetadata.createdAt > mTtlMs;
+    }
+
+    // Kept in mEvicted (and in the journal) until CHECK.RESPONSE has answered it
+    private void evict(String pResponseId, TransactionMetadata pMetadata) {
+        if (mEntries.remove(pResponseId, pMetadata)) {
+            mEvicted.put(pResponseId, pMetadata);
+            mEvictions.incrementAndGet();
+            yLogger.log(Level.WARNING,
+                    "[CbnTfPendingResponseStore] {0}: evicted pending response {1} (item {2})",
+                    new Object[] { mModule, pResponseId, pMetadata.originalId });
+        }
+    }
+
+    private void evictOldest(int pCount) {
+        List<Map.Entry<String, TransactionMetadata>> entries = new ArrayList<>(mEntries.entrySet());
+        entries.sort((a, b) -> Long.compare(a.getValue().createdAt, b.getValue().createdAt));
+        for (int i = 0; i < pCount && i < entries.size(); i++) {
+            evict(entries.get(i).getKey(), entries.get(i).getValue());
+        }
+    }
+
+    private void recover() {
+        List<String> records = mJournal.replay();
+        mEntries.putAll(decode(records));
+        mRecovered.set(mEntries.size());
+        if (!records.isEmpty()) {
+            yLogger.log(Level.INFO,
+                    "[CbnTfPendingResponseStore] {0}: recovered {1} pending response(s) from {2} records",
+                    new Object[] { mModule, mEntries.size(), records.size() });
+        }
+        // Start from a compact journal without a possibly torn tail
+        mJournal.rewrite(liveRecords());
+    }
+
+    // Merges the journals of agents that are gone into this one
+    private synchronized void adoptOrphans() {
+        mLastAdopt = System.currentTimeMillis();
+        mJournal.adoptOrphans("CbnTfPendingResponseStore", records -> {
+            Map<String, TransactionMetadata> adopted = decode(records);
+            synchronized (mJournal) {
+                mEntries.putAll(adopted);
+                // Persisted here before the orphaned file is deleted
+                mJournal.rewrite(liveRecords());
+            }
+            mRecovered.addAndGet(adopted.size());
+            yLogger.log(Level.WARNING,
+                    "[CbnTfPendingResponseStore] {0}: adopted {1} pending response(s) of a stopped agent",
+                    new Object[] { mModule, adopted.size() });
+        });
+    }
+
+    // Live entries of a record sequence: PUTs not followed by a REMOVE of the same id
+    private Map<String, TransactionMetadata> decode(List<String> pRecords) {
+        Map<String, TransactionMetadata> entries = new LinkedHashMap<>();
+        for (String record : pRecords) {
+            try {
+                if (record.startsWith(PUT + SEP)) {
+                    String[] f = record.split(String.valueOf(SEP), 8);
+                    JsonNode item = f[7].isEmpty() ? null : OBJECT_MAPPER.readTree(f[7]);
+                    entries.put(f[1], new TransactionMetadata(emptyToNull(f[3]), item,
+                            emptyToNull(f[4]), emptyToNull(f[5]), emptyToNull(f[6]),
+                            Long.parseLong(f[2])));
+                } else if (record.startsWith(REMOVE + SEP)) {
+                    entries.remove(record.substring(2));
+                }
+            } catch (IOException | RuntimeException e) {
+                yLogger.log(Level.WARNING,
+                        "[CbnTfPendingResponseStore] {0}: skipping unreadable journal record: {1}",
+                        new Object[] { mModule, e.toString() });
+            }
+        }
+        return entries;
+    }
+
+    private void compactIfNeeded() {
+        long live = mEntries.size() + mEvicted.size();
+        long dead = mJournal.records() - live;
+        if (dead >= COMPACT_MIN_DEAD && dead > 2L * live) {
+            synchronized (mJournal) {
+                mJournal.rewrite(liveRecords());
+            }
+        }
+    }
+
+    // Pending and unanswered evicted entries
+    private List<String> liveRecords() {
+        List<String> live = new ArrayList<>(mEntries.size() + mEvicted.size());
+        for (Map.Entry<String, TransactionMetadata> e : mEntries.entrySet()) {
+            live.add(encodePut(e.getKey(), e.getValue()));
+        }
+        for (Map.Entry<String, TransactionMetadata> e : mEvicted.entrySet()) {
+            live.add(encodePut(e.getKey(), e.getValue()));
+        }
+        return live;
+    }
+
+    private static String encodePut(String pResponseId, TransactionMetadata pMetadata) {
+        String item = "";
+        if (pMetadata.originalItem != null) {
+            try {
+                item = OBJECT_MAPPER.writeValueAsString(pMetadata.originalItem);
+            } catch (IOException e) {
+                yLogger.log(Level.WARNING, "[CbnTfPendingResponseStore] item not journalled", e);
+            }
+        }
+        return PUT + SEP + pResponseId + SEP + pMetadata.createdAt + SEP
+                + nullToEmpty(pMetadata.originalId) + SEP + nullToEmpty(pMetadata.adapterMode)
+                + SEP + nullToEmpty(pMetadata.messageType) + SEP
+                + nullToEmpty(pMetadata.bloombergId) + SEP + item;
+    }
+
+    // ====================================================================
+    // JOURNAL
+    // ====================================================================
+
+    private static CbnTfJournal openJournal(String pModule, CbnTfProperties pConfig) {
+        String type = pConfig.getProperty("tf.pending.store", "journal").trim().toLowerCase();
+        Path dir = Paths.get(pConfig.getProperty("tf.pending.dir",
+                "/t24app/app/bnk/UD/BLOOMBERG/PENDING"));
+        return CbnTfJournal.open("CbnTfPendingResponseStore", type, dir, pModule,
+                "mmap".equals(type) ? "mmap" : "journal",
+                parseLong(pConfig.getProperty("tf.pending.mmap.size", null), DEFAULT_MMAP_SIZE));
+    }
+
+    // ====================================================================
+    // HELPERS
+    // ====================================================================
+
+    private static String nullToEmpty(String pValue) {
+        return pValue == null ? "" : pValue;
+    }
+
+    private static String emptyToNull(String pValue) {
+        return pValue == null || pValue.isEmpty() ? null : pValue;
+    }
+
+    private static long parseLong(String pValue, long pDefault) {
+        if (pValue == null) {
+            return pDefault;
+        }
+        try {
+            return Long.parseLong(pValue.trim());
+        } catch (NumberFormatException e) {
+            return pDefault;
+        }
+    }
+}
@@ -15,7 +15,7 @@ import java.util.logging.Logger;
  * CSD API Title: CbnTfProperties.java
  * Author: CSD Development Team
  * Created: 2025-10-27
- * Last Modified: 2026-02-03
+ * Last Modified: 2026-02-28
  * =============================================================================
  *
  * PURPOSE: Centralized configuration loader for Bloomberg integration. 
@@ -27,6 +27,8 @@ import java.util.logging.Logger;
  * - 2025-11-07 | Added TF module configuration support with variable resolution
  * - 2026-01-11 | Added new operation to process TF Deals Local App
  * - 2026-02-03 | Added ST (SEC_TRADE) OFS version configuration
+ * - 2026-02-26 | tf.* system properties override the file
+ * - 2026-02-28 | System property overrides only with -Dtf.overrides.enabled=true
  * =============================================================================
  */
 public final class CbnTfProperties {
@@ -36,6 +38,7 @@ public final class CbnTfProperties {
     private static final String PLACEHOLDER_START = "${";
     private static final String PLACEHOLDER_CLOSE = "}";
     private static final String PLACEHOLDER_PATTN = "${";
+    private static final String OVERRIDES_ENABLED = "tf.overrides.enabled";
 
     private static CbnTfProperties instance;
     private final Properties properties;
@@ -63,6 +66,7 @@ public final class CbnTfProperties {
      * 1. TAFJ_HOME/conf/bloomberg.properties
      * 2. D:/Temenos/R24/bnk/UD/BLOOMBERG/conf/bloomberg.properties
      * 3. Classpath (bloomberg.properties)
+     * System properties named tf.* override the loaded values.
      */
     private void loadProperties() {
         boolean loaded = false;
@@ -99,6 +103,27 @@ public final class CbnTfProperties {
                     PROPERTIES_FILE);
             setDefaults();
         }
+
+        applySystemOverrides();
+    }
+
+    /**
+     * With -Dtf.overrides.enabled=true, JVM system properties named tf.* (-Dtf.def.adapter=FILE)
+     * take precedence over the file, so a single run (e.g. the offline harness) can be pointed
+     * elsewhere without editing it. Off by default, so stray tf.* flags on the TAFJ JVM cannot
+     * change the configuration of the services.
+     */
+    private void applySystemOverrides() {
+        if (!Boolean.getBoolean(OVERRIDES_ENABLED)) {
+            return;
+        }
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith("tf.") && !OVERRIDES_ENABLED.equals(key)) {
+                properties.setProperty(key, System.getProperty(key));
+                yLogger.log(Level.WARNING, "[CbnTfProperties] Overridden by system property: {0}",
+                        key);
+            }
+        }
     }
 
     public void logLoadedProperties() {
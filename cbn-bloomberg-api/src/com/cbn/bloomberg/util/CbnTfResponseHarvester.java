@@ -0,0 +1,219 @@
+package com.cbn.bloomberg.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.temenos.t24.api.system.DataAccess;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: CbnTfResponseHarvester.java
+ * Author: CSD Development Team
+ * Created: 2026-02-16
+ * Last Modified: 2026-02-27
+ * =============================================================================
+ *
+ * PURPOSE: Batched OFS response harvesting for the CHECK.RESPONSE phase.
+ *
+ * Instead of handing every pending response id to updateRecord (one
+ * getRequestResponse read each, most of which come back empty while OFS is
+ * still working), the pending ids are resolved against OFS.REQUEST.DETAIL in
+ * chunked selectRecords passes. Only ids that already carry a response are
+ * dispatched.
+ *
+ * Ids that are not ready are backed off exponentially
+ * (tf.ofs.harvest.backoff.base doubling up to tf.ofs.harvest.backoff.max) so
+ * long running requests are not re-selected on every cycle. The cap is kept
+ * to a few CHECK.RESPONSE cycles, so a response that becomes ready is
+ * published at most that much later. If a selection fails, the affected ids
+ * are dispatched as before so no response is lost.
+ *
+ * MODIFICATION HISTORY:
+ * - 2026-02-16 | Initial creation
+ * - 2026-02-27 | Default backoff cap lowered from 300s to 15s
+ * =============================================================================
+ */
+public final class CbnTfResponseHarvester {
+
+    private static final Logger yLogger = Logger.getLogger(CbnTfResponseHarvester.class.getName());
+
+    private static final String OFS_REQUEST_DETAIL = "OFS.REQUEST.DETAIL";
+
+    private static final int DEFAULT_CHUNK_SIZE = 200;
+    private static final long DEFAULT_BACKOFF_BASE_MS = 5000L;
+    private static final long DEFAULT_BACKOFF_MAX_MS = 15000L;
+    private static final String DEFAULT_READY_CRITERIA = "MSG.OUT NE ''";
+
+    // Longest shift applied to the backoff base, bounds 2^misses
+    private static final int MAX_BACKOFF_SHIFT = 16;
+
+    private static final Map<String, CbnTfResponseHarvester> HARVESTERS = new ConcurrentHashMap<>();
+
+    private final String mModule;
+
+    // ==== BACKOFF STATE: responseId -> state ====
+    private final Map<String, Backoff> mBackoff = new ConcurrentHashMap<>();
+
+    private static final class Backoff {
+
+        private final int mMisses;
+        private final long mNextCheck;
+
+        Backoff(int pMisses, long pNextCheck) {
+            this.mMisses = pMisses;
+            this.mNextCheck = pNextCheck;
+        }
+    }
+
+    private CbnTfResponseHarvester(String pModule) {
+        this.mModule = pModule;
+    }
+
+    /**
+     * Returns the harvester of a module (FX, FT, PD, PR, SC).
+     */
+    public static CbnTfResponseHarvester forModule(String pModule) {
+        return HARVESTERS.computeIfAbsent(pModule, CbnTfResponseHarvester::new);
+    }
+
+    /**
+     * True unless tf.ofs.harvest.enabled is set to false.
+     */
+    public static boolean isEnabled() {
+        String value = CbnTfProperties.getInstance().getProperty("tf.ofs.harvest.enabled", "true");
+        return value == null || !"false".equalsIgnoreCase(value.trim());
+    }
+
+    /**
+     * Resolves the pending response ids whose OFS response is ready.
+     *
+     * @param pDataAccess T24 data access of the calling service
+     * @param pPendingIds All pending response ids of the module
+     * @return Ids to dispatch to updateRecord, in pending order
+     */
+    public List<String> readyIds(DataAccess pDataAccess, Collection<String> pPendingIds) {
+        if (!isEnabled() || pDataAccess == null) {
+            return new ArrayList<>(pPendingIds);
+        }
+
+        // Forget ids that are no longer pending
+        mBackoff.keySet().retainAll(new HashSet<>(pPendingIds));
+
+        long now = System.currentTimeMillis();
+        List<String> eligible = new ArrayList<>();
+        List<String> unquotable = new ArrayList<>();
+        for (String id : pPendingIds) {
+            Backoff state = mBackoff.get(id);
+            if (state != null && state.mNextCheck > now) {
+                continue;
+            }
+            if (id.indexOf('\'') >= 0 || id.indexOf('"') >= 0) {
+                // Cannot be expressed in a selection, checked directly
+                unquotable.add(id);
+            } else {
+                eligible.add(id);
+            }
+        }
+
+        Set<String> ready = new HashSet<>(unquotable);
+        int chunkSize = chunkSize();
+        String criteria = readyCriteria();
+        for (int i = 0; i < eligible.size(); i += chunkSize) {
+            List<String> chunk = eligible.subList(i, Math.min(i + chunkSize, eligible.size()));
+            try {
+                List<String> selected = pDataAccess.selectRecords("", OFS_REQUEST_DETAIL, "",
+                        buildSelection(chunk, criteria));
+                if (selected != null) {
+                    ready.addAll(selected);
+                }
+            } catch (RuntimeException e) {
+                yLogger.log(Level.WARNING, "[CbnTfResponseHarvester] " + mModule
+                        + ": selection failed, checking " + chunk.size() + " ids directly", e);
+                ready.addAll(chunk);
+            }
+        }
+
+        List<String> dispatch = new ArrayList<>();
+        for (String id : pPendingIds) {
+            if (ready.contains(id)) {
+                dispatch.add(id);
+                mBackoff.remove(id);
+            }
+        }
+        for (String id : eligible) {
+            if (!ready.contains(id)) {
+                backOff(id, now);
+            }
+        }
+
+        yLogger.log(Level.INFO,
+                "[CbnTfResponseHarvester] {0}: pending={1}, selected={2}, ready={3}, backing off={4}",
+                new Object[] { mModule, pPendingIds.size(), eligible.size() + unquotable.size(),
+                        dispatch.size(), mBackoff.size() });
+        return dispatch;
+    }
+
+    // ====================================================================
+    // HELPERS
+    // ====================================================================
+
+    private void backOff(String pId, long pNow) {
+        Backoff previous = mBackoff.get(pId);
+        int misses = previous == null ? 0 : previous.mMisses + 1;
+        long delay = backoffBaseMs() << Math.min(misses, MAX_BACKOFF_SHIFT);
+        mBackoff.put(pId, new Backoff(misses, pNow + Math.min(delay, backoffMaxMs())));
+    }
+
+    // WITH @ID EQ 'a' 'b' ... AND <criteria>
+    private static String buildSelection(List<String> pIds, String pCriteria) {
+        StringBuilder sb = new StringBuilder("WITH @ID EQ");
+        for (String id : pIds) {
+            sb.append(" '").append(id).append('\'');
+        }
+        if (!pCriteria.isEmpty()) {
+            sb.append(" AND ").append(pCriteria);
+        }
+        return sb.toString();
+    }
+
+    private static String readyCriteria() {
+        String value = CbnTfProperties.getInstance().getProperty("tf.ofs.harvest.criteria",
+                DEFAULT_READY_CRITERIA);
+        return value == null ? "" : value.trim();
+    }
+
+    private static int chunkSize() {
+        String value = CbnTfProperties.getInstance().getProperty("tf.ofs.harvest.chunk.size",
+                String.valueOf(DEFAULT_CHUNK_SIZE));
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return DEFAULT_CHUNK_SIZE;
+        }
+    }
+
+    private static long backoffBaseMs() {
+        return longProperty("tf.ofs.harvest.backoff.base", DEFAULT_BACKOFF_BASE_MS);
+    }
+
+    private static long backoffMaxMs() {
+        return longProperty("tf.ofs.harvest.backoff.max", DEFAULT_BACKOFF_MAX_MS);
+    }
+
+    private static long longProperty(String pKey, long pDefault) {
+        String value = CbnTfProperties.getInstance().getProperty(pKey, String.valueOf(pDefault));
+        try {
+            return Math.max(0L, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return pDefault;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.cbn.bloomberg.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.cbn.bloomberg.util.CbnTfBrowsing.ModuleType;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: CbnTfStagingJournal.java
+ * Author: CSD Development Team
+ * Created: 2026-02-12
+ * Last Modified: 2026-02-27
+ * =============================================================================
+ *
+ * PURPOSE: Durable local staging journal between the asynchronous WMQ listener
+ * (CbnTfListenerIntake) and the module adapters' getIds cycle.
+ *
+ * Layout under tf.wmq.journal.dir:
+ *   <MODULE>/PENDING/<seq>_<msgId>.json  - journalled, not yet picked up
+ *   <MODULE>/CLAIMED/<msgId>.json        - handed to a getIds cycle
+ *
+ * Entries are written to a temp file, forced to disk and renamed, so a message
+ * is only acknowledged to MQ once it is durable here. Claiming is an atomic
+ * rename, so concurrent agents never pick up the same entry. Claimed entries
+ * are kept for tf.wmq.journal.retention ms so that message bodies can be
+ * recovered after a restart between getIds and item processing.
+ *
+ * MODIFICATION HISTORY:
+ * - 2026-02-12 | Initial creation
+ * - 2026-02-27 | Entries are always journalled under a module (no UNROUTED directory)
+ * =============================================================================
+ */
+public final class CbnTfStagingJournal {
+
+    private static final Logger yLogger = Logger.getLogger(CbnTfStagingJournal.class.getName());
+
+    private static final String PENDING = "PENDING";
+    private static final String CLAIMED = "CLAIMED";
+    private static final String SUFFIX = ".json";
+
+    private static final int DEFAULT_DRAIN_MAX = 500;
+    private static final long DEFAULT_RETENTION_MS = 86400000L;
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private CbnTfStagingJournal() {
+    }
+
+    /**
+     * Durably records a message body for a module.
+     *
+     * @param pModule   Module the message belongs to
+     * @param pCacheKey Normalized message id
+     * @param pBody     Message body
+     */
+    public static void append(ModuleType pModule, String pCacheKey, String pBody) throws IOException {
+        Path pending = moduleDir(pModule.name()).resolve(PENDING);
+        Files.createDirectories(pending);
+
+        // Zero padded so that directory order is arrival order
+        String name = String.format("%013d%06d_%s", System.currentTimeMillis(),
+                SEQUENCE.incrementAndGet() % 1000000, sanitize(pCacheKey));
+        Path tmp = pending.resolve(name + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.wrap(pBody.getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) {
+                ch.write(buf);
+            }
+            ch.force(true);
+        }
+        Files.move(tmp, pending.resolve(name + SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Claims up to tf.wmq.journal.drain.max pending entries of a module, oldest first.
+     *
+     * @return Normalized message id -> body, in arrival order
+     */
+    public static Map<String, String> drain(ModuleType pModule) {
+        Map<String, String> claimed = new LinkedHashMap<>();
+        Path moduleDir = moduleDir(pModule.name());
+        Path pending = moduleDir.resolve(PENDING);
+        if (!Files.isDirectory(pending)) {
+            return claimed;
+        }
+
+        List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(pending, "*" + SUFFIX)) {
+            for (Path p : ds) {
+                entries.add(p);
+            }
+        } catch (IOException e) {
+            yLogger.log(Level.SEVERE, "[CbnTfStagingJournal] Unable to list " + pending, e);
+            return claimed;
+        }
+        Collections.sort(entries);
+
+        int max = drainMax();
+        Path claimedDir = moduleDir.resolve(CLAIMED);
+        for (Path entry : entries) {
+            if (claimed.size() >= max) {
+                break;
+            }
+            String fileName = entry.getFileName().toString();
+            String cacheKey = fileName.substring(fileName.indexOf('_') + 1,
+                    fileName.length() - SUFFIX.length());
+            Path target = claimedDir.resolve(cacheKey + SUFFIX);
+            try {
+                Files.createDirectories(claimedDir);
+                Files.move(entry, target, StandardCopyOption.ATOMIC_MOVE);
+                claimed.put(cacheKey,
+                        new String(Files.readAllBytes(target), StandardCharsets.UTF_8));
+            } catch (NoSuchFileException e) {
+                // Claimed by another agent
+            } catch (IOException e) {
+                yLogger.log(Level.SEVERE, "[CbnTfStagingJournal] Unable to claim " + entry, e);
+            }
+        }
+
+        purgeClaimed(claimedDir);
+        if (!claimed.isEmpty()) {
+            yLogger.log(Level.INFO, "[CbnTfStagingJournal] {0}: claimed {1} of {2} pending entries",
+                    new Object[] { pModule.name(), claimed.size(), entries.size() });
+        }
+        return claimed;
+    }
+
+    /**
+     * Reads the body of a claimed entry, used to recover message bodies lost from memory.
+     *
+     * @return Body, or null if the entry does not exist (anymore)
+     */
+    public static String readClaimed(ModuleType pModule, String pCacheKey) {
+        Path file = moduleDir(pModule.name()).resolve(CLAIMED).resolve(sanitize(pCacheKey) + SUFFIX);
+        try {
+            return new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            yLogger.log(Level.WARNING, "[CbnTfStagingJournal] Unable to read " + file, e);
+            return null;
+        }
+    }
+
+    // ====================================================================
+    // HELPERS
+    // ====================================================================
+
+    private static void purgeClaimed(Path pClaimedDir) {
+        if (!Files.isDirectory(pClaimedDir)) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - retentionMs();
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(pClaimedDir, "*" + SUFFIX)) {
+            for (Path p : ds) {
+                try {
+                    if (Files.getLastModifiedTime(p).toMillis() < cutoff) {
+                        Files.deleteIfExists(p);
+                    }
+                } catch (IOException e) {
+                    yLogger.log(Level.FINE, "[CbnTfStagingJournal] Unable to purge {0}", p);
+                }
+            }
+        } catch (IOException e) {
+            yLogger.log(Level.WARNING, "[CbnTfStagingJournal] Unable to purge " + pClaimedDir, e);
+        }
+    }
+
+    private static Path moduleDir(String pModuleDir) {
+        String base = CbnTfProperties.getInstance().getProperty("tf.wmq.journal.dir",
+                "/t24app/app/bnk/UD/BLOOMBERG/JOURNAL");
+        return Paths.get(base, pModuleDir);
+    }
+
+    private static String sanitize(String pCacheKey) {
+        return pCacheKey.replaceAll("[^A-Za-z0-9_\\-]", "_");
+    }
+
+    private static int drainMax() {
+        String value = CbnTfProperties.getInstance().getProperty("tf.wmq.journal.drain.max",
+                String.valueOf(DEFAULT_DRAIN_MAX));
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return DEFAULT_DRAIN_MAX;
+        }
+    }
+
+    private static long retentionMs() {
+        String value = CbnTfProperties.getInstance().getProperty("tf.wmq.journal.retention",
+                String.valueOf(DEFAULT_RETENTION_MS));
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return DEFAULT_RETENTION_MS;
+        }
+    }
+}
@@ -0,0 +1,760 @@
+package com.cbn.bloomberg.wmq;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import com.cbn.bloomberg.bench.CbnTfBenchFixtures;
+import com.cbn.bloomberg.fx.CbnFxPayloads;
+import com.cbn.bloomberg.ft.CbnFtPayload;
+import com.cbn.bloomberg.pd.CbnPdPayload;
+import com.cbn.bloomberg.pr.CbnPrPayload;
+import com.cbn.bloomberg.sc.CbnScPayload;
+import com.cbn.bloomberg.util.CbnTfBrowsing;
+import com.cbn.bloomberg.util.CbnTfBrowsing.ModuleType;
+import com.cbn.bloomberg.util.CbnTfPartitioning;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+
+/**
+ * =============================================================================
+ * CSD API Title: BloombergWmqLoadGenerator.java
+ * Author: CSD Development Team
+ * Created: 2026-02-25
+ * Last Modified: 2026-02-25
+ * =============================================================================
+ *
+ * PURPOSE: Load generator and end-to-end latency harness for the Bloomberg
+ * WMQ flows, for sizing the TSA agents and checking SLA headroom before
+ * market events.
+ *
+ * - Injection: --threads sender threads push synthetic FX, FT, PD, PR and SC
+ *   payloads (CbnTfBenchFixtures) to mq.queue at a fixed total --rate, mixed
+ *   by --mix weights. The load is an open model: every message has a planned
+ *   send time (uniform, or exponential gaps with --arrivals poisson) that does
+ *   not wait for responses, and a sender that falls behind catches up.
+ * - Correlation: each message gets a unique BLOOMBERG_ID for the run. The
+ *   responses read from mq.response.queue are matched on their BLOOMBERG_ID
+ *   (bloombergId for SECURITY_MASTER).
+ * - Latency: measured from the planned send time to the response, so a
+ *   stalled sender or broker shows up in the latency (no coordinated
+ *   omission). Kept in log-linear histograms (HDR style, under 1% error);
+ *   messages planned in the first --warmup s are left out of the totals.
+ *   Every --interval s a line with the throughput and interval percentiles is
+ *   printed, then the percentiles per module; --out writes the percentile
+ *   distribution as CSV.
+ * - Broker: --broker mq (default) uses the bloomberg.properties settings of
+ *   BloombergWmqManager. --broker embedded creates the --factory JMS
+ *   ConnectionFactory class from --url, by default an in-VM ActiveMQ broker
+ *   (activemq-broker jar on the classpath), and starts --responders
+ *   simulated services that answer after --service-time ms with the module's
+ *   response payload.
+ *
+ * Responses are consumed from the response queue: run against a dedicated
+ * queue manager or response queue, not one read by Bloomberg.
+ *
+ * Usage:
+ *   java -cp <classpath> com.cbn.bloomberg.wmq.BloombergWmqLoadGenerator
+ *        [--rate 100] [--duration 60] [--warmup 0] [--threads 4]
+ *        [--mix FX=1,FT=1,PD=1,PR=1,SC=1]
+ *        [--arrivals uniform|poisson] [--drain 60] [--interval 1] [--out latency.csv]
+ *        [--slo-p99 ms] [--broker mq|embedded] [--factory class] [--url url]
+ *        [--responders 2] [--service-time 5]
+ *
+ * Exits with status 1 when responses are missing after --drain s, or when
+ * the p99 latency exceeds --slo-p99 ms.
+ *
+ * MODIFICATION HISTORY:
+ * - 2026-02-25 | Initial creation
+ * =============================================================================
+ */
+public final class BloombergWmqLoadGenerator {
+
+    private static final String DEFAULT_FACTORY = "org.apache.activemq.ActiveMQConnectionFactory";
+    private static final String DEFAULT_URL = "vm://bbgload?broker.persistent=false&broker.useJmx=false";
+    private static final String EMBEDDED_QUEUE = "T24.Q.IN";
+    private static final String EMBEDDED_RESPONSE_QUEUE = "BLOOMBERG.OUT";
+    private static final double[] PERCENTILES = { 50d, 90d, 99d, 99.9d, 99.99d };
+
+    private final ObjectMapper mObjMapper = new ObjectMapper();
+    private final CbnTfBenchFixtures mFixtures = new CbnTfBenchFixtures(mObjMapper);
+
+    // ==== OPTIONS ====
+    private double mRate = 100d;
+    private long mDurationSec = 60L;
+    private long mWarmupSec;
+    private int mThreads = 4;
+    private final Map<ModuleType, Integer> mMix = new EnumMap<>(ModuleType.class);
+    private boolean mPoisson;
+    private long mDrainSec = 60L;
+    private long mIntervalSec = 1L;
+    private Path mOut;
+    private double mSloP99Ms;
+    private boolean mEmbedded;
+    private String mFactoryClass = DEFAULT_FACTORY;
+    private String mUrl = DEFAULT_URL;
+    private int mResponders = 2;
+    private long mServiceTimeMs = 5L;
+
+    // ==== RUN STATE ====
+    private final String mRunId = Long.toString(System.currentTimeMillis() % 100000000L, 36)
+            .toUpperCase(Locale.ROOT);
+    private final AtomicLong mNextSeq = new AtomicLong();
+    private final Map<String, Pending> mPending = new ConcurrentHashMap<>();
+    private final LatencyHistogram mTotal = new LatencyHistogram();
+    private final Map<ModuleType, LatencyHistogram> mByModule = new EnumMap<>(ModuleType.class);
+    private final AtomicReference<LatencyHistogram> mInterval = new AtomicReference<>(
+            new LatencyHistogram());
+    private final LongAdder mSent = new LongAdder();
+    private final LongAdder mSendErrors = new LongAdder();
+    private final LongAdder mReceived = new LongAdder();
+    private final LongAdder mFailures = new LongAdder();
+    private final LongAdder mUnmatched = new LongAdder();
+    private final AtomicLong mMaxSendLagNanos = new AtomicLong();
+    private volatile boolean mSending = true;
+    private volatile boolean mReceiving = true;
+    private volatile long mLastReceiveNanos;
+    private volatile long mMeasureFromNanos;
+
+    private ConnectionFactory mFactory;
+    private String mQueueName;
+    private String mResponseQueueName;
+    private String mQueuePrefix = "";
+
+    // Message on its way, by BLOOMBERG_ID
+    private static final class Pending {
+
+        private final ModuleType mModule;
+        private final long mPlannedNanos;
+
+        Pending(ModuleType pModule, long pPlannedNanos) {
+            this.mModule = pModule;
+            this.mPlannedNanos = pPlannedNanos;
+        }
+    }
+
+    public static void main(String[] args) {
+        BloombergWmqLoadGenerator generator = new BloombergWmqLoadGenerator();
+        try {
+            generator.parseArgs(args);
+            System.exit(generator.run());
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.exit(2);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(2);
+        }
+    }
+
+    private void parseArgs(String[] pArgs) {
+        for (int i = 0; i < pArgs.length; i++) {
+            String arg = pArgs[i];
+            if (i + 1 >= pArgs.length) {
+                throw new IllegalArgumentException("missing value for " + arg);
+            }
+            String value = pArgs[++i];
+            switch (arg) {
+                case "--rate":
+                    mRate = Double.parseDouble(value);
+                    break;
+                case "--duration":
+                    mDurationSec = Long.parseLong(value);
+                    break;
+                case "--warmup":
+                    mWarmupSec = Long.parseLong(value);
+                    break;
+                case "--threads":
+                    mThreads = Integer.parseInt(value);
+                    break;
+                case "--mix":
+                    for (String part : value.split(",")) {
+                        String[] kv = part.split("=", 2);
+                        mMix.put(ModuleType.valueOf(kv[0].trim().toUpperCase(Locale.ROOT)),
+                                kv.length == 2 ? Integer.parseInt(kv[1].trim()) : 1);
+                    }
+                    break;
+                case "--arrivals":
+                    mPoisson = "poisson".equalsIgnoreCase(value);
+                    break;
+                case "--drain":
+                    mDrainSec = Long.parseLong(value);
+                    break;
+                case "--interval":
+                    mIntervalSec = Math.max(1L, Long.parseLong(value));
+                    break;
+                case "--out":
+                    mOut = Paths.get(value);
+                    break;
+                case "--slo-p99":
+                    mSloP99Ms = Double.parseDouble(value);
+                    break;
+                case "--broker":
+                    mEmbedded = "embedded".equalsIgnoreCase(value);
+                    break;
+                case "--factory":
+                    mFactoryClass = value;
+                    break;
+                case "--url":
+                    mUrl = value;
+                    break;
+                case "--responders":
+                    mResponders = Integer.parseInt(value);
+                    break;
+                case "--service-time":
+                    mServiceTimeMs = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + arg);
+            }
+        }
+        if (mRate <= 0 || mThreads <= 0 || mDurationSec <= 0) {
+            throw new IllegalArgumentException("--rate, --threads and --duration must be positive");
+        }
+        if (mMix.isEmpty()) {
+            for (ModuleType module : new ModuleType[] { ModuleType.FX, ModuleType.FT,
+                    ModuleType.PD, ModuleType.PR, ModuleType.SC }) {
+                mMix.put(module, 1);
+            }
+        }
+        mMix.values().removeIf(weight -> weight <= 0);
+        if (mMix.isEmpty()) {
+            throw new IllegalArgumentException("--mix has no module with a positive weight");
+        }
+    }
+
+    // Returns the exit status: 0, or 1 if responses are missing or the SLO is missed
+    private int run() throws Exception {
+        // The payload builders log every response at INFO
+        Logger root = Logger.getLogger("");
+        root.setLevel(Level.WARNING);
+        for (Handler handler : root.getHandlers()) {
+            handler.setLevel(Level.WARNING);
+        }
+        for (ModuleType module : mMix.keySet()) {
+            mByModule.put(module, new LatencyHistogram());
+        }
+
+        Connection connection = connect();
+        List<Thread> threads = new ArrayList<>();
+        try {
+            connection.start();
+            System.out.println("=== BloombergWmqLoadGenerator run " + mRunId + " ===");
+            System.out.println(String.format(Locale.ROOT,
+                    "Broker: %s, queue %s -> %s, rate %.1f/s (%s), %d s, %d sender(s), mix %s",
+                    mEmbedded ? "embedded " + mUrl : "IBM MQ", mQueueName, mResponseQueueName,
+                    mRate, mPoisson ? "poisson" : "uniform", mDurationSec, mThreads, mMix));
+
+            threads.add(start(new Thread(() -> receive(connection), "load-receiver")));
+            if (mEmbedded) {
+                for (int r = 0; r < mResponders; r++) {
+                    threads.add(start(new Thread(() -> respond(connection), "load-responder-" + r)));
+                }
+            }
+
+            long startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+            long endNanos = startNanos + TimeUnit.SECONDS.toNanos(mDurationSec);
+            mMeasureFromNanos = startNanos + TimeUnit.SECONDS.toNanos(mWarmupSec);
+            List<Thread> senders = new ArrayList<>();
+            for (int t = 0; t < mThreads; t++) {
+                int index = t;
+                senders.add(start(new Thread(() -> send(connection, index, startNanos, endNanos),
+                        "load-sender-" + t)));
+            }
+            System.out.println(String.format(Locale.ROOT, "%8s %9s %9s %9s %9s %9s %9s %9s",
+                    "elapsed", "sent", "recv", "inflight", "recv/s", "p50 ms", "p99 ms", "max ms"));
+
+            // Report until the senders are done and the responses are in, or the drain expires
+            long drainEnd = Long.MAX_VALUE;
+            long previous = 0;
+            long nextReport = startNanos + TimeUnit.SECONDS.toNanos(mIntervalSec);
+            while (System.nanoTime() < drainEnd) {
+                LockSupport.parkNanos(Math.max(0L, nextReport - System.nanoTime()));
+                nextReport += TimeUnit.SECONDS.toNanos(mIntervalSec);
+                long received = mReceived.sum();
+                report(startNanos, received - previous);
+                previous = received;
+                if (drainEnd == Long.MAX_VALUE && !anyAlive(senders)) {
+                    mSending = false;
+                    drainEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(mDrainSec);
+                }
+                if (drainEnd != Long.MAX_VALUE && mPending.isEmpty()) {
+                    break;
+                }
+            }
+            mSending = false;
+            mReceiving = false;
+            for (Thread thread : senders) {
+                thread.join();
+            }
+            for (Thread thread : threads) {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            }
+            return summary(startNanos, endNanos);
+        } finally {
+            mSending = false;
+            mReceiving = false;
+            CbnTfBrowsing.closeQuietly(connection);
+        }
+    }
+
+    // ====================================================================
+    // BROKER
+    // ====================================================================
+
+    private Connection connect() throws Exception {
+        if (mEmbedded) {
+            mFactory = (ConnectionFactory) Class.forName(mFactoryClass).getConstructor(String.class)
+                    .newInstance(mUrl);
+            mQueueName = EMBEDDED_QUEUE;
+            mResponseQueueName = EMBEDDED_RESPONSE_QUEUE;
+            return mFactory.createConnection();
+        }
+        BloombergWmqManager.loadMqConfiguration();
+        mQueueName = BloombergWmqManager.getMqProperties().getProperty("mq.queue");
+        mResponseQueueName = BloombergWmqManager.getMqProperties().getProperty("mq.response.queue",
+                "").trim();
+        if (mResponseQueueName.isEmpty()) {
+            throw new IllegalArgumentException("mq.response.queue is not configured");
+        }
+        mQueuePrefix = "queue:///";
+        return BloombergWmqManager.createMqConnection();
+    }
+
+    private Queue queue(Session pSession, String pName) throws JMSException {
+        return pSession.createQueue(mQueuePrefix + pName);
+    }
+
+    // ====================================================================
+    // SENDER
+    // ====================================================================
+
+    private void send(Connection pConnection, int pIndex, long pStartNanos, long pEndNanos) {
+        ModuleType[] wheel = wheel();
+        Random random = new Random(pIndex * 7919L + 17L);
+        double gapNanos = mThreads * 1e9d / mRate;
+        // Senders are staggered over one gap, so the total arrivals are evenly spaced
+        double planned = pStartNanos + gapNanos * pIndex / mThreads;
+        int partitions = mEmbedded ? 0 : BloombergWmqManager.partitionCount();
+
+        Session session = null;
+        MessageProducer producer = null;
+        try {
+            session = pConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            producer = session.createProducer(queue(session, mQueueName));
+            while (mSending && planned < pEndNanos) {
+                long plannedNanos = (long) planned;
+                long wait = plannedNanos - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                } else {
+                    mMaxSendLagNanos.accumulateAndGet(-wait, Math::max);
+                }
+
+                long seq = mNextSeq.getAndIncrement();
+                ModuleType module = wheel[(int) (seq % wheel.length)];
+                String bloombergId = "LG" + mRunId + module.getIdPrefix() + seq;
+                ObjectNode item = mFixtures.item(module, (int) (seq % 1000000L));
+                item.put("BLOOMBERG_ID", bloombergId);
+                ObjectNode root = mObjMapper.createObjectNode();
+                root.set(module.getJsonRootNode(), item);
+                String body = mFixtures.toJson(root);
+
+                mPending.put(bloombergId, new Pending(module, plannedNanos));
+                try {
+                    TextMessage message = session.createTextMessage(body);
+                    message.setStringProperty("PushedBy", "BloombergWmqLoadGenerator");
+                    message.setStringProperty("LoadRunId", mRunId);
+                    message.setLongProperty("PushedTimestamp", System.currentTimeMillis());
+                    message.setStringProperty(CbnTfBrowsing.MODULE_PROPERTY, module.name());
+                    CbnTfPartitioning.stampPartition(message, body, mObjMapper, partitions);
+                    producer.send(message);
+                    mSent.increment();
+                } catch (JMSException e) {
+                    mPending.remove(bloombergId);
+                    mSendErrors.increment();
+                }
+
+                planned += mPoisson ? -Math.log(1d - random.nextDouble()) * gapNanos : gapNanos;
+            }
+        } catch (JMSException e) {
+            System.err.println("Sender " + pIndex + " stopped: " + e.getMessage());
+        } finally {
+            CbnTfBrowsing.closeQuietly(producer);
+            CbnTfBrowsing.closeQuietly(session);
+        }
+    }
+
+    // Modules in proportion to their --mix weights, reduced by their gcd
+    private ModuleType[] wheel() {
+        int gcd = 0;
+        for (int weight : mMix.values()) {
+            gcd = gcd(gcd, weight);
+        }
+        List<ModuleType> wheel = new ArrayList<>();
+        for (Map.Entry<ModuleType, Integer> e : mMix.entrySet()) {
+            for (int i = 0; i < e.getValue() / gcd; i++) {
+                wheel.add(e.getKey());
+            }
+        }
+        return wheel.toArray(new ModuleType[0]);
+    }
+
+    private static int gcd(int pA, int pB) {
+        return pB == 0 ? pA : gcd(pB, pA % pB);
+    }
+
+    // ====================================================================
+    // RECEIVER
+    // ====================================================================
+
+    private void receive(Connection pConnection) {
+        Session session = null;
+        MessageConsumer consumer = null;
+        try {
+            session = pConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            consumer = session.createConsumer(queue(session, mResponseQueueName));
+            while (mReceiving) {
+                Message message = consumer.receive(250L);
+                if (message == null) {
+                    continue;
+                }
+                long now = System.nanoTime();
+                JsonNode response = parse(message);
+                String bloombergId = bloombergId(response);
+                Pending pending = bloombergId == null ? null : mPending.remove(bloombergId);
+                if (pending == null) {
+                    mUnmatched.increment();
+                    continue;
+                }
+                long micros = TimeUnit.NANOSECONDS.toMicros(now - pending.mPlannedNanos);
+                if (pending.mPlannedNanos >= mMeasureFromNanos) {
+                    mTotal.record(micros);
+                    mByModule.get(pending.mModule).record(micros);
+                }
+                mInterval.get().record(micros);
+                if (!"success".equalsIgnoreCase(response.path("status").asText(""))) {
+                    mFailures.increment();
+                }
+                mReceived.increment();
+                mLastReceiveNanos = now;
+            }
+        } catch (JMSException e) {
+            System.err.println("Receiver stopped: " + e.getMessage());
+        } finally {
+            CbnTfBrowsing.closeQuietly(consumer);
+            CbnTfBrowsing.closeQuietly(session);
+        }
+    }
+
+    private JsonNode parse(Message pMessage) {
+        try {
+            if (pMessage instanceof TextMessage) {
+                return mObjMapper.readTree(((TextMessage) pMessage).getText());
+            }
+        } catch (Exception e) {
+            // Not a JSON response - counted as unmatched
+        }
+        return mObjMapper.createObjectNode();
+    }
+
+    private static String bloombergId(JsonNode pResponse) {
+        JsonNode id = pResponse.findValue("BLOOMBERG_ID");
+        if (id == null || id.asText("").isEmpty()) {
+            id = pResponse.findValue("bloombergId");
+        }
+        return id == null || id.asText("").isEmpty() ? null : id.asText();
+    }
+
+    // ====================================================================
+    // EMBEDDED RESPONDER
+    // ====================================================================
+
+    // Stands in for the module services: answers each request with the module's response payload
+    private void respond(Connection pConnection) {
+        CbnFxPayloads fxPayloads = new CbnFxPayloads(mObjMapper);
+        CbnFtPayload ftPayload = new CbnFtPayload(mObjMapper);
+        CbnPdPayload pdPayload = new CbnPdPayload(mObjMapper);
+        CbnPrPayload prPayload = new CbnPrPayload(mObjMapper);
+        CbnScPayload scPayload = new CbnScPayload(mObjMapper);
+        Session session = null;
+        MessageConsumer consumer = null;
+        MessageProducer producer = null;
+        try {
+            session = pConnection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+            consumer = session.createConsumer(queue(session, mQueueName));
+            producer = session.createProducer(queue(session, mResponseQueueName));
+            while (mReceiving) {
+                Message message = consumer.receive(250L);
+                if (!(message instanceof TextMessage)) {
+                    continue;
+                }
+                JsonNode root = mObjMapper.readTree(((TextMessage) message).getText());
+                ModuleType module = CbnTfBrowsing.detectModuleType(root);
+                if (module == null) {
+                    continue;
+                }
+                if (mServiceTimeMs > 0) {
+                    Thread.sleep(mServiceTimeMs);
+                }
+                JsonNode item = root.get(module.getJsonRootNode());
+                String bloombergId = item.path("BLOOMBERG_ID").asText("");
+                String ref = module.getIdPrefix() + "26056" + String.format("%05d",
+                        Math.floorMod(bloombergId.hashCode(), 100000));
+                String response;
+                switch (module) {
+                    case FX:
+                        response = fxPayloads.buildResponse("success", "Processed", ref, item,
+                                bloombergId);
+                        break;
+                    case FT:
+                        response = ftPayload.buildResponse("success", "Processed", ref, item,
+                                bloombergId);
+                        break;
+                    case PD:
+                        response = pdPayload.buildResponse("success", "Processed", ref, item,
+                                bloombergId);
+                        break;
+                    case PR:
+                        response = prPayload.buildResponse("success", "Processed", ref, item,
+                                bloombergId);
+                        break;
+                    default:
+                        response = scPayload.buildResponse("success", "Processed", ref, item);
+                        break;
+                }
+                producer.send(session.createTextMessage(response));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            System.err.println("Responder stopped: " + e.getMessage());
+        } finally {
+            CbnTfBrowsing.closeQuietly(producer);
+            CbnTfBrowsing.closeQuietly(consumer);
+            CbnTfBrowsing.closeQuietly(session);
+        }
+    }
+
+    // ====================================================================
+    // REPORTING
+    // ====================================================================
+
+    private void report(long pStartNanos, long pIntervalReceived) {
+        LatencyHistogram interval = mInterval.getAndSet(new LatencyHistogram());
+        System.out.println(String.format(Locale.ROOT, "%7ds %9d %9d %9d %9.1f %9.2f %9.2f %9.2f",
+                TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - pStartNanos), mSent.sum(),
+                mReceived.sum(), mPending.size(), (double) pIntervalReceived / mIntervalSec,
+                interval.percentile(50d) / 1000d, interval.percentile(99d) / 1000d,
+                interval.max() / 1000d));
+    }
+
+    private int summary(long pStartNanos, long pEndNanos) throws Exception {
+        long sent = mSent.sum();
+        long received = mReceived.sum();
+        long sendSpan = Math.max(1L, Math.min(System.nanoTime(), pEndNanos) - pStartNanos);
+        long receiveSpan = Math.max(1L, mLastReceiveNanos - pStartNanos);
+
+        System.out.println("=== Summary run " + mRunId + " ===");
+        System.out.println(String.format(Locale.ROOT,
+                "Sent %d (%.1f/s of %.1f/s target, send errors %d, max send lag %.1f ms)", sent,
+                sent * 1e9d / sendSpan, mRate, mSendErrors.sum(),
+                mMaxSendLagNanos.get() / 1e6d));
+        System.out.println(String.format(Locale.ROOT,
+                "Received %d (%.1f/s), failures %d, missing %d, unmatched %d", received,
+                received * 1e9d / receiveSpan, mFailures.sum(), mPending.size(),
+                mUnmatched.sum()));
+        StringBuilder header = new StringBuilder(String.format(Locale.ROOT, "%-6s %9s", "module",
+                "count"));
+        for (double p : PERCENTILES) {
+            header.append(String.format(Locale.ROOT, " %9s", "p" + format(p)));
+        }
+        System.out.println(header.append(String.format(Locale.ROOT, " %9s %9s", "max", "mean"))
+                .append("   (ms)"));
+        printRow("ALL", mTotal);
+        for (Map.Entry<ModuleType, LatencyHistogram> e : mByModule.entrySet()) {
+            printRow(e.getKey().name(), e.getValue());
+        }
+
+        if (mOut != null) {
+            List<String> lines = new ArrayList<>();
+            lines.add("module,percentile,latency_ms,count");
+            mTotal.distribution("ALL", lines);
+            for (Map.Entry<ModuleType, LatencyHistogram> e : mByModule.entrySet()) {
+                e.getValue().distribution(e.getKey().name(), lines);
+            }
+            Files.write(mOut, lines, StandardCharsets.UTF_8);
+            System.out.println("Latency distribution written to " + mOut);
+        }
+
+        int status = 0;
+        if (!mPending.isEmpty()) {
+            System.out.println("FAIL: " + mPending.size() + " response(s) missing after "
+                    + mDrainSec + " s drain");
+            status = 1;
+        }
+        double p99 = mTotal.percentile(99d) / 1000d;
+        if (mSloP99Ms > 0) {
+            boolean met = p99 <= mSloP99Ms;
+            System.out.println(String.format(Locale.ROOT, "%s: p99 %.2f ms, SLO %.2f ms (headroom %.0f%%)",
+                    met ? "OK" : "FAIL", p99, mSloP99Ms, (1d - p99 / mSloP99Ms) * 100d));
+            status = met ? status : 1;
+        }
+        return status;
+    }
+
+    private static void printRow(String pLabel, LatencyHistogram pHistogram) {
+        StringBuilder row = new StringBuilder(String.format(Locale.ROOT, "%-6s %9d", pLabel,
+                pHistogram.count()));
+        for (double p : PERCENTILES) {
+            row.append(String.format(Locale.ROOT, " %9.2f", pHistogram.percentile(p) / 1000d));
+        }
+        System.out.println(row.append(String.format(Locale.ROOT, " %9.2f %9.2f",
+                pHistogram.max() / 1000d, pHistogram.mean() / 1000d)));
+    }
+
+    private static String format(double pValue) {
+        return pValue == Math.rint(pValue) ? String.valueOf((long) pValue) : String.valueOf(pValue);
+    }
+
+    private static boolean anyAlive(List<Thread> pThreads) {
+        for (Thread thread : pThreads) {
+            if (thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Thread start(Thread pThread) {
+        pThread.setDaemon(true);
+        pThread.start();
+        return pThread;
+    }
+
+    // ====================================================================
+    // HISTOGRAM
+    // ====================================================================
+
+    /**
+     * Log-linear latency histogram in microseconds (HDR style): exact below 256 us, then 128
+     * sub-buckets per power of two, i.e. a relative error under 1%. Recording is lock-free.
+     */
+    static final class LatencyHistogram {
+
+        private static final int SUB_BITS = 7;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+        private static final int LINEAR = 2 * SUB_COUNT;
+        private static final int BUCKETS = LINEAR + (63 - (SUB_BITS + 1)) * SUB_COUNT;
+
+        private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+        private final LongAdder mCount = new LongAdder();
+        private final LongAdder mSum = new LongAdder();
+        private final AtomicLong mMax = new AtomicLong();
+
+        void record(long pMicros) {
+            long value = Math.max(0L, pMicros);
+            mCounts.incrementAndGet(index(value));
+            mCount.increment();
+            mSum.add(value);
+            mMax.accumulateAndGet(value, Math::max);
+        }
+
+        long count() {
+            return mCount.sum();
+        }
+
+        long max() {
+            return mMax.get();
+        }
+
+        double mean() {
+            long count = count();
+            return count == 0 ? 0d : (double) mSum.sum() / count;
+        }
+
+        /**
+         * Value at or below which pPercentile % of the recorded values fall (bucket upper bound).
+         */
+        long percentile(double pPercentile) {
+            long total = count();
+            if (total == 0) {
+                return 0L;
+            }
+            long rank = Math.max(1L, (long) Math.ceil(pPercentile / 100d * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += mCounts.get(i);
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max());
+                }
+            }
+            return max();
+        }
+
+        // Percentile distribution at 1 - 1/2^k, as in HDR histogram output
+        void distribution(String pLabel, List<String> pLines) {
+            long total = count();
+            for (int k = 0; k <= 20 && total > 0; k++) {
+                double percentile = (1d - Math.pow(0.5d, k)) * 100d;
+                long rank = (long) Math.ceil(percentile / 100d * total);
+                pLines.add(String.format(Locale.ROOT, "%s,%.6f,%.3f,%d", pLabel, percentile,
+                        percentile(percentile) / 1000d, rank));
+                if (rank >= total) {
+                    break;
+                }
+            }
+            pLines.add(String.format(Locale.ROOT, "%s,100.000000,%.3f,%d", pLabel, max() / 1000d,
+                    total));
+        }
+
+        static int index(long pValue) {
+            if (pValue < LINEAR) {
+                return (int) pValue;
+            }
+            int msb = 63 - Long.numberOfLeadingZeros(pValue);
+            int sub = (int) (pValue >>> (msb - SUB_BITS)) & (SUB_COUNT - 1);
+            return LINEAR + (msb - (SUB_BITS + 1)) * SUB_COUNT + sub;
+        }
+
+        // Highest value that falls into a bucket
+        static long upperBound(int pIndex) {
+            if (pIndex < LINEAR) {
+                return pIndex;
+            }
+            int msb = (pIndex - LINEAR) / SUB_COUNT + SUB_BITS + 1;
+            int sub = (pIndex - LINEAR) % SUB_COUNT;
+            long width = 1L << (msb - SUB_BITS);
+            return ((long) (SUB_COUNT + sub) << (msb - SUB_BITS)) + width - 1;
+        }
+    }
+}
@@ -12,6 +12,7 @@ import java.util.Enumeration;
 import java.util.Properties;
 import java.util.Scanner;
 
+import javax.jms.Connection;
 import javax.jms.JMSConsumer;
 import javax.jms.JMSContext;
 import javax.jms.JMSException;
@@ -20,6 +21,9 @@ import javax.jms.Queue;
 import javax.jms.QueueBrowser;
 import javax.jms.TextMessage;
 
+import com.cbn.bloomberg.util.CbnTfBrowsing;
+import com.cbn.bloomberg.util.CbnTfPartitioning;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.ibm.mq.jms.MQConnectionFactory;
 import com.ibm.msg.client.wmq.WMQConstants;
 
@@ -36,6 +40,7 @@ public class BloombergWmqManager {
     private static final String PROPERTIES_FILE = "bloomberg.properties";
     private static Properties mqProperties;
     private static MQConnectionFactory mqFactory;
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
 
     public static void main(String[] args) {
         System.out.println("========================================");
@@ -164,6 +169,9 @@ public class BloombergWmqManager {
             message.setStringProperty("SourceFile", jsonFile.getFileName().toString());
             message.setStringProperty("PushedBy", "BloombergMqProducer");
             message.setLongProperty("PushedTimestamp", System.currentTimeMillis());
+            // Routing property: lets module adapters browse with a selector
+            CbnTfBrowsing.stampModuleType(message, jsonContent, JSON_MAPPER);
+            CbnTfPartitioning.stampPartition(message, jsonContent, JSON_MAPPER, partitionCount());
 
             context.createProducer().send(queue, message);
 
@@ -216,6 +224,9 @@ public class BloombergWmqManager {
                         message.setStringProperty("SourceFile", file.getFileName().toString());
                         message.setStringProperty("PushedBy", "BloombergMqProducer");
                         message.setLongProperty("PushedTimestamp", System.currentTimeMillis());
+                        CbnTfBrowsing.stampModuleType(message, jsonContent, JSON_MAPPER);
+                        CbnTfPartitioning.stampPartition(message, jsonContent, JSON_MAPPER,
+                                partitionCount());
 
                         context.createProducer().send(queue, message);
                         successCount++;
@@ -609,7 +620,16 @@ public class BloombergWmqManager {
 
     // ========== MQ CONNECTION HELPERS ==========
 
-    private static void loadMqConfiguration() throws IOException, JMSException {
+    // Partitions of the consuming services (tf.wmq.partition.count), 0 = not partitioned
+    static int partitionCount() {
+        try {
+            return Integer.parseInt(mqProperties.getProperty("mq.partition.count", "0").trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static void loadMqConfiguration() throws IOException, JMSException {
         mqProperties = new Properties();
 
         // 1) Try to load from classpath (src/main/resources)
@@ -656,6 +676,19 @@ public class BloombergWmqManager {
         mqFactory.setStringProperty(WMQConstants.WMQ_QUEUE_MANAGER, mqProperties.getProperty("mq.qmgr"));
     }
 
+    static Properties getMqProperties() {
+        return mqProperties;
+    }
+
+    // Classic JMS connection, for tools that run several sessions (BloombergWmqLoadGenerator)
+    static Connection createMqConnection() throws JMSException {
+        String user = mqProperties.getProperty("mq.user", "").trim();
+        if (user.isEmpty()) {
+            return mqFactory.createConnection();
+        }
+        return mqFactory.createConnection(user, mqProperties.getProperty("mq.password", ""));
+    }
+
     private static JMSContext createMqContext() throws JMSException {
         return createMqContext(JMSContext.AUTO_ACKNOWLEDGE);
     }
@@ -0,0 +1,196 @@
+package com.mcbc.bbg.ci.commissions;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.temenos.api.TField;
+import com.temenos.t24.api.records.transaction.TransactionRecord;
+import com.temenos.t24.api.system.DataAccess;
+import com.temenos.t24.api.tables.ebcommonparambbgsn.EbCommonParamBbgSnRecord;
+import com.temenos.t24.api.tables.ebcommonparambbgsn.ParamNameClass;
+
+/**
+ * Reference data shared by the commission calculators for one COB run.
+ *
+ * CsdUpdateChargeAmt, CsdUpdateDepassmentChg, computeCommission and computeCommDecou used to read
+ * and parse EB.COMMON.PARAM.BBG.SN>COMMISSION.BBCI for every arrangement and read TRANSACTION for
+ * every STMT.ENTRY. They are now read once here: the commission parameters as immutable sets and
+ * TRANSACTION initiations by code.
+ *
+ * The cache belongs to a run date (TODAY of the company being processed). {@link #forRun(String)}
+ * starts a new cache when the date changes. The parameter record is used as is for
+ * bbg.param.probe.ms (default 30000) after it was last checked; the next lookup then reads it
+ * again and parses it again only when its CURR.NO has changed, so an amendment authorised during
+ * the run is picked up within the probe interval. Records that cannot be read are not cached, so
+ * the caller's exception handling is unchanged.
+ *
+ * @author suyaga
+ *
+ */
+public final class CommissionReferenceCache {
+
+    public static final String PARAM_TABLE = "EB.COMMON.PARAM.BBG.SN";
+    public static final String PARAM_ID = "COMMISSION.BBCI";
+
+    private static final long PROBE_INTERVAL_MS = Long.getLong("bbg.param.probe.ms", 30000L);
+
+    private static volatile CommissionReferenceCache current;
+
+    private final String runDate;
+    private final Map<String, String> txnInitiations = new ConcurrentHashMap<>();
+    private volatile CommissionParams params;
+
+    private CommissionReferenceCache(String runDate) {
+        this.runDate = runDate;
+    }
+
+    /**
+     * Returns the cache of a run, replacing the current one if it belongs to another run date.
+     *
+     * @param runDate TODAY of the run (yyyyMMdd)
+     */
+    public static CommissionReferenceCache forRun(String runDate) {
+        String key = runDate == null ? "" : runDate;
+        CommissionReferenceCache cache = current;
+        if (cache != null && cache.runDate.equals(key)) {
+            return cache;
+        }
+        synchronized (CommissionReferenceCache.class) {
+            if (current == null || !current.runDate.equals(key)) {
+                current = new CommissionReferenceCache(key);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Category and exclusion lists of EB.COMMON.PARAM.BBG.SN>COMMISSION.BBCI.
+     */
+    public CommissionParams getCommissionParams(DataAccess da) {
+        long now = System.currentTimeMillis();
+        CommissionParams p = params;
+        if (p != null && now - p.checkedAt < PROBE_INTERVAL_MS) {
+            return p;
+        }
+        synchronized (this) {
+            p = params;
+            if (p != null && now - p.checkedAt < PROBE_INTERVAL_MS) {
+                return p;
+            }
+            EbCommonParamBbgSnRecord comParRec = new EbCommonParamBbgSnRecord(
+                    da.getRecord(PARAM_TABLE, PARAM_ID));
+            String currNo = comParRec.getCurrNo().toString();
+            if (p == null || !p.currNo.equals(currNo)) {
+                p = CommissionParams.parse(currNo, comParRec);
+                params = p;
+            }
+            p.checkedAt = now;
+            return p;
+        }
+    }
+
+    /**
+     * INITIATION of a TRANSACTION code (CUSTOMER, BANK, ...).
+     */
+    public String getTransactionInitiation(DataAccess da, String txnCode) {
+        String initiation = txnInitiations.get(txnCode);
+        if (initiation == null) {
+            TransactionRecord txnRec = new TransactionRecord(da.getRecord("TRANSACTION", txnCode));
+            initiation = txnRec.getInitiation().getValue().toString();
+            txnInitiations.put(txnCode, initiation);
+        }
+        return initiation;
+    }
+
+    public String getRunDate() {
+        return runDate;
+    }
+
+    /**
+     * Immutable commission parameter lists, for constant time membership checks.
+     */
+    public static final class CommissionParams {
+
+        private final String currNo;
+        private final Set<String> categMouv;
+        private final Set<String> txnsExcMouve;
+        private final Set<String> categDepass;
+        private final Set<String> txnsExcDepass;
+        private final Set<String> categDecouv;
+
+        // Last time CURR.NO was compared with the record
+        private volatile long checkedAt;
+
+        private CommissionParams(String currNo, Set<String> categMouv, Set<String> txnsExcMouve,
+                Set<String> categDepass, Set<String> txnsExcDepass, Set<String> categDecouv) {
+            this.currNo = currNo;
+            this.categMouv = Collections.unmodifiableSet(categMouv);
+            this.txnsExcMouve = Collections.unmodifiableSet(txnsExcMouve);
+            this.categDepass = Collections.unmodifiableSet(categDepass);
+            this.txnsExcDepass = Collections.unmodifiableSet(txnsExcDepass);
+            this.categDecouv = Collections.unmodifiableSet(categDecouv);
+        }
+
+        static CommissionParams parse(String currNo, EbCommonParamBbgSnRecord comParRec) {
+            Set<String> categMouv = new HashSet<>();
+            Set<String> txnsExcMouve = new HashSet<>();
+            Set<String> categDepass = new HashSet<>();
+            Set<String> txnsExcDepass = new HashSet<>();
+            Set<String> categDecouv = new HashSet<>();
+
+            List<ParamNameClass> paramVal = comParRec.getParamName();
+            for (int i = 0; i < paramVal.size(); i++) {
+                String paramName = paramVal.get(i).getParamName().getValue().toString().toUpperCase();
+                List<TField> values = comParRec.getParamName(i).getParamValue();
+
+                switch (paramName) {
+                    case "CATEGORY.MOUVEMENT":
+                        for (TField val : values) categMouv.add(val.getValue().toString());
+                        break;
+                    case "TXNS.EXCLUDE.MOUVE":
+                        for (TField val : values) txnsExcMouve.add(val.getValue().toString());
+                        break;
+                    case "CATEGORY.DEPASSEMENT":
+                        for (TField val : values) categDepass.add(val.getValue().toString());
+                        break;
+                    case "EXCLUDED.TXN.DEPASSE":
+                        for (TField val : values) txnsExcDepass.add(val.getValue().toString());
+                        break;
+                    case "CATEGORY.DECOUVERT":
+                        for (TField val : values) categDecouv.add(val.getValue().toString());
+                        break;
+                }
+            }
+            return new CommissionParams(currNo, categMouv, txnsExcMouve, categDepass, txnsExcDepass,
+                    categDecouv);
+        }
+
+        public String getCurrNo() {
+            return currNo;
+        }
+
+        public Set<String> getCategMouv() {
+            return categMouv;
+        }
+
+        public Set<String> getTxnsExcMouve() {
+            return txnsExcMouve;
+        }
+
+        public Set<String> getCategDepass() {
+            return categDepass;
+        }
+
+        public Set<String> getTxnsExcDepass() {
+            return txnsExcDepass;
+        }
+
+        public Set<String> getCategDecouv() {
+            return categDecouv;
+        }
+    }
+}
@@ -13,6 +13,7 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.temenos.api.TDate;
 import com.temenos.api.TField;
@@ -43,11 +44,8 @@ import com.temenos.t24.api.tables.ebcommaccopenbalance.EbCommAccOpenBalanceRecor
 import com.temenos.t24.api.tables.ebcommaccopenbalance.EbCommAccOpenBalanceTable;
 import com.temenos.t24.api.tables.ebcommcrdrtxn.EbCommCrDrTxnRecord;
 import com.temenos.t24.api.tables.ebcommcrdrtxn.EbCommCrDrTxnTable;
-import com.temenos.t24.api.tables.ebcommcrdrtxn.TransactionRefClass;
 import com.temenos.t24.api.tables.ebcommhighestovdtxn.EbCommHighestOvdTxnRecord;
 import com.temenos.t24.api.tables.ebcommhighestovdtxn.EbCommHighestOvdTxnTable;
-import com.temenos.t24.api.tables.ebcommonparambbgsn.EbCommonParamBbgSnRecord;
-import com.temenos.t24.api.tables.ebcommonparambbgsn.ParamNameClass;
 import com.temenos.t24.api.tables.ebcommovdtxn.EbCommOvdTxnRecord;
 import com.temenos.t24.api.tables.ebcommovdtxn.EbCommOvdTxnTable;
 import com.temenos.t24.api.tables.eblegacycommissionamt.*;
@@ -109,7 +107,6 @@ public class CsdUpdateChargeAmt extends Calculation {
         String ArrStDate = "";
         TransactionRecord TxnRec = new TransactionRecord();
         Double NewChgAmtComDepass = 0.0;
-        EbCommonParamBbgSnRecord ComParRec = new EbCommonParamBbgSnRecord();
         String TodayDate = getTodayDate();
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd");
         boolean eomCob = false;
@@ -200,65 +197,21 @@ public class CsdUpdateChargeAmt extends Calculation {
 
             // START*GET THE VALID CATEGORY OF ACC FROM PARAM TABLE//
 
-            List<ParamNameClass> ParamVal = null;
+            CommissionReferenceCache RefCache = CommissionReferenceCache.forRun(TodayDate);
+            Set<String> CategMouv = Collections.emptySet();
+            Set<String> CategDecouv = Collections.emptySet();
+            Set<String> TxnsExcMouve = Collections.emptySet();
 
             try {
-                ComParRec = new EbCommonParamBbgSnRecord(
-                        getDataAccessObject().getRecord("EB.COMMON.PARAM.BBG.SN", "COMMISSION.BBCI"));
-                ParamVal = ComParRec.getParamName();
-//                System.out.println("ParamVal = " + ParamVal);
-            } catch (Exception e) {
-            }
-
-            ArrayList<String> CategMouv = new ArrayList<String>();
-            ArrayList<String> CategDepass = new ArrayList<String>();
-            ArrayList<String> CategDecouv = new ArrayList<String>();
-            ArrayList<String> TxnsExcMouve = new ArrayList<String>();
-            ArrayList<String> TxnsExcDepass = new ArrayList<String>();
-
-            try {
-                for (int i = 0; i < ParamVal.size(); i++) {
-                    String ParamName = ParamVal.get(i).getParamName().getValue().toString();
-                    if (ParamName.equalsIgnoreCase("CATEGORY.MOUVEMENT")
-                            || ParamName.equalsIgnoreCase("TXNS.EXCLUDE.MOUVE")
-                            || ParamName.equalsIgnoreCase("CATEGORY.DEPASSEMENT")
-                            || ParamName.equalsIgnoreCase("EXCLUDED.TXN.DEPASSE")
-                            || ParamName.equalsIgnoreCase("CATEGORY.DECOUVERT")
-                            || ParamName.equalsIgnoreCase("CATEGORY.DECOUVERT")) {
-                        if (ParamName.equalsIgnoreCase("CATEGORY.MOUVEMENT")) {
-                            List<TField> ParamValNames = ComParRec.getParamName(i).getParamValue();
-                            for (int j = 0; j < ParamValNames.size(); j++) {
-                                CategMouv.add(ComParRec.getParamName(i).getParamValue(j).getValue().toString());
-                            }
-                        } else if (ParamName.equalsIgnoreCase("TXNS.EXCLUDE.MOUVE")) {
-                            List<TField> ParamValNames = ComParRec.getParamName(i).getParamValue();
-                            for (int j = 0; j < ParamValNames.size(); j++) {
-                                TxnsExcMouve.add(ComParRec.getParamName(i).getParamValue(j).getValue().toString());
-                            }
-                        } else if (ParamName.equalsIgnoreCase("CATEGORY.DEPASSEMENT")) {
-                            List<TField> ParamValNames = ComParRec.getParamName(i).getParamValue();
-                            for (int j = 0; j < ParamValNames.size(); j++) {
-                                CategDepass.add(ComParRec.getParamName(i).getParamValue(j).getValue().toString());
-                            }
-                        } else if (ParamName.equalsIgnoreCase("EXCLUDED.TXN.DEPASSE")) {
-                            List<TField> ParamValNames = ComParRec.getParamName(i).getParamValue();
-                            for (int j = 0; j < ParamValNames.size(); j++) {
-                                TxnsExcDepass.add(ComParRec.getParamName(i).getParamValue(j).getValue().toString());
-                            }
-                        } else if (ParamName.equalsIgnoreCase("CATEGORY.DECOUVERT")) {
-                            List<TField> ParamValNames = ComParRec.getParamName(i).getParamValue();
-                            for (int j = 0; j < ParamValNames.size(); j++) {
-                                CategDecouv.add(ComParRec.getParamName(i).getParamValue(j).getValue().toString());
-                            }
-                        }
-                    }
-                }
+                CommissionReferenceCache.CommissionParams ComParams = RefCache
+                        .getCommissionParams(getDataAccessObject());
+                CategMouv = ComParams.getCategMouv();
+                CategDecouv = ComParams.getCategDecouv();
+                TxnsExcMouve = ComParams.getTxnsExcMouve();
 
 //                System.out.println("CategMouv = " + CategMouv);
-//                System.out.println("CategDepass = " + CategDepass);
 //                System.out.println("CategDecouv = " + CategDecouv);
 //                System.out.println("TxnsExcMouve = " + TxnsExcMouve);
-//                System.out.println("TxnsExcDepass = " + TxnsExcDepass);
 
             } catch (Exception e) {
             }
@@ -295,12 +248,11 @@ public class CsdUpdateChargeAmt extends Calculation {
 
             } catch (Exception e) {
             }
-            TDate EDay = null;
-            String EeDay = null;
             String StDay = null;
             TDate SDay = null;
 
-            if (ChgProp.equalsIgnoreCase("BBCICOMMOUVE")) {
+            // Entries only count for accounts of a CATEGORY.MOUVEMENT category
+            if (ChgProp.equalsIgnoreCase("BBCICOMMOUVE") && CategMouv.contains(Categ)) {
                 try {
 
 //                    System.out.println("L1");
@@ -326,24 +278,7 @@ public class CsdUpdateChargeAmt extends Calculation {
             }
 
             if (ChgProp.equalsIgnoreCase("BBCICOMDECOU")) {
-                try {
-//                    System.out.println("L1");
-                    LocalDate EndDay = LocalDate.parse(EndDate.toString(), formatter);
-//                    System.out.println("L2");
-//                    System.out.println("EndDay = " + EndDay);
-                    EeDay = EndDay.minusDays(1).format(formatter);
-//                    System.out.println("L3");
-//                    System.out.println("EeDay = " + EeDay);
-                    EDay = new TDate(EeDay);
-//                    System.out.println("L4");
-//                    System.out.println("End Date after subtraction = " + EDay);
-//                    System.out.println("L5");
-                    StmtEntList = Ac.getEntries("VALUE", "", "", "", StDate, EDay);
-//                    System.out.println("L6");
-//                    System.out.println("StmtEntList = " + StmtEntList);
-
-                } catch (Exception e) {
-                }
+                // Calculated from AA.INTEREST.ACCRUALS, the entries are not needed
             }
 
             else if (ChgProp.equalsIgnoreCase("BBCICOMDEPASS")) {
@@ -431,88 +366,13 @@ public class CsdUpdateChargeAmt extends Calculation {
                                                                    // to 0 and
                                                                    // not null;
                     {
-                        for (int i = 0; i < StmtEntList.size(); i++) {
-
-                            String StmtEntId = StmtEntList.get(i);
-                            System.out.println("StmtEntId = " + StmtEntId);
-                            StmtEntRec = new StmtEntryRecord(getDataAccessObject().getRecord("STMT.ENTRY", StmtEntId));
-                            String TxnCode = StmtEntRec.getTransactionCode().getValue().toString();
-//                            System.out.println("TxnCode = " + TxnCode);
-                            String TxnValDate = StmtEntRec.getValueDate().getValue().toString();
-//                            System.out.println("TxnValDate = " + TxnValDate);
-                            Double AmtLcy = Double.parseDouble(StmtEntRec.getAmountLcy().getValue().toString());
-//                            System.out.println("AmtLcy = " + AmtLcy);
-                            TransactionRecord TranRec = new TransactionRecord();
-                            TranRec = new TransactionRecord(getDataAccessObject().getRecord("TRANSACTION", TxnCode));
-                            String Init = TranRec.getInitiation().getValue().toString();
-//                            System.out.println("Init = " + Init);
-
-                            if (Init.equalsIgnoreCase("CUSTOMER") && CategMouv.contains(Categ)
-                                    && !TxnsExcMouve.contains(TxnCode)) {
-                                if (CommMouve.equalsIgnoreCase("default")) {
-                                    TotTxnAmt = TotTxnAmt + Math.abs((AmtLcy));
-//                                    System.out.println("TotTxnAmt = " + TotTxnAmt);
-//                                    System.out.println("CommMouve = " + CommMouve);
-
-                                    // START***SETTING THE VALUES IN LOCAL TABLE
-
-                                    ComCrDrRec.setAccountId(AccNo);
-                                    TransactionRefClass param = new TransactionRefClass();
-                                    param.setTransactionRef(StmtEntId);
-                                    param.setAmount(AmtLcy.toString());
-                                    param.setDate(TxnValDate);
-
-                                    if (AmtLcy > 0) {
-                                        TotTxnCrAmt += AmtLcy;
-                                        param.setDebCre("CR");
-                                    } else if (AmtLcy < 0) {
-                                        TotTxnDrAmt += AmtLcy;
-                                        param.setDebCre("DR");
-                                    }
-                                    ComCrDrRec.addTransactionRef(param);
-//                                    System.out.println("ComCrDrRec = " + ComCrDrRec);
-
-                                    // END***SETTING THE VALUES IN LOCAL TABLE
-
-                                } else if (CommMouve.equalsIgnoreCase("credit") && (AmtLcy > 0)) {
-                                    TotCrAmt += AmtLcy;
-//                                    System.out.println("TotTxnAmt = " + TotTxnAmt);
-//                                    System.out.println("CommMouve = " + CommMouve);
-
-                                    // START***SETTING THE VALUES IN LOCAL TABLE
-
-                                    ComCrDrRec.setAccountId(AccNo);
-                                    TransactionRefClass param = new TransactionRefClass();
-                                    param.setTransactionRef(StmtEntId);
-                                    param.setAmount(AmtLcy.toString());
-                                    param.setDate(TxnValDate);
-                                    param.setDebCre("CR");
-                                    ComCrDrRec.addTransactionRef(param);
-//                                    System.out.println("ComCrDrRec = " + ComCrDrRec);
-
-                                    // END***SETTING THE VALUES IN LOCAL TABLE
-                                } else if (CommMouve.equalsIgnoreCase("DR ONLY") && (AmtLcy < 0)) {
-                                    TotDrAmt += AmtLcy;
-//                                    System.out.println("TotTxnAmt = " + TotTxnAmt);
-//                                    System.out.println("CommMouve = " + CommMouve);
-
-                                    // START***SETTING THE VALUES IN LOCAL TABLE
-
-                                    ComCrDrRec.setAccountId(AccNo);
-                                    TransactionRefClass param = new TransactionRefClass();
-                                    param.setTransactionRef(StmtEntId);
-                                    param.setAmount(AmtLcy.toString());
-                                    param.setDate(TxnValDate);
-                                    param.setDebCre("DR");
-                                    ComCrDrRec.addTransactionRef(param);
-                                    System.out.println("ComCrDrRec = " + ComCrDrRec);
-
-                                    // END***SETTING THE VALUES IN LOCAL TABLE
-
-                                }
-                            }
-
-                        }
+                        StmtEntryAggregator.Totals EntTotals = new StmtEntryAggregator(getDataAccessObject(),
+                                RefCache, TxnsExcMouve, CommMouve).aggregate(StmtEntList);
+                        TotTxnAmt = EntTotals.getAbsTotal();
+                        TotTxnCrAmt = EntTotals.getCrTotal();
+                        TotTxnDrAmt = EntTotals.getDrTotal();
+                        TotCrAmt = EntTotals.getCrTotal();
+                        TotDrAmt = EntTotals.getDrTotal();
 
                         if (CommMouve.equalsIgnoreCase("default") && !TotTxnAmt.equals(0.0)) {
                             System.out.println("Setting the values for default ");
@@ -556,6 +416,8 @@ public class CsdUpdateChargeAmt extends Calculation {
 
                         try {
                             if (!NewChgAmt.equals(0.0)) {
+                                ComCrDrRec.setAccountId(AccNo);
+                                EntTotals.addTransactionRefs(ComCrDrRec);
                                 System.out.println("Write the file ComCrDrRec = " + ComCrDrRec);
                                 System.out.println("SetId = " + SetId);
                                 ComCrDrTab.write(SetId, ComCrDrRec);
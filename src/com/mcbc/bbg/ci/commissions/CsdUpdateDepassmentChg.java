@@ -2,7 +2,6 @@ package com.mcbc.bbg.ci.commissions;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -10,9 +9,9 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.temenos.api.TDate;
-import com.temenos.api.TField;
 import com.temenos.api.TNumber;
 import com.temenos.api.TString;
 import com.temenos.api.TStructure;
@@ -36,8 +35,6 @@ import com.temenos.t24.api.records.transaction.TransactionRecord;
 import com.temenos.t24.api.system.DataAccess;
 import com.temenos.t24.api.system.Date;
 import com.temenos.t24.api.tables.ebcommaccopenbalance.EbCommAccOpenBalanceRecord;
-import com.temenos.t24.api.tables.ebcommonparambbgsn.EbCommonParamBbgSnRecord;
-import com.temenos.t24.api.tables.ebcommonparambbgsn.ParamNameClass;
 import com.temenos.t24.api.tables.ebcommovdtxn.EbCommOvdTxnRecord;
 import com.temenos.t24.api.tables.ebcommovdtxn.EbCommOvdTxnTable;
 import com.temenos.t24.api.complex.ac.accountapi.*;
@@ -72,7 +69,6 @@ public class CsdUpdateDepassmentChg extends Calculation {
         AccountRecord AccRec = new AccountRecord();String LimitId = "";String ChType = "";Double AmtLcy = 0.0;
         StmtEntryRecord StmtEntRec = new StmtEntryRecord();String ArrStDate = "";
         TransactionRecord TxnRec = new TransactionRecord(); Double NewChgAmtComDepass = 0.0;
-        EbCommonParamBbgSnRecord ComParRec = new EbCommonParamBbgSnRecord();
         String TodayDate = getTodayDate(); 
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyyMMdd");
 
@@ -96,43 +92,14 @@ public class CsdUpdateDepassmentChg extends Calculation {
         } catch (Exception  e) {}
 
 
-        List<ParamNameClass> ParamVal = null;
+        Set<String> CategDepass = Collections.emptySet();
+        Set<String> TxnsExcDepass = Collections.emptySet();
 
         try{
-            ComParRec = new EbCommonParamBbgSnRecord(getDataAccessObject().getRecord("EB.COMMON.PARAM.BBG.SN","COMMISSION.BBCI"));
-            ParamVal = ComParRec.getParamName();
-            System.out.println("ParamVal = "+ParamVal);
-        } catch (Exception e) {}
-
-        ArrayList<String> CategDepass = new ArrayList<String>();
-        ArrayList<String> TxnsExcDepass = new ArrayList<String>();
-
-        try{        
-            for (int i=0;i<ParamVal.size();i++)
-            {
-                String ParamName = ParamVal.get(i).getParamName().getValue().toString();
-                if ( ParamName.equalsIgnoreCase("CATEGORY.DEPASSEMENT") ||  ParamName.equalsIgnoreCase("EXCLUDED.TXN.DEPASSE") )
-                {
-
-                    if (ParamName.equalsIgnoreCase("CATEGORY.DEPASSEMENT"))
-                    {
-                        List<TField> ParamValNames = ComParRec.getParamName(i).getParamValue();
-                        for (int j=0;j<ParamValNames.size();j++)
-                        {
-                            CategDepass.add(ComParRec.getParamName(i).getParamValue(j).getValue().toString());
-                        }
-                    }
-                    else if (ParamName.equalsIgnoreCase("EXCLUDED.TXN.DEPASSE"))
-                    {
-                        List<TField> ParamValNames = ComParRec.getParamName(i).getParamValue();
-                        for (int j=0;j<ParamValNames.size();j++)
-                        {
-                            TxnsExcDepass.add(ComParRec.getParamName(i).getParamValue(j).getValue().toString());
-                        }
-                    }
-
-                }
-            } 
+            CommissionReferenceCache.CommissionParams ComParams = CommissionReferenceCache.forRun(TodayDate)
+                    .getCommissionParams(getDataAccessObject());
+            CategDepass = ComParams.getCategDepass();
+            TxnsExcDepass = ComParams.getTxnsExcDepass();
 
             System.out.println("CategDepass = "+CategDepass);
             System.out.println("TxnsExcDepass = "+TxnsExcDepass);
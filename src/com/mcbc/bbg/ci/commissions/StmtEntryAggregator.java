@@ -0,0 +1,237 @@
+package com.mcbc.bbg.ci.commissions;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import com.temenos.t24.api.records.stmtentry.StmtEntryRecord;
+import com.temenos.t24.api.system.DataAccess;
+import com.temenos.t24.api.tables.ebcommcrdrtxn.EbCommCrDrTxnRecord;
+import com.temenos.t24.api.tables.ebcommcrdrtxn.TransactionRefClass;
+
+/**
+ * Sums the customer initiated STMT.ENTRY amounts of an account for the BBCICOMMOUVE commission.
+ *
+ * The calculators used to sum each entry into boxed Double totals, print every entry id and add a
+ * TransactionRefClass to EB.COMM.CR.DR.TXN as they went, even when no charge was written in the
+ * end. Here each entry is read once, its amount is added in exact thousandths to primitive long
+ * totals, and only the id, value date and amount of the entries that count for the L.COMMOUVE mode
+ * are kept. {@link Totals#addTransactionRefs(EbCommCrDrTxnRecord)} builds the transaction ref list
+ * once the caller knows the record will be written.
+ *
+ * An entry counts when its TRANSACTION initiation is CUSTOMER and its transaction code is not
+ * excluded (TXNS.EXCLUDE.MOUVE). The account category check does not depend on the entry, so the
+ * caller does it before reading the entries at all.
+ *
+ * @author suyaga
+ *
+ */
+public final class StmtEntryAggregator {
+
+    /** Decimal places kept by the totals (minor units of every LCY) */
+    public static final int AMOUNT_SCALE = 3;
+
+    private static final long SCALE_FACTOR = 1000L;
+
+    private final DataAccess da;
+    private final CommissionReferenceCache refCache;
+    private final Set<String> excludedTxns;
+    private final Mode mode;
+
+    /** L.COMMOUVE of the BBCICOMMOUVE charge: which entries are charged */
+    public enum Mode {
+        DEFAULT, CREDIT, DR_ONLY, NONE;
+
+        public static Mode of(String commMouve) {
+            if (commMouve == null) {
+                return NONE;
+            }
+            switch (commMouve.toLowerCase()) {
+                case "default":
+                    return DEFAULT;
+                case "credit":
+                    return CREDIT;
+                case "dr only":
+                    return DR_ONLY;
+                default:
+                    return NONE;
+            }
+        }
+    }
+
+    public StmtEntryAggregator(DataAccess da, CommissionReferenceCache refCache, Set<String> excludedTxns,
+            String commMouve) {
+        this.da = da;
+        this.refCache = refCache;
+        this.excludedTxns = excludedTxns == null ? Collections.<String> emptySet() : excludedTxns;
+        this.mode = Mode.of(commMouve);
+    }
+
+    /**
+     * Reads and sums the entries. A failed read or an unparsable amount is thrown to the caller, as
+     * with the former per-entry loops.
+     *
+     * @param stmtEntIds STMT.ENTRY ids from Account.getEntries
+     */
+    public Totals aggregate(List<String> stmtEntIds) {
+        Totals totals = new Totals(mode);
+        if (stmtEntIds == null) {
+            return totals;
+        }
+        for (String stmtEntId : stmtEntIds) {
+            StmtEntryRecord stmtEntRec = new StmtEntryRecord(da.getRecord("STMT.ENTRY", stmtEntId));
+            String txnCode = stmtEntRec.getTransactionCode().getValue().toString();
+            String amount = stmtEntRec.getAmountLcy().getValue().toString();
+            long amountMinor = toMinorUnits(amount);
+
+            if (excludedTxns.contains(txnCode)
+                    || !"CUSTOMER".equalsIgnoreCase(refCache.getTransactionInitiation(da, txnCode))) {
+                continue;
+            }
+            totals.add(stmtEntId, stmtEntRec.getValueDate().getValue().toString(), amount, amountMinor);
+        }
+        return totals;
+    }
+
+    /**
+     * Parses an amount into thousandths without going through double. Amounts with more decimals
+     * are rounded half up.
+     */
+    static long toMinorUnits(String amount) {
+        String s = amount.trim();
+        int len = s.length();
+        int i = 0;
+        boolean negative = false;
+        if (len > 0 && (s.charAt(0) == '-' || s.charAt(0) == '+')) {
+            negative = s.charAt(0) == '-';
+            i = 1;
+        }
+        long units = 0;
+        int digits = 0;
+        int decimals = -1;
+        for (; i < len; i++) {
+            char c = s.charAt(i);
+            if (c == '.' && decimals < 0) {
+                decimals = 0;
+                continue;
+            }
+            if (c < '0' || c > '9' || decimals == AMOUNT_SCALE || digits > 15) {
+                return new BigDecimal(s).setScale(AMOUNT_SCALE, RoundingMode.HALF_UP).unscaledValue()
+                        .longValueExact();
+            }
+            units = units * 10 + (c - '0');
+            digits++;
+            if (decimals >= 0) {
+                decimals++;
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Invalid amount: \"" + amount + "\"");
+        }
+        for (int d = Math.max(decimals, 0); d < AMOUNT_SCALE; d++) {
+            units *= 10;
+        }
+        return negative ? -units : units;
+    }
+
+    /**
+     * Totals of the counted entries and the entries charged under the L.COMMOUVE mode.
+     */
+    public static final class Totals {
+
+        private final Mode mode;
+
+        private long absTotal;
+        private long crTotal;
+        private long drTotal;
+        private int count;
+
+        // Charged entries, in entry order
+        private int size;
+        private String[] ids = new String[16];
+        private String[] valueDates = new String[16];
+        private String[] amounts = new String[16];
+        private long[] amountsMinor = new long[16];
+
+        Totals(Mode mode) {
+            this.mode = mode;
+        }
+
+        void add(String id, String valueDate, String amount, long amountMinor) {
+            count++;
+            absTotal = Math.addExact(absTotal, Math.abs(amountMinor));
+            if (amountMinor > 0) {
+                crTotal = Math.addExact(crTotal, amountMinor);
+            } else if (amountMinor < 0) {
+                drTotal = Math.addExact(drTotal, amountMinor);
+            }
+            boolean charged = mode == Mode.DEFAULT || (mode == Mode.CREDIT && amountMinor > 0)
+                    || (mode == Mode.DR_ONLY && amountMinor < 0);
+            if (!charged) {
+                return;
+            }
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                valueDates = Arrays.copyOf(valueDates, capacity);
+                amounts = Arrays.copyOf(amounts, capacity);
+                amountsMinor = Arrays.copyOf(amountsMinor, capacity);
+            }
+            ids[size] = id;
+            valueDates[size] = valueDate;
+            amounts[size] = amount;
+            amountsMinor[size] = amountMinor;
+            size++;
+        }
+
+        /** Sum of the absolute amounts (L.COMMOUVE default) */
+        public double getAbsTotal() {
+            return toDouble(absTotal);
+        }
+
+        /** Sum of the credit amounts */
+        public double getCrTotal() {
+            return toDouble(crTotal);
+        }
+
+        /** Sum of the debit amounts, negative */
+        public double getDrTotal() {
+            return toDouble(drTotal);
+        }
+
+        /** Number of customer initiated, not excluded entries */
+        public int getCount() {
+            return count;
+        }
+
+        /** Number of entries charged under the mode */
+        public int getChargedCount() {
+            return size;
+        }
+
+        /**
+         * Adds the charged entries to the TRANSACTION.REF list of EB.COMM.CR.DR.TXN.
+         */
+        public void addTransactionRefs(EbCommCrDrTxnRecord comCrDrRec) {
+            for (int i = 0; i < size; i++) {
+                TransactionRefClass param = new TransactionRefClass();
+                param.setTransactionRef(ids[i]);
+                param.setAmount(amounts[i]);
+                param.setDate(valueDates[i]);
+                if (amountsMinor[i] > 0) {
+                    param.setDebCre("CR");
+                } else if (amountsMinor[i] < 0) {
+                    param.setDebCre("DR");
+                }
+                comCrDrRec.addTransactionRef(param);
+            }
+        }
+
+        private static double toDouble(long minor) {
+            return (double) minor / SCALE_FACTOR;
+        }
+    }
+}
@@ -18,8 +18,6 @@ import com.temenos.t24.api.records.dates.DatesRecord;
 import com.temenos.t24.api.system.DataAccess;
 import com.temenos.t24.api.system.Date;
 import com.temenos.t24.api.system.Session;
-import com.temenos.t24.api.tables.ebcommonparambbgsn.EbCommonParamBbgSnRecord;
-import com.temenos.t24.api.tables.ebcommonparambbgsn.ParamNameClass;
 
 
 import java.io.BufferedWriter;
@@ -69,47 +67,16 @@ public class computeCommDecou extends ServiceLifecycle {
     @Override
     public void process(String id, ServiceData serviceData, String controlItem) {
         // TODO Auto-generated method stub
-        List<ParamNameClass> paramVal;
-        EbCommonParamBbgSnRecord comParRec;
-
-        // Category and exclusion lists
-        Set<String> categMouv = new HashSet<>();
-        Set<String> categDepass = new HashSet<>();
-        Set<String> categDecouv = new HashSet<>();
-        Set<String> txnsExcMouve = new HashSet<>();
-        Set<String> txnsExcDepass = new HashSet<>();
-        
+        // Category and exclusion lists, read once per run
+        CommissionReferenceCache refCache = CommissionReferenceCache.forRun(getTodayDate());
+        CommissionReferenceCache.CommissionParams params;
         try {
-            comParRec = new EbCommonParamBbgSnRecord(da.getRecord("EB.COMMON.PARAM.BBG.SN", "COMMISSION.BBCI"));
-            paramVal = comParRec.getParamName();
-
-            for (int i = 0; i < paramVal.size(); i++) {
-                String paramName = paramVal.get(i).getParamName().getValue().toString().toUpperCase();
-                List<TField> values = comParRec.getParamName(i).getParamValue();
-
-                switch (paramName) {
-                    case "CATEGORY.MOUVEMENT":
-                        for (TField val : values) categMouv.add(val.getValue().toString());
-                        break;
-                    case "TXNS.EXCLUDE.MOUVE":
-                        for (TField val : values) txnsExcMouve.add(val.getValue().toString());
-                        break;
-                    case "CATEGORY.DEPASSEMENT":
-                        for (TField val : values) categDepass.add(val.getValue().toString());
-                        break;
-                    case "EXCLUDED.TXN.DEPASSE":
-                        for (TField val : values) txnsExcDepass.add(val.getValue().toString());
-                        break;
-                    case "CATEGORY.DECOUVERT":
-                        for (TField val : values) categDecouv.add(val.getValue().toString());
-                        break;
-                }
-            }
-
+            params = refCache.getCommissionParams(da);
         } catch (Exception e) {
             e.printStackTrace();
             return;
         }
+        Set<String> categMouv = params.getCategMouv();
         
         try {
             AaArrangementRecord arrRec = new AaArrangementRecord(da.getRecord("AA.ARRANGEMENT", id));
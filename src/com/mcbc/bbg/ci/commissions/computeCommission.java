@@ -1,7 +1,6 @@
 package com.mcbc.bbg.ci.commissions;
 
 import com.temenos.api.TDate;
-import com.temenos.api.TField;
 import com.temenos.api.TStructure;
 import com.temenos.t24.api.arrangement.accounting.Contract;
 import com.temenos.t24.api.complex.eb.servicehook.ServiceData;
@@ -13,13 +12,9 @@ import com.temenos.t24.api.records.aaprddescharge.AaPrdDesChargeRecord;
 import com.temenos.t24.api.records.aaprddescharge.CalcTierTypeClass;
 import com.temenos.t24.api.records.account.AccountRecord;
 import com.temenos.t24.api.records.dates.DatesRecord;
-import com.temenos.t24.api.records.stmtentry.StmtEntryRecord;
-import com.temenos.t24.api.records.transaction.TransactionRecord;
 import com.temenos.t24.api.system.DataAccess;
 import com.temenos.t24.api.system.Date;
 import com.temenos.t24.api.system.Session;
-import com.temenos.t24.api.tables.ebcommonparambbgsn.EbCommonParamBbgSnRecord;
-import com.temenos.t24.api.tables.ebcommonparambbgsn.ParamNameClass;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -67,47 +62,17 @@ public class computeCommission extends ServiceLifecycle {
     @Override
     public void process(String id, ServiceData serviceData, String controlItem) {
         // TODO Auto-generated method stub
-        List<ParamNameClass> paramVal;
-        EbCommonParamBbgSnRecord comParRec;
-
-        // Category and exclusion lists
-        Set<String> categMouv = new HashSet<>();
-        Set<String> categDepass = new HashSet<>();
-        Set<String> categDecouv = new HashSet<>();
-        Set<String> txnsExcMouve = new HashSet<>();
-        Set<String> txnsExcDepass = new HashSet<>();
-        
+        // Category and exclusion lists, read once per run
+        CommissionReferenceCache refCache = CommissionReferenceCache.forRun(getTodayDate());
+        CommissionReferenceCache.CommissionParams params;
         try {
-            comParRec = new EbCommonParamBbgSnRecord(da.getRecord("EB.COMMON.PARAM.BBG.SN", "COMMISSION.BBCI"));
-            paramVal = comParRec.getParamName();
-
-            for (int i = 0; i < paramVal.size(); i++) {
-                String paramName = paramVal.get(i).getParamName().getValue().toString().toUpperCase();
-                List<TField> values = comParRec.getParamName(i).getParamValue();
-
-                switch (paramName) {
-                    case "CATEGORY.MOUVEMENT":
-                        for (TField val : values) categMouv.add(val.getValue().toString());
-                        break;
-                    case "TXNS.EXCLUDE.MOUVE":
-                        for (TField val : values) txnsExcMouve.add(val.getValue().toString());
-                        break;
-                    case "CATEGORY.DEPASSEMENT":
-                        for (TField val : values) categDepass.add(val.getValue().toString());
-                        break;
-                    case "EXCLUDED.TXN.DEPASSE":
-                        for (TField val : values) txnsExcDepass.add(val.getValue().toString());
-                        break;
-                    case "CATEGORY.DECOUVERT":
-                        for (TField val : values) categDecouv.add(val.getValue().toString());
-                        break;
-                }
-            }
-
+            params = refCache.getCommissionParams(da);
         } catch (Exception e) {
             e.printStackTrace();
             return;
         }
+        Set<String> categMouv = params.getCategMouv();
+        Set<String> txnsExcMouve = params.getTxnsExcMouve();
         
         try {
             AaArrangementRecord arrRec = new AaArrangementRecord(da.getRecord("AA.ARRANGEMENT", id));
@@ -188,7 +153,6 @@ public class computeCommission extends ServiceLifecycle {
 
 //            TDate startDate = new TDate("20251201");
 //            TDate endDate = new TDate("20251231");
-            List<String> stmtEntries = ac.getEntries("BOOK", "", "", "", startDate, endDate);
 
             Contract contract = new Contract(this);
             contract.setContractId(id);
@@ -200,31 +164,14 @@ public class computeCommission extends ServiceLifecycle {
             if (chRateStr.isEmpty() || chRateStr.equals("0")) return;
             double chRate = Double.parseDouble(chRateStr);
 
-            double totalTxnAmt = 0.0, totalCrAmt = 0.0, totalDrAmt = 0.0, totalChgTxnAmt = 0.0;
-
-            for (String stmtId : stmtEntries) {
-                StmtEntryRecord stmtEntRec = new StmtEntryRecord(da.getRecord("STMT.ENTRY", stmtId));
-                String txnCode = stmtEntRec.getTransactionCode().getValue().toString();
-                double amtLcy = Double.parseDouble(stmtEntRec.getAmountLcy().getValue().toString());
-
-                TransactionRecord txnRec = new TransactionRecord(da.getRecord("TRANSACTION", txnCode));
-                String initiator = txnRec.getInitiation().getValue().toString();
-
-                if (initiator.equalsIgnoreCase("CUSTOMER") && categMouv.contains(category)
-                        && !txnsExcMouve.contains(txnCode)) {
-                    switch (commMouve.toLowerCase()) {
-                        case "default":
-                            totalTxnAmt += Math.abs(amtLcy);
-                            break;
-                        case "credit":
-                            if (amtLcy > 0) totalCrAmt += amtLcy;
-                            break;
-                        case "dr only":
-                            if (amtLcy < 0) totalDrAmt += amtLcy;
-                            break;
-                    }
-                }
-            }
+            // Entries only count for accounts of a CATEGORY.MOUVEMENT category
+            List<String> stmtEntries = categMouv.contains(category)
+                    ? ac.getEntries("BOOK", "", "", "", startDate, endDate)
+                    : Collections.<String> emptyList();
+            StmtEntryAggregator.Totals totals = new StmtEntryAggregator(da, refCache, txnsExcMouve, commMouve)
+                    .aggregate(stmtEntries);
+            double totalTxnAmt = totals.getAbsTotal(), totalCrAmt = totals.getCrTotal(),
+                    totalDrAmt = totals.getDrTotal(), totalChgTxnAmt = 0.0;
 
             switch (commMouve.toLowerCase()) {
                 case "default":
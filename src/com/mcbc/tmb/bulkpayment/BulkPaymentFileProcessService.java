@@ -9,10 +9,6 @@ package com.mcbc.tmb.bulkpayment;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -20,6 +16,7 @@ import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.logging.Logger;
 
 import com.temenos.api.TBoolean;
 import com.temenos.api.TStructure;
@@ -57,6 +54,8 @@ public class BulkPaymentFileProcessService extends ServiceLifecycle {
      * @return none
      */
 
+    private static final Logger LOGGER = Logger.getLogger(BulkPaymentFileProcessService.class.getName());
+
     List<String> recIds = new ArrayList<>();
     String RecName = "BULKPAYMENT.TMB";
     DataAccess da = new DataAccess(this);
@@ -79,11 +78,8 @@ public class BulkPaymentFileProcessService extends ServiceLifecycle {
     Path temp;
     long lines = 0;
     long detline = 0;
-    String filecontent;
     String iFileFullPath;
     String msgcontent;
-    BufferedReader br;
-    String[] msgContentList;
     String hdrrec = "";
     String ftrrec = "";
     String crAcct = "";
@@ -140,8 +136,6 @@ public class BulkPaymentFileProcessService extends ServiceLifecycle {
     Path dest;
     Path source1;
     Path dest1;
-    int msglen = 0;
-    int actlen = 0;
 
     boolean debugg = true;
 
@@ -252,81 +246,34 @@ public class BulkPaymentFileProcessService extends ServiceLifecycle {
                 if (debugg)
                     System.out.println("dest VALUE " + dest);
 
-                filecontent = readFileContent(inpath);
-
+                // The file is streamed from the backup location once it has been moved there
+                Path readPath = source;
                 try {
                     Files.move(source, dest, StandardCopyOption.REPLACE_EXISTING);
+                    readPath = dest;
                 } catch (Exception e1) {
                     e1.printStackTrace();
                 }
-                if (!filecontent.equals("")) {
-                    try {
-                        msgContentList = filecontent.split("\n");
-                        msglen = msgContentList.length;
-                        actlen = msglen - 1;
-                        if (debugg)
-                            System.out.println("actlen VALUE " + actlen);
-                        hdrrec = msgContentList[0];
-                        ftrrec = msgContentList[actlen];
+                try (BulkPaymentFileReader fileReader = new BulkPaymentFileReader(readPath)) {
+                    if (!fileReader.isEmpty()) {
+                        hdrrec = fileReader.getHeaderLine();
                         if (debugg)
                             System.out.println("hdrrec VALUE " + hdrrec);
-                        if (debugg)
-                            System.out.println("ftrrec VALUE " + ftrrec);
-                        try {
-                            String[] hdrrecSplit = hdrrec.split(",", -1);
-                            int hlen = hdrrecSplit.length;
-                            String[] ftrrecSplit = ftrrec.split(",", -1);
-                            int flen = ftrrecSplit.length;
-                            if (hlen > 0) {
-                                paymentType = hdrrecSplit[0];
-                            }
-                            if (hlen > 1) {
-                                customerId = hdrrecSplit[1];
-                            }
-                            if (hlen > 2) {
-                                accountNumber = hdrrecSplit[2];
-                            }
-                            if (hlen > 3) {
-                                currency = hdrrecSplit[3];
-                            }
-                            if (hlen > 4) {
-                                bulkCreditDebit = hdrrecSplit[4];
-                            }
-                            if (hlen > 5) {
-                                washAccount = hdrrecSplit[5];
-                            }
-                            if (hlen > 6) {
-                                multiSingleEntry = hdrrecSplit[6];
-                            }
-                            if (hlen > 7) {
-                                narrative = hdrrecSplit[7];
-                            }
-                            if (hlen > 8) {
-                                numSerieOp = hdrrecSplit[8];
-                            }
-                            if (hlen > 9) {
-                                licenseNumber = hdrrecSplit[9];
-                            }
-                            if (hlen > 10) {
-                                processingCompany = hdrrecSplit[10];
-                            }
-                            if (hlen > 14) {
-                                receiverBic = hdrrecSplit[14];
-                            }
 
-                            if (flen > 0) {
-                                totalCount = ftrrecSplit[0];
-                            }
-                            if (flen > 1) {
-                                totalAmount = ftrrecSplit[1];
-                            }
-                        } catch (Exception de) {
-                            System.out.println(
-                                    "Error extracting values from header/footer details: " + hdrrec + "\n" + ftrrec);
-                            System.out.println("Error msg " + de);
-                        }
+                        paymentType = fileReader.getHeaderField(0);
+                        customerId = fileReader.getHeaderField(1);
+                        accountNumber = fileReader.getHeaderField(2);
+                        currency = fileReader.getHeaderField(3);
+                        bulkCreditDebit = fileReader.getHeaderField(4);
+                        washAccount = fileReader.getHeaderField(5);
+                        multiSingleEntry = fileReader.getHeaderField(6);
+                        narrative = fileReader.getHeaderField(7);
+                        numSerieOp = fileReader.getHeaderField(8);
+                        licenseNumber = fileReader.getHeaderField(9);
+                        processingCompany = fileReader.getHeaderField(10);
+                        receiverBic = fileReader.getHeaderField(14);
+
                         hdrRec.setHeader(hdrrec);
-                        hdrRec.setTrailer(ftrrec);
                         hdrRec.setPaymentType(paymentType);
                         hdrRec.setCustomerId(customerId);
                         hdrRec.setAccountNumber(accountNumber);
@@ -337,8 +284,6 @@ public class BulkPaymentFileProcessService extends ServiceLifecycle {
                         hdrRec.setNarrative(narrative);
                         hdrRec.setNumSerieOp(numSerieOp);
                         hdrRec.setReceiverBic(receiverBic);
-                        hdrRec.setTotalCount(totalCount);
-                        hdrRec.setTotalAmount(totalAmount);
                         hdrRec.setFileStatus("UPLOADED");
                         hdrRec.setProcessDate(t24Today);
 
@@ -364,6 +309,42 @@ public class BulkPaymentFileProcessService extends ServiceLifecycle {
                             }
                         }
 
+                        // Totals are checked in a first pass, so that no detail is written for a
+                        // file whose trailer does not match; the details are then written as read
+                        boolean totalsValid = BulkPaymentFileReader.checkTotals(readPath).isEmpty();
+                        String[] detailFields;
+                        while ((detailFields = fileReader.nextDetail()) != null) {
+                            if (oKtoProcess && totalsValid) {
+                                writeDetailRecord(fileReader.getDetailNumber(), fileReader.getDetailLine(),
+                                        detailFields);
+                            }
+                        }
+                        if (debugg)
+                            System.out.println("Processed " + fileReader.getDetailCount() + " records");
+
+                        ftrrec = fileReader.getTrailerLine();
+                        totalCount = fileReader.getTrailerField(0);
+                        totalAmount = fileReader.getTrailerField(1);
+                        if (debugg)
+                            System.out.println("ftrrec VALUE " + ftrrec);
+                        hdrRec.setTrailer(ftrrec);
+                        hdrRec.setTotalCount(totalCount);
+                        hdrRec.setTotalAmount(totalAmount);
+
+                        totalsValid = totalsValid && fileReader.isTotalsValid();
+                        if (!totalsValid) {
+                            LOGGER.warning("Trailer totals mismatch for " + CurId + ": "
+                                    + fileReader.getTotalsError());
+                            hdrRec.setFileStatus("ERROR");
+                            if (oKtoProcess) {
+                                hdrRec.setNarrative("Trailer totals mismatch: " + fileReader.getTotalsError());
+                            }
+                        }
+
+                        if (oKtoProcess && totalsValid && multiSingleEntry.equals("SINGLE")) {
+                            writeSingleEntryRecord(fileReader.getTrailerNumber());
+                        }
+
                         if (debugg)
                             System.out.println("hdrRec VALUE " + hdrRec);
 
@@ -446,246 +427,10 @@ public class BulkPaymentFileProcessService extends ServiceLifecycle {
                             }
 
                         }
-
-                        if (oKtoProcess) {
-                            if (debugg)
-                                System.out.println("Processing " + (actlen - 1) + " records");
-                            for (int i = 1; i < actlen; i++) {
-
-                                currentRecord = msgContentList[i];
-                                String[] splitCurrentRecord = currentRecord.split(",");
-                                if (debugg)
-                                    System.out.println("Processing currentRecord=" + currentRecord);
-                                if (debugg)
-                                    System.out.println("splitCurrentRecord.length=" + splitCurrentRecord.length);
-                                bctheaderContent = hdrrec;
-                                bctrecordContent = currentRecord;
-
-                                if (bulkCreditDebit.equals("DEBIT")) {
-                                    if (currentRecord.split(",", -1).length > 0) {
-                                        bctdebitAcct = currentRecord.split(",", -1)[0];
-                                    }
-                                    if (multiSingleEntry.equals("MULTI")) {
-                                        bctcreditAcct = accountNumber;
-                                    } else {
-                                        bctcreditAcct = washAccount;
-                                    }
-                                } else {
-                                    if (currentRecord.split(",", -1).length > 0) {
-                                        bctcreditAcct = currentRecord.split(",", -1)[0];
-                                    }
-                                    if (multiSingleEntry.equals("MULTI")) {
-                                        bctdebitAcct = accountNumber;
-                                    } else {
-                                        bctdebitAcct = washAccount;
-                                    }
-
-                                }
-
-                                bcttxnCcy = currency;
-                                if (currentRecord.split(",", -1).length > 1) {
-                                    bctamount = currentRecord.split(",", -1)[1];
-                                }
-                                bctorderingCustomer = customerId;
-                                if (currentRecord.split(",", -1).length > 2) {
-                                    bctpaymentNarrative = currentRecord.split(",", -1)[2];
-                                }
-                                if (debugg)
-                                    System.out.println("bctpaymentNarrative=" + bctpaymentNarrative);
-                                if (currentRecord.split(",", -1).length > 3) {
-                                    bctbeneficiaryName = currentRecord.split(",", -1)[3];
-                                }
-                                if (debugg)
-                                    System.out.println("bctbeneficiaryName=" + bctbeneficiaryName);
-                                if (currentRecord.split(",", -1).length > 4) {
-                                    bctbeneficiaryAddress = currentRecord.split(",", -1)[4];
-                                }
-                                if (currentRecord.split(",", -1).length > 5) {
-                                    String bctbeneficiaryAddress2 = currentRecord.split(",", -1)[5];
-                                    if (!bctbeneficiaryAddress2.equals("")) {
-                                        bctbeneficiaryAddress = bctbeneficiaryAddress + " " + bctbeneficiaryAddress2;
-                                    }
-                                }
-                                if (currentRecord.split(",", -1).length > 6) {
-                                    String bctbeneficiaryAddress3 = currentRecord.split(",", -1)[6];
-                                    if (!bctbeneficiaryAddress3.equals("")) {
-                                        bctbeneficiaryAddress = bctbeneficiaryAddress + " " + bctbeneficiaryAddress3;
-                                    }
-                                }
-
-                                if (debugg)
-                                    System.out.println("bctbeneficiaryAddress=" + bctbeneficiaryAddress);
-
-                                bctlicenseNumber = licenseNumber;
-                                if (debugg)
-                                    System.out.println("bctlicenseNumber=" + bctlicenseNumber);
-
-                                bctbulkFileName = CurId;
-                                bctfileRecordStatus = "UPLOADED";
-
-                                finalFileName = CurId + "-" + i;
-
-                                String dkfile = dkpath + File.separator + finalFileName;
-                                if (debugg)
-                                    System.out.println("Writing record file " + dkfile);
-
-                                File files = new File(dkfile);
-
-                                try {
-                                    FileWriter file = new FileWriter(dkfile);
-                                    file.append(hdrrec);
-                                    file.append("\n");
-                                    file.append(currentRecord);
-                                    file.append("\n");
-                                    file.append(ftrrec);
-
-                                    file.close();
-                                } catch (Exception e1) {
-                                    e1.printStackTrace();
-                                }
-
-                                outRec.setHeaderContent(bctheaderContent);
-                                outRec.setRecordContent(bctrecordContent);
-
-                                outRec.setCreditAcct(bctcreditAcct);
-                                outRec.setDebitAcct(bctdebitAcct);
-                                outRec.setTxnCcy(bcttxnCcy);
-                                outRec.setAmount(bctamount);
-                                outRec.setOrderingCustomer(bctorderingCustomer);
-                                outRec.setPaymentNarrative(bctpaymentNarrative);
-                                outRec.setBeneficiaryName(bctbeneficiaryName);
-                                outRec.setBeneficiaryAddress(bctbeneficiaryAddress);
-                                outRec.setLicenseNumber(bctlicenseNumber);
-                                outRec.setBulkFileName(bctbulkFileName);
-                                outRec.setFileRecordStatus(bctfileRecordStatus);
-                                outRec.setFileRecProcessDate(t24Today);
-
-                                if (debugg)
-                                    System.out.println("crAcct VALUE " + bctcreditAcct);
-                                if (debugg)
-                                    System.out.println("drAcct VALUE " + bctdebitAcct);
-                                if (debugg)
-                                    System.out.println("txnCcy VALUE " + bcttxnCcy);
-                                if (debugg)
-                                    System.out.println("txnAmt VALUE " + bctamount);
-                                if (debugg)
-                                    System.out.println("orderingCustomer VALUE " + bctorderingCustomer);
-                                if (debugg)
-                                    System.out.println("paymentNarrative VALUE " + bctpaymentNarrative);
-                                try {
-                                    System.out.println("finalFileName= " + finalFileName);
-                                    System.out.println("Writing outRec= " + outRec.toString());
-                                    System.out.println("outTab.write(finalFileName, outRec)="
-                                            + outTab.write(finalFileName, outRec));
-                                } catch (T24IOException e2) {
-                                    System.out.println("finalFileName" + finalFileName);
-                                    System.out.println("outRec " + outRec.toString());
-                                    e2.printStackTrace();
-                                }
-
-                                try {
-                                    if (files.createNewFile()) {
-                                        if (debugg)
-                                            System.out.println("File " + dkfile + " created");
-                                    } else {
-                                        if (debugg)
-                                            System.out.println("File " + dkfile + " already exists");
-                                    }
-                                } catch (Exception e) {
-                                    e.printStackTrace();
-                                }
-
-                            }
-                            if (multiSingleEntry.equals("SINGLE")) {
-                                bctheaderContent = hdrrec;
-                                bctrecordContent = hdrrec;
-
-                                if (bulkCreditDebit.equals("DEBIT")) {
-                                    bctdebitAcct = washAccount;
-                                    bctcreditAcct = accountNumber;
-
-                                } else {
-                                    bctdebitAcct = accountNumber;
-                                    bctcreditAcct = washAccount;
-                                }
-
-                                bcttxnCcy = currency;
-                                bctamount = totalAmount;
-                                bctorderingCustomer = customerId;
-                                bctpaymentNarrative = narrative;
-                                bctbulkFileName = CurId;
-                                bctfileRecordStatus = "UPLOADED";
-
-                                finalFileName = CurId + "-" + actlen;
-
-                                String dkfile = dkpath + File.separator + finalFileName;
-                                File files = new File(dkfile);
-
-                                try {
-                                    FileWriter file = new FileWriter(dkfile);
-                                    file.append(hdrrec);
-                                    file.append("\n");
-                                    file.append(ftrrec);
-
-                                    file.close();
-                                } catch (Exception e1) {
-                                    e1.printStackTrace();
-                                }
-
-                                outRec.setHeaderContent(bctheaderContent);
-                                outRec.setRecordContent(bctrecordContent);
-
-                                outRec.setCreditAcct(bctcreditAcct);
-                                outRec.setDebitAcct(bctdebitAcct);
-                                outRec.setTxnCcy(bcttxnCcy);
-                                outRec.setAmount(bctamount);
-                                outRec.setOrderingCustomer(bctorderingCustomer);
-                                outRec.setPaymentNarrative(bctpaymentNarrative);
-                                outRec.setBulkFileName(bctbulkFileName);
-                                outRec.setFileRecordStatus(bctfileRecordStatus);
-                                outRec.setFileRecProcessDate(t24Today);
-
-                                if (debugg)
-                                    System.out.println("crAcct VALUE " + bctcreditAcct);
-                                if (debugg)
-                                    System.out.println("drAcct VALUE " + bctdebitAcct);
-                                if (debugg)
-                                    System.out.println("txnCcy VALUE " + bcttxnCcy);
-                                if (debugg)
-                                    System.out.println("txnAmt VALUE " + bctamount);
-                                if (debugg)
-                                    System.out.println("orderingCustomer VALUE " + bctorderingCustomer);
-                                if (debugg)
-                                    System.out.println("paymentNarrative VALUE " + bctpaymentNarrative);
-                                try {
-                                    System.out.println("finalFileName= " + finalFileName);
-                                    System.out.println("Writing outRec= " + outRec.toString());
-                                    System.out.println("outTab.write(finalFileName, outRec)="
-                                            + outTab.write(finalFileName, outRec));
-                                } catch (T24IOException e2) {
-                                    System.out.println("finalFileName" + finalFileName);
-                                    System.out.println("outRec " + outRec.toString());
-                                    e2.printStackTrace();
-                                }
-
-                                try {
-                                    if (files.createNewFile()) {
-                                        if (debugg)
-                                            System.out.println("File " + dkfile + " created");
-                                    } else {
-                                        if (debugg)
-                                            System.out.println("File " + dkfile + " already exists");
-                                    }
-                                } catch (Exception e) {
-                                    e.printStackTrace();
-                                }
-                            }
-                        }
-                    } catch (Exception e1) {
-                        e1.printStackTrace();
                     }
+                } catch (Exception e1) {
+                    e1.printStackTrace();
                 }
-
             } else {
                 String innpath = inpath + File.separator + CurId;
                 source1 = Paths.get(innpath);
@@ -700,31 +445,165 @@ public class BulkPaymentFileProcessService extends ServiceLifecycle {
         }
     }
 
-    public String readFileContent(String iFileFullPath) {
+    /**
+     * Writes one detail line of the file to EB.BULKPAYMENT.CLEARING.TMB as CurId-lineNo.
+     *
+     * @param lineNo - line number of the record in the file (the header is line 0)
+     * @param line   - raw detail line
+     * @param fields - the detail line split on ","
+     */
+    private void writeDetailRecord(int lineNo, String line, String[] fields) {
+        currentRecord = line;
+        if (debugg)
+            System.out.println("Processing currentRecord=" + currentRecord);
+        if (debugg)
+            System.out.println("splitCurrentRecord.length=" + fields.length);
+        bctheaderContent = hdrrec;
+        bctrecordContent = currentRecord;
+
+        if (bulkCreditDebit.equals("DEBIT")) {
+            if (fields.length > 0) {
+                bctdebitAcct = fields[0];
+            }
+            if (multiSingleEntry.equals("MULTI")) {
+                bctcreditAcct = accountNumber;
+            } else {
+                bctcreditAcct = washAccount;
+            }
+        } else {
+            if (fields.length > 0) {
+                bctcreditAcct = fields[0];
+            }
+            if (multiSingleEntry.equals("MULTI")) {
+                bctdebitAcct = accountNumber;
+            } else {
+                bctdebitAcct = washAccount;
+            }
 
-        try {
-            File f = new File(iFileFullPath);
-            br = new BufferedReader(new FileReader(f));
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
         }
 
-        StringBuilder sb = new StringBuilder();
-        try {
-            String line = br.readLine();
-            while (line != null) {
-                sb.append(line);
-                line = br.readLine();
-                if (line != null) {
-                    sb.append("\n");
-                }
-            }
-            br.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+        bcttxnCcy = currency;
+        if (fields.length > 1) {
+            bctamount = fields[1];
+        }
+        bctorderingCustomer = customerId;
+        if (fields.length > 2) {
+            bctpaymentNarrative = fields[2];
+        }
+        if (debugg)
+            System.out.println("bctpaymentNarrative=" + bctpaymentNarrative);
+        if (fields.length > 3) {
+            bctbeneficiaryName = fields[3];
+        }
+        if (debugg)
+            System.out.println("bctbeneficiaryName=" + bctbeneficiaryName);
+        if (fields.length > 4) {
+            bctbeneficiaryAddress = fields[4];
+        }
+        if (fields.length > 5 && !fields[5].equals("")) {
+            bctbeneficiaryAddress = bctbeneficiaryAddress + " " + fields[5];
+        }
+        if (fields.length > 6 && !fields[6].equals("")) {
+            bctbeneficiaryAddress = bctbeneficiaryAddress + " " + fields[6];
+        }
+
+        if (debugg)
+            System.out.println("bctbeneficiaryAddress=" + bctbeneficiaryAddress);
+
+        bctlicenseNumber = licenseNumber;
+        if (debugg)
+            System.out.println("bctlicenseNumber=" + bctlicenseNumber);
+
+        bctbulkFileName = CurId;
+        bctfileRecordStatus = "UPLOADED";
+
+        finalFileName = CurId + "-" + lineNo;
+
+        outRec.setHeaderContent(bctheaderContent);
+        outRec.setRecordContent(bctrecordContent);
+
+        outRec.setCreditAcct(bctcreditAcct);
+        outRec.setDebitAcct(bctdebitAcct);
+        outRec.setTxnCcy(bcttxnCcy);
+        outRec.setAmount(bctamount);
+        outRec.setOrderingCustomer(bctorderingCustomer);
+        outRec.setPaymentNarrative(bctpaymentNarrative);
+        outRec.setBeneficiaryName(bctbeneficiaryName);
+        outRec.setBeneficiaryAddress(bctbeneficiaryAddress);
+        outRec.setLicenseNumber(bctlicenseNumber);
+        outRec.setBulkFileName(bctbulkFileName);
+        outRec.setFileRecordStatus(bctfileRecordStatus);
+        outRec.setFileRecProcessDate(t24Today);
+
+        writeClearingRecord();
+    }
+
+    /**
+     * Writes the wash account leg of a SINGLE entry file as CurId-lineNo.
+     *
+     * @param lineNo - line number of the trailer in the file
+     */
+    private void writeSingleEntryRecord(int lineNo) {
+        bctheaderContent = hdrrec;
+        bctrecordContent = hdrrec;
+
+        if (bulkCreditDebit.equals("DEBIT")) {
+            bctdebitAcct = washAccount;
+            bctcreditAcct = accountNumber;
+
+        } else {
+            bctdebitAcct = accountNumber;
+            bctcreditAcct = washAccount;
         }
-        return sb.toString();
 
+        bcttxnCcy = currency;
+        bctamount = totalAmount;
+        bctorderingCustomer = customerId;
+        bctpaymentNarrative = narrative;
+        bctbulkFileName = CurId;
+        bctfileRecordStatus = "UPLOADED";
+
+        finalFileName = CurId + "-" + lineNo;
+
+        outRec.setHeaderContent(bctheaderContent);
+        outRec.setRecordContent(bctrecordContent);
+
+        outRec.setCreditAcct(bctcreditAcct);
+        outRec.setDebitAcct(bctdebitAcct);
+        outRec.setTxnCcy(bcttxnCcy);
+        outRec.setAmount(bctamount);
+        outRec.setOrderingCustomer(bctorderingCustomer);
+        outRec.setPaymentNarrative(bctpaymentNarrative);
+        outRec.setBulkFileName(bctbulkFileName);
+        outRec.setFileRecordStatus(bctfileRecordStatus);
+        outRec.setFileRecProcessDate(t24Today);
+
+        writeClearingRecord();
+    }
+
+    private void writeClearingRecord() {
+        if (debugg)
+            System.out.println("crAcct VALUE " + bctcreditAcct);
+        if (debugg)
+            System.out.println("drAcct VALUE " + bctdebitAcct);
+        if (debugg)
+            System.out.println("txnCcy VALUE " + bcttxnCcy);
+        if (debugg)
+            System.out.println("txnAmt VALUE " + bctamount);
+        if (debugg)
+            System.out.println("orderingCustomer VALUE " + bctorderingCustomer);
+        if (debugg)
+            System.out.println("paymentNarrative VALUE " + bctpaymentNarrative);
+        try {
+            System.out.println("finalFileName= " + finalFileName);
+            System.out.println("Writing outRec= " + outRec.toString());
+            System.out.println("outTab.write(finalFileName, outRec)="
+                    + outTab.write(finalFileName, outRec));
+        } catch (T24IOException e2) {
+            System.out.println("finalFileName" + finalFileName);
+            System.out.println("outRec " + outRec.toString());
+            e2.printStackTrace();
+        }
     }
 
     public String getTodaysDate() {
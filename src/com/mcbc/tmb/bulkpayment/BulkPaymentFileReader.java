@@ -0,0 +1,240 @@
+package com.mcbc.tmb.bulkpayment;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Single pass reader for bulk payment csv files (header line, detail lines, trailer line).
+ *
+ * The file is read line by line through a buffered stream and every line is split exactly
+ * once. The trailer is recognised with a one line look-ahead, so the file is never held in
+ * memory. Blank lines are skipped, so the trailer is the last non-blank line of the file.
+ * The detail count and amount (second field) are totalled while the details are read and
+ * checked against the trailer (count, amount) once the end of the file is reached.
+ * checkTotals runs that check alone, so a caller can validate a file before writing anything
+ * for it.
+ */
+public class BulkPaymentFileReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int AMOUNT_FIELD = 1;
+
+    private final BufferedReader reader;
+
+    private String headerLine;
+    private String[] header;
+    private String trailerLine;
+    private String[] trailer;
+
+    private String pendingLine;
+    private String detailLine;
+    private int detailNumber = 0;
+    private int trailerNumber = 0;
+
+    private long detailCount = 0;
+    private BigDecimal detailAmount = BigDecimal.ZERO;
+    private String totalsError = "";
+
+    public BulkPaymentFileReader(Path file) throws IOException {
+        // Default charset, as the files were read with FileReader before
+        reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file)), BUFFER_SIZE);
+        try {
+            headerLine = readLine();
+            if (headerLine == null) {
+                return;
+            }
+            header = headerLine.split(",", -1);
+            pendingLine = readLine();
+            if (pendingLine == null) {
+                // Single line file: the header is also the trailer, there are no totals to check
+                trailerLine = headerLine;
+                trailer = header;
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                reader.close();
+            } catch (IOException ce) {
+                e.addSuppressed(ce);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the whole file once and checks its detail totals against the trailer.
+     *
+     * @return "" if the totals match (or the file is empty), otherwise the mismatch
+     */
+    public static String checkTotals(Path file) throws IOException {
+        try (BulkPaymentFileReader checkReader = new BulkPaymentFileReader(file)) {
+            while (checkReader.nextDetail() != null) {
+                // totalled by nextDetail
+            }
+            return checkReader.getTotalsError();
+        }
+    }
+
+    /**
+     * @return true if the file has no lines at all
+     */
+    public boolean isEmpty() {
+        return headerLine == null;
+    }
+
+    public String getHeaderLine() {
+        return headerLine;
+    }
+
+    public String getHeaderField(int index) {
+        return field(header, index);
+    }
+
+    /**
+     * Advances to the next detail line.
+     *
+     * @return fields of the detail line, or null once only the trailer is left
+     */
+    public String[] nextDetail() throws IOException {
+        if (pendingLine == null) {
+            return null;
+        }
+        String next = readLine();
+        if (next == null) {
+            trailerNumber = detailNumber + 1;
+            setTrailer(pendingLine);
+            pendingLine = null;
+            detailLine = null;
+            return null;
+        }
+        detailLine = pendingLine;
+        pendingLine = next;
+        detailNumber++;
+
+        String[] fields = detailLine.split(",", -1);
+        detailCount++;
+        if (fields.length > AMOUNT_FIELD) {
+            try {
+                detailAmount = detailAmount.add(new BigDecimal(fields[AMOUNT_FIELD].trim()));
+            } catch (NumberFormatException e) {
+                addTotalsError("Invalid amount on line " + (detailNumber + 1) + ": "
+                        + fields[AMOUNT_FIELD]);
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * @return raw text of the current detail line
+     */
+    public String getDetailLine() {
+        return detailLine;
+    }
+
+    /**
+     * @return 1 based number of the current detail line (line 0 is the header)
+     */
+    public int getDetailNumber() {
+        return detailNumber;
+    }
+
+    /**
+     * Available once nextDetail() has returned null.
+     */
+    public String getTrailerLine() {
+        return trailerLine;
+    }
+
+    /**
+     * Available once nextDetail() has returned null.
+     *
+     * @return line number of the trailer (0 when the header is also the trailer)
+     */
+    public int getTrailerNumber() {
+        return trailerNumber;
+    }
+
+    public String getTrailerField(int index) {
+        return field(trailer, index);
+    }
+
+    /**
+     * Available once nextDetail() has returned null.
+     *
+     * @return true if the detail count and amount match the trailer totals
+     */
+    public boolean isTotalsValid() {
+        return totalsError.isEmpty();
+    }
+
+    public String getTotalsError() {
+        return totalsError;
+    }
+
+    public long getDetailCount() {
+        return detailCount;
+    }
+
+    public BigDecimal getDetailAmount() {
+        return detailAmount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private String readLine() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null && line.trim().isEmpty()) {
+            // skip blank lines
+        }
+        return line;
+    }
+
+    private void setTrailer(String line) {
+        trailerLine = line;
+        trailer = line.split(",", -1);
+        validateTotals();
+    }
+
+    private void validateTotals() {
+        String totalCount = field(trailer, 0).trim();
+        String totalAmount = field(trailer, 1).trim();
+        if (!totalCount.equals("")) {
+            try {
+                if (Long.parseLong(totalCount) != detailCount) {
+                    addTotalsError("Trailer count " + totalCount + " does not match " + detailCount
+                            + " detail records");
+                }
+            } catch (NumberFormatException e) {
+                addTotalsError("Invalid trailer count: " + totalCount);
+            }
+        }
+        if (!totalAmount.equals("")) {
+            try {
+                if (new BigDecimal(totalAmount).compareTo(detailAmount) != 0) {
+                    addTotalsError("Trailer amount " + totalAmount + " does not match detail total "
+                            + detailAmount.toPlainString());
+                }
+            } catch (NumberFormatException e) {
+                addTotalsError("Invalid trailer amount: " + totalAmount);
+            }
+        }
+    }
+
+    private void addTotalsError(String error) {
+        totalsError = totalsError.isEmpty() ? error : totalsError + "; " + error;
+    }
+
+    private static String field(String[] fields, int index) {
+        if (fields == null || index >= fields.length) {
+            return "";
+        }
+        return fields[index];
+    }
+}
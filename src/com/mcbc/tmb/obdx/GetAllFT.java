@@ -2,9 +2,12 @@ package com.mcbc.tmb.obdx;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.logging.*;
 
+import com.mcbc.tmb.ws02.EnquiryPager;
 import com.temenos.t24.api.complex.eb.enquiryhook.EnquiryContext;
 import com.temenos.t24.api.complex.eb.enquiryhook.FilterCriteria;
 import com.temenos.t24.api.hook.system.Enquiry;
@@ -78,19 +81,19 @@ public class GetAllFT extends Enquiry {
         
         String FinalQuery = selquery + selquery1 +  selquery2;
         
-        List<String> liveFT = da.selectRecords("", "FUNDS.TRANSFER", "", FinalQuery);
-        
-        List<String> nauFT = da.selectRecords("", "FUNDS.TRANSFER", "$NAU", FinalQuery);
-        
-        
-
-        logger.info("Retrieved " + liveFT.size() + " records from live.");
-//        System.out.println("Retrieved " + liveFT.size() + " records from live.");
-        logger.info("Retrieved " + nauFT.size() + " records from $NAU.");
-//        System.out.println("Retrieved " + nauFT.size() + " records from $NAU.");
-
-        processFTRecords(liveFT, "", da, finalArray);
-        processFTRecords(nauFT, "$NAU", da, finalArray);
+        // Live then NAU, each selected only when the page reaches it
+        List<Supplier<List<String>>> sources = Arrays.asList(() -> {
+            List<String> liveFT = da.selectRecords("", "FUNDS.TRANSFER", "", FinalQuery);
+            logger.info("Retrieved " + liveFT.size() + " records from live.");
+            return liveFT;
+        }, () -> {
+            List<String> nauFT = da.selectRecords("", "FUNDS.TRANSFER", "$NAU", FinalQuery);
+            logger.info("Retrieved " + nauFT.size() + " records from $NAU.");
+            return nauFT;
+        });
+
+        finalArray = EnquiryPager.fromCriteria(filterCriteria, logger).collect(sources,
+                (source, ftid) -> buildFTRow(ftid, source == 0 ? "" : "$NAU", da));
 
         logger.info("Total records processed: " + finalArray.size());
         logger.info("End processing GetAllFT Enquiry.");
@@ -98,57 +101,57 @@ public class GetAllFT extends Enquiry {
         return finalArray;
     }
 
-    private void processFTRecords(List<String> records, String version, DataAccess da, List<String> finalArray) {
-        for (String ftid : records) {
-            try {
-                logger.fine("Processing FT record: " + ftid + " from version: " + version);
-
-                FundsTransferRecord ftRec = new FundsTransferRecord(da.getRecord("FUNDS.TRANSFER" + version, ftid));
-                StringBuilder paymentDet = new StringBuilder();
-                StringBuilder override = new StringBuilder();
-
-                String recid = ftid;
-                String lBillUser = safeLocalRef(ftRec, "L.BILL.USER");
-                String lAutobill = safeLocalRef(ftRec, "L.AUTOBILL.FILE");
-                String lObdxRefTMB = safeLocalRef(ftRec, "L.OBDX.REF.TMB");
-                String creditAcctName = " ";
-
-                for (int i = 0; i < ftRec.getPaymentDetails().size(); i++) {
-                    paymentDet.append(ftRec.getPaymentDetails(i).toString()).append(" ");
-                }
-                
-                String debitAmount = safeToString(ftRec.getDebitAmount());
-                String creditAcct = safeToString(ftRec.getCreditAcctNo());
-                String debitAcct = safeToString(ftRec.getDebitAcctNo());
-                String debitccy = safeToString(ftRec.getDebitCurrency());
-
-                for (int i = 0; i < ftRec.getOverride().size(); i++) {
-                    override.append(ftRec.getOverride(i).toString()).append(" ");
-                }
-
-                String recStatus = safeToString(ftRec.getRecordStatus());
-
-                String output = String.join("*",
-                        recid,
-                        lBillUser,
-                        creditAcctName,
-                        paymentDet.toString().trim(),
-                        debitAmount,
-                        creditAcct,
-                        debitAcct,
-                        override.toString().trim(),
-                        recStatus,
-                        debitccy,
-                        lAutobill,
-                        lObdxRefTMB
-                );
-
-                finalArray.add(output);
-
-            } catch (Exception e) {
-                logger.log(Level.SEVERE, "Error processing FT record: " + ftid + " from version: " + version, e);
+    // Row of a FUNDS.TRANSFER record, null if it cannot be read
+    private String buildFTRow(String ftid, String version, DataAccess da) {
+        try {
+            logger.fine("Processing FT record: " + ftid + " from version: " + version);
+
+            FundsTransferRecord ftRec = new FundsTransferRecord(da.getRecord("FUNDS.TRANSFER" + version, ftid));
+            StringBuilder paymentDet = new StringBuilder();
+            StringBuilder override = new StringBuilder();
+
+            String recid = ftid;
+            String lBillUser = safeLocalRef(ftRec, "L.BILL.USER");
+            String lAutobill = safeLocalRef(ftRec, "L.AUTOBILL.FILE");
+            String lObdxRefTMB = safeLocalRef(ftRec, "L.OBDX.REF.TMB");
+            String creditAcctName = " ";
+
+            for (int i = 0; i < ftRec.getPaymentDetails().size(); i++) {
+                paymentDet.append(ftRec.getPaymentDetails(i).toString()).append(" ");
+            }
+            
+            String debitAmount = safeToString(ftRec.getDebitAmount());
+            String creditAcct = safeToString(ftRec.getCreditAcctNo());
+            String debitAcct = safeToString(ftRec.getDebitAcctNo());
+            String debitccy = safeToString(ftRec.getDebitCurrency());
+
+            for (int i = 0; i < ftRec.getOverride().size(); i++) {
+                override.append(ftRec.getOverride(i).toString()).append(" ");
             }
+
+            String recStatus = safeToString(ftRec.getRecordStatus());
+
+            String output = String.join("*",
+                    recid,
+                    lBillUser,
+                    creditAcctName,
+                    paymentDet.toString().trim(),
+                    debitAmount,
+                    creditAcct,
+                    debitAcct,
+                    override.toString().trim(),
+                    recStatus,
+                    debitccy,
+                    lAutobill,
+                    lObdxRefTMB
+            );
+
+            return output;
+
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error processing FT record: " + ftid + " from version: " + version, e);
         }
+        return null;
     }
 
     private String extractTxnType(List<FilterCriteria> filterCriteria) {
@@ -17,9 +17,7 @@ import com.temenos.api.TValidationResponse;
 import com.temenos.t24.api.complex.eb.templatehook.TransactionContext;
 import com.temenos.t24.api.complex.st.currencyapi.ExchangeAmount;
 import com.temenos.t24.api.hook.system.RecordLifecycle;
-import com.temenos.t24.api.records.ebcommonparamtmb.EbCommonParamTmbRecord;
 import com.temenos.t24.api.system.DataAccess;
-import com.temenos.t24.api.records.ebcommonparamtmb.ParamNameClass;
 import com.temenos.t24.api.records.teller.Account1Class;
 import com.temenos.t24.api.records.teller.TellerRecord;
 import com.temenos.t24.api.rates.Currency;
@@ -65,7 +63,6 @@ public class TmbTellerFcyThreshold extends RecordLifecycle {
     String currencyMarket = "1";
     private String parameterId;
     private final List<String> overrideMessages = new ArrayList<>();
-    private EbCommonParamTmbRecord commonParamRecord;
     
     
 //    static {
@@ -109,23 +106,12 @@ public class TmbTellerFcyThreshold extends RecordLifecycle {
     private void checkThresholdAmount() {
         try {
             overrideMessages.clear();
-            commonParamRecord = new EbCommonParamTmbRecord(
-                dataAccess.getRecord("EB.COMMON.PARAM.TMB", parameterId)
-            );
-
-            List<ParamNameClass> paramNames = commonParamRecord.getParamName();
+            TmbThresholdParamCache.ThresholdParam param = TmbThresholdParamCache.get(dataAccess, parameterId);
             int overrideIndex = tellerRecord.getOverride().size() + 1;
 
-            for (ParamNameClass param : paramNames) {
-                String paramName = param.getParamName().toString();
-//                String overrideCombined = readOverrideDetail(paramName);
-
-                String override = readOverrideDetail(paramName);
-                
-                if (!override.isEmpty()) {
-                    overrideMessages.add(override);
-                    tellerRecord.setOverride(override, overrideIndex++);
-                }
+            for (String override : param.overridesFor(usdAmount, false)) {
+                overrideMessages.add(override);
+                tellerRecord.setOverride(override, overrideIndex++);
             }
 
             if (!overrideMessages.isEmpty()) {
@@ -157,35 +143,6 @@ public class TmbTellerFcyThreshold extends RecordLifecycle {
         ExchangeAmount exchange = currencyApi.calculateSellAmount(currency, "USD", buyAmount, market, null, null);
         return new BigDecimal(exchange.getDealAmount().getValue().toString());
     }
-    private String readOverrideDetail(String paramName) {
-        ebcomp helper = new ebcomp();
-        helper.setEcprec(commonParamRecord);
-        helper.setKeyName(paramName);
-        helper.getComp();
-
-        List<TField> values = helper.getValuesList();
-        if (values.size() < 3) return "";
-
-        String fromStr = values.get(0).toString();
-        String toStr = values.get(1).toString();
-        String overrideDetail = values.get(2).toString();
-
-        try {
-            BigDecimal fromAmt = new BigDecimal(fromStr);
-            BigDecimal toAmt = toStr.isEmpty() ? null : new BigDecimal(toStr);
-
-            if (toAmt == null && usdAmount.compareTo(fromAmt) > 0) {
-                return overrideDetail;
-            }
-            if (toAmt != null && usdAmount.compareTo(fromAmt) > 0 && usdAmount.compareTo(toAmt) <= 0) {
-                return overrideDetail;
-            }
-        } catch (Exception e) {
-            logger.warning("Invalid override threshold for param: " + paramName);
-        }
-
-        return "";
-    }
 
 
 }
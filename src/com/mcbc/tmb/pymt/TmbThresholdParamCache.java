@@ -0,0 +1,231 @@
+package com.mcbc.tmb.pymt;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import com.temenos.api.TField;
+import com.temenos.t24.api.records.ebcommonparamtmb.EbCommonParamTmbRecord;
+import com.temenos.t24.api.records.ebcommonparamtmb.ParamNameClass;
+import com.temenos.t24.api.system.DataAccess;
+
+/**
+ * Process-wide cache of the EB.COMMON.PARAM.TMB threshold records used by the teller validations
+ * (WITHDRAWAL.THRESHOLD, DEPOSIT.THRESHOLD, EXCHANGE.TELLER.THRESHOLD, EXCHANGE.PEPELE.THRESHOLD).
+ *
+ * The validations read the record on every teller transaction and, for each PARAM.NAME, walked all
+ * of them again through ebcomp to find its values. Each record is now parsed once into an
+ * immutable {@link ThresholdParam}: one band per PARAM.NAME with its from/to amounts as BigDecimal
+ * and its override codes.
+ *
+ * A cached record is used as is for tmb.param.probe.ms (default 30000) after it was last checked.
+ * After that the next lookup reads the record again and only parses it when CURR.NO has changed,
+ * so an amended threshold is picked up within the probe interval.
+ *
+ * @author shegs
+ *
+ */
+public final class TmbThresholdParamCache {
+
+    private static final Logger logger = Logger.getLogger(TmbThresholdParamCache.class.getName());
+
+    private static final String PARAM_TABLE = "EB.COMMON.PARAM.TMB";
+    private static final long PROBE_INTERVAL_MS = Long.getLong("tmb.param.probe.ms", 30000L);
+
+    private static final Map<String, ThresholdParam> CACHE = new ConcurrentHashMap<>();
+
+    private TmbThresholdParamCache() {
+    }
+
+    /**
+     * Returns the parsed threshold record. Exceptions of the record read are thrown to the caller.
+     *
+     * @param dataAccess DataAccess of the calling hook
+     * @param paramId    EB.COMMON.PARAM.TMB id
+     */
+    public static ThresholdParam get(DataAccess dataAccess, String paramId) {
+        long now = System.currentTimeMillis();
+        ThresholdParam cached = CACHE.get(paramId);
+        if (cached != null && now - cached.checkedAt < PROBE_INTERVAL_MS) {
+            return cached;
+        }
+
+        EbCommonParamTmbRecord rec = new EbCommonParamTmbRecord(dataAccess.getRecord(PARAM_TABLE, paramId));
+        String currNo = rec.getCurrNo().toString();
+        ThresholdParam param;
+        if (cached != null && cached.currNo.equals(currNo)) {
+            cached.checkedAt = now;
+            param = cached;
+        } else {
+            param = ThresholdParam.parse(paramId, currNo, rec);
+            param.checkedAt = now;
+            logger.info("Loaded " + PARAM_TABLE + " " + paramId + " CURR.NO " + currNo + ", "
+                    + param.getBands().size() + " band(s)");
+        }
+        CACHE.put(paramId, param);
+        return param;
+    }
+
+    /**
+     * Drops the cached record, or all records when paramId is null.
+     */
+    public static void invalidate(String paramId) {
+        if (paramId == null) {
+            CACHE.clear();
+        } else {
+            CACHE.remove(paramId);
+        }
+    }
+
+    /**
+     * One threshold band: amounts above from (and up to to, when set) raise the override.
+     */
+    public static final class Band {
+
+        private final String name;
+        private final BigDecimal from;
+        private final BigDecimal to;
+        private final String override;
+        private final List<String> overrides;
+
+        Band(String name, BigDecimal from, BigDecimal to, String override) {
+            this.name = name;
+            this.from = from;
+            this.to = to;
+            this.override = override;
+            List<String> split = new ArrayList<>();
+            for (String part : override.split("\\+")) {
+                String trimmed = part.trim();
+                if (!trimmed.isEmpty()) {
+                    split.add(trimmed);
+                }
+            }
+            this.overrides = Collections.unmodifiableList(split);
+        }
+
+        public boolean matches(BigDecimal amount) {
+            if (amount == null || amount.compareTo(from) <= 0) {
+                return false;
+            }
+            return to == null || amount.compareTo(to) <= 0;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public BigDecimal getFrom() {
+            return from;
+        }
+
+        /** Upper bound, null when the band has none */
+        public BigDecimal getTo() {
+            return to;
+        }
+
+        /** Override detail as held in the record */
+        public String getOverride() {
+            return override;
+        }
+
+        /** Override detail split on '+' */
+        public List<String> getOverrides() {
+            return overrides;
+        }
+    }
+
+    /**
+     * Parsed, immutable EB.COMMON.PARAM.TMB threshold record.
+     */
+    public static final class ThresholdParam {
+
+        private final String id;
+        private final String currNo;
+        private final List<Band> bands;
+        private final Set<String> overrideCodes;
+
+        // Last time CURR.NO was compared with the record
+        private volatile long checkedAt;
+
+        private ThresholdParam(String id, String currNo, List<Band> bands) {
+            this.id = id;
+            this.currNo = currNo;
+            this.bands = Collections.unmodifiableList(bands);
+            Set<String> codes = new LinkedHashSet<>();
+            for (Band band : bands) {
+                codes.addAll(band.getOverrides());
+            }
+            this.overrideCodes = Collections.unmodifiableSet(codes);
+        }
+
+        static ThresholdParam parse(String id, String currNo, EbCommonParamTmbRecord rec) {
+            // PARAM.VALUE of each PARAM.NAME, the last one winning as in ebcomp
+            List<ParamNameClass> paramNames = rec.getParamName();
+            Map<String, List<TField>> valuesByName = new LinkedHashMap<>();
+            for (ParamNameClass param : paramNames) {
+                valuesByName.put(param.getParamName().toString(), param.getParamValue());
+            }
+
+            List<Band> bands = new ArrayList<>();
+            for (ParamNameClass param : paramNames) {
+                String paramName = param.getParamName().toString();
+                List<TField> values = valuesByName.get(paramName);
+                if (values == null || values.size() < 3) {
+                    continue;
+                }
+                String toStr = values.get(1).toString();
+                try {
+                    bands.add(new Band(paramName, new BigDecimal(values.get(0).toString()),
+                            toStr.isEmpty() ? null : new BigDecimal(toStr), values.get(2).toString()));
+                } catch (NumberFormatException e) {
+                    logger.warning("Invalid override threshold for param: " + paramName + " in " + id);
+                }
+            }
+            return new ThresholdParam(id, currNo, bands);
+        }
+
+        /**
+         * Override details of the bands the amount falls in, in record order.
+         *
+         * @param amount   Transaction amount in USD
+         * @param splitAll True to split combined details on '+'
+         */
+        public List<String> overridesFor(BigDecimal amount, boolean splitAll) {
+            List<String> result = new ArrayList<>();
+            for (Band band : bands) {
+                if (band.matches(amount)) {
+                    if (splitAll) {
+                        result.addAll(band.getOverrides());
+                    } else if (!band.getOverride().isEmpty()) {
+                        result.add(band.getOverride());
+                    }
+                }
+            }
+            return result;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getCurrNo() {
+            return currNo;
+        }
+
+        public List<Band> getBands() {
+            return bands;
+        }
+
+        /** Every override code of the record */
+        public Set<String> getOverrideCodes() {
+            return overrideCodes;
+        }
+    }
+}
@@ -17,8 +17,6 @@ import com.temenos.api.TValidationResponse;
 import com.temenos.t24.api.complex.eb.templatehook.TransactionContext;
 import com.temenos.t24.api.complex.st.currencyapi.ExchangeAmount;
 import com.temenos.t24.api.records.company.CompanyRecord;
-import com.temenos.t24.api.records.ebcommonparamtmb.EbCommonParamTmbRecord;
-import com.temenos.t24.api.records.ebcommonparamtmb.ParamNameClass;
 import com.temenos.t24.api.records.teller.Account1Class;
 import com.temenos.t24.api.records.teller.TellerRecord;
 import com.temenos.t24.api.system.DataAccess;
@@ -60,7 +58,6 @@ public class tmbTellerThreshold extends RecordLifecycle {
     private TField localAmountField;
     private TField localCurrencyField;
     private String parameterId;
-    private EbCommonParamTmbRecord commonParamRecord;
     private final List<String> overrideMessages = new ArrayList<>();
     BigDecimal usdAmount;
 
@@ -100,29 +97,13 @@ public class tmbTellerThreshold extends RecordLifecycle {
     private void checkThresholdAmount() {
         try {
             overrideMessages.clear();
-            commonParamRecord = new EbCommonParamTmbRecord(
-                dataAccess.getRecord("EB.COMMON.PARAM.TMB", parameterId)
-            );
-
-            List<ParamNameClass> paramNames = commonParamRecord.getParamName();
+            TmbThresholdParamCache.ThresholdParam param = TmbThresholdParamCache.get(dataAccess, parameterId);
             int overrideIndex = tellerRecord.getOverride().size() + 1;
 
-            for (ParamNameClass param : paramNames) {
-                String paramName = param.getParamName().toString();
-                String overrideCombined = readOverrideDetail(paramName);
-
-                if (!overrideCombined.isEmpty()) {
-                    // Split override messages if multiple are provided
-                    String[] overrides = overrideCombined.split("\\+");
-
-                    for (String override : overrides) {
-                        String trimmed = override.trim();
-                        if (!trimmed.isEmpty()) {
-                            overrideMessages.add(trimmed);
-                            tellerRecord.setOverride(trimmed, overrideIndex++);
-                        }
-                    }
-                }
+            // Combined override details are split on '+'
+            for (String override : param.overridesFor(usdAmount, true)) {
+                overrideMessages.add(override);
+                tellerRecord.setOverride(override, overrideIndex++);
             }
 
             // Apply first one or two overrides to fields
@@ -132,43 +113,11 @@ public class tmbTellerThreshold extends RecordLifecycle {
                     localCurrencyField.setOverride(overrideMessages.get(1));
                 }
             }
-
         } catch (Exception e) {
             logger.warning("Error in checkThresholdAmount: " + e.getMessage());
         }
     }
 
-
-    private String readOverrideDetail(String paramName) {
-        ebcomp helper = new ebcomp();
-        helper.setEcprec(commonParamRecord);
-        helper.setKeyName(paramName);
-        helper.getComp();
-
-        List<TField> values = helper.getValuesList();
-        if (values.size() < 3) return "";
-
-        String fromStr = values.get(0).toString();
-        String toStr = values.get(1).toString();
-        String overrideDetail = values.get(2).toString();
-
-        try {
-            BigDecimal fromAmt = new BigDecimal(fromStr);
-            BigDecimal toAmt = toStr.isEmpty() ? null : new BigDecimal(toStr);
-
-            if (toAmt == null && usdAmount.compareTo(fromAmt) > 0) {
-                return overrideDetail;
-            }
-            if (toAmt != null && usdAmount.compareTo(fromAmt) > 0 && usdAmount.compareTo(toAmt) <= 0) {
-                return overrideDetail;
-            }
-        } catch (Exception e) {
-            logger.warning("Invalid override threshold for param: " + paramName);
-        }
-
-        return "";
-    }
-
     private BigDecimal convertAmountToUsd(BigDecimal amount, String currency, String market) {
         logger.fine("Converting to USD: " + amount + " " + currency + " Market: " + market);
         TNumber buyAmount = new TNumber(amount.toPlainString());
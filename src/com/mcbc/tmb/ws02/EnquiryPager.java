@@ -0,0 +1,133 @@
+package com.mcbc.tmb.ws02;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import com.temenos.t24.api.complex.eb.enquiryhook.FilterCriteria;
+
+/**
+ * Cursor-style paging for the channel enquiries (GetAllTransactions, GetAllFT).
+ *
+ * The enquiries used to select every source (e.g. FUNDS.TRANSFER live and $NAU), read every
+ * matching record and return all rows at once. With the selection fields PAGE.SIZE and PAGE.TOKEN
+ * the enquiry returns at most PAGE.SIZE rows. When more may follow, the last row is
+ * NEXT.PAGE*&lt;token&gt;, and the caller passes that token back as PAGE.TOKEN to get the next page.
+ * The sources are selected one at a time and only as far as the page needs, so a first page served
+ * from the live file does not select $NAU. Records are read only until the page is full.
+ *
+ * A token is the source number and the last id returned, so records added between two calls do
+ * not shift the pages. Ids are sorted when paging, to keep the order stable across calls. Without
+ * PAGE.SIZE and PAGE.TOKEN the enquiry returns every row, in select order, as before.
+ *
+ * Author: shegs
+ */
+public final class EnquiryPager {
+
+    public static final String PAGE_SIZE_FIELD = "PAGE.SIZE";
+    public static final String PAGE_TOKEN_FIELD = "PAGE.TOKEN";
+    public static final String NEXT_PAGE_PREFIX = "NEXT.PAGE*";
+
+    private static final char TOKEN_SEPARATOR = '~';
+
+    private final int pageSize;
+    private final boolean paging;
+    private int startSource;
+    private String startAfter;
+
+    /**
+     * Builds the row of one id, or returns null when the record is skipped.
+     */
+    @FunctionalInterface
+    public interface RowBuilder {
+        String build(int source, String id);
+    }
+
+    private EnquiryPager(Logger logger, int pageSize, String token) {
+        this.pageSize = pageSize;
+        this.paging = pageSize > 0 || !token.isEmpty();
+        if (!token.isEmpty()) {
+            int sep = token.indexOf(TOKEN_SEPARATOR);
+            try {
+                this.startSource = Integer.parseInt(token.substring(0, sep));
+                this.startAfter = token.substring(sep + 1);
+                if (startSource < 0) {
+                    throw new IllegalArgumentException(token);
+                }
+            } catch (RuntimeException e) {
+                logger.warning("Invalid " + PAGE_TOKEN_FIELD + " '" + token + "', starting from the first page.");
+                this.startSource = 0;
+                this.startAfter = null;
+            }
+        }
+    }
+
+    /**
+     * Reads PAGE.SIZE and PAGE.TOKEN from the enquiry selection.
+     */
+    public static EnquiryPager fromCriteria(List<FilterCriteria> filterCriteria, Logger logger) {
+        int pageSize = 0;
+        String token = "";
+        for (FilterCriteria fc : filterCriteria) {
+            if (PAGE_SIZE_FIELD.equalsIgnoreCase(fc.getFieldname())) {
+                try {
+                    pageSize = Math.max(0, Integer.parseInt(fc.getValue().trim()));
+                } catch (RuntimeException e) {
+                    logger.warning("Invalid " + PAGE_SIZE_FIELD + " '" + fc.getValue() + "', returning all rows.");
+                }
+            } else if (PAGE_TOKEN_FIELD.equalsIgnoreCase(fc.getFieldname()) && fc.getValue() != null) {
+                token = fc.getValue().trim();
+            }
+        }
+        return new EnquiryPager(logger, pageSize, token);
+    }
+
+    /**
+     * Selects the sources in order and builds their rows until the page is full.
+     *
+     * @param sources    Id selections, called only when the page reaches them
+     * @param rowBuilder Row of an id of a given source
+     */
+    public List<String> collect(List<Supplier<List<String>>> sources, RowBuilder rowBuilder) {
+        List<String> rows = new ArrayList<>();
+        for (int source = startSource; source < sources.size(); source++) {
+            List<String> ids = sources.get(source).get();
+            if (ids == null) {
+                continue;
+            }
+            int from = 0;
+            if (paging) {
+                ids = new ArrayList<>(ids);
+                Collections.sort(ids);
+                if (source == startSource && startAfter != null) {
+                    from = firstAfter(ids, startAfter);
+                }
+            }
+            for (int i = from; i < ids.size(); i++) {
+                String row = rowBuilder.build(source, ids.get(i));
+                if (row != null) {
+                    rows.add(row);
+                }
+                if (pageSize > 0 && rows.size() >= pageSize) {
+                    if (i + 1 < ids.size() || source + 1 < sources.size()) {
+                        rows.add(NEXT_PAGE_PREFIX + source + TOKEN_SEPARATOR + ids.get(i));
+                    }
+                    return rows;
+                }
+            }
+        }
+        return rows;
+    }
+
+    public boolean isPaging() {
+        return paging;
+    }
+
+    // Index of the first id greater than lastId in the sorted list
+    private static int firstAfter(List<String> ids, String lastId) {
+        int pos = Collections.binarySearch(ids, lastId);
+        return pos >= 0 ? pos + 1 : -pos - 1;
+    }
+}
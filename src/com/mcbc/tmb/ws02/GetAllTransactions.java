@@ -3,7 +3,9 @@ package com.mcbc.tmb.ws02;
 import java.io.IOException;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.logging.*;
 import java.util.logging.Logger;
 
@@ -51,6 +53,7 @@ public class GetAllTransactions extends Enquiry {
 
         
         List<String> finalArray = new ArrayList<>();
+        EnquiryPager pager = EnquiryPager.fromCriteria(filterCriteria, logger);
         String type = extractType(filterCriteria);
         String reference = extractReference(filterCriteria);
         String txntype = extractTxnType(filterCriteria);
@@ -66,9 +69,9 @@ public class GetAllTransactions extends Enquiry {
         }
 
         if ("internal".equalsIgnoreCase(type)) {
-            processInternalTransactions(da, reference, txntype, finalArray);
+            finalArray = processInternalTransactions(da, reference, txntype, pager);
         } else if ("external".equalsIgnoreCase(type)) {
-            processExternalTransactions(da, reference, finalArray);
+            finalArray = processExternalTransactions(da, reference, pager);
         } else {
             logger.warning("Invalid TYPE provided: " + type + ". Must be 'internal' or 'external'.");
         }
@@ -79,7 +82,8 @@ public class GetAllTransactions extends Enquiry {
         return finalArray;
     }
 
-    private void processInternalTransactions(DataAccess da, String reference, String txntype, List<String> finalArray) {
+    private List<String> processInternalTransactions(DataAccess da, String reference, String txntype,
+            EnquiryPager pager) {
         logger.info("Processing internal transactions for reference: " + reference + ", txnType: " + txntype);
 
         String selQuery;
@@ -91,20 +95,23 @@ public class GetAllTransactions extends Enquiry {
         if (txntype != null && !txntype.trim().isEmpty()) {
             selQuery += " AND WITH TRANSACTION.TYPE EQ " + txntype;
         }
-
-        // Query live FUNDS.TRANSFER table
-        List<String> liveFT = da.selectRecords("", "FUNDS.TRANSFER", "", selQuery);
-        logger.info("Retrieved " + liveFT.size() + " internal records from live FUNDS.TRANSFER.");
-
-        // Query NAU FUNDS.TRANSFER table
-        List<String> nauFT = da.selectRecords("", "FUNDS.TRANSFER", "$NAU", selQuery);
-        logger.info("Retrieved " + nauFT.size() + " internal records from $NAU FUNDS.TRANSFER.");
-
-        processFTRecords(liveFT, "", da, finalArray, "internal");
-        processFTRecords(nauFT, "$NAU", da, finalArray, "internal");
+        final String query = selQuery;
+
+        // Live then NAU FUNDS.TRANSFER, each selected only when the page reaches it
+        List<Supplier<List<String>>> sources = Arrays.asList(() -> {
+            List<String> liveFT = da.selectRecords("", "FUNDS.TRANSFER", "", query);
+            logger.info("Retrieved " + liveFT.size() + " internal records from live FUNDS.TRANSFER.");
+            return liveFT;
+        }, () -> {
+            List<String> nauFT = da.selectRecords("", "FUNDS.TRANSFER", "$NAU", query);
+            logger.info("Retrieved " + nauFT.size() + " internal records from $NAU FUNDS.TRANSFER.");
+            return nauFT;
+        });
+
+        return pager.collect(sources, (source, ftid) -> buildFTRow(ftid, source == 0 ? "" : "$NAU", da, "internal"));
     }
 
-    private void processExternalTransactions(DataAccess da, String reference, List<String> finalArray) {
+    private List<String> processExternalTransactions(DataAccess da, String reference, EnquiryPager pager) {
         logger.info("Processing external transactions for reference: " + reference);
 
         String selQuery;
@@ -113,104 +120,105 @@ public class GetAllTransactions extends Enquiry {
         } else {
             selQuery = "WITH L.UNIQUECODE EQ " + reference;
         }
-
-        // Query live PP.ORDER.ENTRY table
-        List<String> livePP = da.selectRecords("", "PP.ORDER.ENTRY", "", selQuery);
-        logger.info("Retrieved " + livePP.size() + " external records from live PP.ORDER.ENTRY.");
-
-        // Query NAU PP.ORDER.ENTRY table
-        List<String> nauPP = da.selectRecords("", "PP.ORDER.ENTRY", "$NAU", selQuery);
-        logger.info("Retrieved " + nauPP.size() + " external records from $NAU PP.ORDER.ENTRY.");
-
-        processPPRecords(livePP, "", da, finalArray, "external");
-        processPPRecords(nauPP, "$NAU", da, finalArray, "external");
+        final String query = selQuery;
+
+        // Live then NAU PP.ORDER.ENTRY, each selected only when the page reaches it
+        List<Supplier<List<String>>> sources = Arrays.asList(() -> {
+            List<String> livePP = da.selectRecords("", "PP.ORDER.ENTRY", "", query);
+            logger.info("Retrieved " + livePP.size() + " external records from live PP.ORDER.ENTRY.");
+            return livePP;
+        }, () -> {
+            List<String> nauPP = da.selectRecords("", "PP.ORDER.ENTRY", "$NAU", query);
+            logger.info("Retrieved " + nauPP.size() + " external records from $NAU PP.ORDER.ENTRY.");
+            return nauPP;
+        });
+
+        return pager.collect(sources, (source, ppid) -> buildPPRow(ppid, source == 0 ? "" : "$NAU", da, "external"));
     }
 
-    private void processFTRecords(List<String> records, String version, DataAccess da, List<String> finalArray,
-            String type) {
-        for (String ftid : records) {
-            try {
-                logger.fine("Processing FT record: " + ftid + " from version: " + version);
+    // Row of a FUNDS.TRANSFER record, null if it is not an OBDX payment or cannot be read
+    private String buildFTRow(String ftid, String version, DataAccess da, String type) {
+        try {
+            logger.fine("Processing FT record: " + ftid + " from version: " + version);
 
-                FundsTransferRecord ftRec = new FundsTransferRecord(da.getRecord("FUNDS.TRANSFER" + version, ftid));
-                StringBuilder paymentDet = new StringBuilder();
-                StringBuilder override = new StringBuilder();
+            FundsTransferRecord ftRec = new FundsTransferRecord(da.getRecord("FUNDS.TRANSFER" + version, ftid));
+            StringBuilder paymentDet = new StringBuilder();
+            StringBuilder override = new StringBuilder();
 
-                String recid = ftid;
-                String creditReference = safeToString(ftRec.getCreditTheirRef());
-                String creditAcctName = " ";
+            String recid = ftid;
+            String creditReference = safeToString(ftRec.getCreditTheirRef());
+            String creditAcctName = " ";
 
-                for (int i = 0; i < ftRec.getPaymentDetails().size(); i++) {
-                    paymentDet.append(ftRec.getPaymentDetails(i).toString()).append(" ");
-                }
+            for (int i = 0; i < ftRec.getPaymentDetails().size(); i++) {
+                paymentDet.append(ftRec.getPaymentDetails(i).toString()).append(" ");
+            }
 
-                String debitAmount = safeToString(ftRec.getDebitAmount());
-                String creditAcct = safeToString(ftRec.getCreditAcctNo());
-                String debitAcct = safeToString(ftRec.getDebitAcctNo());
-                String debitccy = safeToString(ftRec.getDebitCurrency());
-                String Ptype = getObdxType(creditReference);
+            String debitAmount = safeToString(ftRec.getDebitAmount());
+            String creditAcct = safeToString(ftRec.getCreditAcctNo());
+            String debitAcct = safeToString(ftRec.getDebitAcctNo());
+            String debitccy = safeToString(ftRec.getDebitCurrency());
+            String Ptype = getObdxType(creditReference);
 
-                for (int i = 0; i < ftRec.getOverride().size(); i++) {
-                    override.append(ftRec.getOverride(i).toString()).append(" ");
-                }
+            for (int i = 0; i < ftRec.getOverride().size(); i++) {
+                override.append(ftRec.getOverride(i).toString()).append(" ");
+            }
 
-                String recStatus = safeToString(ftRec.getRecordStatus());
-                if ("OBDX".equalsIgnoreCase(Ptype)){
+            String recStatus = safeToString(ftRec.getRecordStatus());
+            if ("OBDX".equalsIgnoreCase(Ptype)){
                 String output = String.join("*", recid, type, creditReference, creditAcctName,
                         paymentDet.toString().trim(), debitAmount, creditAcct, debitAcct, override.toString().trim(),
                         recStatus, debitccy);
 
-                finalArray.add(output);
-                }
-
-            } catch (Exception e) {
-                logger.log(Level.SEVERE, "Error processing FT record: " + ftid + " from version: " + version, e);
+                return output;
             }
+
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error processing FT record: " + ftid + " from version: " + version, e);
         }
+        return null;
     }
 
-    private void processPPRecords(List<String> records, String version, DataAccess da, List<String> finalArray,
-            String type) {
-        for (String ppid : records) {
-            try {
-                logger.fine("Processing PP record: " + ppid + " from version: " + version);
-
-                PpOrderEntryRecord ppRec = new PpOrderEntryRecord(da.getRecord("PP.ORDER.ENTRY" + version, ppid));
-                StringBuilder paymentDet = new StringBuilder();
-                StringBuilder override = new StringBuilder();
-                
-                String recid = ppid;
-                String uniqueCode = safeLocalRef(ppRec, "L.UNIQUECODE");
-                String creditAcctName = " ";
-
-                // Build payment details from PP record
-                String beneficiaryName = safeToString(ppRec.getBeneficiaryname());
-                if (!beneficiaryName.isEmpty()) {
-                    paymentDet.append(beneficiaryName).append(" ");
-                }
-
-                String debitAmount = safeToString(ppRec.getTransactionamount());
-                String creditAcct = safeToString(ppRec.getBeneficiaryaccount());
-                String debitAcct = safeToString(ppRec.getDebitaccountnumber());
-                String debitccy = safeToString(ppRec.getTransactioncurrency());
-
-                for (int i = 0; i < ppRec.getOverride().size(); i++) {
-                    override.append(ppRec.getOverride(i).toString()).append(" ");
-                }
-
-                String recStatus = safeToString(ppRec.getRecordStatus());
-                String Ptype = getObdxType(uniqueCode);
-                if ("OBDX".equalsIgnoreCase(Ptype)){
+    // Row of a PP.ORDER.ENTRY record, null if it is not an OBDX payment or cannot be read
+    private String buildPPRow(String ppid, String version, DataAccess da, String type) {
+        try {
+            logger.fine("Processing PP record: " + ppid + " from version: " + version);
+
+            PpOrderEntryRecord ppRec = new PpOrderEntryRecord(da.getRecord("PP.ORDER.ENTRY" + version, ppid));
+            StringBuilder paymentDet = new StringBuilder();
+            StringBuilder override = new StringBuilder();
+            
+            String recid = ppid;
+            String uniqueCode = safeLocalRef(ppRec, "L.UNIQUECODE");
+            String creditAcctName = " ";
+
+            // Build payment details from PP record
+            String beneficiaryName = safeToString(ppRec.getBeneficiaryname());
+            if (!beneficiaryName.isEmpty()) {
+                paymentDet.append(beneficiaryName).append(" ");
+            }
+
+            String debitAmount = safeToString(ppRec.getTransactionamount());
+            String creditAcct = safeToString(ppRec.getBeneficiaryaccount());
+            String debitAcct = safeToString(ppRec.getDebitaccountnumber());
+            String debitccy = safeToString(ppRec.getTransactioncurrency());
+
+            for (int i = 0; i < ppRec.getOverride().size(); i++) {
+                override.append(ppRec.getOverride(i).toString()).append(" ");
+            }
+
+            String recStatus = safeToString(ppRec.getRecordStatus());
+            String Ptype = getObdxType(uniqueCode);
+            if ("OBDX".equalsIgnoreCase(Ptype)){
                 String output = String.join("*", recid, type, uniqueCode, creditAcctName, paymentDet.toString().trim(),
                         debitAmount, creditAcct, debitAcct, override.toString().trim(), recStatus, debitccy);
-                 
-                finalArray.add(output);
-                }
 
-            } catch (Exception e) {
-                logger.log(Level.SEVERE, "Error processing PP record: " + ppid + " from version: " + version, e);
+                return output;
             }
+
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Error processing PP record: " + ppid + " from version: " + version, e);
         }
+        return null;
     }
 
     private String extractType(List<FilterCriteria> filterCriteria) {